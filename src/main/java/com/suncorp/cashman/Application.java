@@ -4,12 +4,20 @@ package com.suncorp.cashman;
  * Created by ryan.zhu on 13/05/2018.
  */
 
+import com.suncorp.cashman.logging.LoggingShutdownHook;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class Application {
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        SpringApplication application = new SpringApplication(Application.class);
+
+        // Closed by the logging shutdown hook instead, which stops log4j once the context has closed
+        application.setRegisterShutdownHook(false);
+        ConfigurableApplicationContext context = application.run(args);
+
+        Runtime.getRuntime().addShutdownHook(new LoggingShutdownHook(context));
     }
-}
\ No newline at end of file
+}
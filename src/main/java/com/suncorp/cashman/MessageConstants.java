@@ -12,6 +12,18 @@ public class MessageConstants {
 
     public static final String CASH_SUPPLY_NEGATIVE_CASH_QUANTITY_ERROR_MESSAGE = "Can't withdraw negative cash quantity.";
 
+    public static final String EXPORT_WINDOW_ERROR_MESSAGE = "The from time must be before the to time.";
+
+    public static final String PAGE_SIZE_ERROR_MESSAGE = "The page size must be positive.";
+
+    public static final String IDEMPOTENCY_KEY_ERROR_MESSAGE = "The idempotency key must be 1 to 64 characters.";
+
+    public static final String IDEMPOTENCY_KEY_REUSED_ERROR_MESSAGE = "The idempotency key was already used by a different request.";
+
+    public static final String IDEMPOTENCY_KEY_IN_PROGRESS_ERROR_MESSAGE = "The request with the idempotency key has not completed yet. Please try again later.";
+
+    public static final String DISPENSE_NOT_RECORDED_ERROR_MESSAGE = "The cash has been dispensed, but the withdraw could not be recorded.";
+
 
 
 }
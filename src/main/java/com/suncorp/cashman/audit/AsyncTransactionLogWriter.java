@@ -0,0 +1,305 @@
+package com.suncorp.cashman.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the transaction logs in the background, so that the dispense response does not wait on the audit inserts.
+ *
+ * The transaction logs are put on a bounded queue. A single writer thread takes them off in batches: a batch is
+ * written as soon as it is full, or once the first transaction log in it has waited for the linger time.
+ * When the queue is full, the calling thread writes its own transaction log, which slows the callers down to the
+ * speed of the database instead of dropping the log. The queue is drained before the application shuts down.
+ *
+ * A batch which still fails after the retries is written entry by entry, so one bad row does not lose the rest of
+ * the batch. The entries which still fail are held and retried about once a second; they are not counted as written.
+ * At most as many entries as the queue capacity are held, anything over that is only kept in the dispense journal,
+ * which replays it into the database on the next start.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class AsyncTransactionLogWriter {
+
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private static final long RETRY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private TransactionLogBatchWriter transactionLogBatchWriter;
+
+    private final BlockingQueue<TransactionLogEntry> queue;
+
+    private final int batchSize;
+
+    private final long lingerNanos;
+
+    private final long enqueueTimeoutMillis;
+
+    private final int maxFailedEntries;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+
+    private final Object settledMonitor = new Object();
+
+    // Guarded by settledMonitor: an entry is settled once it has been written, held after failing, or given up
+    private long writtenCount;
+
+    private long retryingCount;
+
+    private long droppedCount;
+
+    private final Deque<TransactionLogEntry> failedEntries = new ArrayDeque<>();
+
+    private long nextRetryNanos;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public AsyncTransactionLogWriter(TransactionLogBatchWriter transactionLogBatchWriter,
+                                     @Value("${cashman.transaction-log.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${cashman.transaction-log.batch-size:100}") int batchSize,
+                                     @Value("${cashman.transaction-log.linger-ms:20}") long lingerMillis,
+                                     @Value("${cashman.transaction-log.enqueue-timeout-ms:50}") long enqueueTimeoutMillis) {
+        this.transactionLogBatchWriter = transactionLogBatchWriter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxFailedEntries = queueCapacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        nextRetryNanos = System.nanoTime() + RETRY_INTERVAL_NANOS;
+
+        writerThread = new Thread(this::run, "transaction-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stop taking new transaction logs and write everything which is still on the queue, then try the held
+     * entries one last time.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join();
+
+        List<TransactionLogEntry> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+
+        retryFailedEntries();
+
+        int failedCount = getFailedCount();
+        if (failedCount > 0) {
+            logger.error("Failed to write " + failedCount + " transaction logs, they are kept in the dispense journal.");
+        }
+    }
+
+    /**
+     * Queue the transaction log to be written. If the queue is still full after the enqueue timeout,
+     * or the writer has been stopped, the transaction log is written on the calling thread.
+     *
+     * @param entry The transaction log with its details.
+     */
+    public void write(TransactionLogEntry entry) {
+        submittedCount.incrementAndGet();
+
+        try {
+            if (running && queue.offer(entry, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        logger.warn("The transaction log queue is full, write the transaction log on the calling thread.");
+        writeBatch(Collections.singletonList(entry));
+    }
+
+    /**
+     * Wait until all the transaction logs queued so far have been written, or held after failing.
+     */
+    public void flush() throws InterruptedException {
+        long target = submittedCount.get();
+
+        synchronized (settledMonitor) {
+            while (writtenCount + failedEntries.size() + retryingCount + droppedCount < target) {
+                settledMonitor.wait();
+            }
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of transaction logs held to be written again.
+     */
+    public int getFailedCount() {
+        synchronized (settledMonitor) {
+            return failedEntries.size();
+        }
+    }
+
+    private void run() {
+        List<TransactionLogEntry> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                TransactionLogEntry first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+                long deadline = System.nanoTime() + lingerNanos;
+
+                while (first != null && batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0) {
+                        break;
+                    }
+
+                    TransactionLogEntry next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() drains whatever is left on the queue
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+
+            if (System.nanoTime() - nextRetryNanos >= 0) {
+                retryFailedEntries();
+                nextRetryNanos = System.nanoTime() + RETRY_INTERVAL_NANOS;
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<TransactionLogEntry> batch) {
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            try {
+                transactionLogBatchWriter.write(batch);
+                settled(batch.size(), Collections.emptyList());
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to write " + batch.size() + " transaction logs, try again: " + e.getMessage());
+            }
+        }
+
+        // Find the entries which fail on their own, the others are written
+        int written = 0;
+        List<TransactionLogEntry> failed = new ArrayList<>();
+        for (TransactionLogEntry entry : batch) {
+            if (writeEntry(entry)) {
+                written++;
+            } else {
+                failed.add(entry);
+            }
+        }
+
+        settled(written, failed);
+    }
+
+    /**
+     * Write the held entries again, one by one. The entries which still fail are held again.
+     */
+    private void retryFailedEntries() {
+        List<TransactionLogEntry> retries;
+        synchronized (settledMonitor) {
+            if (failedEntries.isEmpty()) {
+                return;
+            }
+
+            retries = new ArrayList<>(failedEntries);
+            failedEntries.clear();
+            retryingCount = retries.size();
+        }
+
+        int written = 0;
+        List<TransactionLogEntry> failed = new ArrayList<>();
+        for (TransactionLogEntry entry : retries) {
+            if (writeEntry(entry)) {
+                written++;
+            } else {
+                failed.add(entry);
+            }
+        }
+
+        synchronized (settledMonitor) {
+            retryingCount = 0;
+            settled(written, failed);
+        }
+    }
+
+    private boolean writeEntry(TransactionLogEntry entry) {
+        try {
+            transactionLogBatchWriter.write(Collections.singletonList(entry));
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("Failed to write the transaction log of journal sequence " + entry.getTransactionLog().getJournalSequence()
+                    + ", hold it to try again: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void settled(int written, List<TransactionLogEntry> failed) {
+        synchronized (settledMonitor) {
+            writtenCount += written;
+
+            for (TransactionLogEntry entry : failed) {
+                if (failedEntries.size() < maxFailedEntries) {
+                    failedEntries.addLast(entry);
+                } else {
+                    logger.error("Too many transaction logs are held, give up the transaction log of journal sequence "
+                            + entry.getTransactionLog().getJournalSequence() + ", it is kept in the dispense journal.");
+                    droppedCount++;
+                }
+            }
+
+            settledMonitor.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.suncorp.cashman.audit;
+
+/**
+ * The formats the transaction logs can be exported in.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public enum ExportFormat {
+
+    /**
+     * One JSON object per transaction log and line, with its details nested.
+     */
+    NDJSON("application/x-ndjson"),
+
+    /**
+     * One row per transaction log detail with the columns of its transaction log repeated.
+     */
+    CSV("text/csv");
+
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
@@ -0,0 +1,179 @@
+package com.suncorp.cashman.audit;
+
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes many transaction logs and their details to the database with JDBC batch inserts in one transaction.
+ *
+ * The transaction logs are inserted in one batch and their generated ids are read back for the details. Some drivers
+ * only return the last generated id of a batch; in that case the batch is rolled back to a savepoint and the
+ * transaction logs are inserted one by one from then on. The details are always inserted in one batch.
+ *
+ * In the COMPACT format the details are packed into the transaction log row instead, so a batch is a single insert
+ * batch and the generated ids are not needed.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class TransactionLogBatchWriter {
+
+    private static final String INSERT_TRANSACTION_LOG =
+            "insert into transaction_log (bsb, account_no, account_name, total_amount, create_at, journal_sequence, machine_id, cash_counts) values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_TRANSACTION_LOG_DETAIL =
+            "insert into transaction_log_detail (transaction_log_id, cash_desc, cash_value, quantity) values (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionLogFormat transactionLogFormat;
+
+    private volatile boolean batchGeneratedKeysSupported = true;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public TransactionLogBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     @Value("${cashman.transaction-log.format:DETAIL}") TransactionLogFormat transactionLogFormat) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionLogFormat = transactionLogFormat;
+    }
+
+    /**
+     * Write the transaction logs and their details in one transaction.
+     *
+     * @param entries The transaction logs to write. The generated ids are set on the transaction logs.
+     */
+    public void write(List<TransactionLogEntry> entries) {
+        if (transactionLogFormat == TransactionLogFormat.COMPACT) {
+            writeCompact(entries);
+            return;
+        }
+
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                insertTransactionLogs(connection, entries);
+                return null;
+            });
+
+            insertTransactionLogDetails(entries);
+            return null;
+        });
+    }
+
+    private void writeCompact(List<TransactionLogEntry> entries) {
+        List<Object[]> batchArgs = new ArrayList<>(entries.size());
+
+        for (TransactionLogEntry entry : entries) {
+            TransactionLog transactionLog = entry.getTransactionLog();
+            transactionLog.setCashCounts(CashCountsCodec.encode(entry.getTransactionLogDetails()));
+
+            batchArgs.add(new Object[]{transactionLog.getBsb(), transactionLog.getAccountNo(), transactionLog.getAccountName(),
+                    transactionLog.getTotalAmount(), Timestamp.valueOf(transactionLog.getCreateAt()), transactionLog.getJournalSequence(),
+                    transactionLog.getMachineId(), transactionLog.getCashCounts()});
+        }
+
+        transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_TRANSACTION_LOG, batchArgs, new int[]{Types.VARCHAR,
+                Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR, Types.VARBINARY}));
+    }
+
+    private void insertTransactionLogs(Connection connection, List<TransactionLogEntry> entries) throws SQLException {
+        if (batchGeneratedKeysSupported && entries.size() > 1) {
+            Savepoint savepoint = connection.setSavepoint();
+
+            if (insertTransactionLogBatch(connection, entries)) {
+                connection.releaseSavepoint(savepoint);
+                return;
+            }
+
+            logger.warn("The JDBC driver does not return the generated ids of a batch, insert the transaction logs one by one.");
+            connection.rollback(savepoint);
+            batchGeneratedKeysSupported = false;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_TRANSACTION_LOG, Statement.RETURN_GENERATED_KEYS)) {
+            for (TransactionLogEntry entry : entries) {
+                setTransactionLogParameters(statement, entry.getTransactionLog());
+                statement.executeUpdate();
+
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    generatedKeys.next();
+                    entry.getTransactionLog().setTransactionLogId(generatedKeys.getLong(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the driver has returned a generated id for every transaction log.
+     */
+    private boolean insertTransactionLogBatch(Connection connection, List<TransactionLogEntry> entries) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_TRANSACTION_LOG, Statement.RETURN_GENERATED_KEYS)) {
+            for (TransactionLogEntry entry : entries) {
+                setTransactionLogParameters(statement, entry.getTransactionLog());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+
+            int index = 0;
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                while (index < entries.size() && generatedKeys.next()) {
+                    entries.get(index++).getTransactionLog().setTransactionLogId(generatedKeys.getLong(1));
+                }
+            }
+
+            return index == entries.size();
+        }
+    }
+
+    private void insertTransactionLogDetails(List<TransactionLogEntry> entries) {
+        List<Object[]> batchArgs = new ArrayList<>();
+
+        for (TransactionLogEntry entry : entries) {
+            for (TransactionLogDetail detail : entry.getTransactionLogDetails()) {
+                batchArgs.add(new Object[]{entry.getTransactionLog().getTransactionLogId(), detail.getCashDesc(), detail.getCashValue(), detail.getQuantity()});
+            }
+        }
+
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION_LOG_DETAIL, batchArgs);
+        }
+    }
+
+    private void setTransactionLogParameters(PreparedStatement statement, TransactionLog transactionLog) throws SQLException {
+        statement.setString(1, transactionLog.getBsb());
+        statement.setString(2, transactionLog.getAccountNo());
+        statement.setString(3, transactionLog.getAccountName());
+        statement.setInt(4, transactionLog.getTotalAmount());
+        statement.setTimestamp(5, Timestamp.valueOf(transactionLog.getCreateAt()));
+        statement.setObject(6, transactionLog.getJournalSequence(), Types.BIGINT);
+        statement.setString(7, transactionLog.getMachineId());
+        statement.setNull(8, Types.VARBINARY);
+    }
+}
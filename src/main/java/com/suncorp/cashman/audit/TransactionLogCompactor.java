@@ -0,0 +1,132 @@
+package com.suncorp.cashman.audit;
+
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migrates the transaction logs written in the detail format to the compact format.
+ *
+ * The transaction logs are migrated in batches by id, each batch in its own transaction: their detail rows are packed
+ * into cash_counts and then deleted. The readers handle both formats, so the migration can run while the cash machines
+ * are dispensing and can be stopped and started again at any time. The cash descriptions of the detail rows are not
+ * kept, they are rebuilt from the cash values when read.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+@DependsOn("dispenseJournal")
+public class TransactionLogCompactor {
+
+    private static final String SELECT_DETAIL_TRANSACTION_LOG_IDS =
+            "select transaction_log_id from transaction_log where cash_counts is null and transaction_log_id > ? order by transaction_log_id limit ?";
+
+    private static final String SELECT_TRANSACTION_LOG_DETAILS =
+            "select transaction_log_id, cash_value, quantity from transaction_log_detail where transaction_log_id in (:transactionLogIds)";
+
+    private static final String UPDATE_CASH_COUNTS =
+            "update transaction_log set cash_counts = ? where transaction_log_id = ?";
+
+    private static final String DELETE_TRANSACTION_LOG_DETAILS =
+            "delete from transaction_log_detail where transaction_log_id in (:transactionLogIds)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final boolean compactOnStartup;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public TransactionLogCompactor(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   @Value("${cashman.transaction-log.compact-batch-size:1000}") int batchSize,
+                                   @Value("${cashman.transaction-log.compact-on-startup:false}") boolean compactOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.compactOnStartup = compactOnStartup;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (compactOnStartup) {
+            compact();
+        }
+    }
+
+    /**
+     * Migrate all the transaction logs in the detail format.
+     *
+     * @return the number of transaction logs migrated.
+     */
+    public long compact() {
+        logger.info("Compact the transaction logs.");
+        long lastTransactionLogId = 0;
+        long compactedCount = 0;
+
+        while (true) {
+            List<Long> transactionLogIds = jdbcTemplate.queryForList(SELECT_DETAIL_TRANSACTION_LOG_IDS, Long.class, lastTransactionLogId, batchSize);
+            if (transactionLogIds.isEmpty()) {
+                break;
+            }
+
+            transactionTemplate.execute(status -> {
+                compactBatch(transactionLogIds);
+                return null;
+            });
+
+            lastTransactionLogId = transactionLogIds.get(transactionLogIds.size() - 1);
+            compactedCount += transactionLogIds.size();
+        }
+
+        logger.info("Compacted " + compactedCount + " transaction logs.");
+
+        return compactedCount;
+    }
+
+    private void compactBatch(List<Long> transactionLogIds) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("transactionLogIds", transactionLogIds);
+
+        Map<Long, List<TransactionLogDetail>> transactionLogDetails = new LinkedHashMap<>();
+        transactionLogIds.forEach(transactionLogId -> transactionLogDetails.put(transactionLogId, new ArrayList<>()));
+
+        namedParameterJdbcTemplate.query(SELECT_TRANSACTION_LOG_DETAILS, parameters, resultSet -> {
+            TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
+            transactionLogDetail.setCashValue(resultSet.getInt("cash_value"));
+            transactionLogDetail.setQuantity(resultSet.getInt("quantity"));
+
+            transactionLogDetails.get(resultSet.getLong("transaction_log_id")).add(transactionLogDetail);
+        });
+
+        List<Object[]> batchArgs = new ArrayList<>(transactionLogIds.size());
+        transactionLogDetails.forEach((transactionLogId, details) -> {
+            batchArgs.add(new Object[]{CashCountsCodec.encode(details), transactionLogId});
+        });
+
+        jdbcTemplate.batchUpdate(UPDATE_CASH_COUNTS, batchArgs);
+        namedParameterJdbcTemplate.update(DELETE_TRANSACTION_LOG_DETAILS, parameters);
+    }
+}
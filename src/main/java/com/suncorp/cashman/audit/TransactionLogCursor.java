@@ -0,0 +1,54 @@
+package com.suncorp.cashman.audit;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * The position of the last transaction log of a page, the next page starts right after it.
+ *
+ * It is handed to the clients as an opaque url safe token, so they never depend on how the pages are sought.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class TransactionLogCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private LocalDateTime createAt;
+
+    private long transactionLogId;
+
+    public TransactionLogCursor(LocalDateTime createAt, long transactionLogId) {
+        this.createAt = createAt;
+        this.transactionLogId = transactionLogId;
+    }
+
+    public String encode() {
+        String cursor = createAt + SEPARATOR + transactionLogId;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token The token from {@link #encode()}.
+     * @return the cursor.
+     * @throws IllegalArgumentException if the token is not a valid cursor.
+     */
+    public static TransactionLogCursor decode(String token) {
+        try {
+            String cursor = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = cursor.indexOf(SEPARATOR);
+
+            return new TransactionLogCursor(LocalDateTime.parse(cursor.substring(0, separatorIndex)),
+                    Long.parseLong(cursor.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor " + token + ".");
+        }
+    }
+}
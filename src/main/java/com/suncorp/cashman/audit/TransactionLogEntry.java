@@ -0,0 +1,26 @@
+package com.suncorp.cashman.audit;
+
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A transaction log with its details, waiting to be written to the database.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class TransactionLogEntry {
+
+    private TransactionLog transactionLog;
+
+    private List<TransactionLogDetail> transactionLogDetails;
+
+    public TransactionLogEntry(TransactionLog transactionLog, List<TransactionLogDetail> transactionLogDetails) {
+        this.transactionLog = transactionLog;
+        this.transactionLogDetails = transactionLogDetails;
+    }
+}
@@ -0,0 +1,289 @@
+package com.suncorp.cashman.audit;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Streams the transaction logs and their details of a time window to an output stream.
+ *
+ * The transaction logs and their details are read with one forward-only, read-only query using a range scan on the
+ * create_at index, and every row is written as soon as it is read. Nothing is collected in memory, so an export uses
+ * the same memory whatever the number of rows; MySQL only streams the rows with a fetch size when the connection url
+ * sets useCursorFetch=true, otherwise the driver reads the whole result set first.
+ *
+ * The rows are ordered by create_at and transaction_log_id, which is the order of the create_at index, so the details
+ * of a transaction log always come together. The transaction logs in the compact format have no detail rows, their
+ * details are unpacked from the row, so both formats are exported the same way.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class TransactionLogExporter {
+
+    private static final String SELECT_TRANSACTION_LOGS =
+            "select t.transaction_log_id, t.machine_id, t.bsb, t.account_no, t.account_name, t.total_amount, t.create_at, t.journal_sequence, t.cash_counts, "
+                    + "d.cash_desc, d.cash_value, d.quantity "
+                    + "from transaction_log t left join transaction_log_detail d on d.transaction_log_id = t.transaction_log_id "
+                    + "where t.create_at >= ? and t.create_at < ? "
+                    + "order by t.create_at, t.transaction_log_id";
+
+    private static final String CSV_HEADER =
+            "transaction_log_id,machine_id,bsb,account_no,account_name,total_amount,create_at,journal_sequence,cash_desc,cash_value,quantity";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final int fetchSize;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public TransactionLogExporter(JdbcTemplate jdbcTemplate, @Value("${cashman.transaction-log.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Write the transaction logs created in the time window to the output stream.
+     *
+     * @param fromTime     The start of the window, inclusive.
+     * @param toTime       The end of the window, exclusive.
+     * @param exportFormat The format to write.
+     * @param outputStream The stream to write to. It is flushed but not closed.
+     * @return the number of transaction logs written.
+     * @throws IOException if writing to the output stream fails, e.g. the client has gone away.
+     */
+    public long export(LocalDateTime fromTime, LocalDateTime toTime, ExportFormat exportFormat, OutputStream outputStream) throws IOException {
+        logger.info("Export the transaction logs from " + fromTime + " to " + toTime + " as " + exportFormat + ".");
+        RowWriter rowWriter = exportFormat == ExportFormat.CSV ? new CsvRowWriter(outputStream) : new NdjsonRowWriter(outputStream);
+        rowWriter.cashDescs = CashCountsCodec.readCashDescs(jdbcTemplate);
+
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT_TRANSACTION_LOGS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, Timestamp.valueOf(fromTime));
+                statement.setTimestamp(2, Timestamp.valueOf(toTime));
+                return statement;
+            }, (RowCallbackHandler) resultSet -> {
+                try {
+                    rowWriter.write(resultSet);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            rowWriter.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return rowWriter.getTransactionLogCount();
+    }
+
+    /**
+     * Writes the rows of the query one by one. A transaction log without detail rows has one row with null detail columns.
+     */
+    private abstract static class RowWriter {
+
+        private long lastTransactionLogId = -1;
+
+        private long transactionLogCount;
+
+        // The cash descriptions of the compact format, by cash value
+        private Map<Integer, String> cashDescs;
+
+        void write(ResultSet resultSet) throws SQLException, IOException {
+            long transactionLogId = resultSet.getLong("transaction_log_id");
+
+            if (transactionLogId != lastTransactionLogId) {
+                if (lastTransactionLogId != -1) {
+                    endTransactionLog();
+                }
+
+                startTransactionLog(resultSet);
+                lastTransactionLogId = transactionLogId;
+                transactionLogCount++;
+
+                byte[] cashCounts = resultSet.getBytes("cash_counts");
+                if (cashCounts != null) {
+                    for (TransactionLogDetail transactionLogDetail : CashCountsCodec.decode(cashCounts, null, cashDescs)) {
+                        writeDetail(transactionLogDetail.getCashDesc(), transactionLogDetail.getCashValue(), transactionLogDetail.getQuantity());
+                    }
+                }
+            }
+
+            if (resultSet.getObject("cash_value") != null) {
+                writeDetail(resultSet.getString("cash_desc"), resultSet.getInt("cash_value"), resultSet.getInt("quantity"));
+            }
+        }
+
+        void finish() throws IOException {
+            if (lastTransactionLogId != -1) {
+                endTransactionLog();
+            }
+
+            flush();
+        }
+
+        long getTransactionLogCount() {
+            return transactionLogCount;
+        }
+
+        abstract void startTransactionLog(ResultSet resultSet) throws SQLException, IOException;
+
+        abstract void writeDetail(String cashDesc, int cashValue, int quantity) throws IOException;
+
+        abstract void endTransactionLog() throws IOException;
+
+        abstract void flush() throws IOException;
+    }
+
+    private static final class NdjsonRowWriter extends RowWriter {
+
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(OutputStream outputStream) throws IOException {
+            generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        void startTransactionLog(ResultSet resultSet) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("transactionLogId", resultSet.getLong("transaction_log_id"));
+            generator.writeStringField("machineId", resultSet.getString("machine_id"));
+            generator.writeStringField("bsb", resultSet.getString("bsb"));
+            generator.writeStringField("accountNo", resultSet.getString("account_no"));
+            generator.writeStringField("accountName", resultSet.getString("account_name"));
+            generator.writeNumberField("totalAmount", resultSet.getInt("total_amount"));
+            generator.writeStringField("createAt", TransactionLogExporter.toString(resultSet.getTimestamp("create_at")));
+
+            long journalSequence = resultSet.getLong("journal_sequence");
+            if (resultSet.wasNull()) {
+                generator.writeNullField("journalSequence");
+            } else {
+                generator.writeNumberField("journalSequence", journalSequence);
+            }
+
+            generator.writeArrayFieldStart("details");
+        }
+
+        @Override
+        void writeDetail(String cashDesc, int cashValue, int quantity) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("cashDesc", cashDesc);
+            generator.writeNumberField("cashValue", cashValue);
+            generator.writeNumberField("quantity", quantity);
+            generator.writeEndObject();
+        }
+
+        @Override
+        void endTransactionLog() throws IOException {
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        @Override
+        void flush() throws IOException {
+            // The root value separator is only written between the objects, end the last line as well
+            if (getTransactionLogCount() > 0) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        }
+    }
+
+    private static final class CsvRowWriter extends RowWriter {
+
+        private final Writer writer;
+
+        private String transactionLogColumns;
+
+        private boolean detailWritten;
+
+        private CsvRowWriter(OutputStream outputStream) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        void startTransactionLog(ResultSet resultSet) throws SQLException {
+            transactionLogColumns = resultSet.getLong("transaction_log_id")
+                    + "," + escape(resultSet.getString("machine_id"))
+                    + "," + escape(resultSet.getString("bsb"))
+                    + "," + escape(resultSet.getString("account_no"))
+                    + "," + escape(resultSet.getString("account_name"))
+                    + "," + resultSet.getInt("total_amount")
+                    + "," + escape(TransactionLogExporter.toString(resultSet.getTimestamp("create_at")))
+                    + "," + escape(resultSet.getString("journal_sequence"));
+            detailWritten = false;
+        }
+
+        @Override
+        void writeDetail(String cashDesc, int cashValue, int quantity) throws IOException {
+            writer.write(transactionLogColumns);
+            writer.write("," + escape(cashDesc) + "," + cashValue + "," + quantity);
+            writer.write('\n');
+            detailWritten = true;
+        }
+
+        @Override
+        void endTransactionLog() throws IOException {
+            if (!detailWritten) {
+                writer.write(transactionLogColumns);
+                writer.write(",,,\n");
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static String toString(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime().toString();
+    }
+}
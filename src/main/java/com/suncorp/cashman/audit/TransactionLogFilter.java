@@ -0,0 +1,38 @@
+package com.suncorp.cashman.audit;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * The filters of a transaction log query. A null filter is not applied.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class TransactionLogFilter {
+
+    private String bsb;
+
+    private String accountNo;
+
+    /**
+     * Inclusive.
+     */
+    private LocalDateTime fromTime;
+
+    /**
+     * Exclusive.
+     */
+    private LocalDateTime toTime;
+
+    private Integer minAmount;
+
+    private Integer maxAmount;
+
+    public TransactionLogFilter() {
+
+    }
+
+}
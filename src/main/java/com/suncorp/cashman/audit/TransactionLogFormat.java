@@ -0,0 +1,21 @@
+package com.suncorp.cashman.audit;
+
+/**
+ * How the dispensed cash of a transaction log is stored.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public enum TransactionLogFormat {
+
+    /**
+     * One transaction_log_detail row per cash value, up to 8 inserts per dispense.
+     */
+    DETAIL,
+
+    /**
+     * The cash values and quantities are packed into the cash_counts column of the transaction_log row, see
+     * {@link CashCountsCodec}. One insert per dispense.
+     */
+    COMPACT
+}
@@ -0,0 +1,27 @@
+package com.suncorp.cashman.audit;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A page of transaction logs with their details, newest first.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class TransactionLogPage {
+
+    private List<TransactionLogEntry> entries;
+
+    /**
+     * Where the next page starts, null if this is the last page.
+     */
+    private TransactionLogCursor nextCursor;
+
+    public TransactionLogPage(List<TransactionLogEntry> entries, TransactionLogCursor nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,176 @@
+package com.suncorp.cashman.audit;
+
+import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the transaction logs page by page, newest first, with keyset pagination.
+ *
+ * A page never uses OFFSET: it seeks straight past the cursor, the (create_at, transaction_log_id) of the last
+ * transaction log of the previous page, and reads the next rows in the index order. So every page costs the same
+ * whatever how deep it is. The account filter uses the (bsb, account_no, create_at, transaction_log_id) index and the
+ * other queries the (create_at, transaction_log_id) index; the amount range is checked on the rows of the index range.
+ *
+ * The details of all the transaction logs of a page are read with one more query instead of one per transaction log.
+ * The transaction logs in the compact format carry their details in the row, so they need no detail query at all.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class TransactionLogReader {
+
+    private static final String SELECT_TRANSACTION_LOGS =
+            "select transaction_log_id, machine_id, bsb, account_no, account_name, total_amount, create_at, journal_sequence, cash_counts from transaction_log";
+
+    private static final String SELECT_TRANSACTION_LOG_DETAILS =
+            "select transaction_log_id, cash_desc, cash_value, quantity from transaction_log_detail where transaction_log_id in (:transactionLogIds)";
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final int maxPageSize;
+
+    @Autowired
+    public TransactionLogReader(JdbcTemplate jdbcTemplate, @Value("${cashman.transaction-log.page.max-size:500}") int maxPageSize) {
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Read one page of the transaction logs which match the filter.
+     *
+     * @param transactionLogFilter The filter.
+     * @param cursor               Where the page starts, null for the first page.
+     * @param pageSize             The max number of transaction logs in the page, capped by the max page size.
+     * @return the page.
+     */
+    public TransactionLogPage findPage(TransactionLogFilter transactionLogFilter, TransactionLogCursor cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException(MessageConstants.PAGE_SIZE_ERROR_MESSAGE);
+        }
+        pageSize = Math.min(pageSize, maxPageSize);
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        List<String> conditions = new ArrayList<>();
+
+        if (transactionLogFilter.getBsb() != null) {
+            conditions.add("bsb = :bsb");
+            parameters.addValue("bsb", transactionLogFilter.getBsb());
+        }
+        if (transactionLogFilter.getAccountNo() != null) {
+            conditions.add("account_no = :accountNo");
+            parameters.addValue("accountNo", transactionLogFilter.getAccountNo());
+        }
+        if (transactionLogFilter.getFromTime() != null) {
+            conditions.add("create_at >= :fromTime");
+            parameters.addValue("fromTime", Timestamp.valueOf(transactionLogFilter.getFromTime()));
+        }
+        if (transactionLogFilter.getToTime() != null) {
+            conditions.add("create_at < :toTime");
+            parameters.addValue("toTime", Timestamp.valueOf(transactionLogFilter.getToTime()));
+        }
+        if (transactionLogFilter.getMinAmount() != null) {
+            conditions.add("total_amount >= :minAmount");
+            parameters.addValue("minAmount", transactionLogFilter.getMinAmount());
+        }
+        if (transactionLogFilter.getMaxAmount() != null) {
+            conditions.add("total_amount <= :maxAmount");
+            parameters.addValue("maxAmount", transactionLogFilter.getMaxAmount());
+        }
+        if (cursor != null) {
+            // Expanded instead of a row value comparison, which older MySQL versions can not use the index for
+            conditions.add("(create_at < :cursorCreateAt or (create_at = :cursorCreateAt and transaction_log_id < :cursorId))");
+            parameters.addValue("cursorCreateAt", Timestamp.valueOf(cursor.getCreateAt()));
+            parameters.addValue("cursorId", cursor.getTransactionLogId());
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_TRANSACTION_LOGS);
+        if (!conditions.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", conditions));
+        }
+        // One more row than the page size tells whether there is a next page
+        sql.append(" order by create_at desc, transaction_log_id desc limit :limit");
+        parameters.addValue("limit", pageSize + 1);
+
+        List<TransactionLog> transactionLogs = namedParameterJdbcTemplate.query(sql.toString(), parameters, (resultSet, rowNum) -> {
+            TransactionLog transactionLog = new TransactionLog();
+            transactionLog.setTransactionLogId(resultSet.getLong("transaction_log_id"));
+            transactionLog.setMachineId(resultSet.getString("machine_id"));
+            transactionLog.setBsb(resultSet.getString("bsb"));
+            transactionLog.setAccountNo(resultSet.getString("account_no"));
+            transactionLog.setAccountName(resultSet.getString("account_name"));
+            transactionLog.setTotalAmount(resultSet.getInt("total_amount"));
+            transactionLog.setCreateAt(resultSet.getTimestamp("create_at").toLocalDateTime());
+
+            long journalSequence = resultSet.getLong("journal_sequence");
+            transactionLog.setJournalSequence(resultSet.wasNull() ? null : journalSequence);
+            transactionLog.setCashCounts(resultSet.getBytes("cash_counts"));
+
+            return transactionLog;
+        });
+
+        TransactionLogCursor nextCursor = null;
+        if (transactionLogs.size() > pageSize) {
+            transactionLogs = transactionLogs.subList(0, pageSize);
+
+            TransactionLog lastTransactionLog = transactionLogs.get(pageSize - 1);
+            nextCursor = new TransactionLogCursor(lastTransactionLog.getCreateAt(), lastTransactionLog.getTransactionLogId());
+        }
+
+        return new TransactionLogPage(withDetails(transactionLogs), nextCursor);
+    }
+
+    private List<TransactionLogEntry> withDetails(List<TransactionLog> transactionLogs) {
+        if (transactionLogs.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, TransactionLogEntry> entries = new LinkedHashMap<>();
+        List<Long> detailTransactionLogIds = new ArrayList<>();
+
+        Map<Integer, String> cashDescs = transactionLogs.stream().anyMatch(transactionLog -> transactionLog.getCashCounts() != null)
+                ? CashCountsCodec.readCashDescs(namedParameterJdbcTemplate.getJdbcOperations()) : Collections.emptyMap();
+
+        transactionLogs.forEach(transactionLog -> {
+            if (transactionLog.getCashCounts() != null) {
+                entries.put(transactionLog.getTransactionLogId(), new TransactionLogEntry(transactionLog, CashCountsCodec.decode(transactionLog.getCashCounts(), transactionLog, cashDescs)));
+            } else {
+                entries.put(transactionLog.getTransactionLogId(), new TransactionLogEntry(transactionLog, new ArrayList<>()));
+                detailTransactionLogIds.add(transactionLog.getTransactionLogId());
+            }
+        });
+
+        if (detailTransactionLogIds.isEmpty()) {
+            return new ArrayList<>(entries.values());
+        }
+
+        namedParameterJdbcTemplate.query(SELECT_TRANSACTION_LOG_DETAILS, new MapSqlParameterSource("transactionLogIds", detailTransactionLogIds), resultSet -> {
+            TransactionLogEntry entry = entries.get(resultSet.getLong("transaction_log_id"));
+
+            TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
+            transactionLogDetail.setTransactionLog(entry.getTransactionLog());
+            transactionLogDetail.setCashDesc(resultSet.getString("cash_desc"));
+            transactionLogDetail.setCashValue(resultSet.getInt("cash_value"));
+            transactionLogDetail.setQuantity(resultSet.getInt("quantity"));
+
+            entry.getTransactionLogDetails().add(transactionLogDetail);
+        });
+
+        return new ArrayList<>(entries.values());
+    }
+}
@@ -1,26 +1,49 @@
 package com.suncorp.cashman.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suncorp.cashman.MessageConstants;
 import com.suncorp.cashman.domain.CashSupply;
-import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.DispenseResult;
+import com.suncorp.cashman.domain.IdempotencyRecord;
 import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.exception.DispenseNotRecordedException;
+import com.suncorp.cashman.idempotency.IdempotencyKeyStore;
 import com.suncorp.cashman.representation.CashSupplyRep;
+import com.suncorp.cashman.representation.DispenseResultRep;
+import com.suncorp.cashman.service.AsyncCashDispenser;
 import com.suncorp.cashman.service.CashService;
+import com.suncorp.cashman.service.CashStockCache;
 import com.suncorp.cashman.service.TransactionLogService;
+import com.suncorp.cashman.stream.InventoryEventStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
+ * The endpoints without a machine id work on the default cash machine.
+ *
+ * A dispense sent with an Idempotency-Key header is only run once per key; a retry with the same key gets the
+ * response of the first request, see {@link IdempotencyKeyStore}.
+ *
  * Created by ryan.zhu on 13/05/2018.
  */
 
@@ -28,12 +51,34 @@ import java.util.Map;
 @RequestMapping("/cashMachine")
 public class CashMachineController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // MediaType only has the constant from Spring 4.3.6 on
+    private static final String TEXT_EVENT_STREAM_VALUE = "text/event-stream";
+
     @Autowired
     private CashService cashService;
 
     @Autowired
     private TransactionLogService transactionLogService;
 
+    @Autowired
+    private AsyncCashDispenser asyncCashDispenser;
+
+    @Autowired
+    private CashStockCache cashStockCache;
+
+    @Autowired
+    private InventoryEventStream inventoryEventStream;
+
+    @Autowired
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /**
@@ -42,8 +87,19 @@ public class CashMachineController {
      */
     @RequestMapping(value = "/initialize", method = RequestMethod.POST)
     public ResponseEntity initializeCashMachine() {
+        return initializeCashMachine(CashSupply.DEFAULT_MACHINE_ID);
+    }
+
+    /**
+     * Initialize the cash supply of one cash machine. The other machines are not touched.
+     *
+     * @param machineId the cash machine
+     * @return
+     */
+    @RequestMapping(value = "/{machineId}/initialize", method = RequestMethod.POST)
+    public ResponseEntity initializeCashMachine(@PathVariable("machineId") String machineId) {
         try {
-            cashService.initializeCashMachine();
+            cashService.initializeCashMachine(machineId);
             return new ResponseEntity(HttpStatus.OK);
 
         } catch (Exception e) {
@@ -55,7 +111,8 @@ public class CashMachineController {
     /**
      * Dispense the cash
      *
-     * @param cashAmount the required cash amount
+     * @param cashAmount     the required cash amount
+     * @param idempotencyKey the idempotency key of the request, optional
      * @return list of the cash supply to meet the required cash amount
      * @throws CashSupplyException handles three different scenario
      *                             - There is no cash in the machine
@@ -63,19 +120,184 @@ public class CashMachineController {
      *                             - The required cash amount is over the daily withdraw limitation
      */
     @RequestMapping(value = "/dispenseCash/{cashAmount}", method = RequestMethod.GET)
-    public ResponseEntity dispenseCash(@PathVariable("cashAmount") Integer cashAmount) {
+    public ResponseEntity dispenseCash(@PathVariable("cashAmount") Integer cashAmount,
+                                       @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return dispenseCash(CashSupply.DEFAULT_MACHINE_ID, cashAmount, idempotencyKey);
+    }
+
+    /**
+     * Dispense the cash from one cash machine
+     *
+     * @param machineId      the cash machine
+     * @param cashAmount     the required cash amount
+     * @param idempotencyKey the idempotency key of the request, optional
+     * @return list of the cash supply to meet the required cash amount
+     */
+    @RequestMapping(value = "/{machineId}/dispenseCash/{cashAmount}", method = RequestMethod.GET)
+    public ResponseEntity dispenseCash(@PathVariable("machineId") String machineId, @PathVariable("cashAmount") Integer cashAmount,
+                                       @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return dispense(machineId, cashAmount);
+        }
+
+        String request = toIdempotentRequest(machineId, cashAmount);
+        IdempotencyKeyStore.Claim claim;
         try {
-            List<CashSupplyRep> cashSupplyRepList = new ArrayList<>();
-            Map<CashType, CashSupply> resultMap = cashService.dispenseCash(cashAmount);
+            claim = idempotencyKeyStore.claim(idempotencyKey, request);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            logger.error("Failed to look up the idempotency key: " + e.getMessage());
+            return new ResponseEntity(HttpStatus.SERVICE_UNAVAILABLE);
+        }
 
-            resultMap.forEach((cashType, cashSupply) -> {
-                CashSupplyRep cashSupplyRep = new CashSupplyRep(cashType.getCashValue(), cashType.getCashDesc(), cashSupply.getCashQuantity());
-                cashSupplyRepList.add(cashSupplyRep);
-            });
+        if (!claim.isOwner()) {
+            if (!claim.getRequest().equals(request)) {
+                return new ResponseEntity(MessageConstants.IDEMPOTENCY_KEY_REUSED_ERROR_MESSAGE, HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+
+            return replay(idempotencyKeyStore.awaitResponse(claim), request);
+        }
 
-            transactionLogService.saveTransactionLog(resultMap, cashAmount);
+        ResponseEntity response = null;
+        try {
+            response = dispense(machineId, cashAmount);
+            return response;
+        } finally {
+            complete(claim, response);
+        }
+    }
 
-            return new ResponseEntity(cashSupplyRepList, HttpStatus.OK);
+    private ResponseEntity dispense(String machineId, Integer cashAmount) {
+        DispenseResult dispenseResult;
+        try {
+            dispenseResult = cashService.dispenseCash(machineId, cashAmount);
+        } catch (CashSupplyException e) {
+            logger.error(e.getMessage());
+            return new ResponseEntity(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        // The cash has left the machine, a failure from here on must not let a retry dispense it again
+        try {
+            transactionLogService.saveTransactionLog(machineId, dispenseResult);
+        } catch (RuntimeException e) {
+            logger.error("Failed to record the dispense of $" + cashAmount + ": " + e.getMessage());
+            return new ResponseEntity(MessageConstants.DISPENSE_NOT_RECORDED_ERROR_MESSAGE, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        return new ResponseEntity(CashSupplyRep.fromDispensedCash(dispenseResult.getDispensedCash()), HttpStatus.OK);
+    }
+
+    /**
+     * Dispense the cash without holding the request thread.
+     *
+     * @param cashAmount     the required cash amount
+     * @param idempotencyKey the idempotency key of the request, optional
+     * @return list of the cash supply to meet the required cash amount
+     */
+    @RequestMapping(value = "/dispenseCash/{cashAmount}/async", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity> dispenseCashAsync(@PathVariable("cashAmount") Integer cashAmount,
+                                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return dispenseCashAsync(CashSupply.DEFAULT_MACHINE_ID, cashAmount, idempotencyKey);
+    }
+
+    /**
+     * Dispense the cash from one cash machine without holding the request thread. The request thread is released
+     * straight away and the response is written once the dispense is journaled, see {@link AsyncCashDispenser}.
+     * A retry with the idempotency key of a request still running waits for its response without holding a thread.
+     *
+     * @param machineId      the cash machine
+     * @param cashAmount     the required cash amount
+     * @param idempotencyKey the idempotency key of the request, optional
+     * @return list of the cash supply to meet the required cash amount, 503 if the dispense pools are full
+     */
+    @RequestMapping(value = "/{machineId}/dispenseCash/{cashAmount}/async", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity> dispenseCashAsync(@PathVariable("machineId") String machineId, @PathVariable("cashAmount") Integer cashAmount,
+                                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return dispenseAsync(machineId, cashAmount);
+        }
+
+        String request = toIdempotentRequest(machineId, cashAmount);
+        IdempotencyKeyStore.Claim claim;
+        try {
+            claim = idempotencyKeyStore.claim(idempotencyKey, request);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(new ResponseEntity(e.getMessage(), HttpStatus.BAD_REQUEST));
+        } catch (DataAccessException e) {
+            logger.error("Failed to look up the idempotency key: " + e.getMessage());
+            return CompletableFuture.completedFuture(new ResponseEntity(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+
+        if (!claim.isOwner()) {
+            if (!claim.getRequest().equals(request)) {
+                return CompletableFuture.completedFuture(
+                        new ResponseEntity(MessageConstants.IDEMPOTENCY_KEY_REUSED_ERROR_MESSAGE, HttpStatus.UNPROCESSABLE_ENTITY));
+            }
+
+            return claim.getResponse().thenApply(idempotencyRecord -> replay(idempotencyRecord, request));
+        }
+
+        return dispenseAsync(machineId, cashAmount).whenComplete((response, e) -> complete(claim, response));
+    }
+
+    private CompletableFuture<ResponseEntity> dispenseAsync(String machineId, Integer cashAmount) {
+        return asyncCashDispenser.dispenseCash(machineId, cashAmount)
+                .thenApply(resultMap -> new ResponseEntity(CashSupplyRep.fromDispensedCash(resultMap), HttpStatus.OK))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+                    if (cause instanceof CashSupplyException) {
+                        logger.error(cause.getMessage());
+                        return new ResponseEntity(cause.getMessage(), HttpStatus.BAD_REQUEST);
+                    } else if (cause instanceof DispenseNotRecordedException) {
+                        logger.error("Failed to record the dispense of $" + cashAmount + ": " + cause.getCause().getMessage());
+                        return new ResponseEntity(cause.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+                    } else if (cause instanceof RejectedExecutionException) {
+                        logger.warn("The dispense pools are full, reject the dispense.");
+                        return new ResponseEntity(HttpStatus.SERVICE_UNAVAILABLE);
+                    }
+
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+    }
+
+    /**
+     * Dispense a batch of withdraws in one call. The withdraws are dispensed in order, and a withdraw which cannot
+     * be dispensed is reported in its own result without failing the rest of the batch.
+     *
+     * @param cashAmounts the required cash amounts in order
+     * @return list of the dispense result of each withdraw, in the same order
+     */
+    @RequestMapping(value = "/dispenseCash/batch", method = RequestMethod.POST)
+    public ResponseEntity dispenseCashBatch(@RequestBody List<Integer> cashAmounts) {
+        return dispenseCashBatch(CashSupply.DEFAULT_MACHINE_ID, cashAmounts);
+    }
+
+    /**
+     * Dispense a batch of withdraws from one cash machine in one call.
+     *
+     * @param machineId   the cash machine
+     * @param cashAmounts the required cash amounts in order
+     * @return list of the dispense result of each withdraw, in the same order
+     */
+    @RequestMapping(value = "/{machineId}/dispenseCash/batch", method = RequestMethod.POST)
+    public ResponseEntity dispenseCashBatch(@PathVariable("machineId") String machineId, @RequestBody List<Integer> cashAmounts) {
+        try {
+            List<DispenseResult> dispenseResults = cashService.dispenseCashBatch(machineId, cashAmounts);
+
+            transactionLogService.saveTransactionLogs(machineId, dispenseResults);
+
+            List<DispenseResultRep> dispenseResultRepList = new ArrayList<>(dispenseResults.size());
+            dispenseResults.forEach(dispenseResult -> {
+                List<CashSupplyRep> cashSupplyRepList = dispenseResult.isSuccess()
+                        ? CashSupplyRep.fromDispensedCash(dispenseResult.getDispensedCash()) : new ArrayList<>();
+
+                dispenseResultRepList.add(new DispenseResultRep(dispenseResult.getCashAmount(), dispenseResult.isSuccess(),
+                        cashSupplyRepList, dispenseResult.getErrorMessage()));
+            });
+
+            return new ResponseEntity(dispenseResultRepList, HttpStatus.OK);
         } catch (CashSupplyException e) {
             logger.error(e.getMessage());
             return new ResponseEntity(e.getMessage(), HttpStatus.BAD_REQUEST);
@@ -87,22 +309,113 @@ public class CashMachineController {
      * @return the list of the current cash stock ordered by cash value desc.
      */
     @RequestMapping(value = "/getCashStock", method = RequestMethod.GET)
-    public ResponseEntity getCashStock() {
-        try {
-            List<CashSupplyRep> cashSupplyRepList = new ArrayList<>();
+    public ResponseEntity getCashStock(WebRequest webRequest) {
+        return getCashStock(CashSupply.DEFAULT_MACHINE_ID, webRequest);
+    }
 
-            List<CashSupply> existingCashSupplies = cashService.getCurrentCashSupplies();
+    /**
+     * Check the current cash stock of one cash machine. The stock is served from a cached snapshot, and a poll
+     * with the ETag of the current stock in If-None-Match gets 304 Not Modified without a body.
+     *
+     * @param machineId  the cash machine
+     * @param webRequest the request, used for the If-None-Match check
+     * @return the list of the current cash stock ordered by cash value desc.
+     */
+    @RequestMapping(value = "/{machineId}/getCashStock", method = RequestMethod.GET)
+    public ResponseEntity getCashStock(@PathVariable("machineId") String machineId, WebRequest webRequest) {
+        try {
+            CashStockCache.CashStockSnapshot cashStockSnapshot = cashStockCache.getSnapshot(machineId);
 
-            existingCashSupplies.forEach(cashSupply -> {
-                CashSupplyRep cashSupplyRep = new CashSupplyRep(cashSupply.getCashType().getCashValue(), cashSupply.getCashType().getCashDesc(), cashSupply.getCashQuantity());
-                cashSupplyRepList.add(cashSupplyRep);
-            });
+            if (webRequest.checkNotModified(cashStockSnapshot.getETag())) {
+                return null;
+            }
 
-            return new ResponseEntity(cashSupplyRepList, HttpStatus.OK);
+            return ResponseEntity.ok()
+                    .eTag(cashStockSnapshot.getETag())
+                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .body(cashStockSnapshot.getJson());
 
         } catch (Exception e) {
             logger.error(e.getMessage());
             return new ResponseEntity(e.getMessage(), HttpStatus.BAD_REQUEST);
         }
     }
+
+    /**
+     * Subscribe to the changes of the cash stock of all the cash machines as server-sent events.
+     *
+     * @return the event stream: a reset event with the cash stock of each machine first, then the delta events.
+     */
+    @RequestMapping(value = "/stockEvents", method = RequestMethod.GET, produces = TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeCashStockEvents() {
+        return subscribe(null);
+    }
+
+    /**
+     * Subscribe to the changes of the cash stock of one cash machine as server-sent events.
+     *
+     * @param machineId the cash machine
+     * @return the event stream: a reset event with the cash stock first, then the delta events.
+     */
+    @RequestMapping(value = "/{machineId}/stockEvents", method = RequestMethod.GET, produces = TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeCashStockEvents(@PathVariable("machineId") String machineId) {
+        return subscribe(machineId);
+    }
+
+    private static String toIdempotentRequest(String machineId, Integer cashAmount) {
+        return "dispenseCash/" + machineId + "/" + cashAmount;
+    }
+
+    /**
+     * Keep the response of the request which owns the idempotency key. Only a request which failed before it
+     * dispensed anything gives up its claim so that a retry runs it again: the dispense threw, or the request was
+     * rejected with 503. Every other response is kept, including the 500 of a dispense which could not be recorded,
+     * because the cash has already left the machine.
+     */
+    private void complete(IdempotencyKeyStore.Claim claim, ResponseEntity response) {
+        if (response == null || response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+            idempotencyKeyStore.release(claim);
+            return;
+        }
+
+        String json = null;
+        try {
+            Object body = response.getBody();
+            json = body == null || body instanceof String ? (String) body : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to keep the response body of the idempotency key: " + e.getMessage());
+        }
+
+        idempotencyKeyStore.complete(claim, response.getStatusCodeValue(), json);
+    }
+
+    /**
+     * @return the response of the first request with the idempotency key, as it was sent.
+     */
+    private ResponseEntity replay(IdempotencyRecord idempotencyRecord, String request) {
+        if (idempotencyRecord == null) {
+            return new ResponseEntity(MessageConstants.IDEMPOTENCY_KEY_IN_PROGRESS_ERROR_MESSAGE, HttpStatus.CONFLICT);
+        }
+
+        if (!idempotencyRecord.getRequest().equals(request)) {
+            return new ResponseEntity(MessageConstants.IDEMPOTENCY_KEY_REUSED_ERROR_MESSAGE, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(idempotencyRecord.getStatus()).header(IDEMPOTENT_REPLAYED_HEADER, "true");
+        if (idempotencyRecord.getStatus() == HttpStatus.OK.value()) {
+            response.contentType(MediaType.APPLICATION_JSON_UTF8);
+        }
+
+        return response.body(idempotencyRecord.getBody());
+    }
+
+    private ResponseEntity<SseEmitter> subscribe(String machineId) {
+        try {
+            return ResponseEntity.ok(inventoryEventStream.subscribe(machineId));
+
+        } catch (IllegalStateException e) {
+            logger.warn(e.getMessage());
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package com.suncorp.cashman.controller;
+
+import com.suncorp.cashman.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@RestController
+public class MetricsController {
+
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    /**
+     * Scrape the metrics.
+     *
+     * @return all the metrics in the Prometheus text format.
+     */
+    @RequestMapping(value = "/metrics", method = RequestMethod.GET, produces = PROMETHEUS_CONTENT_TYPE)
+    public String scrape() {
+        return metricsRegistry.scrape();
+    }
+}
@@ -0,0 +1,107 @@
+package com.suncorp.cashman.controller;
+
+import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.audit.ExportFormat;
+import com.suncorp.cashman.audit.TransactionLogCursor;
+import com.suncorp.cashman.audit.TransactionLogFilter;
+import com.suncorp.cashman.audit.TransactionLogPage;
+import com.suncorp.cashman.representation.TransactionLogPageRep;
+import com.suncorp.cashman.service.TransactionLogService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@RestController
+@RequestMapping("/transactions")
+public class TransactionLogController {
+
+    @Autowired
+    private TransactionLogService transactionLogService;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * Find the transaction logs, newest first, one page at a time. All the filters are optional.
+     *
+     * @param bsb        the bsb of the account
+     * @param accountNo  the account no
+     * @param fromTime   created at or after, e.g. 2026-10-17T00:00:00
+     * @param toTime     created before
+     * @param minAmount  the min total amount, inclusive
+     * @param maxAmount  the max total amount, inclusive
+     * @param cursor     the next cursor of the previous page, empty for the first page
+     * @param pageSize   the max number of transaction logs in the page
+     * @return the page of the transaction logs and the cursor of the next page
+     */
+    @RequestMapping(value = "", method = RequestMethod.GET)
+    public ResponseEntity findTransactionLogs(@RequestParam(value = "bsb", required = false) String bsb,
+                                              @RequestParam(value = "accountNo", required = false) String accountNo,
+                                              @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromTime,
+                                              @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toTime,
+                                              @RequestParam(value = "minAmount", required = false) Integer minAmount,
+                                              @RequestParam(value = "maxAmount", required = false) Integer maxAmount,
+                                              @RequestParam(value = "cursor", required = false) String cursor,
+                                              @RequestParam(value = "size", defaultValue = "50") int pageSize) {
+        try {
+            TransactionLogFilter transactionLogFilter = new TransactionLogFilter();
+            transactionLogFilter.setBsb(bsb);
+            transactionLogFilter.setAccountNo(accountNo);
+            transactionLogFilter.setFromTime(fromTime);
+            transactionLogFilter.setToTime(toTime);
+            transactionLogFilter.setMinAmount(minAmount);
+            transactionLogFilter.setMaxAmount(maxAmount);
+
+            TransactionLogPage transactionLogPage = transactionLogService.findTransactionLogs(transactionLogFilter,
+                    cursor == null || cursor.isEmpty() ? null : TransactionLogCursor.decode(cursor), pageSize);
+
+            return new ResponseEntity(TransactionLogPageRep.fromTransactionLogPage(transactionLogPage), HttpStatus.OK);
+
+        } catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return new ResponseEntity(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Export the transaction logs and their details for the reconciliation. The rows are written to the response as
+     * they are read from the database, so the window can be as big as needed.
+     *
+     * @param fromTime     the start of the window, inclusive, e.g. 2026-10-17T00:00:00
+     * @param toTime       the end of the window, exclusive
+     * @param exportFormat NDJSON (default) or CSV
+     * @param response     the response the transaction logs are written to
+     */
+    @RequestMapping(value = "/export", method = RequestMethod.GET)
+    public void exportTransactionLogs(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromTime,
+                                      @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toTime,
+                                      @RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat exportFormat,
+                                      HttpServletResponse response) throws IOException {
+        if (!fromTime.isBefore(toTime)) {
+            logger.error(MessageConstants.EXPORT_WINDOW_ERROR_MESSAGE);
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.getWriter().write(MessageConstants.EXPORT_WINDOW_ERROR_MESSAGE);
+            return;
+        }
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+
+        long transactionLogCount = transactionLogService.exportTransactionLogs(fromTime, toTime, exportFormat, response.getOutputStream());
+        logger.info("Exported " + transactionLogCount + " transaction logs.");
+    }
+}
@@ -0,0 +1,33 @@
+package com.suncorp.cashman.denomination;
+
+import lombok.Data;
+
+/**
+ * A cash type the cash machines are loaded with, its initial quantity and its low stock threshold.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class Denomination {
+
+    private Integer cashValue;
+
+    private String cashDesc;
+
+    private Integer initialQuantity;
+
+    /** The low stock threshold, null if the stock of the cash type is never reported as low. */
+    private Integer lowStockThreshold;
+
+    public Denomination() {
+
+    }
+
+    public Denomination(Integer cashValue, String cashDesc, Integer initialQuantity, Integer lowStockThreshold) {
+        this.cashValue = cashValue;
+        this.cashDesc = cashDesc;
+        this.initialQuantity = initialQuantity;
+        this.lowStockThreshold = lowStockThreshold;
+    }
+}
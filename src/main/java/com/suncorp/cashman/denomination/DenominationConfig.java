@@ -0,0 +1,196 @@
+package com.suncorp.cashman.denomination;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the denominations the cash machines are loaded with: their descriptions, initial quantities and low stock
+ * thresholds.
+ *
+ * The denominations are read from the config file set in cashman.denominations.file, or from the denominations.properties
+ * on the classpath when no file is set. A config file is watched, and a changed file is reloaded and handed to the
+ * listeners as a whole; a file which is not valid is logged and the current denominations are kept.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class DenominationConfig {
+
+    private static final String DEFAULT_DENOMINATIONS = "denominations.properties";
+
+    // Editors write a file in several steps, wait for them to finish before reading it
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path denominationFile;
+
+    private final List<DenominationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile DenominationSet denominationSet;
+
+    private WatchService watchService;
+
+    private Thread watcherThread;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public DenominationConfig(@Value("${cashman.denominations.file:}") String denominationFile) {
+        this.denominationFile = denominationFile.isEmpty() ? null : Paths.get(denominationFile).toAbsolutePath();
+
+        try {
+            this.denominationSet = read();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the denominations: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Used for a fixed set of denominations which is never reloaded.
+     *
+     * @param denominationSet The denominations.
+     */
+    public DenominationConfig(DenominationSet denominationSet) {
+        this.denominationFile = null;
+        this.denominationSet = denominationSet;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (denominationFile == null) {
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        denominationFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        watcherThread = new Thread(this::watch, "denomination-config-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    public DenominationSet getDenominationSet() {
+        return denominationSet;
+    }
+
+    public void addListener(DenominationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Read the config file again, and hand the denominations to the listeners if they have changed.
+     *
+     * @return true if the denominations have changed.
+     */
+    public synchronized boolean reload() {
+        DenominationSet newDenominationSet;
+        try {
+            newDenominationSet = read();
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Failed to reload the denominations, keep the current ones: " + e.getMessage());
+            return false;
+        }
+
+        DenominationSet oldDenominationSet = denominationSet;
+        if (newDenominationSet.getDenominations().equals(oldDenominationSet.getDenominations())) {
+            return false;
+        }
+
+        logChanges(oldDenominationSet, newDenominationSet);
+
+        denominationSet = newDenominationSet;
+        for (DenominationListener listener : listeners) {
+            // A failing listener must not keep the others from the change, nor stop the watcher
+            try {
+                listener.onDenominationsChanged(newDenominationSet);
+            } catch (RuntimeException e) {
+                logger.error("Failed to hand the denominations to " + listener + ": " + e.getMessage(), e);
+            }
+        }
+
+        return true;
+    }
+
+    private DenominationSet read() throws IOException {
+        try (InputStream inputStream = denominationFile != null
+                ? Files.newInputStream(denominationFile) : new ClassPathResource(DEFAULT_DENOMINATIONS).getInputStream()) {
+            return DenominationSet.load(inputStream);
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+
+                boolean changed = false;
+                for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+                    changed |= denominationFile.getFileName().equals(watchEvent.context());
+                }
+                watchKey.reset();
+
+                if (changed) {
+                    Thread.sleep(SETTLE_MILLIS);
+
+                    // The events of the same change are all covered by one reload
+                    WatchKey settledWatchKey;
+                    while ((settledWatchKey = watchService.poll(0, TimeUnit.MILLISECONDS)) != null) {
+                        settledWatchKey.pollEvents();
+                        settledWatchKey.reset();
+                    }
+
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.info("Stop watching the denominations.");
+        }
+    }
+
+    private void logChanges(DenominationSet oldDenominationSet, DenominationSet newDenominationSet) {
+        for (Denomination denomination : newDenominationSet.getDenominations()) {
+            Denomination oldDenomination = oldDenominationSet.getDenomination(denomination.getCashValue());
+
+            if (oldDenomination == null) {
+                logger.info("Denomination " + denomination.getCashValue() + " added: " + denomination);
+            } else if (!oldDenomination.equals(denomination)) {
+                logger.info("Denomination " + denomination.getCashValue() + " changed: " + denomination);
+            }
+        }
+
+        for (Denomination denomination : oldDenominationSet.getDenominations()) {
+            if (newDenominationSet.getDenomination(denomination.getCashValue()) == null) {
+                logger.info("Denomination " + denomination.getCashValue() + " removed.");
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.suncorp.cashman.denomination;
+
+/**
+ * Listener which gets notified when the denominations are reloaded from the config file.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public interface DenominationListener {
+
+    /**
+     * Called after the denominations have changed. Only called with a valid set of denominations.
+     *
+     * @param denominationSet The new denominations.
+     */
+    void onDenominationsChanged(DenominationSet denominationSet);
+}
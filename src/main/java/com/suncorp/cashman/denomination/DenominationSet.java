@@ -0,0 +1,134 @@
+package com.suncorp.cashman.denomination;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable set of denominations ordered by cash value desc.
+ *
+ * The config file is a properties file with one line per cash value:
+ *
+ *     # cash value = description, initial quantity, low stock threshold
+ *     100 = $100, 10, 2
+ *
+ * The low stock threshold can be left out for the cash values which are never reported as low.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public final class DenominationSet {
+
+    private final List<Denomination> denominations;
+
+    private final Map<Integer, Denomination> denominationsByCashValue;
+
+    public DenominationSet(List<Denomination> denominations) {
+        List<Denomination> orderedDenominations = new ArrayList<>(denominations);
+        orderedDenominations.sort(Comparator.comparing(Denomination::getCashValue).reversed());
+
+        Map<Integer, Denomination> denominationsByCashValue = new LinkedHashMap<>();
+        for (Denomination denomination : orderedDenominations) {
+            validate(denomination);
+
+            if (denominationsByCashValue.put(denomination.getCashValue(), denomination) != null) {
+                throw new IllegalArgumentException("Duplicated denomination " + denomination.getCashValue() + ".");
+            }
+        }
+
+        if (orderedDenominations.isEmpty()) {
+            throw new IllegalArgumentException("There are no denominations.");
+        }
+
+        this.denominations = Collections.unmodifiableList(orderedDenominations);
+        this.denominationsByCashValue = Collections.unmodifiableMap(denominationsByCashValue);
+    }
+
+    /**
+     * Read the denominations from a config file.
+     *
+     * @param inputStream The content of the config file.
+     * @return the denominations.
+     * @throws IOException              if the file could not be read.
+     * @throws IllegalArgumentException if the file is not a valid denomination config.
+     */
+    public static DenominationSet load(InputStream inputStream) throws IOException {
+        Properties properties = new Properties();
+        properties.load(inputStream);
+
+        List<Denomination> denominations = new ArrayList<>();
+        for (String cashValue : properties.stringPropertyNames()) {
+            denominations.add(parse(cashValue, properties.getProperty(cashValue)));
+        }
+
+        return new DenominationSet(denominations);
+    }
+
+    /**
+     * @return the denominations ordered by cash value desc.
+     */
+    public List<Denomination> getDenominations() {
+        return denominations;
+    }
+
+    /**
+     * @param cashValue The cash value.
+     * @return the denomination of the cash value, null if there is none.
+     */
+    public Denomination getDenomination(int cashValue) {
+        return denominationsByCashValue.get(cashValue);
+    }
+
+    /**
+     * @return the low stock threshold of every cash value which has one.
+     */
+    public Map<Integer, Integer> getLowStockThresholds() {
+        Map<Integer, Integer> lowStockThresholds = new HashMap<>();
+
+        denominations.stream().filter(denomination -> denomination.getLowStockThreshold() != null)
+                .forEach(denomination -> lowStockThresholds.put(denomination.getCashValue(), denomination.getLowStockThreshold()));
+
+        return lowStockThresholds;
+    }
+
+    private static Denomination parse(String cashValue, String value) {
+        String[] fields = value.split(",");
+        if (fields.length < 2 || fields.length > 3) {
+            throw new IllegalArgumentException("Invalid denomination " + cashValue + " = " + value
+                    + ", expected description, initial quantity, low stock threshold.");
+        }
+
+        try {
+            Integer lowStockThreshold = fields.length == 3 ? Integer.valueOf(fields[2].trim()) : null;
+
+            return new Denomination(Integer.valueOf(cashValue.trim()), fields[0].trim(), Integer.valueOf(fields[1].trim()), lowStockThreshold);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid denomination " + cashValue + " = " + value + ": " + e.getMessage());
+        }
+    }
+
+    private static void validate(Denomination denomination) {
+        if (denomination.getCashValue() == null || denomination.getCashValue() <= 0) {
+            throw new IllegalArgumentException("Invalid denomination " + denomination.getCashValue() + ", the cash value must be positive.");
+        }
+
+        if (denomination.getCashDesc() == null || denomination.getCashDesc().isEmpty()) {
+            throw new IllegalArgumentException("Invalid denomination " + denomination.getCashValue() + ", the description is missing.");
+        }
+
+        if (denomination.getInitialQuantity() == null || denomination.getInitialQuantity() < 0) {
+            throw new IllegalArgumentException("Invalid denomination " + denomination.getCashValue() + ", the initial quantity must not be negative.");
+        }
+
+        if (denomination.getLowStockThreshold() != null && denomination.getLowStockThreshold() < 0) {
+            throw new IllegalArgumentException("Invalid denomination " + denomination.getCashValue() + ", the low stock threshold must not be negative.");
+        }
+    }
+}
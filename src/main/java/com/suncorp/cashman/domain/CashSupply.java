@@ -13,16 +13,24 @@ import javax.persistence.*;
 @Entity
 @Table(name = "cash_supply")
 public class CashSupply {
+    /** The machine of the cash supplies created without a machine id, e.g. by the single machine endpoints. */
+    public static final String DEFAULT_MACHINE_ID = "default";
+
     @Id
     @GeneratedValue(strategy= GenerationType.AUTO)
     private long cashSupplyId;
 
-    @OneToOne
+    private String machineId = DEFAULT_MACHINE_ID;
+
+    @ManyToOne
     @JoinColumn(name="cash_type_id")
     private CashType cashType;
 
     private Integer cashQuantity;
 
+    @Version
+    private long version;
+
     public CashSupply() {
 
     }
@@ -32,6 +40,12 @@ public class CashSupply {
         this.cashQuantity = cashQuantity;
     }
 
+    public CashSupply(String machineId, CashType cashType, Integer cashQuantity) {
+        this.machineId = machineId;
+        this.cashType = cashType;
+        this.cashQuantity = cashQuantity;
+    }
+
     public void withdraw (Integer withdrawQuantity) {
         if (withdrawQuantity < 0) {
             throw new IllegalArgumentException(MessageConstants.CASH_SUPPLY_NEGATIVE_CASH_QUANTITY_ERROR_MESSAGE);
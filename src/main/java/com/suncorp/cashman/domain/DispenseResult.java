@@ -0,0 +1,42 @@
+package com.suncorp.cashman.domain;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * The result of one withdraw, on its own or in a batch dispense. The dispensed cash is only set when the withdraw
+ * succeeded, otherwise the error message says why it failed. A withdraw from the in-memory inventory is journaled
+ * together with the withdraw, then the journal sequence and the time of the record are set.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class DispenseResult {
+
+    private Integer cashAmount;
+
+    private Map<CashType, CashSupply> dispensedCash;
+
+    private String errorMessage;
+
+    // 0 if the withdraw has not been journaled yet
+    private long journalSequence;
+
+    private LocalDateTime dispensedAt;
+
+    public DispenseResult(Integer cashAmount) {
+        this.cashAmount = cashAmount;
+    }
+
+    public DispenseResult(Integer cashAmount, Map<CashType, CashSupply> dispensedCash) {
+        this.cashAmount = cashAmount;
+        this.dispensedCash = dispensedCash;
+    }
+
+    public boolean isSuccess() {
+        return errorMessage == null && dispensedCash != null;
+    }
+}
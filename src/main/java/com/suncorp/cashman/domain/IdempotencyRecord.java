@@ -0,0 +1,57 @@
+package com.suncorp.cashman.domain;
+
+import com.suncorp.cashman.converter.LocalDateTimeConverter;
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * The response of a dispense request, kept under the idempotency key of the request so that a retry gets the same
+ * response. The rows are only written and read with JDBC, see IdempotencyKeyTable; the entity describes the table.
+ *
+ * The key day is the day since the epoch the request was made in. On MySQL the table is partitioned by it, which
+ * needs the key day in the primary key, see ddl.sql.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+@Entity
+@Table(name = "idempotency_key", indexes = {
+        @Index(name = "key_day_idx", columnList = "key_day")})
+public class IdempotencyRecord {
+    @Id
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
+    @Column(name = "key_day", nullable = false)
+    private long keyDay;
+
+    @Column(name = "request", length = 128, nullable = false)
+    private String request;
+
+    @Column(name = "status", nullable = false)
+    private int status;
+
+    @Column(name = "body", length = 4000)
+    private String body;
+
+    @Convert(converter = LocalDateTimeConverter.class)
+    @Column(name = "create_at", nullable = false)
+    private LocalDateTime createAt;
+
+    public IdempotencyRecord() {
+
+    }
+
+    public IdempotencyRecord(String idempotencyKey, long keyDay, String request, int status, String body, LocalDateTime createAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.keyDay = keyDay;
+        this.request = request;
+        this.status = status;
+        this.body = body;
+        this.createAt = createAt;
+    }
+
+}
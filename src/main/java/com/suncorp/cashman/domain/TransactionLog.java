@@ -12,14 +12,20 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "transaction_log")
+@Table(name = "transaction_log", indexes = {
+        @Index(name = "create_at_idx", columnList = "create_at, transaction_log_id"),
+        @Index(name = "account_create_at_idx", columnList = "bsb, account_no, create_at, transaction_log_id")})
 public class TransactionLog {
     @Id
     @GeneratedValue(strategy= GenerationType.AUTO)
+    @Column(name = "transaction_log_id")
     private long transactionLogId;
 
+    private String machineId = CashSupply.DEFAULT_MACHINE_ID;
+
     private String bsb;
 
+    @Column(name = "account_no")
     private String accountNo;
 
     private String accountName;
@@ -27,8 +33,17 @@ public class TransactionLog {
     private Integer totalAmount;
 
     @Convert(converter = LocalDateTimeConverter.class)
+    @Column(name = "create_at")
     private LocalDateTime createAt;
 
+    private Long journalSequence;
+
+    /**
+     * The packed details of a transaction log in the compact format, null in the detail format.
+     */
+    @Column(name = "cash_counts", length = 64)
+    private byte[] cashCounts;
+
     public TransactionLog() {
 
     }
@@ -10,38 +10,74 @@ package com.suncorp.cashman.exception;
 
 public class CashSupplyException extends Exception {
 
+    /**
+     * Why the cash could not be supplied.
+     */
+    public enum Reason {
+        /** There is no cash in the machine. */
+        NO_CASH_SUPPLY,
+        /** The stock could not make up the required amount. */
+        INSUFFICIENT_STOCK,
+        /** The required amount is over the daily withdraw limitation. */
+        OVER_LIMIT,
+        /** The stock kept changing or the database failed while the cash was dispensed. */
+        UNAVAILABLE
+    }
+
+    private final Reason reason;
+
     /** The amount required to be withdrawn. */
     private int amountRequired;
 
     /** The amount that can actually be supplied. */
     private int amountSupplied;
 
+    /** The closest amount above the amount required that can be supplied, 0 if there is none. */
+    private int amountSuppliedAbove;
+
     public CashSupplyException(String errorMessage) {
         super(errorMessage);
+        this.reason = Reason.NO_CASH_SUPPLY;
     }
 
     public CashSupplyException(int amountRequired) {
         super(createMessage(amountRequired));
+        this.reason = Reason.UNAVAILABLE;
         this.amountRequired = amountRequired;
     }
 
     public CashSupplyException(Throwable throwable, int amountRequired) {
         super(createMessage(amountRequired), throwable);
+        this.reason = Reason.UNAVAILABLE;
         this.amountRequired = amountRequired;
     }
 
     public CashSupplyException(int amountRequired, int amountSupplied, boolean overLimit) {
         super(createMessage(amountRequired, amountSupplied, overLimit));
+        this.reason = overLimit ? Reason.OVER_LIMIT : Reason.INSUFFICIENT_STOCK;
+        this.amountRequired = amountRequired;
+        this.amountSupplied = amountSupplied;
+    }
+
+    public CashSupplyException(int amountRequired, int amountSupplied, int amountSuppliedAbove) {
+        super(createMessage(amountRequired, amountSupplied, amountSuppliedAbove));
+        this.reason = Reason.INSUFFICIENT_STOCK;
         this.amountRequired = amountRequired;
         this.amountSupplied = amountSupplied;
+        this.amountSuppliedAbove = amountSuppliedAbove;
     }
 
     public CashSupplyException(Throwable throwable, int amountRequired, int amountSupplied) {
         super(createMessage(amountRequired, amountSupplied, false), throwable);
+        this.reason = Reason.INSUFFICIENT_STOCK;
         this.amountRequired = amountRequired;
         this.amountSupplied = amountSupplied;
     }
 
+    public Reason getReason() {
+        return reason;
+    }
+
     public int getAmountRequired() {
         return amountRequired;
     }
@@ -50,6 +86,10 @@ public class CashSupplyException extends Exception {
         return amountSupplied;
     }
 
+    public int getAmountSuppliedAbove() {
+        return amountSuppliedAbove;
+    }
+
     private static String createMessage(int amountRequired) {
         return "Sorry, this ATM cannot supply the amount required $" + amountRequired + " with current stock. Please try again later.";
     }
@@ -62,4 +102,13 @@ public class CashSupplyException extends Exception {
                     "The closest amount that can be supplied is $" + amountSupplied + ". Please try again later.";
         }
     }
+
+    private static String createMessage(int amountRequired, int amountSupplied, int amountSuppliedAbove) {
+        if (amountSuppliedAbove == 0) {
+            return createMessage(amountRequired, amountSupplied, false);
+        }
+
+        return "Sorry, this ATM cannot supply the amount required $" + amountRequired + " with current stock. " +
+                "The closest amounts that can be supplied are $" + amountSupplied + " and $" + amountSuppliedAbove + ". Please try again later.";
+    }
 }
\ No newline at end of file
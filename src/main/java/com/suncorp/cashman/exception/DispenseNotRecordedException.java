@@ -0,0 +1,17 @@
+package com.suncorp.cashman.exception;
+
+import com.suncorp.cashman.MessageConstants;
+
+/**
+ * Exception thrown when the cash has left the machine but its transaction log could not be journaled.
+ * The dispense must not be run again for the same request.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DispenseNotRecordedException extends RuntimeException {
+
+    public DispenseNotRecordedException(Throwable cause) {
+        super(MessageConstants.DISPENSE_NOT_RECORDED_ERROR_MESSAGE, cause);
+    }
+}
@@ -0,0 +1,89 @@
+package com.suncorp.cashman.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the idempotency keys stored in one day of the key table, so that a new key, which is nearly every
+ * key, is known not to be in the table without a query. A key which might be in the table is looked up.
+ *
+ * The bits are set with compare and set, so keys can be added while other threads look keys up. The k bit positions
+ * of a key come from the two halves of one 64 bit hash of the key.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public final class IdempotencyKeyFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedKeys      The number of keys the filter is sized for.
+     * @param falsePositiveRate The rate of the keys not added which still might be in the filter, at the expected keys.
+     */
+    public IdempotencyKeyFilter(int expectedKeys, double falsePositiveRate) {
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, (bits + 63) >>> 6);
+
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+    }
+
+    public void add(String key) {
+        long hash = hash(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = toBit(hash1 + i * hash2);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            long word;
+            do {
+                word = words.get(index);
+            } while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = toBit(hash1 + i * hash2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private long toBit(int combinedHash) {
+        return (combinedHash & 0xffffffffL) % bitCount;
+    }
+
+    /**
+     * 64 bit FNV-1a of the UTF-8 bytes of the key, with the bits mixed at the end so that both halves are usable.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
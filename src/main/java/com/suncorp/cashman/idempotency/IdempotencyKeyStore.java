@@ -0,0 +1,450 @@
+package com.suncorp.cashman.idempotency;
+
+import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.domain.IdempotencyRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The responses of the dispense requests by idempotency key, so that a retried request gets the response of the
+ * first request instead of dispensing the cash again.
+ *
+ * The first request of a key claims it and puts a pending response into a bounded in-memory cache. A retry which
+ * comes while the first request is still running waits for its response. The cache is a concurrent map with a queue
+ * of the keys in claim order: the keys older than the time to live, and the oldest keys once the cache is full, are
+ * swept from the head of the queue, so a lookup is a single map read.
+ *
+ * The completed responses are written behind to the key table in batches, for the retries which come after the key
+ * has left the cache. Nearly every key not in the cache is a new key, so a bloom filter of the stored keys of every
+ * key day is checked first, and only the keys which might be stored are looked up in the table. The filters are
+ * rebuilt from the table on startup; until then every key not in the cache is looked up. The key days past the
+ * retention are pruned from the table and their filters are dropped.
+ *
+ * A response is only in the table once it has been flushed, so a retry on another node within the flush interval,
+ * or after a crash within it, is not recognised.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class IdempotencyKeyStore {
+
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private static final int MAX_REQUEST_LENGTH = 128;
+
+    private static final int MAX_BODY_LENGTH = 4000;
+
+    private static final double KEY_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    @Autowired
+    private IdempotencyKeyTable idempotencyKeyTable;
+
+    private final Clock clock;
+
+    private final long cacheTimeToLiveMillis;
+
+    private final int cacheMaxSize;
+
+    private final long waitTimeoutMillis;
+
+    private final long flushIntervalMillis;
+
+    private final long pruneIntervalMillis;
+
+    private final int retentionDays;
+
+    private final int expectedKeysPerDay;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // The entries in claim order, swept from the head
+    private final ConcurrentLinkedQueue<Entry> claimOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    private final Map<Long, IdempotencyKeyFilter> keyFilters = new ConcurrentHashMap<>();
+
+    private volatile boolean keyFiltersLoaded;
+
+    private final ConcurrentLinkedQueue<IdempotencyRecord> pendingRecords = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final LongAdder replayCount = new LongAdder();
+
+    private final LongAdder tableLookupCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public IdempotencyKeyStore(IdempotencyKeyTable idempotencyKeyTable,
+                               @Value("${cashman.idempotency.cache-ttl-ms:600000}") long cacheTimeToLiveMillis,
+                               @Value("${cashman.idempotency.cache-size:100000}") int cacheMaxSize,
+                               @Value("${cashman.idempotency.wait-timeout-ms:5000}") long waitTimeoutMillis,
+                               @Value("${cashman.idempotency.flush-interval-ms:100}") long flushIntervalMillis,
+                               @Value("${cashman.idempotency.prune-interval-ms:3600000}") long pruneIntervalMillis,
+                               @Value("${cashman.idempotency.retention-days:7}") int retentionDays,
+                               @Value("${cashman.idempotency.keys-per-day:1000000}") int expectedKeysPerDay) {
+        this(idempotencyKeyTable, cacheTimeToLiveMillis, cacheMaxSize, waitTimeoutMillis, flushIntervalMillis, pruneIntervalMillis,
+                retentionDays, expectedKeysPerDay, Clock.systemDefaultZone());
+    }
+
+    public IdempotencyKeyStore(IdempotencyKeyTable idempotencyKeyTable, long cacheTimeToLiveMillis, int cacheMaxSize,
+                               long waitTimeoutMillis, long flushIntervalMillis, long pruneIntervalMillis, int retentionDays,
+                               int expectedKeysPerDay, Clock clock) {
+        this.idempotencyKeyTable = idempotencyKeyTable;
+        this.cacheTimeToLiveMillis = cacheTimeToLiveMillis;
+        this.cacheMaxSize = cacheMaxSize;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.pruneIntervalMillis = pruneIntervalMillis;
+        this.retentionDays = retentionDays;
+        this.expectedKeysPerDay = expectedKeysPerDay;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-key-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        executor.execute(this::loadKeyFilters);
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::sweep, 1000, 1000, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::prune, 0, pruneIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        flush();
+    }
+
+    /**
+     * Claim the idempotency key for the request, or find the response of the request which claimed it first.
+     *
+     * @param idempotencyKey The idempotency key sent with the request.
+     * @param request        What the request is, e.g. the machine and the amount, to tell a reused key from a retry.
+     * @return the claim; the request has to be run and completed only if it is the owner of the claim.
+     * @throws IllegalArgumentException if the idempotency key is empty or too long.
+     * @throws DataAccessException      if the key table could not be read.
+     */
+    public Claim claim(String idempotencyKey, String request) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH || request.length() > MAX_REQUEST_LENGTH) {
+            throw new IllegalArgumentException(MessageConstants.IDEMPOTENCY_KEY_ERROR_MESSAGE);
+        }
+
+        Entry entry = new Entry(idempotencyKey, request, clock.millis());
+        Entry claimedEntry = entries.putIfAbsent(idempotencyKey, entry);
+
+        if (claimedEntry != null) {
+            replayCount.increment();
+            return new Claim(claimedEntry, false);
+        }
+
+        claimOrder.add(entry);
+        if (size.incrementAndGet() > cacheMaxSize) {
+            sweep();
+        }
+
+        long today = LocalDate.now(clock).toEpochDay();
+        if (mightBeStored(idempotencyKey, today)) {
+            tableLookupCount.increment();
+
+            IdempotencyRecord idempotencyRecord;
+            try {
+                idempotencyRecord = idempotencyKeyTable.find(idempotencyKey, today - retentionDays);
+            } catch (DataAccessException e) {
+                release(new Claim(entry, true));
+                throw e;
+            }
+
+            if (idempotencyRecord != null) {
+                entry.response.complete(idempotencyRecord);
+                replayCount.increment();
+                return new Claim(entry, false);
+            }
+        }
+
+        return new Claim(entry, true);
+    }
+
+    /**
+     * Keep the response of the request which owns the claim, and hand it to the retries waiting for it.
+     *
+     * @param claim  The claim of the request.
+     * @param status The HTTP status of the response.
+     * @param body   The body of the response.
+     */
+    public void complete(Claim claim, int status, String body) {
+        Entry entry = claim.entry;
+        LocalDateTime createAt = LocalDateTime.now(clock);
+        long keyDay = createAt.toLocalDate().toEpochDay();
+
+        IdempotencyRecord idempotencyRecord = new IdempotencyRecord(entry.idempotencyKey, keyDay, entry.request, status, body, createAt);
+        entry.response.complete(idempotencyRecord);
+
+        if (body != null && body.length() > MAX_BODY_LENGTH) {
+            logger.warn("The response of the idempotency key " + entry.idempotencyKey + " is too long to be stored.");
+            return;
+        }
+
+        if (pendingCount.incrementAndGet() > cacheMaxSize) {
+            pendingCount.decrementAndGet();
+            logger.error("Too many idempotency keys wait to be stored, the key " + entry.idempotencyKey + " is only cached.");
+            return;
+        }
+
+        pendingRecords.add(idempotencyRecord);
+        getKeyFilter(keyDay).add(entry.idempotencyKey);
+    }
+
+    /**
+     * Give up the claim of a request which did not get a response to keep, so that a retry runs the request again.
+     * The retries already waiting for the response get none.
+     *
+     * @param claim The claim of the request.
+     */
+    public void release(Claim claim) {
+        Entry entry = claim.entry;
+
+        if (entries.remove(entry.idempotencyKey, entry)) {
+            size.decrementAndGet();
+        }
+        entry.response.complete(null);
+    }
+
+    /**
+     * Wait for the response of the request which claimed the key first.
+     *
+     * @param claim The claim which is not owned.
+     * @return the response, null if the request gave up its claim or did not complete within the wait timeout.
+     */
+    public IdempotencyRecord awaitResponse(Claim claim) {
+        try {
+            return claim.entry.response.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the pending responses to the key table in one batch. If the write fails, they are written by the next flush.
+     */
+    public synchronized void flush() {
+        List<IdempotencyRecord> idempotencyRecords = new ArrayList<>();
+
+        IdempotencyRecord idempotencyRecord;
+        while ((idempotencyRecord = pendingRecords.poll()) != null) {
+            idempotencyRecords.add(idempotencyRecord);
+        }
+
+        if (idempotencyRecords.isEmpty()) {
+            return;
+        }
+
+        try {
+            idempotencyKeyTable.insert(idempotencyRecords);
+            pendingCount.addAndGet(-idempotencyRecords.size());
+        } catch (DataAccessException e) {
+            logger.error("Failed to store " + idempotencyRecords.size() + " idempotency keys: " + e.getMessage());
+            pendingRecords.addAll(idempotencyRecords);
+        }
+    }
+
+    /**
+     * Remove the entries older than the time to live, and the oldest entries while the cache is over its size.
+     * The entries of the requests still running are kept, and so are the entries claimed after them.
+     */
+    public void sweep() {
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+
+        try {
+            long expireMillis = clock.millis() - cacheTimeToLiveMillis;
+
+            Entry entry;
+            while ((entry = claimOrder.peek()) != null) {
+                boolean expired = entry.claimMillis <= expireMillis;
+                if ((!expired && size.get() <= cacheMaxSize) || !entry.response.isDone()) {
+                    break;
+                }
+
+                claimOrder.poll();
+                if (entries.remove(entry.idempotencyKey, entry)) {
+                    size.decrementAndGet();
+                    if (!expired) {
+                        evictionCount.increment();
+                    }
+                }
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    /**
+     * Add the partitions of the next days to the key table and drop the key days past the retention.
+     */
+    public void prune() {
+        long today = LocalDate.now(clock).toEpochDay();
+        long oldestKeyDay = today - retentionDays;
+
+        try {
+            idempotencyKeyTable.prune(oldestKeyDay, today + 2);
+        } catch (DataAccessException e) {
+            logger.error("Failed to prune the idempotency keys: " + e.getMessage());
+        }
+
+        keyFilters.keySet().removeIf(keyDay -> keyDay < oldestKeyDay);
+    }
+
+    public long getReplayCount() {
+        return replayCount.sum();
+    }
+
+    public long getTableLookupCount() {
+        return tableLookupCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int getSize() {
+        return size.get();
+    }
+
+    void loadKeyFilters() {
+        long oldestKeyDay = LocalDate.now(clock).toEpochDay() - retentionDays;
+
+        try {
+            AtomicInteger keyCount = new AtomicInteger();
+            idempotencyKeyTable.forEachKey(oldestKeyDay, (idempotencyKey, keyDay) -> {
+                getKeyFilter(keyDay).add(idempotencyKey);
+                keyCount.incrementAndGet();
+            });
+
+            keyFiltersLoaded = true;
+            logger.info("Loaded " + keyCount.get() + " stored idempotency keys since key day " + oldestKeyDay);
+        } catch (DataAccessException e) {
+            logger.error("Failed to load the stored idempotency keys, every new key is looked up: " + e.getMessage());
+        }
+    }
+
+    private boolean mightBeStored(String idempotencyKey, long today) {
+        if (!keyFiltersLoaded) {
+            return true;
+        }
+
+        for (long keyDay = today - retentionDays; keyDay <= today; keyDay++) {
+            IdempotencyKeyFilter keyFilter = keyFilters.get(keyDay);
+
+            if (keyFilter != null && keyFilter.mightContain(idempotencyKey)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private IdempotencyKeyFilter getKeyFilter(long keyDay) {
+        return keyFilters.computeIfAbsent(keyDay, day -> new IdempotencyKeyFilter(expectedKeysPerDay, KEY_FILTER_FALSE_POSITIVE_RATE));
+    }
+
+    /**
+     * The claim of an idempotency key by a request.
+     */
+    public static final class Claim {
+
+        private final Entry entry;
+
+        private final boolean owner;
+
+        private Claim(Entry entry, boolean owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        /**
+         * @return true if the request claimed the key first and has to be run.
+         */
+        public boolean isOwner() {
+            return owner;
+        }
+
+        /**
+         * @return the request which claimed the key first.
+         */
+        public String getRequest() {
+            return entry.request;
+        }
+
+        /**
+         * @return the response of the request which claimed the key first, null if it gave up its claim.
+         */
+        public CompletableFuture<IdempotencyRecord> getResponse() {
+            return entry.response;
+        }
+    }
+
+    /**
+     * A claimed idempotency key in the cache.
+     */
+    private static final class Entry {
+
+        private final String idempotencyKey;
+
+        private final String request;
+
+        private final long claimMillis;
+
+        private final CompletableFuture<IdempotencyRecord> response = new CompletableFuture<>();
+
+        private Entry(String idempotencyKey, String request, long claimMillis) {
+            this.idempotencyKey = idempotencyKey;
+            this.request = request;
+            this.claimMillis = claimMillis;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.suncorp.cashman.idempotency;
+
+import com.suncorp.cashman.domain.IdempotencyRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * The durable idempotency keys, for the retries which come after the keys have left the in-memory cache, e.g. after
+ * a restart.
+ *
+ * On MySQL the table of ddl.sql is range partitioned by the key day. The partitions of the next days are added ahead,
+ * and the days past the retention are dropped as whole partitions, which is a metadata change instead of a delete of
+ * every row. Whether the table is partitioned is read from the information schema; on the other databases, e.g. H2,
+ * the old keys are deleted by the key day instead.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class IdempotencyKeyTable {
+
+    private static final String INSERT_KEY =
+            "insert into idempotency_key (idempotency_key, key_day, request, status, body, create_at) values (?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_KEY =
+            "select idempotency_key, key_day, request, status, body, create_at from idempotency_key where idempotency_key = ? and key_day >= ?";
+
+    private static final String SELECT_KEYS = "select idempotency_key, key_day from idempotency_key where key_day >= ?";
+
+    private static final String DELETE_KEYS = "delete from idempotency_key where key_day < ?";
+
+    private static final String SELECT_PARTITIONS =
+            "select partition_name, partition_description from information_schema.partitions " +
+                    "where table_schema = database() and table_name = 'idempotency_key' and partition_name is not null";
+
+    // The partition of the key days beyond the partitions added ahead, see ddl.sql
+    private static final String FUTURE_PARTITION = "p_future";
+
+    private static final String DAY_PARTITION_PREFIX = "p";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public IdempotencyKeyTable(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert the keys in one batch. The keys which are already in the table, e.g. from another node, are skipped.
+     *
+     * @param idempotencyRecords The responses to keep.
+     */
+    public void insert(List<IdempotencyRecord> idempotencyRecords) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_KEY, idempotencyRecords, idempotencyRecords.size(), (statement, idempotencyRecord) -> {
+                statement.setString(1, idempotencyRecord.getIdempotencyKey());
+                statement.setLong(2, idempotencyRecord.getKeyDay());
+                statement.setString(3, idempotencyRecord.getRequest());
+                statement.setInt(4, idempotencyRecord.getStatus());
+                statement.setString(5, idempotencyRecord.getBody());
+                statement.setTimestamp(6, Timestamp.valueOf(idempotencyRecord.getCreateAt()));
+            });
+        } catch (DuplicateKeyException e) {
+            for (IdempotencyRecord idempotencyRecord : idempotencyRecords) {
+                try {
+                    insert(idempotencyRecord);
+                } catch (DuplicateKeyException duplicate) {
+                    // Stored by the failed batch before the duplicate, or by another node
+                }
+            }
+        }
+    }
+
+    /**
+     * @param idempotencyKey The idempotency key.
+     * @param fromKeyDay     The oldest key day to look in.
+     * @return the stored response of the key, null if there is none.
+     */
+    public IdempotencyRecord find(String idempotencyKey, long fromKeyDay) {
+        List<IdempotencyRecord> idempotencyRecords = jdbcTemplate.query(SELECT_KEY, (resultSet, rowNum) -> new IdempotencyRecord(
+                resultSet.getString(1), resultSet.getLong(2), resultSet.getString(3), resultSet.getInt(4),
+                resultSet.getString(5), resultSet.getTimestamp(6).toLocalDateTime()), idempotencyKey, fromKeyDay);
+
+        return idempotencyRecords.isEmpty() ? null : idempotencyRecords.get(0);
+    }
+
+    /**
+     * Read every stored key from the key day on.
+     *
+     * @param fromKeyDay The oldest key day to read.
+     * @param consumer   Receives the key and its key day.
+     */
+    public void forEachKey(long fromKeyDay, BiConsumer<String, Long> consumer) {
+        jdbcTemplate.query(SELECT_KEYS, resultSet -> {
+            consumer.accept(resultSet.getString(1), resultSet.getLong(2));
+        }, fromKeyDay);
+    }
+
+    /**
+     * Make sure the key days up to the last key day have their own partitions, and drop the keys older than the
+     * oldest key day.
+     *
+     * @param oldestKeyDay The oldest key day to keep.
+     * @param lastKeyDay   The last key day to add a partition for.
+     */
+    public void prune(long oldestKeyDay, long lastKeyDay) {
+        List<long[]> dayPartitions = readDayPartitions();
+
+        if (dayPartitions == null) {
+            int deletedCount = jdbcTemplate.update(DELETE_KEYS, oldestKeyDay);
+            logger.info("Deleted " + deletedCount + " idempotency keys before key day " + oldestKeyDay);
+            return;
+        }
+
+        long highestKeyDay = oldestKeyDay - 1;
+        List<String> oldPartitions = new ArrayList<>();
+
+        for (long[] dayPartition : dayPartitions) {
+            // dayPartition[0] is the key day, dayPartition[1] the key day it is less than
+            if (dayPartition[1] <= oldestKeyDay) {
+                oldPartitions.add(DAY_PARTITION_PREFIX + dayPartition[0]);
+            }
+            highestKeyDay = Math.max(highestKeyDay, dayPartition[1] - 1);
+        }
+
+        if (highestKeyDay < lastKeyDay) {
+            StringBuilder partitions = new StringBuilder();
+            for (long keyDay = highestKeyDay + 1; keyDay <= lastKeyDay; keyDay++) {
+                partitions.append("PARTITION ").append(DAY_PARTITION_PREFIX).append(keyDay)
+                        .append(" VALUES LESS THAN (").append(keyDay + 1).append("), ");
+            }
+
+            jdbcTemplate.execute("ALTER TABLE idempotency_key REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO (" + partitions
+                    + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)");
+            logger.info("Added the idempotency key partitions up to key day " + lastKeyDay);
+        }
+
+        if (!oldPartitions.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE idempotency_key DROP PARTITION " + String.join(", ", oldPartitions));
+            logger.info("Dropped the idempotency key partitions " + oldPartitions);
+        }
+    }
+
+    private void insert(IdempotencyRecord idempotencyRecord) {
+        jdbcTemplate.update(INSERT_KEY, idempotencyRecord.getIdempotencyKey(), idempotencyRecord.getKeyDay(),
+                idempotencyRecord.getRequest(), idempotencyRecord.getStatus(), idempotencyRecord.getBody(),
+                Timestamp.valueOf(idempotencyRecord.getCreateAt()));
+    }
+
+    /**
+     * @return the key day and the upper bound of every day partition, null if the table is not partitioned.
+     */
+    private List<long[]> readDayPartitions() {
+        List<long[]> dayPartitions = new ArrayList<>();
+        boolean partitioned;
+
+        try {
+            partitioned = jdbcTemplate.query(SELECT_PARTITIONS, resultSet -> {
+                boolean found = false;
+
+                while (resultSet.next()) {
+                    found = true;
+                    String partitionName = resultSet.getString(1);
+
+                    if (!FUTURE_PARTITION.equals(partitionName)) {
+                        dayPartitions.add(new long[]{Long.parseLong(partitionName.substring(DAY_PARTITION_PREFIX.length())),
+                                Long.parseLong(resultSet.getString(2))});
+                    }
+                }
+
+                return found;
+            });
+        } catch (DataAccessException e) {
+            // There is no information_schema.partitions, e.g. on H2
+            return null;
+        }
+
+        return partitioned ? dayPartitions : null;
+    }
+}
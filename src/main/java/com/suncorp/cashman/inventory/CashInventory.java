@@ -0,0 +1,298 @@
+package com.suncorp.cashman.inventory;
+
+import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The authoritative in-memory stock of one cash machine.
+ *
+ * The cash types are fixed once the inventory is loaded and are ordered by cash value desc.
+ * The cash quantities are kept in atomics so that they can be read and updated without going to the database.
+ * Every change marks the cash supply as dirty, so that it can be written back to the database later.
+ *
+ * The atomic of every cash type packs two counts: the notes available to withdraw in the high int and the notes held
+ * by the withdraws in flight in the low int. A withdraw first moves the notes from available to held on every cash
+ * type, then either drops the held notes or moves them back. The cash quantity everyone else sees is available plus
+ * held, so it never shows the notes of a withdraw which is later rolled back and only goes down between two loads.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class CashInventory {
+
+    private final String machineId;
+
+    private final long generation;
+
+    private final long[] cashSupplyIds;
+
+    private final CashType[] cashTypes;
+
+    private final int[] cashValues;
+
+    private final AtomicLongArray cashQuantities;
+
+    private final AtomicIntegerArray dirtyFlags;
+
+    private final List<InventoryListener> listeners;
+
+    /**
+     * @param machineId      The cash machine of the inventory.
+     * @param cashSupplyList The cash supplies of the machine ordered by cash value desc.
+     * @param listeners      The listeners to notify on every change.
+     */
+    public CashInventory(String machineId, List<CashSupply> cashSupplyList, List<InventoryListener> listeners) {
+        this(machineId, 0, cashSupplyList, listeners);
+    }
+
+    /**
+     * @param machineId      The cash machine of the inventory.
+     * @param generation     Tells this inventory apart from the earlier and later inventories of the machine.
+     * @param cashSupplyList The cash supplies of the machine ordered by cash value desc.
+     * @param listeners      The listeners to notify on every change.
+     */
+    public CashInventory(String machineId, long generation, List<CashSupply> cashSupplyList, List<InventoryListener> listeners) {
+        int size = cashSupplyList.size();
+
+        this.machineId = machineId;
+        this.generation = generation;
+        this.cashSupplyIds = new long[size];
+        this.cashTypes = new CashType[size];
+        this.cashValues = new int[size];
+        this.cashQuantities = new AtomicLongArray(size);
+        this.dirtyFlags = new AtomicIntegerArray(size);
+        this.listeners = listeners;
+
+        for (int i = 0; i < size; i++) {
+            CashSupply cashSupply = cashSupplyList.get(i);
+
+            cashSupplyIds[i] = cashSupply.getCashSupplyId();
+            cashTypes[i] = cashSupply.getCashType();
+            cashValues[i] = cashSupply.getCashType().getCashValue();
+            cashQuantities.set(i, pack(cashSupply.getCashQuantity(), 0));
+        }
+    }
+
+    public String getMachineId() {
+        return machineId;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public boolean isEmpty() {
+        return cashValues.length == 0;
+    }
+
+    public int size() {
+        return cashValues.length;
+    }
+
+    public long getCashSupplyId(int index) {
+        return cashSupplyIds[index];
+    }
+
+    public CashType getCashType(int index) {
+        return cashTypes[index];
+    }
+
+    /**
+     * @return the cash values ordered desc. The array is shared and must not be modified.
+     */
+    public int[] getCashValues() {
+        return cashValues;
+    }
+
+    /**
+     * @return the cash quantity of the cash type, including the notes held by the withdraws in flight.
+     */
+    public int getCashQuantity(int index) {
+        return stock(cashQuantities.get(index));
+    }
+
+    /**
+     * Copy the current cash quantities into the given array, including the notes held by the withdraws in flight.
+     *
+     * @param quantities Used to store the cash quantities, aligned with the cash values.
+     */
+    public void readCashQuantities(int[] quantities) {
+        for (int i = 0; i < quantities.length; i++) {
+            quantities[i] = stock(cashQuantities.get(i));
+        }
+    }
+
+    /**
+     * Copy the cash quantities which can be withdrawn right now into the given array, used to work out a dispense.
+     *
+     * @param quantities Used to store the available cash quantities, aligned with the cash values.
+     */
+    public void readAvailableCashQuantities(int[] quantities) {
+        for (int i = 0; i < quantities.length; i++) {
+            quantities[i] = available(cashQuantities.get(i));
+        }
+    }
+
+    /**
+     * Withdraw the cash quantities of all the cash types, all or nothing, see {@link #hold(int[])} and {@link #drop(int[])}.
+     *
+     * @param withdrawQuantities The quantity to withdraw for each cash type.
+     * @return true if the cash has been withdrawn, false if the stock has changed and nothing was withdrawn.
+     */
+    public boolean withdraw(int[] withdrawQuantities) {
+        if (!hold(withdrawQuantities)) {
+            return false;
+        }
+
+        drop(withdrawQuantities);
+        return true;
+    }
+
+    /**
+     * Hold the cash quantities of all the cash types for a withdraw, all or nothing. The held notes can no longer be
+     * withdrawn by anyone else, but the cash quantity everyone else sees does not change until they are dropped.
+     *
+     * Nothing is touched if one of the cash types is already short. Otherwise every cash type is held with a
+     * compare-and-set on its own counter, so the quantity never goes below zero. If one of them no longer has enough
+     * stock, the cash types already held are put back.
+     *
+     * @param withdrawQuantities The quantity to hold for each cash type.
+     * @return true if the cash has been held, false if the stock has changed and nothing was held.
+     */
+    public boolean hold(int[] withdrawQuantities) {
+        for (int i = 0; i < withdrawQuantities.length; i++) {
+            if (withdrawQuantities[i] < 0) {
+                throw new IllegalArgumentException(MessageConstants.CASH_SUPPLY_NEGATIVE_CASH_QUANTITY_ERROR_MESSAGE);
+            }
+        }
+
+        for (int i = 0; i < withdrawQuantities.length; i++) {
+            if (available(cashQuantities.get(i)) < withdrawQuantities[i]) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < withdrawQuantities.length; i++) {
+            if (withdrawQuantities[i] > 0 && !tryHold(i, withdrawQuantities[i])) {
+                release(withdrawQuantities, i);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Drop the notes held by {@link #hold(int[])}, which withdraws them. Only the cash types which have really been
+     * withdrawn are reported to the listeners.
+     *
+     * @param withdrawQuantities The quantity held for each cash type.
+     */
+    public void drop(int[] withdrawQuantities) {
+        for (int i = 0; i < withdrawQuantities.length; i++) {
+            if (withdrawQuantities[i] > 0) {
+                changed(i, stock(cashQuantities.addAndGet(i, -withdrawQuantities[i])));
+            }
+        }
+    }
+
+    /**
+     * Put the notes held by {@link #hold(int[])} back, when the withdraw does not go ahead.
+     *
+     * @param withdrawQuantities The quantity held for each cash type.
+     */
+    public void release(int[] withdrawQuantities) {
+        release(withdrawQuantities, withdrawQuantities.length);
+    }
+
+    /**
+     * Clear the dirty flag of one cash type.
+     *
+     * @param index The index of the cash type.
+     * @return true if the cash type has been changed since the flag was last cleared.
+     */
+    public boolean clearDirty(int index) {
+        return dirtyFlags.getAndSet(index, 0) == 1;
+    }
+
+    public void markDirty(int index) {
+        dirtyFlags.set(index, 1);
+    }
+
+    /**
+     * Used to get a copy of the current stock.
+     *
+     * @return the list of the cash supplies ordered by cash value desc.
+     */
+    public List<CashSupply> toCashSupplies() {
+        List<CashSupply> cashSupplyList = new ArrayList<>(cashValues.length);
+
+        for (int i = 0; i < cashValues.length; i++) {
+            CashSupply cashSupply = new CashSupply(cashTypes[i], stock(cashQuantities.get(i)));
+            cashSupply.setCashSupplyId(cashSupplyIds[i]);
+            cashSupplyList.add(cashSupply);
+        }
+
+        return cashSupplyList;
+    }
+
+    /**
+     * Move the quantity from available to held, if there is enough available.
+     */
+    private boolean tryHold(int index, int withdrawQuantity) {
+        long cashQuantity;
+
+        do {
+            cashQuantity = cashQuantities.get(index);
+
+            if (available(cashQuantity) < withdrawQuantity) {
+                return false;
+            }
+        } while (!cashQuantities.compareAndSet(index, cashQuantity,
+                pack(available(cashQuantity) - withdrawQuantity, held(cashQuantity) + withdrawQuantity)));
+
+        return true;
+    }
+
+    /**
+     * Move the held quantities of the cash types before the given one back to available. The cash quantity
+     * everyone else sees does not change, so the listeners are not notified.
+     */
+    private void release(int[] withdrawQuantities, int toIndex) {
+        for (int i = 0; i < toIndex; i++) {
+            if (withdrawQuantities[i] > 0) {
+                cashQuantities.addAndGet(i, ((long) withdrawQuantities[i] << 32) - withdrawQuantities[i]);
+            }
+        }
+    }
+
+    private static long pack(int available, int held) {
+        return ((long) available << 32) | held;
+    }
+
+    private static int available(long cashQuantity) {
+        return (int) (cashQuantity >>> 32);
+    }
+
+    private static int held(long cashQuantity) {
+        return (int) cashQuantity;
+    }
+
+    private static int stock(long cashQuantity) {
+        return available(cashQuantity) + held(cashQuantity);
+    }
+
+    private void changed(int index, int cashQuantity) {
+        dirtyFlags.set(index, 1);
+
+        for (InventoryListener listener : listeners) {
+            listener.onCashQuantityChanged(this, index, cashQuantity);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.suncorp.cashman.inventory;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the in-memory cash inventory of every cash machine. The inventories are loaded from the database on startup
+ * and a machine is reloaded whenever it is initialized; after that all the dispensing only works on the inventories.
+ *
+ * Every machine has its own inventory with its own counters, and looking one up does not take a lock,
+ * so the dispenses of different machines never contend with each other.
+ *
+ * Every inventory loaded gets a new generation, so that the journal can tell the stock of a replaced inventory from
+ * the stock of the current one.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class CashInventoryRegistry {
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    private final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Map<String, CashInventory> cashInventories = new ConcurrentHashMap<>();
+
+    private final AtomicLong generations = new AtomicLong();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public CashInventoryRegistry(CashSupplyRepository cashSupplyRepository) {
+        this.cashSupplyRepository = cashSupplyRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        loadAll();
+    }
+
+    /**
+     * @param machineId The cash machine.
+     * @return the inventory of the machine, an empty one if the machine has no cash supplies.
+     */
+    public CashInventory getCashInventory(String machineId) {
+        CashInventory cashInventory = cashInventories.get(machineId);
+
+        return cashInventory != null ? cashInventory : new CashInventory(machineId, Collections.emptyList(), listeners);
+    }
+
+    public Collection<CashInventory> getCashInventories() {
+        return cashInventories.values();
+    }
+
+    /**
+     * @return the generation of the next inventory to load, see {@link #load(String, long)}.
+     */
+    public long nextGeneration() {
+        return generations.incrementAndGet();
+    }
+
+    /**
+     * Load the inventory of one machine from its cash supplies in the database.
+     *
+     * @param machineId The cash machine.
+     * @return the new inventory.
+     */
+    public CashInventory load(String machineId) {
+        return load(machineId, nextGeneration());
+    }
+
+    /**
+     * Load the inventory of one machine from its cash supplies in the database, with a generation taken earlier.
+     *
+     * @param machineId  The cash machine.
+     * @param generation The generation of the new inventory.
+     * @return the new inventory.
+     */
+    public CashInventory load(String machineId, long generation) {
+        logger.info("Load the cash inventory of machine " + machineId + ".");
+        List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc(machineId);
+
+        return register(machineId, generation, cashSupplyList);
+    }
+
+    /**
+     * Load the inventories of all the machines from the cash supplies in the database.
+     */
+    public void loadAll() {
+        logger.info("Load the cash inventories.");
+        Map<String, List<CashSupply>> machineCashSupplies = new LinkedHashMap<>();
+
+        // Keep the order by cash value desc within every machine
+        cashSupplyRepository.findAllByOrderByCashAmountDesc().forEach(cashSupply -> {
+            machineCashSupplies.computeIfAbsent(cashSupply.getMachineId(), machineId -> new ArrayList<>()).add(cashSupply);
+        });
+
+        cashInventories.keySet().retainAll(machineCashSupplies.keySet());
+        machineCashSupplies.forEach((machineId, cashSupplyList) -> register(machineId, nextGeneration(), cashSupplyList));
+    }
+
+    public void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    private CashInventory register(String machineId, long generation, List<CashSupply> cashSupplyList) {
+        CashInventory newCashInventory = new CashInventory(machineId, generation, cashSupplyList, listeners);
+
+        if (cashSupplyList.isEmpty()) {
+            cashInventories.remove(machineId);
+        } else {
+            cashInventories.put(machineId, newCashInventory);
+        }
+
+        listeners.forEach(listener -> listener.onCashInventoryLoaded(newCashInventory));
+
+        return newCashInventory;
+    }
+}
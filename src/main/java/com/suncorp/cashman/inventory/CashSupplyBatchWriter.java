@@ -0,0 +1,128 @@
+package com.suncorp.cashman.inventory;
+
+import com.suncorp.cashman.denomination.Denomination;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the cash supplies of a cash machine in the database with JDBC batches in one transaction.
+ *
+ * The cash supplies are upserted: the rows of the cash types the machine already has are updated in one batch, and
+ * only the missing ones are inserted in a second batch. The rows keep their ids, and their versions are bumped so that
+ * a concurrent optimistic dispense of the machine sees the change. The cash types are shared by all the machines, so
+ * the initialization of one machine never writes an existing cash type row: the missing ones are inserted, and the
+ * existing ones are left as they are even if the description of the denomination is different.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class CashSupplyBatchWriter {
+
+    private static final String SELECT_CASH_TYPES =
+            "select cash_type_id, cash_value from cash_type order by cash_type_id";
+
+    private static final String INSERT_CASH_TYPE =
+            "insert into cash_type (cash_desc, cash_value) values (?, ?)";
+
+    private static final String UPDATE_CASH_SUPPLY =
+            "update cash_supply set cash_quantity = ?, version = version + 1 where machine_id = ? and cash_type_id = ?";
+
+    private static final String INSERT_CASH_SUPPLY =
+            "insert into cash_supply (machine_id, cash_type_id, cash_quantity, version) values (?, ?, ?, 0)";
+
+    private static final String DELETE_OTHER_CASH_SUPPLIES =
+            "delete from cash_supply where machine_id = :machineId and cash_type_id not in (:cashTypeIds)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public CashSupplyBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Set the cash supplies of the machine to the initial quantities of the denominations. The cash supplies of the
+     * other cash types are removed from the machine.
+     *
+     * @param machineId     The cash machine.
+     * @param denominations The denominations, not empty.
+     */
+    public void replaceCashSupplies(String machineId, List<Denomination> denominations) {
+        transactionTemplate.execute(status -> {
+            List<Long> cashTypeIds = insertMissingCashTypes(denominations);
+
+            List<Object[]> updateArgs = new ArrayList<>(denominations.size());
+            for (int i = 0; i < denominations.size(); i++) {
+                updateArgs.add(new Object[]{denominations.get(i).getInitialQuantity(), machineId, cashTypeIds.get(i)});
+            }
+
+            int[] updateCounts = jdbcTemplate.batchUpdate(UPDATE_CASH_SUPPLY, updateArgs);
+
+            List<Object[]> insertArgs = new ArrayList<>();
+            for (int i = 0; i < updateCounts.length; i++) {
+                if (updateCounts[i] == 0) {
+                    insertArgs.add(new Object[]{machineId, cashTypeIds.get(i), denominations.get(i).getInitialQuantity()});
+                }
+            }
+
+            if (!insertArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_CASH_SUPPLY, insertArgs);
+            }
+
+            namedParameterJdbcTemplate.update(DELETE_OTHER_CASH_SUPPLIES,
+                    new MapSqlParameterSource("machineId", machineId).addValue("cashTypeIds", cashTypeIds));
+
+            return null;
+        });
+    }
+
+    /**
+     * @return the cash type ids of the denominations, in the same order.
+     */
+    private List<Long> insertMissingCashTypes(List<Denomination> denominations) {
+        Map<Integer, Long> cashTypeIds = new HashMap<>();
+        readCashTypes(cashTypeIds);
+
+        List<Object[]> insertArgs = new ArrayList<>();
+        for (Denomination denomination : denominations) {
+            if (!cashTypeIds.containsKey(denomination.getCashValue())) {
+                insertArgs.add(new Object[]{denomination.getCashDesc(), denomination.getCashValue()});
+            }
+        }
+
+        if (!insertArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CASH_TYPE, insertArgs);
+            readCashTypes(cashTypeIds);
+        }
+
+        List<Long> denominationCashTypeIds = new ArrayList<>(denominations.size());
+        denominations.forEach(denomination -> denominationCashTypeIds.add(cashTypeIds.get(denomination.getCashValue())));
+
+        return denominationCashTypeIds;
+    }
+
+    private void readCashTypes(Map<Integer, Long> cashTypeIds) {
+        // Use the first cash type of a cash value, the same as the lookups by cash value
+        jdbcTemplate.query(SELECT_CASH_TYPES, resultSet -> {
+            cashTypeIds.putIfAbsent(resultSet.getInt("cash_value"), resultSet.getLong("cash_type_id"));
+        });
+    }
+}
@@ -0,0 +1,198 @@
+package com.suncorp.cashman.inventory;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the changed cash supplies of the in-memory inventories back to the database.
+ *
+ * The changed rows of every machine are flushed every flush interval, and the rows of one machine as soon as the
+ * number of its changes reaches the flush threshold, so the dispense path never waits on the database.
+ * Everything is per machine: the changes are counted per machine, so that the machines do not contend on one
+ * counter, and every machine is flushed in its own transaction under its own lock, so a machine whose write fails
+ * does not roll back the others, and the initialization of a machine only waits for the flush of that machine.
+ *
+ * The changed cash quantities are only written once the flush barriers let them through, so a withdraw never
+ * reaches the database before its journal record is on disk.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class CashSupplyWriteBehindFlusher implements InventoryListener {
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long flushIntervalMillis;
+
+    private final int flushThreshold;
+
+    private final Map<String, AtomicInteger> pendingChanges = new ConcurrentHashMap<>();
+
+    private final Map<String, Object> machineLocks = new ConcurrentHashMap<>();
+
+    private final List<FlushBarrier> flushBarriers = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService executor;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public CashSupplyWriteBehindFlusher(CashInventoryRegistry cashInventoryRegistry,
+                                        CashSupplyRepository cashSupplyRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${cashman.inventory.flush-interval-ms:1000}") long flushIntervalMillis,
+                                        @Value("${cashman.inventory.flush-threshold:50}") int flushThreshold) {
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.cashSupplyRepository = cashSupplyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushThreshold = flushThreshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cash-supply-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        cashInventoryRegistry.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        flush();
+    }
+
+    @Override
+    public void onCashQuantityChanged(CashInventory cashInventory, int index, int cashQuantity) {
+        AtomicInteger machinePendingChanges = pendingChanges.computeIfAbsent(cashInventory.getMachineId(), machineId -> new AtomicInteger());
+
+        if (machinePendingChanges.incrementAndGet() == flushThreshold && !executor.isShutdown()) {
+            String machineId = cashInventory.getMachineId();
+            executor.execute(() -> flush(machineId));
+        }
+    }
+
+    @Override
+    public void onCashInventoryLoaded(CashInventory cashInventory) {
+        // The new inventory has just been read from the database, so there is nothing to write back.
+        pendingChanges.remove(cashInventory.getMachineId());
+    }
+
+    public void addFlushBarrier(FlushBarrier flushBarrier) {
+        flushBarriers.add(flushBarrier);
+    }
+
+    public void removeFlushBarrier(FlushBarrier flushBarrier) {
+        flushBarriers.remove(flushBarrier);
+    }
+
+    /**
+     * Run the action while no flush of the machine is in progress, e.g. while the cash supplies of the machine are
+     * replaced in the database and its inventory is reloaded. The changes of a replaced inventory are never written
+     * back after that. The flushes of the other machines go on.
+     *
+     * @param machineId The cash machine.
+     * @param action    The action.
+     */
+    public void runWithoutFlush(String machineId, Runnable action) {
+        synchronized (getMachineLock(machineId)) {
+            action.run();
+        }
+    }
+
+    /**
+     * Write the changed cash supplies of every machine to the database, each machine in its own transaction.
+     */
+    public void flush() {
+        for (CashInventory cashInventory : cashInventoryRegistry.getCashInventories()) {
+            flush(cashInventory.getMachineId());
+        }
+    }
+
+    /**
+     * Write the changed cash supplies of the machine to the database in one transaction.
+     * If the write fails, the cash supplies stay dirty and will be written by the next flush.
+     *
+     * @param machineId The cash machine.
+     */
+    public void flush(String machineId) {
+        synchronized (getMachineLock(machineId)) {
+            AtomicInteger machinePendingChanges = pendingChanges.get(machineId);
+            if (machinePendingChanges != null) {
+                machinePendingChanges.set(0);
+            }
+
+            // Looked up under the lock, so the inventory replaced by an initialization is never written back
+            CashInventory cashInventory = cashInventoryRegistry.getCashInventory(machineId);
+            Map<Long, Integer> changedCashQuantities = new HashMap<>();
+
+            for (int i = 0; i < cashInventory.size(); i++) {
+                if (cashInventory.clearDirty(i)) {
+                    changedCashQuantities.put(cashInventory.getCashSupplyId(i), cashInventory.getCashQuantity(i));
+                }
+            }
+
+            if (changedCashQuantities.isEmpty()) {
+                return;
+            }
+
+            try {
+                for (FlushBarrier flushBarrier : flushBarriers) {
+                    flushBarrier.awaitFlushable(machineId);
+                }
+
+                transactionTemplate.execute(status -> {
+                    List<CashSupply> cashSupplyList = cashSupplyRepository.findByCashSupplyIdIn(changedCashQuantities.keySet());
+                    cashSupplyList.forEach(cashSupply -> cashSupply.setCashQuantity(changedCashQuantities.get(cashSupply.getCashSupplyId())));
+
+                    return cashSupplyRepository.save(cashSupplyList);
+                });
+            } catch (RuntimeException e) {
+                logger.error("Failed to write the cash supplies of machine " + machineId + " back: " + e.getMessage());
+
+                for (int i = 0; i < cashInventory.size(); i++) {
+                    if (changedCashQuantities.containsKey(cashInventory.getCashSupplyId(i))) {
+                        cashInventory.markDirty(i);
+                    }
+                }
+            }
+        }
+    }
+
+    private Object getMachineLock(String machineId) {
+        return machineLocks.computeIfAbsent(machineId, key -> new Object());
+    }
+}
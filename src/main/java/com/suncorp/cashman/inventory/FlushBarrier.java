@@ -0,0 +1,20 @@
+package com.suncorp.cashman.inventory;
+
+/**
+ * Holds the write-behind flusher back until the changes it has read from an inventory may reach the database.
+ *
+ * The flusher reads the changed cash quantities of a machine first and calls the barriers before it writes them,
+ * e.g. so that a withdraw is never written back before its journal record is on disk.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public interface FlushBarrier {
+
+    /**
+     * Wait until every change of the cash machine which may already have been read can be written back.
+     *
+     * @param machineId The cash machine.
+     */
+    void awaitFlushable(String machineId);
+}
@@ -0,0 +1,29 @@
+package com.suncorp.cashman.inventory;
+
+/**
+ * Listener which gets notified when the in-memory cash inventory changes.
+ *
+ * Listeners are called on the dispense path, so they must be cheap and must not block.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public interface InventoryListener {
+
+    /**
+     * Called after the quantity of a cash type has changed.
+     *
+     * @param cashInventory The inventory which has changed.
+     * @param index         The index of the cash type in the inventory.
+     * @param cashQuantity  The new cash quantity.
+     */
+    void onCashQuantityChanged(CashInventory cashInventory, int index, int cashQuantity);
+
+    /**
+     * Called after a new inventory has been loaded, e.g. on startup or when the cash machine is initialized.
+     *
+     * @param cashInventory The new inventory.
+     */
+    default void onCashInventoryLoaded(CashInventory cashInventory) {
+    }
+}
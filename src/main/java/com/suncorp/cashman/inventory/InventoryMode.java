@@ -0,0 +1,19 @@
+package com.suncorp.cashman.inventory;
+
+/**
+ * Where the cash machine keeps the authoritative stock.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public enum InventoryMode {
+
+    /** The in-memory inventory is authoritative and written back to the database behind. Only for a single node. */
+    MEMORY,
+
+    /** The cash_supply table is shared by several nodes. Dispense in one transaction with the version check, retried on conflict. */
+    OPTIMISTIC,
+
+    /** The cash_supply table is shared by several nodes. Dispense in one transaction which locks the rows with SELECT ... FOR UPDATE. */
+    PESSIMISTIC
+}
@@ -0,0 +1,1062 @@
+package com.suncorp.cashman.journal;
+
+import com.suncorp.cashman.audit.AsyncTransactionLogWriter;
+import com.suncorp.cashman.audit.TransactionLogBatchWriter;
+import com.suncorp.cashman.audit.TransactionLogEntry;
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.DispenseResult;
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.CashSupplyWriteBehindFlusher;
+import com.suncorp.cashman.inventory.FlushBarrier;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.repository.TransactionLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of the dispense events, so that no audit record is lost for cash which has
+ * physically left the machine when the process dies before the transaction log reaches the database.
+ *
+ * Every dispense is appended as a compact binary record to a memory-mapped segment file before the response returns.
+ * The machines are hashed to a few stripes, each with its own lock, segment files and sequences, so the dispenses of
+ * different machines do not queue on one lock; the records of one machine always go to the same stripe, in order.
+ * The stripe k of n uses the sequences which are k modulo n, so the sequences are unique across the stripes.
+ * A single sync thread forces the segments of all the stripes to disk for all the records appended since the last
+ * force, so many dispenses share one fsync (group commit).
+ *
+ * A withdraw from the in-memory inventory is appended and its held notes are dropped in one step under the stripe
+ * lock, so the cash quantities recorded after it are exact. The write-behind flusher waits for the records of a
+ * machine appended so far before it writes the cash supplies back, so the stock in the database never goes down
+ * before the record of the withdraw is on disk. The record layout is:
+ * - int record length, long sequence, byte record type, long create time in epoch millis, int total amount
+ * - machine id as a short length prefixed UTF-8 string, long generation of the inventory
+ * - bsb, account no and account name as short length prefixed UTF-8 strings
+ * - byte cash type count, then for each cash type: int cash value, int quantity, int cash quantity after the dispense
+ * - int CRC32 of everything after the record length
+ *
+ * The journal directory must be absolute or resolved against an absolute base directory, so that it never depends on
+ * the working directory the process happens to be started from. A marker file is left in the directory, and a
+ * directory without it while the machines already hold stock is logged as a warning: it is most likely not the
+ * directory of the last run, whose records would then never be replayed.
+ *
+ * A full segment is closed and a new one is opened. A closed segment is deleted once all its transaction logs are in
+ * the database and the cash supplies have been flushed. On startup all the remaining segments are replayed: the
+ * missing transaction logs are inserted (the journal sequence is unique in transaction_log) and the cash supplies of
+ * every machine are lowered to the lowest quantity recorded after the last initialization of the machine, so
+ * replaying the same record twice is harmless. Only the quantities read from the inventory of the last
+ * initialization count: a dispense still running on the replaced inventory recorded the stock before the reset.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class DispenseJournal implements FlushBarrier {
+
+    // CMJ2: the records carry the generation of the inventory
+    private static final int MAGIC = 0x434d4a32;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final byte DISPENSE_RECORD = 1;
+
+    private static final byte INITIALIZE_RECORD = 2;
+
+    private static final String SEGMENT_PREFIX = "dispense-";
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final String MARKER_FILE = "journal.marker";
+
+    private static final int RECOVERY_BATCH_SIZE = 500;
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    @Autowired
+    private CashSupplyWriteBehindFlusher cashSupplyWriteBehindFlusher;
+
+    @Autowired
+    private AsyncTransactionLogWriter asyncTransactionLogWriter;
+
+    @Autowired
+    private TransactionLogBatchWriter transactionLogBatchWriter;
+
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    @Autowired
+    private CashTypeRepository cashTypeRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final String journalDir;
+
+    private final String journalBaseDir;
+
+    private final long segmentSize;
+
+    private final long cleanupIntervalMillis;
+
+    private final InventoryMode inventoryMode;
+
+    private final int stripeCount;
+
+    private final Object syncMonitor = new Object();
+
+    private Path directory;
+
+    private Stripe[] stripes;
+
+    private volatile boolean running;
+
+    private Thread syncThread;
+
+    private ScheduledExecutorService cleanupExecutor;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public DispenseJournal(CashInventoryRegistry cashInventoryRegistry,
+                           CashSupplyWriteBehindFlusher cashSupplyWriteBehindFlusher,
+                           AsyncTransactionLogWriter asyncTransactionLogWriter,
+                           TransactionLogBatchWriter transactionLogBatchWriter,
+                           TransactionLogRepository transactionLogRepository,
+                           CashSupplyRepository cashSupplyRepository,
+                           CashTypeRepository cashTypeRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${cashman.journal.enabled:true}") boolean enabled,
+                           @Value("${cashman.journal.dir:journal}") String journalDir,
+                           @Value("${cashman.journal.base-dir:}") String journalBaseDir,
+                           @Value("${cashman.journal.segment-size-mb:64}") int segmentSizeMb,
+                           @Value("${cashman.journal.cleanup-interval-ms:10000}") long cleanupIntervalMillis,
+                           @Value("${cashman.journal.stripes:4}") int stripeCount,
+                           @Value("${cashman.inventory.mode:MEMORY}") InventoryMode inventoryMode) {
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.cashSupplyWriteBehindFlusher = cashSupplyWriteBehindFlusher;
+        this.asyncTransactionLogWriter = asyncTransactionLogWriter;
+        this.transactionLogBatchWriter = transactionLogBatchWriter;
+        this.transactionLogRepository = transactionLogRepository;
+        this.cashSupplyRepository = cashSupplyRepository;
+        this.cashTypeRepository = cashTypeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.journalDir = journalDir;
+        this.journalBaseDir = journalBaseDir;
+        this.segmentSize = segmentSizeMb * 1024L * 1024L;
+        this.cleanupIntervalMillis = cleanupIntervalMillis;
+        this.stripeCount = stripeCount;
+        this.inventoryMode = inventoryMode;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        directory = resolveDirectory();
+        Files.createDirectories(directory);
+        checkMarker();
+
+        long lastSequence = recover(directory);
+
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            Stripe stripe = new Stripe();
+
+            // The first sequence after the last one which is i modulo the stripe count
+            stripe.nextSequence = lastSequence + 1 + Math.floorMod(i - (lastSequence + 1), (long) stripeCount);
+            stripe.appendedSequence = stripe.nextSequence - stripeCount;
+            stripe.syncedSequence = stripe.appendedSequence;
+            stripe.activeSegment = Segment.create(segmentPath(stripe.nextSequence), stripe.nextSequence, segmentSize);
+
+            stripes[i] = stripe;
+        }
+
+        running = true;
+        syncThread = new Thread(this::syncLoop, "dispense-journal-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+
+        cleanupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dispense-journal-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleanupExecutor.scheduleWithFixedDelay(this::deleteCompletedSegments, cleanupIntervalMillis, cleanupIntervalMillis, TimeUnit.MILLISECONDS);
+
+        cashSupplyWriteBehindFlusher.addFlushBarrier(this);
+    }
+
+    /**
+     * Stop the journal. The segments are deleted when all their transaction logs have reached the database,
+     * so a clean shutdown leaves nothing to replay.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+
+        cleanupExecutor.shutdown();
+        cleanupExecutor.awaitTermination(cleanupIntervalMillis, TimeUnit.MILLISECONDS);
+
+        synchronized (syncMonitor) {
+            running = false;
+            syncMonitor.notifyAll();
+        }
+        syncThread.join();
+
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.activeSegment.lastSequence = stripe.nextSequence - stripeCount;
+                stripe.activeSegment.close();
+                stripe.closedSegments.addLast(stripe.activeSegment);
+            }
+        }
+
+        asyncTransactionLogWriter.flush();
+        deleteCompletedSegments();
+
+        cashSupplyWriteBehindFlusher.removeFlushBarrier(this);
+    }
+
+    /**
+     * Append the dispense to the journal. The record is not durable until {@link #awaitDurable(long)} returns.
+     *
+     * @param transactionLog        The transaction log of the dispense.
+     * @param transactionLogDetails The dispensed cash.
+     * @return the journal sequence of the record, 0 if the journal is disabled.
+     */
+    public long append(TransactionLog transactionLog, List<TransactionLogDetail> transactionLogDetails) {
+        if (!enabled) {
+            return 0;
+        }
+
+        byte[] machineId = toBytes(transactionLog.getMachineId());
+        byte[] bsb = toBytes(transactionLog.getBsb());
+        byte[] accountNo = toBytes(transactionLog.getAccountNo());
+        byte[] accountName = toBytes(transactionLog.getAccountName());
+        int detailCount = transactionLogDetails.size();
+
+        int bodySize = dispenseBodySize(machineId, bsb, accountNo, accountName, detailCount);
+        long createAtMillis = toEpochMillis(transactionLog.getCreateAt());
+
+        // Only the in-memory inventory knows the stock right after the dispense
+        CashInventory cashInventory = inventoryMode == InventoryMode.MEMORY
+                ? cashInventoryRegistry.getCashInventory(transactionLog.getMachineId()) : null;
+
+        Stripe stripe = getStripe(transactionLog.getMachineId());
+        long sequence;
+        synchronized (stripe) {
+            ByteBuffer buffer = ensureCapacity(stripe, 4 + bodySize + 4);
+            sequence = stripe.nextSequence;
+            stripe.nextSequence += stripeCount;
+
+            int start = putDispenseHeader(buffer, sequence, createAtMillis, transactionLog.getTotalAmount(), machineId,
+                    cashInventory == null ? -1 : cashInventory.getGeneration(), bsb, accountNo, accountName, detailCount);
+
+            for (TransactionLogDetail detail : transactionLogDetails) {
+                buffer.putInt(detail.getCashValue());
+                buffer.putInt(detail.getQuantity());
+                buffer.putInt(cashInventory == null ? -1 : findCashQuantity(cashInventory, detail.getCashValue()));
+            }
+
+            finishRecord(stripe, buffer, start, bodySize);
+            stripe.appendedSequence = sequence;
+        }
+
+        synchronized (syncMonitor) {
+            syncMonitor.notifyAll();
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Append the successful withdraws of a dispense from the in-memory inventory and drop their held notes in one
+     * step, under the lock of the stripe of the machine. Every withdraw of the machine is dropped under this lock, so
+     * the cash quantities recorded after the withdraws are exact. Nothing is dropped if the records cannot be
+     * appended, and the notes are just dropped if the journal is disabled.
+     *
+     * Every journaled withdraw gets the journal sequence and the time of its record. The records are not durable
+     * until {@link #awaitDurable(long)} returns.
+     *
+     * @param cashInventory      The inventory the notes are held in.
+     * @param bankAccountDetail  The bank account of the withdraws.
+     * @param dispenseResults    The withdraws of the dispense, the failed ones are not journaled.
+     * @param withdrawQuantities The quantity of each cash type held for all the withdraws together.
+     */
+    public void appendWithdraw(CashInventory cashInventory, BankAccountDetail bankAccountDetail, List<DispenseResult> dispenseResults,
+                               int[] withdrawQuantities) {
+        if (!enabled) {
+            cashInventory.drop(withdrawQuantities);
+            return;
+        }
+
+        byte[] machineId = toBytes(cashInventory.getMachineId());
+        byte[] bsb = toBytes(bankAccountDetail.getBsb());
+        byte[] accountNo = toBytes(bankAccountDetail.getAccountNo());
+        byte[] accountName = toBytes(bankAccountDetail.getAccountName());
+
+        int recordsSize = 0;
+        for (DispenseResult dispenseResult : dispenseResults) {
+            if (dispenseResult.isSuccess()) {
+                recordsSize += 4 + dispenseBodySize(machineId, bsb, accountNo, accountName, dispenseResult.getDispensedCash().size()) + 4;
+            }
+        }
+
+        LocalDateTime dispensedAt = LocalDateTime.now();
+        long createAtMillis = toEpochMillis(dispensedAt);
+
+        Stripe stripe = getStripe(cashInventory.getMachineId());
+        synchronized (stripe) {
+            // The room for all the records is made first, so the notes are only dropped once nothing can fail
+            ByteBuffer buffer = ensureCapacity(stripe, recordsSize);
+            cashInventory.drop(withdrawQuantities);
+
+            for (DispenseResult dispenseResult : dispenseResults) {
+                if (!dispenseResult.isSuccess()) {
+                    continue;
+                }
+
+                Map<CashType, CashSupply> dispensedCash = dispenseResult.getDispensedCash();
+                int bodySize = dispenseBodySize(machineId, bsb, accountNo, accountName, dispensedCash.size());
+                long sequence = stripe.nextSequence;
+                stripe.nextSequence += stripeCount;
+
+                int start = putDispenseHeader(buffer, sequence, createAtMillis, dispenseResult.getCashAmount(), machineId,
+                        cashInventory.getGeneration(), bsb, accountNo, accountName, dispensedCash.size());
+
+                for (Map.Entry<CashType, CashSupply> cashSupplyEntry : dispensedCash.entrySet()) {
+                    int cashValue = cashSupplyEntry.getKey().getCashValue();
+
+                    buffer.putInt(cashValue);
+                    buffer.putInt(cashSupplyEntry.getValue().getCashQuantity());
+                    buffer.putInt(findCashQuantity(cashInventory, cashValue));
+                }
+
+                finishRecord(stripe, buffer, start, bodySize);
+                stripe.appendedSequence = sequence;
+
+                dispenseResult.setJournalSequence(sequence);
+                dispenseResult.setDispensedAt(dispensedAt);
+            }
+        }
+
+        synchronized (syncMonitor) {
+            syncMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Append the initialization of the cash machine. The cash quantities of the machine recorded before it, or read
+     * from an inventory of another generation, are not used by the recovery any more, because its cash supplies
+     * have been reset.
+     *
+     * @param machineId  The cash machine.
+     * @param generation The generation of the inventory loaded by the initialization.
+     */
+    public void appendInitialize(String machineId, long generation) {
+        if (!enabled) {
+            return;
+        }
+
+        byte[] machineIdBytes = toBytes(machineId);
+        int bodySize = 8 + 1 + 8 + 4 + (2 + machineIdBytes.length) + 8 + 2 + 2 + 2 + 1;
+
+        Stripe stripe = getStripe(machineId);
+        long sequence;
+        synchronized (stripe) {
+            ByteBuffer buffer = ensureCapacity(stripe, 4 + bodySize + 4);
+            sequence = stripe.nextSequence;
+            stripe.nextSequence += stripeCount;
+
+            int start = buffer.position();
+            buffer.position(start + 4);
+            buffer.putLong(sequence);
+            buffer.put(INITIALIZE_RECORD);
+            buffer.putLong(System.currentTimeMillis());
+            buffer.putInt(0);
+            putBytes(buffer, machineIdBytes);
+            buffer.putLong(generation);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.put((byte) 0);
+
+            finishRecord(stripe, buffer, start, bodySize);
+            stripe.appendedSequence = sequence;
+        }
+
+        synchronized (syncMonitor) {
+            syncMonitor.notifyAll();
+        }
+
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Wait until the record has been forced to disk.
+     *
+     * @param sequence The journal sequence of the record.
+     */
+    public void awaitDurable(long sequence) {
+        if (!enabled) {
+            return;
+        }
+
+        Stripe stripe = getStripe(sequence);
+        synchronized (syncMonitor) {
+            while (stripe.syncedSequence < sequence) {
+                if (!running && !syncThread.isAlive()) {
+                    throw new IllegalStateException("The dispense journal has been stopped.");
+                }
+
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the dispense journal.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get notified when the record has been forced to disk, without blocking the calling thread.
+     * The future is completed on the sync thread, so the actions which depend on it must be cheap or run async.
+     *
+     * @param sequence The journal sequence of the record.
+     * @return the future completed once the record is durable.
+     */
+    public CompletableFuture<Void> whenDurable(long sequence) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Stripe stripe = getStripe(sequence);
+        synchronized (syncMonitor) {
+            if (stripe.syncedSequence >= sequence) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            if (!running && !syncThread.isAlive()) {
+                future.completeExceptionally(new IllegalStateException("The dispense journal has been stopped."));
+            } else {
+                stripe.durableWaiters.add(new DurableWaiter(sequence, future));
+            }
+
+            return future;
+        }
+    }
+
+    /**
+     * Wait until every record of the stripe of the machine appended so far is on disk. A withdraw is dropped from the
+     * inventory together with the append of its record under the stripe lock, so once the lock has been taken, every
+     * withdraw the flusher may have read has its record appended.
+     *
+     * @param machineId The cash machine.
+     */
+    @Override
+    public void awaitFlushable(String machineId) {
+        Stripe stripe = getStripe(machineId);
+
+        long sequence;
+        synchronized (stripe) {
+            sequence = stripe.appendedSequence;
+        }
+
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Force all the records appended to all the stripes since the last force in one go, then wake up everyone waiting
+     * on them. Only the sync thread writes the synced sequences.
+     */
+    private void syncLoop() {
+        long[] targetSequences = new long[stripes.length];
+
+        while (true) {
+            synchronized (syncMonitor) {
+                while (running && !isAnyStripeUnsynced()) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (!running && !isAnyStripeUnsynced()) {
+                    return;
+                }
+            }
+
+            for (int i = 0; i < stripes.length; i++) {
+                Stripe stripe = stripes[i];
+                targetSequences[i] = stripe.appendedSequence;
+
+                if (targetSequences[i] > stripe.syncedSequence) {
+                    // A segment closed in the meantime has been forced when it was closed
+                    MappedByteBuffer buffer;
+                    synchronized (stripe) {
+                        buffer = stripe.activeSegment.buffer;
+                    }
+                    buffer.force();
+                }
+            }
+
+            List<DurableWaiter> durableWaitersToComplete = new ArrayList<>();
+            synchronized (syncMonitor) {
+                for (int i = 0; i < stripes.length; i++) {
+                    Stripe stripe = stripes[i];
+                    stripe.syncedSequence = Math.max(stripe.syncedSequence, targetSequences[i]);
+
+                    while (!stripe.durableWaiters.isEmpty() && stripe.durableWaiters.peek().sequence <= stripe.syncedSequence) {
+                        durableWaitersToComplete.add(stripe.durableWaiters.poll());
+                    }
+                }
+                syncMonitor.notifyAll();
+            }
+
+            durableWaitersToComplete.forEach(durableWaiter -> durableWaiter.future.complete(null));
+        }
+    }
+
+    private boolean isAnyStripeUnsynced() {
+        for (Stripe stripe : stripes) {
+            if (stripe.appendedSequence > stripe.syncedSequence) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Stripe getStripe(String machineId) {
+        return stripes[Math.floorMod(Objects.hashCode(machineId), stripes.length)];
+    }
+
+    private Stripe getStripe(long sequence) {
+        return stripes[(int) Math.floorMod(sequence, (long) stripes.length)];
+    }
+
+    /**
+     * Make sure the active segment has room for the record and a terminating zero length, otherwise open a new one.
+     */
+    private ByteBuffer ensureCapacity(Stripe stripe, int recordSize) {
+        if (stripe.activeSegment.buffer.remaining() < recordSize + 4) {
+            try {
+                stripe.activeSegment.buffer.force();
+                stripe.activeSegment.lastSequence = stripe.nextSequence - stripeCount;
+                stripe.activeSegment.close();
+                stripe.closedSegments.addLast(stripe.activeSegment);
+
+                stripe.activeSegment = Segment.create(segmentPath(stripe.nextSequence), stripe.nextSequence, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return stripe.activeSegment.buffer;
+    }
+
+    private static int dispenseBodySize(byte[] machineId, byte[] bsb, byte[] accountNo, byte[] accountName, int detailCount) {
+        return 8 + 1 + 8 + 4 + (2 + machineId.length) + 8 + (2 + bsb.length) + (2 + accountNo.length) + (2 + accountName.length)
+                + 1 + detailCount * 12;
+    }
+
+    /**
+     * Put everything of a dispense record before its cash types, leaving room for the record length.
+     *
+     * @return the start of the record.
+     */
+    private static int putDispenseHeader(ByteBuffer buffer, long sequence, long createAtMillis, int totalAmount, byte[] machineId,
+                                         long generation, byte[] bsb, byte[] accountNo, byte[] accountName, int detailCount) {
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putLong(sequence);
+        buffer.put(DISPENSE_RECORD);
+        buffer.putLong(createAtMillis);
+        buffer.putInt(totalAmount);
+        putBytes(buffer, machineId);
+        buffer.putLong(generation);
+        putBytes(buffer, bsb);
+        putBytes(buffer, accountNo);
+        putBytes(buffer, accountName);
+        buffer.put((byte) detailCount);
+
+        return start;
+    }
+
+    private void finishRecord(Stripe stripe, ByteBuffer buffer, int start, int bodySize) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(start + 4);
+        body.limit(start + 4 + bodySize);
+
+        stripe.crc.reset();
+        stripe.crc.update(body);
+        buffer.putInt((int) stripe.crc.getValue());
+
+        // The length goes in last, so a torn record is never read back as a valid one
+        buffer.putInt(start, bodySize + 4);
+    }
+
+    /**
+     * Delete the closed segments whose transaction logs are all in the database. The cash supplies are flushed first,
+     * so the stock in the database already includes every dispense of the segment.
+     */
+    private void deleteCompletedSegments() {
+        boolean closed = false;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                closed |= !stripe.closedSegments.isEmpty();
+            }
+        }
+
+        if (!closed) {
+            return;
+        }
+
+        try {
+            cashSupplyWriteBehindFlusher.flush();
+
+            for (Stripe stripe : stripes) {
+                deleteCompletedSegments(stripe);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to clean up the dispense journal: " + e.getMessage());
+        }
+    }
+
+    private void deleteCompletedSegments(Stripe stripe) throws IOException {
+        List<Segment> segments;
+        synchronized (stripe) {
+            segments = new ArrayList<>(stripe.closedSegments);
+        }
+
+        for (Segment segment : segments) {
+            List<JournalRecord> records = new ArrayList<>();
+            readRecords(segment.path, records, new HashMap<>());
+
+            // The sequences of the other stripes are in the same range, so look for the sequences of the records
+            Set<Long> loggedSequences = new HashSet<>(transactionLogRepository.findJournalSequencesBetween(segment.baseSequence, segment.lastSequence));
+            if (!records.stream().allMatch(record -> loggedSequences.contains(record.getSequence()))) {
+                break;
+            }
+
+            Files.deleteIfExists(segment.path);
+            synchronized (stripe) {
+                stripe.closedSegments.remove(segment);
+            }
+        }
+    }
+
+    private Path resolveDirectory() {
+        Path journalPath = Paths.get(journalDir);
+        if (journalPath.isAbsolute()) {
+            return journalPath;
+        }
+
+        if (journalBaseDir == null || journalBaseDir.isEmpty() || !Paths.get(journalBaseDir).isAbsolute()) {
+            throw new IllegalStateException("The journal directory " + journalDir
+                    + " must be absolute or resolved against an absolute cashman.journal.base-dir.");
+        }
+
+        return Paths.get(journalBaseDir).resolve(journalPath);
+    }
+
+    private void checkMarker() throws IOException {
+        Path markerPath = directory.resolve(MARKER_FILE);
+        if (Files.exists(markerPath)) {
+            return;
+        }
+
+        boolean stocked = cashSupplyRepository.findAllByOrderByCashAmountDesc().stream()
+                .anyMatch(cashSupply -> cashSupply.getCashQuantity() > 0);
+        if (stocked) {
+            logger.warn("The journal directory " + directory + " is new but the cash machines already hold stock, "
+                    + "the dispenses journaled by the last run in another directory are not replayed.");
+        }
+
+        Files.createFile(markerPath);
+    }
+
+    /**
+     * Replay the segments left by the last run into the database, then delete them.
+     *
+     * @return the last journal sequence used so far.
+     */
+    private long recover(Path directory) throws IOException {
+        List<Path> segmentPaths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segmentPaths::add);
+        }
+        segmentPaths.sort((path1, path2) -> Long.compare(parseBaseSequence(path1), parseBaseSequence(path2)));
+
+        List<JournalRecord> records = new ArrayList<>();
+        Map<String, JournalRecord> lastInitializeRecords = new HashMap<>();
+        for (Path segmentPath : segmentPaths) {
+            readRecords(segmentPath, records, lastInitializeRecords);
+        }
+        // The segments of the stripes interleave their sequences
+        records.sort((record1, record2) -> Long.compare(record1.getSequence(), record2.getSequence()));
+
+        Long maxLoggedSequence = transactionLogRepository.findMaxJournalSequence();
+        long lastSequence = maxLoggedSequence == null ? 0 : maxLoggedSequence;
+
+        if (!records.isEmpty()) {
+            logger.warn("Replay " + records.size() + " dispense records from the journal.");
+
+            lastSequence = Math.max(lastSequence, records.get(records.size() - 1).getSequence());
+            replayTransactionLogs(records);
+            replayCashSupplies(records, lastInitializeRecords);
+        }
+
+        for (Path segmentPath : segmentPaths) {
+            lastSequence = Math.max(lastSequence, parseBaseSequence(segmentPath));
+            Files.delete(segmentPath);
+        }
+
+        cashInventoryRegistry.loadAll();
+
+        return lastSequence;
+    }
+
+    private void replayTransactionLogs(List<JournalRecord> records) {
+        long fromSequence = records.get(0).getSequence();
+        long toSequence = records.get(records.size() - 1).getSequence();
+        Set<Long> loggedSequences = new HashSet<>(transactionLogRepository.findJournalSequencesBetween(fromSequence, toSequence));
+
+        // The records only carry the cash values, use the first cash type of a cash value, the same as the lookups by cash value
+        Map<Integer, String> cashDescs = new HashMap<>();
+        cashTypeRepository.findAll(new Sort("cashTypeId")).forEach(cashType -> cashDescs.putIfAbsent(cashType.getCashValue(), cashType.getCashDesc()));
+
+        List<TransactionLogEntry> entries = new ArrayList<>();
+        for (JournalRecord record : records) {
+            if (loggedSequences.contains(record.getSequence())) {
+                continue;
+            }
+
+            BankAccountDetail bankAccountDetail = new BankAccountDetail(record.getBsb(), record.getAccountNo(), record.getAccountName());
+            LocalDateTime createAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getCreateAtMillis()), ZoneId.systemDefault());
+
+            TransactionLog transactionLog = new TransactionLog(bankAccountDetail, record.getTotalAmount(), createAt);
+            transactionLog.setMachineId(record.getMachineId());
+            transactionLog.setJournalSequence(record.getSequence());
+
+            List<TransactionLogDetail> transactionLogDetails = new ArrayList<>();
+            for (int i = 0; i < record.getCashValues().length; i++) {
+                TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
+                transactionLogDetail.setCashDesc(cashDescs.get(record.getCashValues()[i]));
+                transactionLogDetail.setCashValue(record.getCashValues()[i]);
+                transactionLogDetail.setQuantity(record.getQuantities()[i]);
+                transactionLogDetail.setTransactionLog(transactionLog);
+                transactionLogDetails.add(transactionLogDetail);
+            }
+
+            entries.add(new TransactionLogEntry(transactionLog, transactionLogDetails));
+            if (entries.size() == RECOVERY_BATCH_SIZE) {
+                transactionLogBatchWriter.write(entries);
+                entries.clear();
+            }
+        }
+
+        if (!entries.isEmpty()) {
+            transactionLogBatchWriter.write(entries);
+        }
+    }
+
+    private void replayCashSupplies(List<JournalRecord> records, Map<String, JournalRecord> lastInitializeRecords) {
+        // The lowest cash quantity of every cash value of every machine
+        Map<String, Map<Integer, Integer>> lowestCashQuantities = new HashMap<>();
+
+        for (JournalRecord record : records) {
+            JournalRecord lastInitializeRecord = lastInitializeRecords.get(record.getMachineId());
+            if (lastInitializeRecord != null && (record.getSequence() < lastInitializeRecord.getSequence()
+                    || record.getGeneration() != lastInitializeRecord.getGeneration())) {
+                continue;
+            }
+
+            Map<Integer, Integer> machineLowestCashQuantities = lowestCashQuantities.computeIfAbsent(record.getMachineId(), machineId -> new HashMap<>());
+            for (int i = 0; i < record.getCashValues().length; i++) {
+                if (record.getCashQuantitiesAfter()[i] >= 0) {
+                    machineLowestCashQuantities.merge(record.getCashValues()[i], record.getCashQuantitiesAfter()[i], Math::min);
+                }
+            }
+        }
+
+        if (lowestCashQuantities.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.execute(status -> {
+            List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+
+            cashSupplyList.forEach(cashSupply -> {
+                CashType cashType = cashSupply.getCashType();
+                Integer lowestCashQuantity = lowestCashQuantities.getOrDefault(cashSupply.getMachineId(), Collections.emptyMap()).get(cashType.getCashValue());
+
+                if (lowestCashQuantity != null && lowestCashQuantity < cashSupply.getCashQuantity()) {
+                    cashSupply.setCashQuantity(lowestCashQuantity);
+                }
+            });
+
+            return cashSupplyRepository.save(cashSupplyList);
+        });
+    }
+
+    /**
+     * Read the valid records of a segment, stopping at the first empty or torn record.
+     *
+     * @param segmentPath           The segment file.
+     * @param records               Used to store the dispense records.
+     * @param lastInitializeRecords Used to store the last initialization record of every machine.
+     */
+    private void readRecords(Path segmentPath, List<JournalRecord> records, Map<String, JournalRecord> lastInitializeRecords) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                logger.error("Skip the invalid journal segment " + segmentPath);
+                return;
+            }
+            buffer.getLong();
+
+            CRC32 recordCrc = new CRC32();
+            while (buffer.remaining() >= 4) {
+                int recordLength = buffer.getInt(buffer.position());
+                if (recordLength <= 4 || recordLength > buffer.remaining() - 4) {
+                    break;
+                }
+
+                ByteBuffer body = buffer.duplicate();
+                body.position(buffer.position() + 4);
+                body.limit(buffer.position() + recordLength);
+                recordCrc.reset();
+                recordCrc.update(body);
+
+                if ((int) recordCrc.getValue() != buffer.getInt(buffer.position() + recordLength)) {
+                    logger.error("Stop at the torn journal record in " + segmentPath);
+                    break;
+                }
+
+                int recordEnd = buffer.position() + 4 + recordLength;
+                buffer.position(buffer.position() + 4);
+                long sequence = buffer.getLong();
+                byte recordType = buffer.get();
+                long createAtMillis = buffer.getLong();
+                int totalAmount = buffer.getInt();
+                String machineId = getString(buffer);
+                long generation = buffer.getLong();
+
+                JournalRecord record = new JournalRecord();
+                record.setSequence(sequence);
+                record.setMachineId(machineId);
+                record.setGeneration(generation);
+
+                if (recordType == INITIALIZE_RECORD) {
+                    lastInitializeRecords.merge(machineId, record,
+                            (lastRecord, newRecord) -> newRecord.getSequence() > lastRecord.getSequence() ? newRecord : lastRecord);
+                    buffer.position(recordEnd);
+                    continue;
+                }
+
+                record.setCreateAtMillis(createAtMillis);
+                record.setTotalAmount(totalAmount);
+                record.setBsb(getString(buffer));
+                record.setAccountNo(getString(buffer));
+                record.setAccountName(getString(buffer));
+
+                int detailCount = buffer.get();
+                record.setCashValues(new int[detailCount]);
+                record.setQuantities(new int[detailCount]);
+                record.setCashQuantitiesAfter(new int[detailCount]);
+                for (int i = 0; i < detailCount; i++) {
+                    record.getCashValues()[i] = buffer.getInt();
+                    record.getQuantities()[i] = buffer.getInt();
+                    record.getCashQuantitiesAfter()[i] = buffer.getInt();
+                }
+                buffer.position(recordEnd);
+
+                records.add(record);
+            }
+        }
+    }
+
+    private int findCashQuantity(CashInventory cashInventory, int cashValue) {
+        int[] cashValues = cashInventory.getCashValues();
+
+        for (int i = 0; i < cashValues.length; i++) {
+            if (cashValues[i] == cashValue) {
+                return cashInventory.getCashQuantity(i);
+            }
+        }
+
+        return -1;
+    }
+
+    private Path segmentPath(long baseSequence) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%020d", baseSequence) + SEGMENT_SUFFIX);
+    }
+
+    private static long parseBaseSequence(Path segmentPath) {
+        String fileName = segmentPath.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A pre-allocated journal file mapped into memory.
+     */
+    private static final class Segment {
+
+        private final Path path;
+
+        private final long baseSequence;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        private long lastSequence;
+
+        private Segment(Path path, long baseSequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.baseSequence = baseSequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment create(Path path, long baseSequence, long size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            buffer.putInt(MAGIC);
+            buffer.putLong(baseSequence);
+            buffer.force();
+            channel.force(true);
+
+            return new Segment(path, baseSequence, channel, buffer);
+        }
+
+        private void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * The records of the machines hashed to the stripe: its own lock, segments and sequences.
+     */
+    private static final class Stripe {
+
+        private final CRC32 crc = new CRC32();
+
+        // Guarded by the stripe
+        private final Deque<Segment> closedSegments = new ArrayDeque<>();
+
+        // Guarded by syncMonitor
+        private final PriorityQueue<DurableWaiter> durableWaiters = new PriorityQueue<>();
+
+        private Segment activeSegment;
+
+        private long nextSequence;
+
+        private volatile long appendedSequence;
+
+        // Written by the sync thread only, guarded by syncMonitor
+        private long syncedSequence;
+    }
+
+    /**
+     * A caller waiting for a record to be forced to disk, ordered by the journal sequence.
+     */
+    private static final class DurableWaiter implements Comparable<DurableWaiter> {
+
+        private final long sequence;
+
+        private final CompletableFuture<Void> future;
+
+        private DurableWaiter(long sequence, CompletableFuture<Void> future) {
+            this.sequence = sequence;
+            this.future = future;
+        }
+
+        @Override
+        public int compareTo(DurableWaiter other) {
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.suncorp.cashman.journal;
+
+import lombok.Data;
+
+/**
+ * A dispense record read back from the journal.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class JournalRecord {
+
+    private long sequence;
+
+    private long createAtMillis;
+
+    private int totalAmount;
+
+    private String machineId;
+
+    /** The generation of the inventory the cash quantities after were read from, -1 if unknown. */
+    private long generation;
+
+    private String bsb;
+
+    private String accountNo;
+
+    private String accountName;
+
+    private int[] cashValues;
+
+    private int[] quantities;
+
+    /** The cash quantities in stock right after the dispense, -1 if unknown. */
+    private int[] cashQuantitiesAfter;
+
+}
@@ -0,0 +1,195 @@
+package com.suncorp.cashman.ledger;
+
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.repository.TransactionLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The cash amount every bank account has withdrawn today.
+ *
+ * A withdraw reserves its amount before the cash is dispensed and releases it again if the dispense fails, so the
+ * limit check and the dispense can not be interleaved by another request of the same account. The running totals
+ * are kept in memory only; they start again from zero at midnight and are rebuilt from the transaction logs of today
+ * on startup. The dispense journal is recovered first, so the transaction logs are complete by then.
+ *
+ * The ledger is off by default (cashman.account.daily-ledger.enabled): every withdraw still comes from the one dummy
+ * account of BankAccountService, so the running total would be one daily limitation shared by all the cash machines
+ * and card holders. While it is off, only each withdraw on its own is checked against the limitation.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+@DependsOn("dispenseJournal")
+public class DailyWithdrawLedger {
+
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+
+    private final Clock clock;
+
+    private final boolean enabled;
+
+    private volatile Day today;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public DailyWithdrawLedger(TransactionLogRepository transactionLogRepository,
+                               @Value("${cashman.account.daily-ledger.enabled:false}") boolean enabled) {
+        this(transactionLogRepository, Clock.systemDefaultZone(), enabled);
+    }
+
+    public DailyWithdrawLedger(TransactionLogRepository transactionLogRepository, Clock clock, boolean enabled) {
+        this.transactionLogRepository = transactionLogRepository;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.today = new Day(LocalDate.now(clock));
+    }
+
+    /**
+     * Rebuild the withdrawn amounts of today from the transaction logs.
+     */
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            logger.info("The daily withdraw ledger is off, each withdraw is checked on its own.");
+            return;
+        }
+
+        Day day = new Day(LocalDate.now(clock));
+
+        List<Object[]> withdrawnAmounts = transactionLogRepository.sumTotalAmountGroupByAccountSince(day.date.atStartOfDay());
+        for (Object[] withdrawnAmount : withdrawnAmounts) {
+            String accountKey = toAccountKey((String) withdrawnAmount[0], (String) withdrawnAmount[1]);
+            day.withdrawnAmounts.put(accountKey, new AtomicLong(((Number) withdrawnAmount[2]).longValue()));
+        }
+
+        today = day;
+        logger.info("Rebuilt the withdrawn amounts of " + withdrawnAmounts.size() + " bank accounts for " + day.date);
+    }
+
+    /**
+     * Reserve the cash amount against the daily limitation of the bank account.
+     *
+     * @param bankAccountDetail The bank account.
+     * @param cashAmount        The required dispense cash amount.
+     * @param limitation        The daily withdraw limitation of the bank account.
+     * @return the day the amount is counted in, used to release it.
+     * @throws CashSupplyException if the amount is over what the account can still withdraw today.
+     */
+    public LocalDate reserve(BankAccountDetail bankAccountDetail, int cashAmount, int limitation) throws CashSupplyException {
+        Day day = currentDay();
+
+        if (!enabled) {
+            if (cashAmount > limitation) {
+                throw new CashSupplyException(cashAmount, limitation, true);
+            }
+
+            return day.date;
+        }
+
+        AtomicLong withdrawnAmount = day.withdrawnAmounts.computeIfAbsent(toAccountKey(bankAccountDetail), accountKey -> new AtomicLong());
+
+        while (true) {
+            long amount = withdrawnAmount.get();
+
+            if (amount + cashAmount > limitation) {
+                throw new CashSupplyException(cashAmount, (int) Math.max(limitation - amount, 0), true);
+            }
+
+            if (withdrawnAmount.compareAndSet(amount, amount + cashAmount)) {
+                return day.date;
+            }
+        }
+    }
+
+    /**
+     * Release the cash amount of a withdraw which was not dispensed. Nothing is released once the day has passed.
+     *
+     * @param bankAccountDetail The bank account.
+     * @param cashAmount        The reserved cash amount.
+     * @param reservedDay       The day returned by the reservation.
+     */
+    public void release(BankAccountDetail bankAccountDetail, int cashAmount, LocalDate reservedDay) {
+        Day day = currentDay();
+        if (!enabled || !day.date.equals(reservedDay)) {
+            return;
+        }
+
+        AtomicLong withdrawnAmount = day.withdrawnAmounts.get(toAccountKey(bankAccountDetail));
+        if (withdrawnAmount != null) {
+            withdrawnAmount.addAndGet(-cashAmount);
+        }
+    }
+
+    /**
+     * @param bankAccountDetail The bank account.
+     * @return the cash amount the bank account has withdrawn today.
+     */
+    public long getWithdrawnAmount(BankAccountDetail bankAccountDetail) {
+        AtomicLong withdrawnAmount = currentDay().withdrawnAmounts.get(toAccountKey(bankAccountDetail));
+
+        return withdrawnAmount != null ? withdrawnAmount.get() : 0;
+    }
+
+    /**
+     * Forget all the withdrawn amounts of today.
+     */
+    public void clear() {
+        today = new Day(LocalDate.now(clock));
+    }
+
+    private Day currentDay() {
+        Day day = today;
+        LocalDate date = LocalDate.now(clock);
+
+        if (!day.date.equals(date)) {
+            synchronized (this) {
+                day = today;
+                if (day.date.isBefore(date)) {
+                    day = new Day(date);
+                    today = day;
+                }
+            }
+        }
+
+        return day;
+    }
+
+    private static String toAccountKey(BankAccountDetail bankAccountDetail) {
+        return toAccountKey(bankAccountDetail.getBsb(), bankAccountDetail.getAccountNo());
+    }
+
+    private static String toAccountKey(String bsb, String accountNo) {
+        return bsb + "-" + accountNo;
+    }
+
+    /**
+     * The withdrawn amounts of one day, by bank account.
+     */
+    private static final class Day {
+
+        private final LocalDate date;
+
+        private final Map<String, AtomicLong> withdrawnAmounts = new ConcurrentHashMap<>();
+
+        private Day(LocalDate date) {
+            this.date = date;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.suncorp.cashman.logging;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Closes the application context, then stops log4j.
+ *
+ * log4j2.xml disables the shutdown hook of log4j, so it is not stopped while the context is still closing and
+ * logging, and the events file does not flush on every event. This hook takes the place of both shutdown hooks: the
+ * context is closed first, the embedded server included, and only then are the async loggers drained and the
+ * appenders flushed and closed, so no event is lost on stop.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class LoggingShutdownHook extends Thread {
+
+    private final ConfigurableApplicationContext context;
+
+    public LoggingShutdownHook(ConfigurableApplicationContext context) {
+        super("logging-shutdown");
+        this.context = context;
+    }
+
+    @Override
+    public void run() {
+        try {
+            context.close();
+        } finally {
+            org.apache.logging.log4j.spi.LoggerContext loggerContext = LogManager.getContext(false);
+
+            if (loggerContext instanceof LoggerContext) {
+                Configurator.shutdown((LoggerContext) loggerContext);
+            }
+        }
+    }
+}
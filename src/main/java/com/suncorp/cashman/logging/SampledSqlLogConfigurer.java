@@ -0,0 +1,43 @@
+package com.suncorp.cashman.logging;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the {@link SampledSqlStatementInspector} to Hibernate before the entity manager factory is built. The JPA
+ * properties of application.properties are only strings, so the inspector is put into the property map as an
+ * instance here. A sample rate of 0 logs no statements and leaves Hibernate without an inspector.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class SampledSqlLogConfigurer implements BeanPostProcessor {
+
+    private final double sampleRate;
+
+    @Autowired
+    public SampledSqlLogConfigurer(@Value("${cashman.logging.sql.sample-rate:0.001}") double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof LocalContainerEntityManagerFactoryBean && sampleRate > 0) {
+            ((LocalContainerEntityManagerFactoryBean) bean).getJpaPropertyMap()
+                    .put(AvailableSettings.STATEMENT_INSPECTOR, new SampledSqlStatementInspector(sampleRate));
+        }
+
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+}
@@ -0,0 +1,37 @@
+package com.suncorp.cashman.logging;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs a random sample of the SQL statements Hibernate prepares, instead of printing every statement to stdout on the
+ * calling thread as spring.jpa.show-sql does. The statements are left as they are.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class SampledSqlStatementInspector implements StatementInspector {
+
+    private final double sampleRate;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * @param sampleRate The share of the statements to log, from 0 to 1.
+     */
+    public SampledSqlStatementInspector(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate && logger.isInfoEnabled()) {
+            logger.info("event=sql sample_rate={} sql={}", sampleRate, sql);
+        }
+
+        return sql;
+    }
+}
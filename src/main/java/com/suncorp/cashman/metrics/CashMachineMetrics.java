@@ -0,0 +1,163 @@
+package com.suncorp.cashman.metrics;
+
+import com.suncorp.cashman.audit.AsyncTransactionLogWriter;
+import com.suncorp.cashman.idempotency.IdempotencyKeyStore;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.notification.LowStockNotifier;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.service.AsyncCashDispenser;
+import com.suncorp.cashman.service.DispensePlanCache;
+import com.suncorp.cashman.service.DispenseReachability;
+import com.suncorp.cashman.service.TransactionalCashDispenser;
+import com.suncorp.cashman.stream.InventoryEventStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registers the gauges of the cash machines and the counters which the components already keep themselves.
+ * They are all read when the metrics are scraped, so they add nothing to the dispense path.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class CashMachineMetrics {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    @Autowired
+    private DispensePlanCache dispensePlanCache;
+
+    @Autowired
+    private DispenseReachability dispenseReachability;
+
+    @Autowired
+    private TransactionalCashDispenser transactionalCashDispenser;
+
+    @Autowired
+    private AsyncTransactionLogWriter asyncTransactionLogWriter;
+
+    @Autowired
+    private LowStockNotifier lowStockNotifier;
+
+    @Autowired
+    private InventoryEventStream inventoryEventStream;
+
+    @Autowired
+    private AsyncCashDispenser asyncCashDispenser;
+
+    @Autowired
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    @Value("${cashman.inventory.mode:MEMORY}")
+    private InventoryMode inventoryMode = InventoryMode.MEMORY;
+
+    public CashMachineMetrics(MetricsRegistry metricsRegistry, CashInventoryRegistry cashInventoryRegistry,
+                              CashSupplyRepository cashSupplyRepository, DispensePlanCache dispensePlanCache,
+                              DispenseReachability dispenseReachability, TransactionalCashDispenser transactionalCashDispenser,
+                              AsyncTransactionLogWriter asyncTransactionLogWriter, LowStockNotifier lowStockNotifier,
+                              InventoryEventStream inventoryEventStream, AsyncCashDispenser asyncCashDispenser,
+                              IdempotencyKeyStore idempotencyKeyStore) {
+        this.metricsRegistry = metricsRegistry;
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.cashSupplyRepository = cashSupplyRepository;
+        this.dispensePlanCache = dispensePlanCache;
+        this.dispenseReachability = dispenseReachability;
+        this.transactionalCashDispenser = transactionalCashDispenser;
+        this.asyncTransactionLogWriter = asyncTransactionLogWriter;
+        this.lowStockNotifier = lowStockNotifier;
+        this.inventoryEventStream = inventoryEventStream;
+        this.asyncCashDispenser = asyncCashDispenser;
+        this.idempotencyKeyStore = idempotencyKeyStore;
+    }
+
+    @PostConstruct
+    public void register() {
+        metricsRegistry.gauge("cashman_cash_stock", "Quantity in stock of every cash value of every machine.", this::getCashStock);
+
+        metricsRegistry.functionCounter("cashman_plan_cache_hits_total", "Dispense plans found in the cache.",
+                () -> Collections.singletonMap("", dispensePlanCache.getHitCount()));
+        metricsRegistry.functionCounter("cashman_plan_cache_misses_total", "Dispense plans not found in the cache.",
+                () -> Collections.singletonMap("", dispensePlanCache.getMissCount()));
+        metricsRegistry.functionCounter("cashman_plan_cache_evictions_total", "Dispense plans evicted from the cache.",
+                () -> Collections.singletonMap("", dispensePlanCache.getEvictionCount()));
+        metricsRegistry.gauge("cashman_plan_cache_size", "Dispense plans in the cache.",
+                () -> Collections.singletonMap("", dispensePlanCache.getSize()));
+
+        metricsRegistry.functionCounter("cashman_reachability_rejections_total", "Dispenses rejected because the stock cannot make up the amount.",
+                () -> Collections.singletonMap("", dispenseReachability.getRejectedCount()));
+        metricsRegistry.functionCounter("cashman_reachability_builds_total", "Bitsets of the reachable amounts built from the stock.",
+                () -> Collections.singletonMap("", dispenseReachability.getBuildCount()));
+
+        metricsRegistry.functionCounter("cashman_dispense_conflicts_total", "Dispense transactions which lost an optimistic lock.",
+                () -> Collections.singletonMap("", transactionalCashDispenser.getConflictCount()));
+        metricsRegistry.functionCounter("cashman_dispense_retries_total", "Dispense transactions retried after a conflict.",
+                () -> Collections.singletonMap("", transactionalCashDispenser.getRetryCount()));
+
+        metricsRegistry.gauge("cashman_transaction_log_queue_size", "Transaction logs waiting to be written.",
+                () -> Collections.singletonMap("", asyncTransactionLogWriter.getQueueSize()));
+
+        metricsRegistry.functionCounter("cashman_low_stock_notifications_total", "Low stock notifications sent to the sinks.",
+                () -> Collections.singletonMap("", lowStockNotifier.getNotifiedCount()));
+        metricsRegistry.functionCounter("cashman_low_stock_suppressed_total", "Low stock notifications dropped as duplicates, rate limited or on a full queue.",
+                () -> Collections.singletonMap("", lowStockNotifier.getSuppressedCount()));
+
+        metricsRegistry.gauge("cashman_stock_event_subscribers", "Subscribers of the cash stock events.",
+                () -> Collections.singletonMap("", inventoryEventStream.getSubscriberCount()));
+
+        metricsRegistry.gauge("cashman_async_dispense_queue_size", "Async dispense tasks waiting for a thread, by pool.", () -> {
+            Map<String, Integer> queueSizes = new HashMap<>();
+            queueSizes.put(MetricsRegistry.toLabels("pool", "dispense"), asyncCashDispenser.getDispenseQueueSize());
+            queueSizes.put(MetricsRegistry.toLabels("pool", "persistence"), asyncCashDispenser.getPersistenceQueueSize());
+            return queueSizes;
+        });
+        metricsRegistry.functionCounter("cashman_async_dispense_rejected_total", "Async dispenses rejected because the pools were full.",
+                () -> Collections.singletonMap("", asyncCashDispenser.getRejectedCount()));
+
+        metricsRegistry.functionCounter("cashman_idempotency_replays_total", "Dispense requests answered with the response of an earlier request with the same key.",
+                () -> Collections.singletonMap("", idempotencyKeyStore.getReplayCount()));
+        metricsRegistry.functionCounter("cashman_idempotency_table_lookups_total", "Idempotency keys looked up in the key table.",
+                () -> Collections.singletonMap("", idempotencyKeyStore.getTableLookupCount()));
+        metricsRegistry.functionCounter("cashman_idempotency_evictions_total", "Idempotency keys evicted from the cache before their time to live.",
+                () -> Collections.singletonMap("", idempotencyKeyStore.getEvictionCount()));
+        metricsRegistry.gauge("cashman_idempotency_cache_size", "Idempotency keys in the cache.",
+                () -> Collections.singletonMap("", idempotencyKeyStore.getSize()));
+    }
+
+    private Map<String, Integer> getCashStock() {
+        Map<String, Integer> cashStock = new HashMap<>();
+
+        if (inventoryMode == InventoryMode.MEMORY) {
+            for (CashInventory cashInventory : cashInventoryRegistry.getCashInventories()) {
+                for (int i = 0; i < cashInventory.size(); i++) {
+                    String labels = MetricsRegistry.toLabels("machine", cashInventory.getMachineId(),
+                            "cash_value", String.valueOf(cashInventory.getCashType(i).getCashValue()));
+                    cashStock.put(labels, cashInventory.getCashQuantity(i));
+                }
+            }
+        } else {
+            cashSupplyRepository.findAllByOrderByCashAmountDesc().forEach(cashSupply -> {
+                String labels = MetricsRegistry.toLabels("machine", cashSupply.getMachineId(),
+                        "cash_value", String.valueOf(cashSupply.getCashType().getCashValue()));
+                cashStock.put(labels, cashSupply.getCashQuantity());
+            });
+        }
+
+        return cashStock;
+    }
+}
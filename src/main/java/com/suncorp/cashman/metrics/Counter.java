@@ -0,0 +1,22 @@
+package com.suncorp.cashman.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter. Counting is lock free and does not allocate.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,179 @@
+package com.suncorp.cashman.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Holds the counters, timers and gauges of the application and writes them in the Prometheus text format.
+ *
+ * The counters and timers are created once, usually when a component starts, and kept in a field, so the hot path
+ * never looks anything up here. The gauges are only read when the metrics are scraped.
+ * The labels of a metric are given as key value pairs, e.g. timer("name", "help", "machine", "atm-1").
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class MetricsRegistry {
+
+    private static final String COUNTER = "counter";
+
+    private static final String GAUGE = "gauge";
+
+    private static final String HISTOGRAM = "histogram";
+
+    private final Map<String, MetricFamily> metricFamilies = new ConcurrentHashMap<>();
+
+    /**
+     * @return the counter of the name and labels, created if it does not exist yet.
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) getMetricFamily(name, help, COUNTER).metrics.computeIfAbsent(toLabels(labels), key -> new Counter());
+    }
+
+    /**
+     * @return the timer of the name and labels, created if it does not exist yet.
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) getMetricFamily(name, help, HISTOGRAM).metrics.computeIfAbsent(toLabels(labels), key -> new Timer());
+    }
+
+    /**
+     * Register a gauge whose samples are read when the metrics are scraped.
+     *
+     * @param samples Supplies the value of every label set, the keys are built by {@link #toLabels(String...)}.
+     */
+    public void gauge(String name, String help, Supplier<Map<String, ? extends Number>> samples) {
+        getMetricFamily(name, help, GAUGE).samples.add(samples);
+    }
+
+    /**
+     * Register a counter which is kept somewhere else and only read when the metrics are scraped.
+     *
+     * @param samples Supplies the value of every label set, the keys are built by {@link #toLabels(String...)}.
+     */
+    public void functionCounter(String name, String help, Supplier<Map<String, ? extends Number>> samples) {
+        getMetricFamily(name, help, COUNTER).samples.add(samples);
+    }
+
+    /**
+     * @return all the metrics in the Prometheus text format, ordered by name.
+     */
+    public String scrape() {
+        StringBuilder builder = new StringBuilder(4096);
+
+        for (MetricFamily metricFamily : new TreeMap<>(metricFamilies).values()) {
+            builder.append("# HELP ").append(metricFamily.name).append(' ').append(metricFamily.help).append('\n');
+            builder.append("# TYPE ").append(metricFamily.name).append(' ').append(metricFamily.type).append('\n');
+
+            new TreeMap<>(metricFamily.metrics).forEach((labels, metric) -> {
+                if (metric instanceof Timer) {
+                    writeTimer(builder, metricFamily.name, labels, (Timer) metric);
+                } else {
+                    writeSample(builder, metricFamily.name, labels, ((Counter) metric).getCount());
+                }
+            });
+
+            for (Supplier<Map<String, ? extends Number>> samples : metricFamily.samples) {
+                new TreeMap<>(samples.get()).forEach((labels, value) -> writeSample(builder, metricFamily.name, labels, value));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param labels The label key value pairs.
+     * @return the labels in the Prometheus text format, e.g. machine="atm-1",cash_value="100"
+     */
+    public static String toLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("The labels must be key value pairs.");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+
+            builder.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' || ch == '"') {
+                    builder.append('\\').append(ch);
+                } else if (ch == '\n') {
+                    builder.append("\\n");
+                } else {
+                    builder.append(ch);
+                }
+            }
+            builder.append('"');
+        }
+
+        return builder.toString();
+    }
+
+    private MetricFamily getMetricFamily(String name, String help, String type) {
+        MetricFamily metricFamily = metricFamilies.computeIfAbsent(name, key -> new MetricFamily(name, help, type));
+
+        if (!metricFamily.type.equals(type)) {
+            throw new IllegalArgumentException("The metric " + name + " is already registered as a " + metricFamily.type + ".");
+        }
+
+        return metricFamily;
+    }
+
+    private static void writeTimer(StringBuilder builder, String name, String labels, Timer timer) {
+        String separator = labels.isEmpty() ? "" : ",";
+
+        long cumulativeCount = 0;
+        for (int bucket = 0; bucket <= Timer.BUCKET_BOUNDS.length; bucket++) {
+            cumulativeCount += timer.getBucketCount(bucket);
+
+            String upperBound = bucket < Timer.BUCKET_BOUNDS.length ? Double.toString(Timer.BUCKET_BOUNDS[bucket] / 1e9) : "+Inf";
+            builder.append(name).append("_bucket{").append(labels).append(separator)
+                    .append("le=\"").append(upperBound).append("\"} ").append(cumulativeCount).append('\n');
+        }
+
+        writeSample(builder, name + "_sum", labels, timer.getTotalNanos() / 1e9);
+        writeSample(builder, name + "_count", labels, timer.getCount());
+    }
+
+    private static void writeSample(StringBuilder builder, String name, String labels, Number value) {
+        builder.append(name);
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+        builder.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * The metrics of one name.
+     */
+    private static final class MetricFamily {
+
+        private final String name;
+
+        private final String help;
+
+        private final String type;
+
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+        private final List<Supplier<Map<String, ? extends Number>>> samples = new CopyOnWriteArrayList<>();
+
+        private MetricFamily(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
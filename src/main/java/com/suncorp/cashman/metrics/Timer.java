@@ -0,0 +1,72 @@
+package com.suncorp.cashman.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed buckets from 10 microseconds to 10 seconds.
+ *
+ * Recording only finds the bucket and adds to three LongAdders, so it is lock free and does not allocate.
+ * Usage on the hot path:
+ * <pre>
+ *     long startNanos = System.nanoTime();
+ *     try {
+ *         ...
+ *     } finally {
+ *         timer.record(System.nanoTime() - startNanos);
+ *     }
+ * </pre>
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class Timer {
+
+    /** The upper bounds of the buckets in nanoseconds. Anything slower goes to the last (+Inf) bucket. */
+    static final long[] BUCKET_BOUNDS = {
+            10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    private final LongAdder[] bucketCounts = new LongAdder[BUCKET_BOUNDS.length + 1];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    public Timer() {
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos The elapsed time in nanoseconds.
+     */
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && nanos > BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+
+        bucketCounts[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @param bucket The bucket index, BUCKET_BOUNDS.length for the +Inf bucket.
+     * @return the number of the records in the bucket only, not cumulative.
+     */
+    long getBucketCount(int bucket) {
+        return bucketCounts[bucket].sum();
+    }
+}
@@ -0,0 +1,28 @@
+package com.suncorp.cashman.notification;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publish the low stock notifications as application events, so that any bean in the application can receive them
+ * with an {@code @EventListener} method taking a {@link LowStockEvent}.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class ApplicationEventLowStockSink implements LowStockSink {
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    public ApplicationEventLowStockSink(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void notify(LowStockEvent lowStockEvent) {
+        applicationEventPublisher.publishEvent(lowStockEvent);
+    }
+}
@@ -0,0 +1,25 @@
+package com.suncorp.cashman.notification;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write the low stock notifications to the log.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+@ConditionalOnProperty(name = "cashman.stock.notification.log.enabled", havingValue = "true", matchIfMissing = true)
+public class LogLowStockSink implements LowStockSink {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Override
+    public void notify(LowStockEvent lowStockEvent) {
+        logger.warn("Low stock of " + lowStockEvent.getCashDesc() + " in machine " + lowStockEvent.getMachineId() + ": "
+                + lowStockEvent.getCashQuantity() + " left, the threshold is " + lowStockEvent.getThreshold() + ".");
+    }
+}
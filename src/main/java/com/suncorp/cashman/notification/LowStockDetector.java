@@ -0,0 +1,136 @@
+package com.suncorp.cashman.notification;
+
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.denomination.DenominationListener;
+import com.suncorp.cashman.denomination.DenominationSet;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.InventoryListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Detects when the stock of a cash type drops to or below its low stock threshold.
+ *
+ * It listens to the quantity changes of the in-memory inventories, so nothing is scanned after a dispense.
+ * The quantities of an inventory only go down until the machine is loaded again, so every cash type of an inventory
+ * crosses its threshold at most once; a flag per cash type makes sure only the first dispense which crosses it
+ * publishes the event. The notifier never drops a published event, it only delays it, so the flag can be set before
+ * the event is published. A newly loaded inventory starts with cleared flags and is checked straight away.
+ *
+ * The thresholds come from the denomination config. Cash values without a threshold are never reported.
+ * When the config is reloaded with other thresholds, the detection of every machine is swapped for one with the new
+ * thresholds, and the machines are checked against them straight away.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class LowStockDetector implements InventoryListener, DenominationListener {
+
+    private static final int NO_THRESHOLD = -1;
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    @Autowired
+    private LowStockNotifier lowStockNotifier;
+
+    @Autowired
+    private DenominationConfig denominationConfig;
+
+    private volatile Map<Integer, Integer> lowStockThresholds;
+
+    private final Map<String, MachineStock> machineStocks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LowStockDetector(CashInventoryRegistry cashInventoryRegistry, LowStockNotifier lowStockNotifier,
+                            DenominationConfig denominationConfig) {
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.lowStockNotifier = lowStockNotifier;
+        this.denominationConfig = denominationConfig;
+        this.lowStockThresholds = denominationConfig.getDenominationSet().getLowStockThresholds();
+    }
+
+    @PostConstruct
+    public void start() {
+        denominationConfig.addListener(this);
+        cashInventoryRegistry.addListener(this);
+        cashInventoryRegistry.getCashInventories().forEach(this::onCashInventoryLoaded);
+    }
+
+    @Override
+    public void onCashQuantityChanged(CashInventory cashInventory, int index, int cashQuantity) {
+        MachineStock machineStock = machineStocks.get(cashInventory.getMachineId());
+
+        // Ignore the changes of an inventory which has been replaced
+        if (machineStock != null && machineStock.cashInventory == cashInventory) {
+            check(machineStock, index, cashQuantity);
+        }
+    }
+
+    @Override
+    public synchronized void onCashInventoryLoaded(CashInventory cashInventory) {
+        MachineStock machineStock = new MachineStock(cashInventory, lowStockThresholds);
+        machineStocks.put(cashInventory.getMachineId(), machineStock);
+
+        for (int i = 0; i < cashInventory.size(); i++) {
+            check(machineStock, i, cashInventory.getCashQuantity(i));
+        }
+    }
+
+    @Override
+    public synchronized void onDenominationsChanged(DenominationSet denominationSet) {
+        Map<Integer, Integer> newLowStockThresholds = denominationSet.getLowStockThresholds();
+        if (newLowStockThresholds.equals(lowStockThresholds)) {
+            return;
+        }
+
+        lowStockThresholds = newLowStockThresholds;
+
+        // The inventories are loaded under the same lock, so none of them can be loaded with the old thresholds meanwhile
+        for (MachineStock machineStock : machineStocks.values()) {
+            onCashInventoryLoaded(machineStock.cashInventory);
+        }
+    }
+
+    private void check(MachineStock machineStock, int index, int cashQuantity) {
+        int threshold = machineStock.thresholds[index];
+
+        if (threshold == NO_THRESHOLD || cashQuantity > threshold || !machineStock.lowFlags.compareAndSet(index, 0, 1)) {
+            return;
+        }
+
+        CashInventory cashInventory = machineStock.cashInventory;
+        lowStockNotifier.publish(new LowStockEvent(cashInventory.getMachineId(), cashInventory.getCashType(index).getCashValue(),
+                cashInventory.getCashType(index).getCashDesc(), cashQuantity, threshold, LocalDateTime.now()));
+    }
+
+    /**
+     * The thresholds and the low stock flags of the current inventory of a machine, aligned with its cash types.
+     */
+    private static final class MachineStock {
+
+        private final CashInventory cashInventory;
+
+        private final int[] thresholds;
+
+        private final AtomicIntegerArray lowFlags;
+
+        private MachineStock(CashInventory cashInventory, Map<Integer, Integer> lowStockThresholds) {
+            this.cashInventory = cashInventory;
+            this.thresholds = new int[cashInventory.size()];
+            this.lowFlags = new AtomicIntegerArray(cashInventory.size());
+
+            for (int i = 0; i < thresholds.length; i++) {
+                thresholds[i] = lowStockThresholds.getOrDefault(cashInventory.getCashType(i).getCashValue(), NO_THRESHOLD);
+            }
+        }
+    }
+}
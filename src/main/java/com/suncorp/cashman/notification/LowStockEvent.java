@@ -0,0 +1,49 @@
+package com.suncorp.cashman.notification;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * The stock of a cash type of a cash machine has dropped to or below its low stock threshold.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class LowStockEvent {
+
+    private String machineId;
+
+    private Integer cashValue;
+
+    private String cashDesc;
+
+    private Integer cashQuantity;
+
+    private Integer threshold;
+
+    private LocalDateTime detectAt;
+
+    public LowStockEvent() {
+
+    }
+
+    public LowStockEvent(String machineId, Integer cashValue, String cashDesc, Integer cashQuantity, Integer threshold, LocalDateTime detectAt) {
+        this.machineId = machineId;
+        this.cashValue = cashValue;
+        this.cashDesc = cashDesc;
+        this.cashQuantity = cashQuantity;
+        this.threshold = threshold;
+        this.detectAt = detectAt;
+    }
+
+    /**
+     * @return the key of the cash type of the machine, the notifications are de-duplicated and rate limited by it.
+     */
+    @JsonIgnore
+    public String getStockKey() {
+        return machineId + ":" + cashValue;
+    }
+}
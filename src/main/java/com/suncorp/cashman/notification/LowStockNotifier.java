@@ -0,0 +1,213 @@
+package com.suncorp.cashman.notification;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers the low stock notifications to all the sinks on its own thread.
+ *
+ * Publishing never blocks: the event is offered to a bounded queue. If the queue is full, the event is put aside by
+ * cash type of a machine and notified once the notifier thread gets to it, so a low stock is never lost.
+ * The notifications are de-duplicated and rate limited by cash type of a machine:
+ * - while a notification of the cash type is waiting, the new ones are dropped.
+ * - a cash type is notified at most once per minimum interval, so a burst of dispenses does not cause a storm.
+ *   The latest event held back by the interval is notified once the interval has passed.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class LowStockNotifier {
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    @Autowired
+    private List<LowStockSink> lowStockSinks;
+
+    private final BlockingQueue<LowStockEvent> queue;
+
+    private final long minIntervalNanos;
+
+    private final Set<String> pendingStockKeys = ConcurrentHashMap.newKeySet();
+
+    // The events which did not fit on the queue, by stock key
+    private final Map<String, LowStockEvent> overflowEvents = new ConcurrentHashMap<>();
+
+    // Only used by the notifier thread
+    private final Map<String, Long> lastNotifyNanos = new HashMap<>();
+
+    // Only used by the notifier thread: the latest event held back by the minimum interval, by stock key
+    private final Map<String, LowStockEvent> delayedEvents = new HashMap<>();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final LongAdder notifiedCount = new LongAdder();
+
+    private final LongAdder suppressedCount = new LongAdder();
+
+    private volatile boolean running;
+
+    private Thread notifierThread;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public LowStockNotifier(List<LowStockSink> lowStockSinks,
+                            @Value("${cashman.stock.notification.queue-capacity:1000}") int queueCapacity,
+                            @Value("${cashman.stock.notification.min-interval-ms:60000}") long minIntervalMillis) {
+        this.lowStockSinks = lowStockSinks;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+
+        notifierThread = new Thread(this::run, "low-stock-notifier");
+        notifierThread.setDaemon(true);
+        notifierThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        notifierThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Queue the low stock event to be notified. Called on the dispense path, so it never blocks.
+     *
+     * @param lowStockEvent The low stock event.
+     * @return true if the event will be notified, false if it was a duplicate of a waiting one.
+     */
+    public boolean publish(LowStockEvent lowStockEvent) {
+        String stockKey = lowStockEvent.getStockKey();
+
+        if (!pendingStockKeys.add(stockKey)) {
+            suppressedCount.increment();
+            return false;
+        }
+
+        submittedCount.incrementAndGet();
+        if (!queue.offer(lowStockEvent)) {
+            // The stock key stays pending, so there is at most one overflow event per stock key
+            overflowEvents.put(stockKey, lowStockEvent);
+            logger.warn("The low stock notification queue is full, notify " + stockKey + " once the queue has room.");
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait until all the low stock events queued so far have been processed.
+     */
+    public void flush() throws InterruptedException {
+        long target = submittedCount.get();
+
+        while (processedCount.get() < target) {
+            Thread.sleep(1);
+        }
+    }
+
+    public long getNotifiedCount() {
+        return notifiedCount.sum();
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                LowStockEvent lowStockEvent = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (lowStockEvent != null) {
+                    process(lowStockEvent);
+                }
+
+                if (queue.isEmpty()) {
+                    for (String stockKey : overflowEvents.keySet()) {
+                        process(overflowEvents.remove(stockKey));
+                    }
+                }
+
+                notifyDelayedEvents();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void process(LowStockEvent lowStockEvent) {
+        pendingStockKeys.remove(lowStockEvent.getStockKey());
+        notify(lowStockEvent);
+        processedCount.incrementAndGet();
+    }
+
+    private void notify(LowStockEvent lowStockEvent) {
+        String stockKey = lowStockEvent.getStockKey();
+        long now = System.nanoTime();
+
+        Long lastNanos = lastNotifyNanos.get(stockKey);
+        if (lastNanos != null && now - lastNanos < minIntervalNanos) {
+            delayedEvents.put(stockKey, lowStockEvent);
+            suppressedCount.increment();
+            return;
+        }
+
+        deliver(lowStockEvent, now);
+    }
+
+    /**
+     * Notify the events held back by the minimum interval whose interval has passed.
+     */
+    private void notifyDelayedEvents() {
+        long now = System.nanoTime();
+
+        Iterator<LowStockEvent> iterator = delayedEvents.values().iterator();
+        while (iterator.hasNext()) {
+            LowStockEvent lowStockEvent = iterator.next();
+
+            if (now - lastNotifyNanos.get(lowStockEvent.getStockKey()) >= minIntervalNanos) {
+                iterator.remove();
+                deliver(lowStockEvent, now);
+            }
+        }
+    }
+
+    private void deliver(LowStockEvent lowStockEvent, long now) {
+        String stockKey = lowStockEvent.getStockKey();
+        lastNotifyNanos.put(stockKey, now);
+
+        for (LowStockSink lowStockSink : lowStockSinks) {
+            try {
+                lowStockSink.notify(lowStockEvent);
+            } catch (Exception e) {
+                logger.error("Failed to notify the low stock of " + stockKey + " to " + lowStockSink.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+
+        notifiedCount.increment();
+    }
+}
@@ -0,0 +1,15 @@
+package com.suncorp.cashman.notification;
+
+/**
+ * Where the low stock notifications are delivered. Every sink bean in the context receives every notification.
+ *
+ * The sinks are called on the notifier thread, never on the dispense path, so they may block.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public interface LowStockSink {
+
+    void notify(LowStockEvent lowStockEvent) throws Exception;
+
+}
@@ -0,0 +1,37 @@
+package com.suncorp.cashman.notification;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Post the low stock notifications as JSON to a webhook. Only enabled when the webhook url is configured.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+@ConditionalOnProperty(name = "cashman.stock.notification.webhook.url")
+public class WebhookLowStockSink implements LowStockSink {
+
+    private final String webhookUrl;
+
+    private final RestTemplate restTemplate;
+
+    public WebhookLowStockSink(@Value("${cashman.stock.notification.webhook.url}") String webhookUrl,
+                               @Value("${cashman.stock.notification.webhook.timeout-ms:2000}") int timeoutMillis) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+
+        this.webhookUrl = webhookUrl;
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
+
+    @Override
+    public void notify(LowStockEvent lowStockEvent) {
+        restTemplate.postForEntity(webhookUrl, lowStockEvent, Void.class);
+    }
+}
@@ -3,8 +3,14 @@ package com.suncorp.cashman.repository;
 import com.suncorp.cashman.domain.CashSupply;
 import com.suncorp.cashman.domain.CashType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -14,9 +20,32 @@ import java.util.List;
 public interface CashSupplyRepository extends JpaRepository<CashSupply, String> {
     String cash_supply_ordered_query = "Select s from CashSupply s join s.cashType t order by t.cashValue desc";
 
+    String machine_cash_supply_ordered_query = "Select s from CashSupply s join s.cashType t where s.machineId = :machineId order by t.cashValue desc";
+
+    // Only the cash_supply rows are locked, H2 does not lock a join, and the rows are always locked in the same order
+    String machine_cash_supply_for_update_query = "Select s from CashSupply s where s.machineId = :machineId order by s.cashSupplyId";
+
     @Query(cash_supply_ordered_query)
     List<CashSupply> findAllByOrderByCashAmountDesc();
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(cash_supply_ordered_query)
+    List<CashSupply> findAllForUpdateOrderByCashAmountDesc();
+
+    @Query(machine_cash_supply_ordered_query)
+    List<CashSupply> findAllByMachineIdOrderByCashAmountDesc(@Param("machineId") String machineId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(machine_cash_supply_for_update_query)
+    List<CashSupply> findAllForUpdateByMachineId(@Param("machineId") String machineId);
+
+    @Transactional
+    @Modifying
+    @Query("Delete from CashSupply s where s.machineId = :machineId")
+    int deleteByMachineId(@Param("machineId") String machineId);
+
     CashSupply findByCashTypeEquals(CashType cashType);
 
+    List<CashSupply> findByCashSupplyIdIn(Collection<Long> cashSupplyIds);
+
 }
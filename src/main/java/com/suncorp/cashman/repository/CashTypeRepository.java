@@ -11,4 +11,6 @@ public interface CashTypeRepository extends JpaRepository<CashType, String> {
 
     CashType findByCashTypeId(long cashTypeId);
 
+    CashType findFirstByCashValue(Integer cashValue);
+
 }
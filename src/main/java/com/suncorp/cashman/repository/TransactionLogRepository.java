@@ -2,6 +2,11 @@ package com.suncorp.cashman.repository;
 
 import com.suncorp.cashman.domain.TransactionLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Created by ryan.zhu on 13/05/2018.
@@ -11,4 +16,13 @@ public interface TransactionLogRepository extends JpaRepository<TransactionLog,
 
     TransactionLog findByTransactionLogId(long transactionLogId);
 
+    @Query("Select t.journalSequence from TransactionLog t where t.journalSequence between :fromSequence and :toSequence")
+    List<Long> findJournalSequencesBetween(@Param("fromSequence") Long fromSequence, @Param("toSequence") Long toSequence);
+
+    @Query("Select max(t.journalSequence) from TransactionLog t")
+    Long findMaxJournalSequence();
+
+    @Query("Select t.bsb, t.accountNo, sum(t.totalAmount) from TransactionLog t where t.createAt >= :fromTime group by t.bsb, t.accountNo")
+    List<Object[]> sumTotalAmountGroupByAccountSince(@Param("fromTime") LocalDateTime fromTime);
+
 }
@@ -0,0 +1,26 @@
+package com.suncorp.cashman.representation;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The data of a cash stock event: all the cash supplies of the machine for a reset, the changed ones for a delta.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class CashStockEventRep {
+
+    private String machineId;
+
+    private List<CashSupplyRep> cashSupplies;
+
+    public CashStockEventRep() {}
+
+    public CashStockEventRep(String machineId, List<CashSupplyRep> cashSupplies) {
+        this.machineId = machineId;
+        this.cashSupplies = cashSupplies;
+    }
+}
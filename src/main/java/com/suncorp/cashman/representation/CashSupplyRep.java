@@ -1,7 +1,13 @@
 package com.suncorp.cashman.representation;
 
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Create by ryan.zhu on 14/05/2018
  **/
@@ -23,4 +29,37 @@ public class CashSupplyRep {
         this.cashQuantity = cashQuantity;
     }
 
+    /**
+     * Map the dispensed cash to the representations.
+     *
+     * @param dispensedCash The dispensed cash supply of each cash type.
+     * @return the list of the cash supply representations.
+     */
+    public static List<CashSupplyRep> fromDispensedCash(Map<CashType, CashSupply> dispensedCash) {
+        List<CashSupplyRep> cashSupplyRepList = new ArrayList<>(dispensedCash.size());
+
+        dispensedCash.forEach((cashType, cashSupply) -> {
+            cashSupplyRepList.add(new CashSupplyRep(cashType.getCashValue(), cashType.getCashDesc(), cashSupply.getCashQuantity()));
+        });
+
+        return cashSupplyRepList;
+    }
+
+    /**
+     * Map the cash supplies to the representations, in the same order.
+     *
+     * @param cashSupplies The cash supplies.
+     * @return the list of the cash supply representations.
+     */
+    public static List<CashSupplyRep> fromCashSupplies(List<CashSupply> cashSupplies) {
+        List<CashSupplyRep> cashSupplyRepList = new ArrayList<>(cashSupplies.size());
+
+        cashSupplies.forEach(cashSupply -> {
+            CashType cashType = cashSupply.getCashType();
+            cashSupplyRepList.add(new CashSupplyRep(cashType.getCashValue(), cashType.getCashDesc(), cashSupply.getCashQuantity()));
+        });
+
+        return cashSupplyRepList;
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.suncorp.cashman.representation;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class DispenseResultRep {
+
+    private Integer cashAmount;
+
+    private boolean success;
+
+    private List<CashSupplyRep> cashSupplies;
+
+    private String errorMessage;
+
+    public DispenseResultRep() {}
+
+    public DispenseResultRep(Integer cashAmount, boolean success, List<CashSupplyRep> cashSupplies, String errorMessage) {
+        this.cashAmount = cashAmount;
+        this.success = success;
+        this.cashSupplies = cashSupplies;
+        this.errorMessage = errorMessage;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.suncorp.cashman.representation;
+
+import com.suncorp.cashman.audit.TransactionLogPage;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class TransactionLogPageRep {
+
+    private List<TransactionLogRep> transactionLogs;
+
+    /**
+     * Pass it as the cursor to get the next page, null if this is the last page.
+     */
+    private String nextCursor;
+
+    public TransactionLogPageRep() {}
+
+    public static TransactionLogPageRep fromTransactionLogPage(TransactionLogPage transactionLogPage) {
+        TransactionLogPageRep transactionLogPageRep = new TransactionLogPageRep();
+
+        List<TransactionLogRep> transactionLogRepList = new ArrayList<>(transactionLogPage.getEntries().size());
+        transactionLogPage.getEntries().forEach(entry -> transactionLogRepList.add(TransactionLogRep.fromTransactionLogEntry(entry)));
+
+        transactionLogPageRep.setTransactionLogs(transactionLogRepList);
+        transactionLogPageRep.setNextCursor(transactionLogPage.getNextCursor() == null ? null : transactionLogPage.getNextCursor().encode());
+
+        return transactionLogPageRep;
+    }
+}
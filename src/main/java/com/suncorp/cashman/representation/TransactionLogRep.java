@@ -0,0 +1,61 @@
+package com.suncorp.cashman.representation;
+
+import com.suncorp.cashman.audit.TransactionLogEntry;
+import com.suncorp.cashman.domain.TransactionLog;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Data
+public class TransactionLogRep {
+
+    private long transactionLogId;
+
+    private String machineId;
+
+    private String bsb;
+
+    private String accountNo;
+
+    private String accountName;
+
+    private Integer totalAmount;
+
+    private String createAt;
+
+    private List<CashSupplyRep> cashSupplies;
+
+    public TransactionLogRep() {}
+
+    /**
+     * Map the transaction log and its details to the representation.
+     *
+     * @param entry The transaction log with its details.
+     * @return the transaction log representation.
+     */
+    public static TransactionLogRep fromTransactionLogEntry(TransactionLogEntry entry) {
+        TransactionLog transactionLog = entry.getTransactionLog();
+        TransactionLogRep transactionLogRep = new TransactionLogRep();
+
+        transactionLogRep.setTransactionLogId(transactionLog.getTransactionLogId());
+        transactionLogRep.setMachineId(transactionLog.getMachineId());
+        transactionLogRep.setBsb(transactionLog.getBsb());
+        transactionLogRep.setAccountNo(transactionLog.getAccountNo());
+        transactionLogRep.setAccountName(transactionLog.getAccountName());
+        transactionLogRep.setTotalAmount(transactionLog.getTotalAmount());
+        transactionLogRep.setCreateAt(transactionLog.getCreateAt().toString());
+
+        List<CashSupplyRep> cashSupplyRepList = new ArrayList<>(entry.getTransactionLogDetails().size());
+        entry.getTransactionLogDetails().forEach(transactionLogDetail -> {
+            cashSupplyRepList.add(new CashSupplyRep(transactionLogDetail.getCashValue(), transactionLogDetail.getCashDesc(), transactionLogDetail.getQuantity()));
+        });
+        transactionLogRep.setCashSupplies(cashSupplyRepList);
+
+        return transactionLogRep;
+    }
+}
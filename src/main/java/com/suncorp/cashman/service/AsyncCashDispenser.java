@@ -0,0 +1,167 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.DispenseResult;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.exception.DispenseNotRecordedException;
+import com.suncorp.cashman.inventory.InventoryMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispense the cash without holding the request thread, for the async dispense endpoints.
+ *
+ * The dispense runs on a small pool with one thread per core, which only works on the in-memory inventories and
+ * never blocks. Everything which blocks runs on a separate bounded persistence pool: the dispenses of the shared
+ * modes, which are database transactions, the journal append, which takes the journal lock and may open a new segment,
+ * and the queueing of the transaction logs. The response waits for the journal sync without holding a thread; the
+ * journal completes it once the dispense is on disk.
+ *
+ * Both pools have bounded queues. A dispense which does not fit is rejected straight away instead of queueing up
+ * latency, so the caller can shed the load. The journal append of a dispense is never rejected, because the cash has
+ * already been withdrawn: if the persistence pool is full, it runs on the thread which finished the dispense.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class AsyncCashDispenser {
+
+    @Autowired
+    private CashService cashService;
+
+    @Autowired
+    private TransactionLogService transactionLogService;
+
+    private final InventoryMode inventoryMode;
+
+    private final ThreadPoolExecutor dispenseExecutor;
+
+    private final ThreadPoolExecutor persistenceExecutor;
+
+    private final Executor recordExecutor;
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    @Autowired
+    public AsyncCashDispenser(CashService cashService, TransactionLogService transactionLogService,
+                              @Value("${cashman.inventory.mode:MEMORY}") InventoryMode inventoryMode,
+                              @Value("${cashman.dispense.async.threads:0}") int dispenseThreads,
+                              @Value("${cashman.dispense.async.queue-capacity:10000}") int dispenseQueueCapacity,
+                              @Value("${cashman.dispense.async.persistence-threads:16}") int persistenceThreads,
+                              @Value("${cashman.dispense.async.persistence-queue-capacity:10000}") int persistenceQueueCapacity) {
+        this.cashService = cashService;
+        this.transactionLogService = transactionLogService;
+        this.inventoryMode = inventoryMode;
+
+        int threads = dispenseThreads > 0 ? dispenseThreads : Runtime.getRuntime().availableProcessors();
+        this.dispenseExecutor = createExecutor("dispense-worker-", threads, dispenseQueueCapacity);
+        this.persistenceExecutor = createExecutor("dispense-persistence-", persistenceThreads, persistenceQueueCapacity);
+        this.recordExecutor = command -> {
+            try {
+                persistenceExecutor.execute(command);
+            } catch (RejectedExecutionException e) {
+                command.run();
+            }
+        };
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        dispenseExecutor.shutdown();
+        dispenseExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+        persistenceExecutor.shutdown();
+        persistenceExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Dispense the cash and save its transaction log, see {@link CashService#dispenseCash(String, Integer)}.
+     *
+     * @param machineId  The cash machine.
+     * @param cashAmount Required dispense cash amount.
+     * @return the future of the dispensed cash, completed once the dispense is journaled. It fails with the
+     * CashSupplyException of the dispense, with a RejectedExecutionException if the pools are full, or with a
+     * DispenseNotRecordedException if the cash has been withdrawn but could not be journaled.
+     */
+    public CompletableFuture<Map<CashType, CashSupply>> dispenseCash(String machineId, Integer cashAmount) {
+        // The shared modes dispense in a database transaction, so they must not take the threads of the dispense pool
+        Executor executor = inventoryMode == InventoryMode.MEMORY ? dispenseExecutor : persistenceExecutor;
+
+        CompletableFuture<DispenseResult> dispensed;
+        try {
+            dispensed = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return cashService.dispenseCash(machineId, cashAmount);
+                } catch (CashSupplyException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+
+            CompletableFuture<Map<CashType, CashSupply>> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+
+        return dispensed.thenComposeAsync(dispenseResult -> record(machineId, dispenseResult), recordExecutor);
+    }
+
+    /**
+     * Journal the dispensed cash. Any failure from here on is reported as not recorded, because the cash is gone.
+     */
+    private CompletableFuture<Map<CashType, CashSupply>> record(String machineId, DispenseResult dispenseResult) {
+        CompletableFuture<Void> durable;
+        try {
+            durable = transactionLogService.saveTransactionLogAsync(machineId, dispenseResult, persistenceExecutor);
+        } catch (RuntimeException e) {
+            durable = new CompletableFuture<>();
+            durable.completeExceptionally(e);
+        }
+
+        return durable.handle((result, e) -> {
+            if (e != null) {
+                throw new CompletionException(new DispenseNotRecordedException(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+            }
+
+            return dispenseResult.getDispensedCash();
+        });
+    }
+
+    public int getDispenseQueueSize() {
+        return dispenseExecutor.getQueue().size();
+    }
+
+    public int getPersistenceQueueSize() {
+        return persistenceExecutor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private static ThreadPoolExecutor createExecutor(String threadNamePrefix, int threads, int queueCapacity) {
+        AtomicInteger threadNo = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
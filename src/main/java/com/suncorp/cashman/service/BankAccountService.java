@@ -0,0 +1,15 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.domain.BankAccountDetail;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public interface BankAccountService {
+
+    BankAccountDetail getBankAccountDetail();
+
+    int getDailyWithdrawLimitation(BankAccountDetail bankAccountDetail);
+
+}
@@ -0,0 +1,36 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.domain.BankAccountDetail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Service
+public class BankAccountServiceImpl implements BankAccountService {
+
+    @Value("${cashman.account.daily-withdraw-limitation:1000}")
+    private int dailyWithdrawLimitation = 1000;
+
+    /**
+     * It should get the bank account of the card in the cash machine from the bank. Now just use the dummy account.
+     *
+     * @return The bank account of the current withdraw.
+     */
+    public BankAccountDetail getBankAccountDetail() {
+        return new BankAccountDetail("111111", "12345678", "James");
+    }
+
+    /**
+     * It should get the daily withdraw limitation of the bank account from the bank. Now every account has the same
+     * limitation.
+     *
+     * @param bankAccountDetail The bank account.
+     * @return The daily withdraw limitation of the bank account.
+     */
+    public int getDailyWithdrawLimitation(BankAccountDetail bankAccountDetail) {
+        return dailyWithdrawLimitation;
+    }
+}
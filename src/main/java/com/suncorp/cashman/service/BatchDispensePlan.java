@@ -0,0 +1,143 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Works out a batch of withdraws in order against one snapshot of the cash stock.
+ *
+ * Every withdraw which can be supplied takes its cash out of the snapshot, so the next withdraw only sees what is
+ * left, and adds it to the total. The total is then taken from the stock in one go.
+ *
+ * The dispense quantities of all the withdraws are kept in one array, so working out a withdraw does not allocate.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class BatchDispensePlan {
+
+    private final CashType[] cashTypes;
+
+    private final int[] cashValues;
+
+    private final int[] cashQuantities;
+
+    private final int[] totalQuantities;
+
+    // The dispense quantities of the withdraw at index i start at i * the number of cash types
+    private final int[] dispenseQuantities;
+
+    private final boolean[] dispensed;
+
+    private final int[] amountsSupplied;
+
+    /**
+     * @param cashTypes      The cash types ordered by cash value desc.
+     * @param cashValues     The cash values ordered by cash value desc.
+     * @param cashQuantities The snapshot of the cash quantities. The array is changed by the plan.
+     * @param size           The number of withdraws in the batch.
+     */
+    public BatchDispensePlan(CashType[] cashTypes, int[] cashValues, int[] cashQuantities, int size) {
+        this.cashTypes = cashTypes;
+        this.cashValues = cashValues;
+        this.cashQuantities = cashQuantities;
+        this.totalQuantities = new int[cashValues.length];
+        this.dispenseQuantities = new int[size * cashValues.length];
+        this.dispensed = new boolean[size];
+        this.amountsSupplied = new int[size];
+    }
+
+    /**
+     * Work out one withdraw with the dispense strategy from what is left in the snapshot.
+     *
+     * @param index            The index of the withdraw in the batch.
+     * @param cashAmount       The required dispense cash amount.
+     * @param dispenseStrategy The dispense strategy.
+     * @return the cash amount if it can be dispensed, otherwise the closest amount below it which could be supplied.
+     */
+    public int dispense(int index, int cashAmount, DispenseStrategy dispenseStrategy) {
+        int[] quantities = DispenseScratch.get(cashValues.length).withdrawQuantities;
+
+        int amountSupplied = dispenseStrategy.dispense(cashAmount, cashValues, cashQuantities, quantities);
+        amountsSupplied[index] = amountSupplied;
+
+        if (amountSupplied == cashAmount) {
+            take(index, quantities);
+        }
+
+        return amountSupplied;
+    }
+
+    /**
+     * Use the given dispense quantities for one withdraw if what is left in the snapshot still covers them.
+     *
+     * @param index      The index of the withdraw in the batch.
+     * @param cashAmount The required dispense cash amount.
+     * @param quantities The dispense quantities, e.g. a cached plan. They are copied.
+     * @return true if the dispense quantities have been used.
+     */
+    public boolean dispense(int index, int cashAmount, int[] quantities) {
+        for (int i = 0; i < cashValues.length; i++) {
+            if (quantities[i] > cashQuantities[i]) {
+                return false;
+            }
+        }
+
+        amountsSupplied[index] = cashAmount;
+        take(index, quantities);
+
+        return true;
+    }
+
+    public int getAmountSupplied(int index) {
+        return amountsSupplied[index];
+    }
+
+    /**
+     * @return the total quantity of each cash type used by the batch.
+     */
+    public int[] getTotalQuantities() {
+        return totalQuantities;
+    }
+
+    /**
+     * @param index The index of the withdraw in the batch.
+     * @return true if the withdraw has been worked out and can be supplied.
+     */
+    public boolean isDispensed(int index) {
+        return dispensed[index];
+    }
+
+    /**
+     * Used to get the dispensed cash of one withdraw.
+     *
+     * @param index The index of the withdraw in the batch.
+     * @return the map of the cash type and the dispensed cash supply.
+     */
+    public Map<CashType, CashSupply> getDispensedCash(int index) {
+        Map<CashType, CashSupply> dispensedCash = new HashMap<>();
+
+        int offset = index * cashValues.length;
+        for (int i = 0; i < cashTypes.length; i++) {
+            if (dispenseQuantities[offset + i] > 0) {
+                dispensedCash.put(cashTypes[i], new CashSupply(cashTypes[i], dispenseQuantities[offset + i]));
+            }
+        }
+
+        return dispensedCash;
+    }
+
+    private void take(int index, int[] quantities) {
+        int offset = index * cashValues.length;
+        for (int i = 0; i < cashValues.length; i++) {
+            cashQuantities[i] -= quantities[i];
+            totalQuantities[i] += quantities[i];
+            dispenseQuantities[offset + i] = quantities[i];
+        }
+
+        dispensed[index] = true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.MessageConstants;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Bounded coin change dispense strategy. Always finds a combination of notes/coins when one exists, and of all the
+ * combinations it takes the one with the most of the highest cash value, then the most of the next one, and so on.
+ * So it gives the same notes as the greedy strategy whenever the greedy one works, e.g. $60 as $50 + $10, and only
+ * falls back to the lower cash values when the higher ones cannot make up the rest, e.g. $60 as 3 x $20 without $10.
+ *
+ * This algorithm works as below:
+ * - go through the cash values from the lowest to the highest.
+ * - for each cash value, mark every amount that becomes reachable by adding one more of this cash to an amount
+ *   that is already reachable, as long as the quantity of this cash used so far does not exceed the stock.
+ * - an amount keeps the lowest cash value that reached it, so it is reachable with that cash value and all the
+ *   higher ones, and with none of the lower ones.
+ * - start from the required amount (or the closest reachable amount below it), and for each cash value from the
+ *   highest to the lowest take as many as there are in stock while the rest is still reachable with the lower ones.
+ *
+ * It runs in O(number of cash values * cash amount) without recursion. The working arrays are kept per thread
+ * and only grow when a bigger amount is required, so a call does not allocate anything.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+@ConditionalOnProperty(name = "cashman.dispense.strategy", havingValue = "bounded-change", matchIfMissing = true)
+public class BoundedChangeDispenseStrategy implements DispenseStrategy {
+
+    private static final int UNREACHABLE = -1;
+
+    private final ThreadLocal<Scratch> scratchHolder = ThreadLocal.withInitial(Scratch::new);
+
+    @Override
+    public int dispense(int cashAmount, int[] cashValues, int[] cashQuantities, int[] dispenseQuantities) {
+        if (cashAmount < 0) {
+            throw new IllegalArgumentException(MessageConstants.CASH_SUPPLY_NEGATIVE_AMOUNT_ERROR_MESSAGE);
+        }
+
+        Scratch scratch = scratchHolder.get();
+        scratch.ensureCapacity(cashAmount + 1);
+
+        // reachedBy[amount] is the index of the lowest cash value which reached the amount, the amount can be made up
+        // with the cash values from this index on
+        int[] reachedBy = scratch.reachedBy;
+        // used[amount] is the quantity of the current cash value used to reach the amount
+        int[] used = scratch.used;
+
+        Arrays.fill(reachedBy, 0, cashAmount + 1, UNREACHABLE);
+        reachedBy[0] = cashValues.length;
+
+        for (int i = cashValues.length - 1; i >= 0; i--) {
+            int cashValue = cashValues[i];
+            int cashQuantity = cashQuantities[i];
+
+            if (cashQuantity <= 0 || cashValue <= 0 || cashValue > cashAmount) {
+                continue;
+            }
+
+            for (int amount = 0; amount <= cashAmount; amount++) {
+                if (reachedBy[amount] != UNREACHABLE) {
+                    used[amount] = 0;
+                } else if (amount >= cashValue && reachedBy[amount - cashValue] != UNREACHABLE && used[amount - cashValue] < cashQuantity) {
+                    reachedBy[amount] = i;
+                    used[amount] = used[amount - cashValue] + 1;
+                }
+            }
+        }
+
+        int amountSupplied = cashAmount;
+        while (reachedBy[amountSupplied] == UNREACHABLE) {
+            amountSupplied--;
+        }
+
+        int amountLeft = amountSupplied;
+        for (int i = 0; i < cashValues.length; i++) {
+            int cashValue = cashValues[i];
+            int quantity = cashValue <= 0 || cashQuantities[i] <= 0 ? 0 : Math.min(cashQuantities[i], amountLeft / cashValue);
+
+            // the rest must still be reachable with the lower cash values
+            while (quantity > 0 && (reachedBy[amountLeft - quantity * cashValue] == UNREACHABLE
+                    || reachedBy[amountLeft - quantity * cashValue] <= i)) {
+                quantity--;
+            }
+
+            dispenseQuantities[i] = quantity;
+            amountLeft -= quantity * cashValue;
+        }
+
+        return amountSupplied;
+    }
+
+    /**
+     * The per thread working arrays.
+     */
+    private static final class Scratch {
+
+        private int[] reachedBy = new int[0];
+
+        private int[] used = new int[0];
+
+        private void ensureCapacity(int capacity) {
+            if (reachedBy.length < capacity) {
+                reachedBy = new int[capacity];
+                used = new int[capacity];
+            }
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package com.suncorp.cashman.service;
 
 import com.suncorp.cashman.domain.CashSupply;
-import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.DispenseResult;
 import com.suncorp.cashman.exception.CashSupplyException;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by ryan.zhu on 13/05/2018.
@@ -13,12 +12,36 @@ import java.util.Map;
 
 public interface CashService {
 
-    void initializeCashMachine();
+    void initializeCashMachine(String machineId);
 
-    List<CashSupply> getCurrentCashSupplies();
+    void loadCashSupplies(String machineId);
 
-    Map<CashType, CashSupply> dispenseCash(Integer cashAmount) throws CashSupplyException;
+    List<CashSupply> getCurrentCashSupplies(String machineId);
+
+    DispenseResult dispenseCash(String machineId, Integer cashAmount) throws CashSupplyException;
+
+    List<DispenseResult> dispenseCashBatch(String machineId, List<Integer> cashAmounts) throws CashSupplyException;
 
     int getAccountCashWithdrawLimitation();
 
+    default void initializeCashMachine() {
+        initializeCashMachine(CashSupply.DEFAULT_MACHINE_ID);
+    }
+
+    default void loadCashSupplies() {
+        loadCashSupplies(CashSupply.DEFAULT_MACHINE_ID);
+    }
+
+    default List<CashSupply> getCurrentCashSupplies() {
+        return getCurrentCashSupplies(CashSupply.DEFAULT_MACHINE_ID);
+    }
+
+    default DispenseResult dispenseCash(Integer cashAmount) throws CashSupplyException {
+        return dispenseCash(CashSupply.DEFAULT_MACHINE_ID, cashAmount);
+    }
+
+    default List<DispenseResult> dispenseCashBatch(List<Integer> cashAmounts) throws CashSupplyException {
+        return dispenseCashBatch(CashSupply.DEFAULT_MACHINE_ID, cashAmounts);
+    }
+
 }
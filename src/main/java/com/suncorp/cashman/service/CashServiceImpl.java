@@ -1,17 +1,33 @@
 package com.suncorp.cashman.service;
 
 import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.domain.BankAccountDetail;
 import com.suncorp.cashman.domain.CashSupply;
 import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.DispenseResult;
 import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.CashSupplyBatchWriter;
+import com.suncorp.cashman.inventory.CashSupplyWriteBehindFlusher;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.journal.DispenseJournal;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
+import com.suncorp.cashman.logging.DispenseEventLog;
+import com.suncorp.cashman.metrics.Counter;
+import com.suncorp.cashman.metrics.MetricsRegistry;
+import com.suncorp.cashman.metrics.Timer;
 import com.suncorp.cashman.repository.CashSupplyRepository;
-import com.suncorp.cashman.repository.CashTypeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,185 +38,521 @@ import java.util.Map;
 
 @Service
 public class CashServiceImpl implements CashService {
+    private static final int MAX_WITHDRAW_ATTEMPTS = 16;
+
     @Autowired
     private CashSupplyRepository cashSupplyRepository;
 
     @Autowired
-    private CashTypeRepository cashTypeRepository;
+    private CashSupplyBatchWriter cashSupplyBatchWriter;
+
+    @Autowired
+    private CashSupplyWriteBehindFlusher cashSupplyWriteBehindFlusher;
+
+    @Autowired
+    private DenominationConfig denominationConfig;
+
+    @Autowired
+    private DispenseStrategy dispenseStrategy;
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    @Autowired
+    private TransactionalCashDispenser transactionalCashDispenser;
+
+    @Autowired
+    private DispenseJournal dispenseJournal;
+
+    @Autowired
+    private DispensePlanCache dispensePlanCache;
+
+    @Autowired
+    private DispenseReachability dispenseReachability;
+
+    @Autowired
+    private BankAccountService bankAccountService;
+
+    @Autowired
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
+    @Autowired
+    private DispenseEventLog dispenseEventLog;
+
+    @Value("${cashman.inventory.mode:MEMORY}")
+    private InventoryMode inventoryMode = InventoryMode.MEMORY;
+
+    private final Timer dispenseTimer;
+
+    private final Timer withdrawTimer;
+
+    private final Timer dispenseBatchTimer;
 
-    public CashServiceImpl(CashSupplyRepository cashSupplyRepository, CashTypeRepository cashTypeRepository) {
+    private final Counter dispenseSuccessCounter;
+
+    // The failure counters indexed by the ordinal of the failure reason
+    private final Counter[] dispenseFailureCounters;
+
+    public CashServiceImpl(CashSupplyRepository cashSupplyRepository, CashSupplyBatchWriter cashSupplyBatchWriter,
+                           CashSupplyWriteBehindFlusher cashSupplyWriteBehindFlusher, DenominationConfig denominationConfig,
+                           DispenseStrategy dispenseStrategy, CashInventoryRegistry cashInventoryRegistry,
+                           TransactionalCashDispenser transactionalCashDispenser, DispenseJournal dispenseJournal,
+                           DispensePlanCache dispensePlanCache, DispenseReachability dispenseReachability,
+                           BankAccountService bankAccountService, DailyWithdrawLedger dailyWithdrawLedger,
+                           DispenseEventLog dispenseEventLog, MetricsRegistry metricsRegistry) {
         this.cashSupplyRepository = cashSupplyRepository;
-        this.cashTypeRepository = cashTypeRepository;
+        this.cashSupplyBatchWriter = cashSupplyBatchWriter;
+        this.cashSupplyWriteBehindFlusher = cashSupplyWriteBehindFlusher;
+        this.denominationConfig = denominationConfig;
+        this.dispenseStrategy = dispenseStrategy;
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.transactionalCashDispenser = transactionalCashDispenser;
+        this.dispenseJournal = dispenseJournal;
+        this.dispensePlanCache = dispensePlanCache;
+        this.dispenseReachability = dispenseReachability;
+        this.bankAccountService = bankAccountService;
+        this.dailyWithdrawLedger = dailyWithdrawLedger;
+        this.dispenseEventLog = dispenseEventLog;
+
+        this.dispenseTimer = metricsRegistry.timer("cashman_dispense_seconds", "Latency of the cash dispenses.");
+        this.withdrawTimer = metricsRegistry.timer("cashman_withdraw_seconds", "Latency of the withdraws from the in-memory inventory.");
+        this.dispenseBatchTimer = metricsRegistry.timer("cashman_dispense_batch_seconds", "Latency of the batch cash dispenses.");
+
+        String dispenseCounterHelp = "Cash dispenses by outcome.";
+        this.dispenseSuccessCounter = metricsRegistry.counter("cashman_dispense_total", dispenseCounterHelp, "outcome", "success");
+        CashSupplyException.Reason[] reasons = CashSupplyException.Reason.values();
+        this.dispenseFailureCounters = new Counter[reasons.length];
+        for (CashSupplyException.Reason reason : reasons) {
+            this.dispenseFailureCounters[reason.ordinal()] = metricsRegistry.counter("cashman_dispense_total", dispenseCounterHelp,
+                    "outcome", reason.name().toLowerCase());
+        }
     }
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /**
-     * Used to initialize the cash machine with the given cash supplies.
+     * Used to initialize the cash machine with the initial quantities of the configured denominations. Only the cash
+     * supplies of this machine are replaced; the cash types are shared by all the machines and are only created when
+     * they do not exist yet.
+     *
+     * The cash supplies are upserted in one batch, and no write-behind flush can run in between, so the changes of the
+     * replaced inventory are never written over the initialized cash supplies.
+     *
+     * The initialization is journaled with the generation of the new inventory before the cash supplies are replaced.
+     * The dispenses which still run on the replaced inventory until the new one is loaded are journaled with the old
+     * generation, so the recovery never lowers the initialized cash supplies to their stock.
+     *
+     * @param machineId The cash machine.
      */
-    public void initializeCashMachine() {
-        Map<Integer, Integer> initializedCashSupplies = getDummyCashSuppliesForInitialize();
-
-        cashSupplyRepository.deleteAllInBatch();
-        cashTypeRepository.deleteAllInBatch();
+    public void initializeCashMachine(String machineId) {
+        cashSupplyWriteBehindFlusher.runWithoutFlush(machineId, () -> {
+            long generation = cashInventoryRegistry.nextGeneration();
+            dispenseJournal.appendInitialize(machineId, generation);
 
-        initializedCashSupplies.forEach((cashAmount, cashQuantity) -> {
-            CashType cashType = new CashType("$" + cashAmount, cashAmount);
-            cashTypeRepository.save(cashType);
-
-            CashSupply cashSupply = new CashSupply(cashType, cashQuantity);
-            cashSupplyRepository.save(cashSupply);
+            cashSupplyBatchWriter.replaceCashSupplies(machineId, denominationConfig.getDenominationSet().getDenominations());
+            cashInventoryRegistry.load(machineId, generation);
         });
     }
 
     /**
-     * Used to get the current stock of cash supplies.
+     * Used to load the cash supplies of the cash machine from the database into its in-memory inventory.
+     *
+     * @param machineId The cash machine.
+     */
+    public void loadCashSupplies(String machineId) {
+        long generation = cashInventoryRegistry.nextGeneration();
+        dispenseJournal.appendInitialize(machineId, generation);
+        cashInventoryRegistry.load(machineId, generation);
+    }
+
+    /**
+     * Used to get the current stock of cash supplies of the cash machine.
      *
+     * @param machineId The cash machine.
      * @return the list of current cash supplies.
      */
-    public List<CashSupply> getCurrentCashSupplies() {
-        List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+    public List<CashSupply> getCurrentCashSupplies(String machineId) {
+        if (inventoryMode != InventoryMode.MEMORY) {
+            return cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc(machineId);
+        }
+
+        List<CashSupply> cashSupplyList = cashInventoryRegistry.getCashInventory(machineId).toCashSupplies();
 
         return cashSupplyList;
     }
 
-    public Map<CashType, CashSupply> dispenseCash(Integer cashAmount) throws CashSupplyException {
-        Map<CashType, CashSupply> resultMap = new HashMap<>();
+    /**
+     * Dispense the cash from the in-memory inventory. The changes are written back to the database by the
+     * write-behind flusher, so there is no database round trip here.
+     * When the cash_supply table is shared by several nodes, dispense from the database in one transaction instead.
+     * The cash amount is reserved against the daily withdraw limitation of the account first, and released again
+     * if the cash could not be dispensed. Every dispense, and every dispense which failed, is written to the dispense
+     * event log.
+     * A dispense from the in-memory inventory is journaled together with the withdraw, see
+     * {@link DispenseJournal#appendWithdraw}, so its stock never reaches the database without its journal record.
+     */
+    public DispenseResult dispenseCash(String machineId, Integer cashAmount) throws CashSupplyException {
+        long startNanos = System.nanoTime();
+        try {
+            BankAccountDetail bankAccountDetail = bankAccountService.getBankAccountDetail();
+            LocalDate reservedDay = reserveWithdrawAmount(bankAccountDetail, cashAmount);
+
+            boolean dispensed = false;
+            try {
+                DispenseResult dispenseResult = dispenseCash(machineId, cashAmount, bankAccountDetail);
+                dispensed = true;
+                dispenseSuccessCounter.increment();
+                dispenseEventLog.dispensed(machineId, cashAmount, dispenseResult.getDispensedCash(), System.nanoTime() - startNanos);
+
+                return dispenseResult;
+            } finally {
+                if (!dispensed) {
+                    dailyWithdrawLedger.release(bankAccountDetail, cashAmount, reservedDay);
+                }
+            }
+        } catch (CashSupplyException e) {
+            dispenseFailureCounters[e.getReason().ordinal()].increment();
+            dispenseEventLog.failed(machineId, cashAmount, e.getReason(), System.nanoTime() - startNanos);
+            throw e;
+        } finally {
+            dispenseTimer.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    private DispenseResult dispenseCash(String machineId, Integer cashAmount, BankAccountDetail bankAccountDetail) throws CashSupplyException {
+        DispenseResult dispenseResult = new DispenseResult(cashAmount, new HashMap<>());
+
+        if (inventoryMode != InventoryMode.MEMORY) {
+            dispenseSharedCash(machineId, cashAmount, dispenseResult.getDispensedCash());
+            return dispenseResult;
+        }
 
-        logger.info("Get the existing cash supplies.");
-        List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+        CashInventory cashInventory = cashInventoryRegistry.getCashInventory(machineId);
 
-        if (cashSupplyList.isEmpty()) {
+        if (cashInventory.isEmpty()) {
             logger.error(MessageConstants.NO_CASH_SUPPLY_ERROR_MESSAGE);
             throw new CashSupplyException(MessageConstants.NO_CASH_SUPPLY_ERROR_MESSAGE);
         }
 
-        logger.info("Dispense the cash.");
-        int amountLeft = withdraw(cashAmount, cashSupplyList, resultMap);
+        // The amounts the stock cannot make up are rejected before the dispense is worked out
+        dispenseReachability.checkReachable(cashAmount, cashInventory);
+
+        logger.debug("Dispense the cash.");
+        int amountLeft;
+        long startNanos = System.nanoTime();
+        try {
+            amountLeft = withdraw(cashAmount, cashInventory, bankAccountDetail, dispenseResult);
+        } finally {
+            withdrawTimer.record(System.nanoTime() - startNanos);
+        }
+
+        if (amountLeft != 0) {
+            throw new CashSupplyException(cashAmount, cashAmount - amountLeft, false);
+        }
+
+        return dispenseResult;
+    }
+
+    private Map<CashType, CashSupply> dispenseSharedCash(String machineId, Integer cashAmount, Map<CashType, CashSupply> resultMap) throws CashSupplyException {
+        if (cashAmount == 0) {
+            return resultMap;
+        }
+
+        logger.debug("Dispense the cash from the shared cash supplies.");
+        int amountLeft = transactionalCashDispenser.dispense(machineId, cashAmount, inventoryMode == InventoryMode.PESSIMISTIC, resultMap);
 
         if (amountLeft != 0) {
             throw new CashSupplyException(cashAmount, cashAmount - amountLeft, false);
-        } else {
-            cashSupplyRepository.save(cashSupplyList);
-            checkCashStock(cashSupplyList);
         }
 
         return resultMap;
     }
 
     /**
-     * Use the recursive method to dispense the cash.
-     * This algorithm works as below:
-     * - first try to supply the full amount with the highest cash supply only.
-     * - if successful, then just return this cash supply.
-     * - if not successful, then see if it could get one highest cash
-     * - if possible withdraw one highest cash, update the withdraw cash amount and call this method again.
-     * - if not possible, remove the highest cash supply from cashSupplyList, and call this method again.
+     * Dispense a batch of withdraws in order against one snapshot of the cash stock, and take the cash of the whole
+     * batch from the stock in one go. A withdraw which fails does not stop the rest of the batch; its error message
+     * is returned in its result instead. Each withdraw is reserved in order against the daily withdraw limitation of
+     * the account, and the withdraws which could not be dispensed are released afterwards. The withdraws whose amounts
+     * the stock cannot make up are rejected before the batch is worked out, the same as a single dispense.
      *
-     * @param cashAmount     Required dispense cash amount
-     * @param cashSupplyList Cash supplies ordered by cash value desc.
-     * @param dispenseResult Used to store the dispense cash result.
-     * @return the left cash amount
-     * @throws CashSupplyException handles three different scenario
-     *                             - There is no cash in the machine
-     *                             - The existing cash supply could not meet the required cash amount
-     *                             - The required cash amount is over the daily withdraw limitation
+     * @param machineId   The cash machine.
+     * @param cashAmounts The required dispense cash amounts in order.
+     * @return the result of each withdraw, in the same order.
+     * @throws CashSupplyException if there is no cash in the machine or the batch could not be dispensed.
      */
-    private int withdraw(Integer cashAmount, List<CashSupply> cashSupplyList, Map<CashType, CashSupply> dispenseResult) throws CashSupplyException {
+    public List<DispenseResult> dispenseCashBatch(String machineId, List<Integer> cashAmounts) throws CashSupplyException {
+        long startNanos = System.nanoTime();
+        try {
+            return dispenseCashBatch(machineId, cashAmounts, bankAccountService.getBankAccountDetail());
+        } finally {
+            dispenseBatchTimer.record(System.nanoTime() - startNanos);
+        }
+    }
 
-        if (cashAmount == 0) {
-            return cashAmount;
+    private List<DispenseResult> dispenseCashBatch(String machineId, List<Integer> cashAmounts, BankAccountDetail bankAccountDetail) throws CashSupplyException {
+        List<DispenseResult> dispenseResults = new ArrayList<>(cashAmounts.size());
+        List<Integer> validCashAmounts = new ArrayList<>(cashAmounts.size());
+        List<LocalDate> reservedDays = new ArrayList<>(cashAmounts.size());
+
+        // The amounts the stock cannot make up are rejected up front, the same as a single dispense
+        CashInventory cashInventory = inventoryMode == InventoryMode.MEMORY ? cashInventoryRegistry.getCashInventory(machineId) : null;
+
+        for (Integer cashAmount : cashAmounts) {
+            DispenseResult dispenseResult = new DispenseResult(cashAmount);
+            dispenseResults.add(dispenseResult);
+
+            try {
+                if (cashAmount == null) {
+                    throw new IllegalArgumentException(MessageConstants.CASH_SUPPLY_NEGATIVE_AMOUNT_ERROR_MESSAGE);
+                }
+
+                LocalDate reservedDay = reserveWithdrawAmount(bankAccountDetail, cashAmount);
+                if (cashInventory != null && !cashInventory.isEmpty()) {
+                    checkReachable(bankAccountDetail, cashAmount, reservedDay, cashInventory);
+                }
+
+                reservedDays.add(reservedDay);
+                validCashAmounts.add(cashAmount);
+            } catch (CashSupplyException | IllegalArgumentException e) {
+                dispenseResult.setErrorMessage(e.getMessage());
+                validCashAmounts.add(null);
+                reservedDays.add(null);
+            }
         }
 
-        if (cashAmount < 0) {
-            throw new IllegalArgumentException(MessageConstants.CASH_SUPPLY_NEGATIVE_AMOUNT_ERROR_MESSAGE);
+        BatchDispensePlan batchDispensePlan = null;
+        try {
+            batchDispensePlan = dispenseBatchPlan(machineId, validCashAmounts, bankAccountDetail, dispenseResults);
+        } finally {
+            // the batch may span midnight, so each withdraw is released against the day it was reserved on
+            for (int index = 0; index < validCashAmounts.size(); index++) {
+                Integer cashAmount = validCashAmounts.get(index);
+
+                if (cashAmount != null && (batchDispensePlan == null || !batchDispensePlan.isDispensed(index))) {
+                    dailyWithdrawLedger.release(bankAccountDetail, cashAmount, reservedDays.get(index));
+                }
+            }
         }
 
-        // Check the account daily withdraw limitation
-        int cashLimitation = getAccountCashWithdrawLimitation();
-        if (cashAmount > cashLimitation) {
-            throw new CashSupplyException(cashAmount, cashLimitation, true);
+        return dispenseResults;
+    }
+
+    /**
+     * Check the stock can make up the cash amount of one withdraw of a batch, otherwise release its reservation.
+     */
+    private void checkReachable(BankAccountDetail bankAccountDetail, Integer cashAmount, LocalDate reservedDay, CashInventory cashInventory) throws CashSupplyException {
+        try {
+            dispenseReachability.checkReachable(cashAmount, cashInventory);
+        } catch (CashSupplyException e) {
+            dailyWithdrawLedger.release(bankAccountDetail, cashAmount, reservedDay);
+            throw e;
         }
+    }
 
-        if (cashSupplyList.size() == 0) {
-            return cashAmount;
+    /**
+     * Dispense the batch and set the result of every withdraw dispensed or failed by it. The batch from the in-memory
+     * inventory is journaled together with its withdraw.
+     */
+    private BatchDispensePlan dispenseBatchPlan(String machineId, List<Integer> cashAmounts, BankAccountDetail bankAccountDetail,
+                                                List<DispenseResult> dispenseResults) throws CashSupplyException {
+        if (inventoryMode != InventoryMode.MEMORY) {
+            logger.debug("Dispense the cash batch from the shared cash supplies.");
+            BatchDispensePlan batchDispensePlan = transactionalCashDispenser.dispenseBatch(machineId, cashAmounts, inventoryMode == InventoryMode.PESSIMISTIC);
+            setDispenseResults(cashAmounts, batchDispensePlan, dispenseResults);
+
+            return batchDispensePlan;
         }
 
-        CashSupply highestCash = cashSupplyList.get(0);
+        CashInventory cashInventory = cashInventoryRegistry.getCashInventory(machineId);
 
-        if (supplyWithOneCash(cashAmount, highestCash, dispenseResult)) {
-            return 0;
+        if (cashInventory.isEmpty()) {
+            logger.error(MessageConstants.NO_CASH_SUPPLY_ERROR_MESSAGE);
+            throw new CashSupplyException(MessageConstants.NO_CASH_SUPPLY_ERROR_MESSAGE);
         }
 
-        if (highestCash.getCashQuantity() > 0 && cashAmount >= highestCash.getCashType().getCashValue()) {
-            highestCash.withdraw(1);
+        logger.debug("Dispense the cash batch.");
+        BatchDispensePlan batchDispensePlan = withdrawBatch(cashAmounts, cashInventory);
+        try {
+            setDispenseResults(cashAmounts, batchDispensePlan, dispenseResults);
+        } catch (RuntimeException e) {
+            cashInventory.release(batchDispensePlan.getTotalQuantities());
+            throw e;
+        }
+        appendWithdraw(cashInventory, bankAccountDetail, dispenseResults, batchDispensePlan.getTotalQuantities());
 
-            CashType cashType = highestCash.getCashType();
-            cashAmount -= cashType.getCashValue();
+        return batchDispensePlan;
+    }
 
-            addDispenseCashSupply(cashType, 1, dispenseResult);
+    private void setDispenseResults(List<Integer> cashAmounts, BatchDispensePlan batchDispensePlan, List<DispenseResult> dispenseResults) {
+        for (int index = 0; index < dispenseResults.size(); index++) {
+            Integer cashAmount = cashAmounts.get(index);
+            DispenseResult dispenseResult = dispenseResults.get(index);
 
-            return withdraw(cashAmount, cashSupplyList, dispenseResult);
-        } else {
-            List<CashSupply> cashSupplyListWithoutHighestCash = cashSupplyList.subList(1, cashSupplyList.size()); // Remove the highest cash
-            return withdraw(cashAmount, cashSupplyListWithoutHighestCash, dispenseResult);
-        }
+            if (cashAmount == null) {
+                continue;
+            }
 
+            if (batchDispensePlan.isDispensed(index)) {
+                dispenseResult.setDispensedCash(batchDispensePlan.getDispensedCash(index));
+            } else {
+                int amountSupplied = batchDispensePlan.getAmountSupplied(index);
+                dispenseResult.setErrorMessage(new CashSupplyException(cashAmount, amountSupplied, false).getMessage());
+            }
+        }
     }
 
     /**
-     * Check the cash stock after dispensing the cash. If the stock is lower than the specific cash supply standard, then send the notification via email/text or call another endpoint
+     * Work out the batch against a snapshot of the inventory, then hold the total of the batch all or nothing.
+     * The cached plans are used whenever the snapshot still covers them.
      *
-     * @param cashSupplyList The list of the cash supplies after dispensing the cash.
+     * @param cashAmounts   The required dispense cash amounts, null for the withdraws to skip.
+     * @param cashInventory The in-memory cash inventory.
+     * @return the plan of the batch.
+     * @throws CashSupplyException if the stock kept changing while the batch was worked out.
      */
-    private void checkCashStock(List<CashSupply> cashSupplyList) {
-        Map<Integer, Integer> cashLowStockStandard = getDummyCashLowStockStandard();
-        List<CashSupply> lowStockCashList = new ArrayList<>();
-
-        cashSupplyList.forEach(cashSupply -> {
-            Integer cashValue = cashSupply.getCashType().getCashValue();
-            if (cashSupply.getCashQuantity() <= cashLowStockStandard.get(cashValue)) {
-                lowStockCashList.add(cashSupply);
+    private BatchDispensePlan withdrawBatch(List<Integer> cashAmounts, CashInventory cashInventory) throws CashSupplyException {
+        int size = cashInventory.size();
+        DispenseScratch scratch = DispenseScratch.get(size);
+        int[] dispenseQuantities = scratch.dispenseQuantities;
+        CashType[] cashTypes = new CashType[size];
+        for (int i = 0; i < size; i++) {
+            cashTypes[i] = cashInventory.getCashType(i);
+        }
+
+        for (int attempt = 0; attempt < MAX_WITHDRAW_ATTEMPTS; attempt++) {
+            long planEpoch = dispensePlanCache.getEpoch(cashInventory);
+
+            int[] cashQuantities = scratch.cashQuantities;
+            cashInventory.readAvailableCashQuantities(cashQuantities);
+
+            BatchDispensePlan batchDispensePlan = new BatchDispensePlan(cashTypes, cashInventory.getCashValues(), cashQuantities, cashAmounts.size());
+            for (int index = 0; index < cashAmounts.size(); index++) {
+                Integer cashAmount = cashAmounts.get(index);
+
+                if (cashAmount == null) {
+                    continue;
+                }
+
+                if (!dispenseStrategy.isCacheable() || !dispensePlanCache.getPlan(cashAmount, planEpoch, cashInventory, dispenseQuantities)
+                        || !batchDispensePlan.dispense(index, cashAmount, dispenseQuantities)) {
+                    batchDispensePlan.dispense(index, cashAmount, dispenseStrategy);
+                }
             }
-        });
 
-        //TODO stock notification. Send the lowStockCashList to the endpoint or via email/message.
+            if (cashInventory.hold(batchDispensePlan.getTotalQuantities())) {
+                return batchDispensePlan;
+            }
+        }
 
+        int totalAmount = cashAmounts.stream().filter(cashAmount -> cashAmount != null).mapToInt(Integer::intValue).sum();
+        logger.error("Gave up dispensing the cash batch of $" + totalAmount + " after " + MAX_WITHDRAW_ATTEMPTS + " attempts.");
+        throw new CashSupplyException(totalAmount);
     }
 
     /**
-     * It should get the bank withdraw limitation from somewhere else
+     * Use the dispense strategy to work out the cash supplies for the required cash amount.
+     * The inventory is only updated when the full amount can be dispensed. The working arrays are the per thread
+     * scratch of the dispense path, so only the dispense result is allocated.
      *
-     * @return The current bank account limitation
+     * @param cashAmount        Required dispense cash amount
+     * @param cashInventory     The in-memory cash inventory.
+     * @param bankAccountDetail The bank account of the withdraw, journaled with it.
+     * @param dispenseResult    Used to store the dispense cash result.
+     * @return the left cash amount
+     * @throws CashSupplyException handles three different scenario
+     *                             - There is no cash in the machine
+     *                             - The existing cash supply could not meet the required cash amount
+     *                             - The stock kept changing while the dispense was worked out
      */
-    //TODO need to get this limitation from somewhere else
-    public int getAccountCashWithdrawLimitation() {
-        return 1000;
+    private int withdraw(Integer cashAmount, CashInventory cashInventory, BankAccountDetail bankAccountDetail, DispenseResult dispenseResult) throws CashSupplyException {
+
+        if (cashAmount == 0) {
+            return cashAmount;
+        }
+
+        int size = cashInventory.size();
+        DispenseScratch scratch = DispenseScratch.get(size);
+        int[] cashQuantities = scratch.cashQuantities;
+        int[] dispenseQuantities = scratch.dispenseQuantities;
+
+        // Another request may take the same notes between reading the stock and withdrawing it.
+        // The withdraw is all or nothing, so just work out the dispense again with the latest stock.
+        // The cached plan is only tried first, a failed withdraw always works out the dispense from the latest stock.
+        // The strategies whose plans depend on the whole stock are never cached.
+        for (int attempt = 0; attempt < MAX_WITHDRAW_ATTEMPTS; attempt++) {
+            long planEpoch = dispensePlanCache.getEpoch(cashInventory);
+
+            if (attempt > 0 || !dispenseStrategy.isCacheable() || !dispensePlanCache.getPlan(cashAmount, planEpoch, cashInventory, dispenseQuantities)) {
+                cashInventory.readAvailableCashQuantities(cashQuantities);
+
+                int amountSupplied = dispenseStrategy.dispense(cashAmount, cashInventory.getCashValues(), cashQuantities, dispenseQuantities);
+                if (amountSupplied != cashAmount) {
+                    return cashAmount - amountSupplied;
+                }
+
+                if (dispenseStrategy.isCacheable()) {
+                    dispensePlanCache.putPlan(cashAmount, planEpoch, cashInventory, dispenseQuantities);
+                }
+            }
+
+            if (cashInventory.hold(dispenseQuantities)) {
+                for (int i = 0; i < size; i++) {
+                    if (dispenseQuantities[i] > 0) {
+                        addDispenseCashSupply(cashInventory.getCashType(i), dispenseQuantities[i], dispenseResult.getDispensedCash());
+                    }
+                }
+
+                appendWithdraw(cashInventory, bankAccountDetail, Collections.singletonList(dispenseResult), dispenseQuantities);
+                return 0;
+            }
+        }
+
+        logger.error("Gave up dispensing $" + cashAmount + " after " + MAX_WITHDRAW_ATTEMPTS + " attempts.");
+        throw new CashSupplyException(cashAmount);
     }
 
     /**
-     * Try to supply with the specific cash supply
+     * Journal the held withdraws and drop their notes, or put the notes back if they could not be journaled.
+     */
+    private void appendWithdraw(CashInventory cashInventory, BankAccountDetail bankAccountDetail, List<DispenseResult> dispenseResults,
+                                int[] withdrawQuantities) {
+        try {
+            dispenseJournal.appendWithdraw(cashInventory, bankAccountDetail, dispenseResults, withdrawQuantities);
+        } catch (RuntimeException e) {
+            cashInventory.release(withdrawQuantities);
+            throw e;
+        }
+    }
+
+    /**
+     * Check the required cash amount is positive and reserve it against the account daily withdraw limitation.
+     * This is the only limitation check of a withdraw.
      *
-     * @param amount         The withdraw cash amount
-     * @param cashSupply     The specific cash supply
-     * @param dispenseResult The result map which is used to store the dispense cash supply
-     * @return
+     * @param bankAccountDetail The bank account of the withdraw.
+     * @param cashAmount        Required dispense cash amount
+     * @return the day the cash amount is reserved in, used to release it.
+     * @throws CashSupplyException if the required cash amount is over what the account can still withdraw today
      */
-    private boolean supplyWithOneCash(Integer amount, CashSupply cashSupply, Map<CashType, CashSupply> dispenseResult) {
-        CashType cashType = cashSupply.getCashType();
-        Integer cashValue = cashType.getCashValue();
+    private LocalDate reserveWithdrawAmount(BankAccountDetail bankAccountDetail, Integer cashAmount) throws CashSupplyException {
+        if (cashAmount < 0) {
+            throw new IllegalArgumentException(MessageConstants.CASH_SUPPLY_NEGATIVE_AMOUNT_ERROR_MESSAGE);
+        }
 
-        int leftAmount = amount % cashValue;
-        int cashWithdrawQuantity = amount / cashValue;
+        int cashLimitation = bankAccountService.getDailyWithdrawLimitation(bankAccountDetail);
 
-        if (leftAmount == 0 && cashWithdrawQuantity < cashSupply.getCashQuantity()) {
-            addDispenseCashSupply(cashType, cashWithdrawQuantity, dispenseResult);
-            cashSupply.withdraw(cashWithdrawQuantity);
+        return dailyWithdrawLedger.reserve(bankAccountDetail, cashAmount, cashLimitation);
+    }
 
-            return true;
-        } else {
-            return false;
-        }
+    /**
+     * Get the cash amount the current bank account can still withdraw today.
+     *
+     * @return The daily withdraw limitation of the account less what it has withdrawn today.
+     */
+    public int getAccountCashWithdrawLimitation() {
+        BankAccountDetail bankAccountDetail = bankAccountService.getBankAccountDetail();
+        int cashLimitation = bankAccountService.getDailyWithdrawLimitation(bankAccountDetail);
+
+        return (int) Math.max(cashLimitation - dailyWithdrawLedger.getWithdrawnAmount(bankAccountDetail), 0);
     }
 
     /**
@@ -219,42 +571,4 @@ public class CashServiceImpl implements CashService {
             dispenseResult.put(dispenseCashType, withdrawCashSupply);
         }
     }
-
-    /**
-     * It should get the initialization cash supplies from somewhere else. Now just use the dummy map.
-     *
-     * @return A map of the initialized cash supplies.
-     */
-    private Map<Integer, Integer> getDummyCashSuppliesForInitialize() {
-        Map<Integer, Integer> dummyCashSupplies = new HashMap<>();
-
-        dummyCashSupplies.put(100, 10);
-        dummyCashSupplies.put(50, 20);
-        dummyCashSupplies.put(20, 30);
-        dummyCashSupplies.put(10, 40);
-        dummyCashSupplies.put(5, 50);
-        dummyCashSupplies.put(2, 60);
-        dummyCashSupplies.put(1, 70);
-
-        return dummyCashSupplies;
-    }
-
-    /**
-     * It should get the low stock standard setting somewhere.
-     *
-     * @return A map of the standard of the low stock cash supplies
-     */
-    private Map<Integer, Integer> getDummyCashLowStockStandard() {
-        Map<Integer, Integer> dummyCashLowSupplyStandard = new HashMap<>();
-
-        dummyCashLowSupplyStandard.put(100, 2);
-        dummyCashLowSupplyStandard.put(50, 3);
-        dummyCashLowSupplyStandard.put(20, 4);
-        dummyCashLowSupplyStandard.put(10, 5);
-        dummyCashLowSupplyStandard.put(5, 6);
-        dummyCashLowSupplyStandard.put(2, 7);
-        dummyCashLowSupplyStandard.put(1, 8);
-
-        return dummyCashLowSupplyStandard;
-    }
 }
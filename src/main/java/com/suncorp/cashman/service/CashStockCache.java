@@ -0,0 +1,166 @@
+package com.suncorp.cashman.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.InventoryListener;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.representation.CashSupplyRep;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of the cash stock of every cash machine, as the JSON bytes of the stock endpoint and their ETag.
+ *
+ * In the MEMORY mode, every change of an inventory only bumps the change count of its machine. The snapshot is
+ * rebuilt from the inventory on the next read once the change count has moved on, so the polls between two dispenses
+ * share one snapshot and never touch the database. The change count is read before the cash quantities, so a change
+ * during a rebuild is picked up by the next read.
+ *
+ * In the OPTIMISTIC/PESSIMISTIC modes the stock is changed in the shared database by other nodes as well, so the
+ * snapshot is read from the database again once it is older than the time to live.
+ *
+ * The ETag is the MD5 of the JSON bytes, the same as the shallow ETag filter of Spring, so the same stock always has
+ * the same ETag, also after a restart.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class CashStockCache implements InventoryListener {
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cashman.inventory.mode:MEMORY}")
+    private InventoryMode inventoryMode = InventoryMode.MEMORY;
+
+    private final long timeToLiveNanos;
+
+    private final Map<String, AtomicLong> changeCounts = new ConcurrentHashMap<>();
+
+    private final Map<String, CashStockSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CashStockCache(CashInventoryRegistry cashInventoryRegistry, CashSupplyRepository cashSupplyRepository, ObjectMapper objectMapper,
+                          @Value("${cashman.stock.cache-ttl-ms:1000}") long timeToLiveMillis) {
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.cashSupplyRepository = cashSupplyRepository;
+        this.objectMapper = objectMapper;
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        cashInventoryRegistry.addListener(this);
+    }
+
+    @Override
+    public void onCashQuantityChanged(CashInventory cashInventory, int index, int cashQuantity) {
+        AtomicLong changeCount = changeCounts.get(cashInventory.getMachineId());
+
+        if (changeCount != null) {
+            changeCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onCashInventoryLoaded(CashInventory cashInventory) {
+        changeCounts.computeIfAbsent(cashInventory.getMachineId(), machineId -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @param machineId The cash machine.
+     * @return the current cash stock of the machine, ordered by cash value desc.
+     */
+    public CashStockSnapshot getSnapshot(String machineId) {
+        CashStockSnapshot snapshot = snapshots.get(machineId);
+
+        if (inventoryMode == InventoryMode.MEMORY) {
+            AtomicLong changeCount = changeCounts.get(machineId);
+            if (changeCount == null) {
+                // The machine has never been loaded, do not keep a snapshot for every id asked for
+                return build(Collections.emptyList(), 0, System.nanoTime());
+            }
+
+            long currentChangeCount = changeCount.get();
+            if (snapshot == null || snapshot.changeCount != currentChangeCount) {
+                snapshot = build(cashInventoryRegistry.getCashInventory(machineId).toCashSupplies(), currentChangeCount, System.nanoTime());
+                snapshots.put(machineId, snapshot);
+            }
+        } else if (snapshot == null || System.nanoTime() - snapshot.readAtNanos > timeToLiveNanos) {
+            List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc(machineId);
+            snapshot = build(cashSupplyList, 0, System.nanoTime());
+
+            if (!cashSupplyList.isEmpty()) {
+                snapshots.put(machineId, snapshot);
+            }
+        }
+
+        return snapshot;
+    }
+
+    private CashStockSnapshot build(List<CashSupply> cashSupplyList, long changeCount, long readAtNanos) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(CashSupplyRep.fromCashSupplies(cashSupplyList));
+
+            return new CashStockSnapshot(json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"", changeCount, readAtNanos);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The immutable cash stock of a machine at one point in time.
+     */
+    public static final class CashStockSnapshot {
+
+        private final byte[] json;
+
+        private final String eTag;
+
+        /**
+         * The change count of the machine when the snapshot was read, only used in the MEMORY mode.
+         */
+        private final long changeCount;
+
+        private final long readAtNanos;
+
+        private CashStockSnapshot(byte[] json, String eTag, long changeCount, long readAtNanos) {
+            this.json = json;
+            this.eTag = eTag;
+            this.changeCount = changeCount;
+            this.readAtNanos = readAtNanos;
+        }
+
+        /**
+         * @return the JSON bytes of the cash stock. Shared by all the readers, must not be modified.
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+}
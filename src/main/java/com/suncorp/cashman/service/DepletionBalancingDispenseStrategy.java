@@ -0,0 +1,278 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.denomination.Denomination;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.denomination.DenominationListener;
+import com.suncorp.cashman.denomination.DenominationSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dispense strategy which spreads the withdraws over the cash types, so that the cassettes run down together instead
+ * of the highest cash running out first.
+ *
+ * The headroom of a cash type is its quantity above the low stock threshold, which is how many more notes it can
+ * give before it needs a refill. A note taken from a cash type uses up 1 / headroom of what is left of its life, and
+ * the strategy picks the combination which uses up the least life in total. So the notes come from the cash types
+ * with the most cash above their thresholds, and as those run down the next dispenses move on to the other ones.
+ * The notes at or below the threshold cost more than any combination without them, so they are only used when the
+ * amount could not be supplied otherwise.
+ *
+ * The cost is worked out by a bounded min cost coin change: every cash type is one group of notes above the threshold
+ * and one group below it, and each group is added in O(cash amount) with a sliding window minimum over the amounts
+ * of the same remainder. Like {@link BoundedChangeDispenseStrategy} the working arrays are kept per thread, so a call
+ * does not allocate anything.
+ *
+ * The plan depends on the whole stock, so it is never cached by {@link DispensePlanCache}.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+@ConditionalOnProperty(name = "cashman.dispense.strategy", havingValue = "depletion-balancing")
+public class DepletionBalancingDispenseStrategy implements DispenseStrategy, DenominationListener {
+
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+
+    // The cost of using up the whole life of a cash type
+    private static final long LIFE_COST = 1L << 20;
+
+    @Autowired
+    private DenominationConfig denominationConfig;
+
+    private volatile Thresholds thresholds;
+
+    private final ThreadLocal<Scratch> scratchHolder = ThreadLocal.withInitial(Scratch::new);
+
+    @Autowired
+    public DepletionBalancingDispenseStrategy(DenominationConfig denominationConfig) {
+        this.denominationConfig = denominationConfig;
+        this.thresholds = new Thresholds(denominationConfig.getDenominationSet());
+    }
+
+    @PostConstruct
+    public void start() {
+        denominationConfig.addListener(this);
+    }
+
+    @Override
+    public void onDenominationsChanged(DenominationSet denominationSet) {
+        thresholds = new Thresholds(denominationSet);
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
+    @Override
+    public int dispense(int cashAmount, int[] cashValues, int[] cashQuantities, int[] dispenseQuantities) {
+        if (cashAmount < 0) {
+            throw new IllegalArgumentException(MessageConstants.CASH_SUPPLY_NEGATIVE_AMOUNT_ERROR_MESSAGE);
+        }
+
+        Scratch scratch = scratchHolder.get();
+        scratch.ensureCapacity(cashValues.length * 2, cashAmount + 1);
+
+        int groupCount = addGroups(cashAmount, cashValues, cashQuantities, scratch);
+
+        long[] costs = scratch.costs;
+        Arrays.fill(costs, 0, cashAmount + 1, UNREACHABLE);
+        costs[0] = 0;
+
+        for (int group = 0; group < groupCount; group++) {
+            long[] nextCosts = scratch.nextCosts;
+            addGroup(cashAmount, scratch.groupValues[group], scratch.groupCounts[group], scratch.groupNoteCosts[group],
+                    costs, nextCosts, scratch.choices[group], scratch);
+
+            scratch.nextCosts = costs;
+            scratch.costs = nextCosts;
+            costs = nextCosts;
+        }
+
+        int amountSupplied = cashAmount;
+        while (costs[amountSupplied] == UNREACHABLE) {
+            amountSupplied--;
+        }
+
+        Arrays.fill(dispenseQuantities, 0, cashValues.length, 0);
+        int amount = amountSupplied;
+        for (int group = groupCount - 1; group >= 0; group--) {
+            int quantity = scratch.choices[group][amount];
+
+            dispenseQuantities[scratch.groupCashIndexes[group]] += quantity;
+            amount -= quantity * scratch.groupValues[group];
+        }
+
+        return amountSupplied;
+    }
+
+    /**
+     * Split every cash type into the group of notes above its low stock threshold and the group at or below it.
+     *
+     * @return the number of groups.
+     */
+    private int addGroups(int cashAmount, int[] cashValues, int[] cashQuantities, Scratch scratch) {
+        Thresholds thresholds = this.thresholds;
+        // One note below the threshold costs more than any dispense of the cash amount without them
+        long belowThresholdCost = LIFE_COST * ((long) cashAmount + 1);
+        int groupCount = 0;
+
+        for (int i = 0; i < cashValues.length; i++) {
+            int cashValue = cashValues[i];
+            int cashQuantity = cashQuantities[i];
+
+            if (cashQuantity <= 0 || cashValue <= 0 || cashValue > cashAmount) {
+                continue;
+            }
+
+            int headroom = Math.max(cashQuantity - thresholds.getThreshold(cashValue), 0);
+            if (headroom > 0) {
+                scratch.setGroup(groupCount++, i, cashValue, headroom, divideUp(LIFE_COST, headroom));
+            }
+            if (cashQuantity > headroom) {
+                scratch.setGroup(groupCount++, i, cashValue, cashQuantity - headroom, belowThresholdCost + divideUp(LIFE_COST, cashQuantity));
+            }
+        }
+
+        return groupCount;
+    }
+
+    /**
+     * nextCosts[amount] = min over 0 <= quantity <= count of costs[amount - quantity * value] + quantity * noteCost.
+     * For the amounts amount = remainder + j * value this is min over j - count <= k <= j of
+     * (costs[remainder + k * value] - k * noteCost) + j * noteCost, so a sliding window minimum over k is enough.
+     */
+    private void addGroup(int cashAmount, int value, int count, long noteCost, long[] costs, long[] nextCosts, int[] choices, Scratch scratch) {
+        int[] windowIndexes = scratch.windowIndexes;
+        long[] windowKeys = scratch.windowKeys;
+
+        for (int remainder = 0; remainder < value && remainder <= cashAmount; remainder++) {
+            int head = 0;
+            int tail = 0;
+
+            for (int j = 0, amount = remainder; amount <= cashAmount; j++, amount += value) {
+                if (costs[amount] != UNREACHABLE) {
+                    long key = costs[amount] - j * noteCost;
+
+                    // Keep the later index on a tie, it uses fewer notes of this group
+                    while (tail > head && windowKeys[tail - 1] >= key) {
+                        tail--;
+                    }
+                    windowIndexes[tail] = j;
+                    windowKeys[tail] = key;
+                    tail++;
+                }
+
+                while (tail > head && windowIndexes[head] < j - count) {
+                    head++;
+                }
+
+                if (tail > head) {
+                    nextCosts[amount] = windowKeys[head] + j * noteCost;
+                    choices[amount] = j - windowIndexes[head];
+                } else {
+                    nextCosts[amount] = UNREACHABLE;
+                }
+            }
+        }
+    }
+
+    private static long divideUp(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * The low stock thresholds of the cash values, looked up without boxing.
+     */
+    private static final class Thresholds {
+
+        private final int[] cashValues;
+
+        private final int[] thresholds;
+
+        private Thresholds(DenominationSet denominationSet) {
+            List<Denomination> denominations = denominationSet.getDenominations();
+            this.cashValues = new int[denominations.size()];
+            this.thresholds = new int[denominations.size()];
+
+            for (int i = 0; i < denominations.size(); i++) {
+                Denomination denomination = denominations.get(i);
+                cashValues[i] = denomination.getCashValue();
+                thresholds[i] = denomination.getLowStockThreshold() == null ? 0 : denomination.getLowStockThreshold();
+            }
+        }
+
+        private int getThreshold(int cashValue) {
+            for (int i = 0; i < cashValues.length; i++) {
+                if (cashValues[i] == cashValue) {
+                    return thresholds[i];
+                }
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * The per thread working arrays.
+     */
+    private static final class Scratch {
+
+        private long[] costs = new long[0];
+
+        private long[] nextCosts = new long[0];
+
+        private int[] windowIndexes = new int[0];
+
+        private long[] windowKeys = new long[0];
+
+        private int[][] choices = new int[0][];
+
+        private int[] groupCashIndexes = new int[0];
+
+        private int[] groupValues = new int[0];
+
+        private int[] groupCounts = new int[0];
+
+        private long[] groupNoteCosts = new long[0];
+
+        private void ensureCapacity(int groupCapacity, int amountCapacity) {
+            if (costs.length < amountCapacity) {
+                costs = new long[amountCapacity];
+                nextCosts = new long[amountCapacity];
+                windowIndexes = new int[amountCapacity];
+                windowKeys = new long[amountCapacity];
+                for (int group = 0; group < choices.length; group++) {
+                    choices[group] = new int[amountCapacity];
+                }
+            }
+
+            if (choices.length < groupCapacity) {
+                int[][] newChoices = Arrays.copyOf(choices, groupCapacity);
+                for (int group = choices.length; group < groupCapacity; group++) {
+                    newChoices[group] = new int[costs.length];
+                }
+
+                choices = newChoices;
+                groupCashIndexes = new int[groupCapacity];
+                groupValues = new int[groupCapacity];
+                groupCounts = new int[groupCapacity];
+                groupNoteCosts = new long[groupCapacity];
+            }
+        }
+
+        private void setGroup(int group, int cashIndex, int value, int count, long noteCost) {
+            groupCashIndexes[group] = cashIndex;
+            groupValues[group] = value;
+            groupCounts[group] = count;
+            groupNoteCosts[group] = noteCost;
+        }
+    }
+}
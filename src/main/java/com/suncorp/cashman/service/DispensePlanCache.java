@@ -0,0 +1,247 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.InventoryListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the dispense quantities worked out by the dispense strategy, keyed by the cash amount and
+ * the inventory epoch, so that the common withdraw amounts are a lookup instead of a new dispense calculation.
+ *
+ * The dispense quantities for an amount only depend on min(cash quantity, amount / cash value) of every cash type.
+ * So for the amounts up to the max cached amount, a cash quantity can only change a plan once it drops below
+ * max cached amount / cash value. The epoch moves on when that happens or when a new inventory is loaded, and the
+ * plans of the older epochs are never looked up again and fall out of the cache.
+ *
+ * Every cash machine has its own epoch and its own plans, so the machines never contend on the cache. The plans are
+ * kept in a ConcurrentHashMap and evicted with the CLOCK algorithm, an approximate LRU: a hit only marks the plan
+ * as referenced, so it takes no lock, and only a put over the max size locks the machine to sweep the plans, giving
+ * every referenced plan a second chance and evicting the first one which has not been used since the last sweep.
+ *
+ * A cached plan may still be out of date when another request has just taken the same notes. It is only used
+ * through {@link CashInventory#withdraw(int[])}, which checks the live cash quantities before taking anything.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class DispensePlanCache implements InventoryListener {
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    private final int maxCashAmount;
+
+    private final int maxSize;
+
+    private final Map<String, MachinePlans> machinePlans = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    @Autowired
+    public DispensePlanCache(CashInventoryRegistry cashInventoryRegistry,
+                             @Value("${cashman.dispense.plan-cache.max-amount:1000}") int maxCashAmount,
+                             @Value("${cashman.dispense.plan-cache.size:256}") int maxSize) {
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.maxCashAmount = maxCashAmount;
+        this.maxSize = maxSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        cashInventoryRegistry.addListener(this);
+    }
+
+    /**
+     * Must be read before the cash quantities the plan is worked out from.
+     *
+     * @param cashInventory The inventory of the cash machine.
+     * @return the current inventory epoch of the machine.
+     */
+    public long getEpoch(CashInventory cashInventory) {
+        return getMachinePlans(cashInventory).epoch.get();
+    }
+
+    /**
+     * Copy the cached dispense quantities of the cash amount.
+     *
+     * @param cashAmount         The required dispense cash amount.
+     * @param planEpoch          The inventory epoch.
+     * @param cashInventory      The inventory the plan is for.
+     * @param dispenseQuantities Used to store the dispense quantities.
+     * @return true if there is a plan for the cash amount in this epoch.
+     */
+    public boolean getPlan(int cashAmount, long planEpoch, CashInventory cashInventory, int[] dispenseQuantities) {
+        if (cashAmount > maxCashAmount) {
+            return false;
+        }
+
+        DispensePlan plan = getMachinePlans(cashInventory).get(toKey(cashAmount, planEpoch));
+
+        // The epoch moves on when a new inventory is loaded, but a slow request may still hold the old one
+        if (plan == null || plan.cashInventory != cashInventory) {
+            missCount.increment();
+            return false;
+        }
+
+        System.arraycopy(plan.dispenseQuantities, 0, dispenseQuantities, 0, plan.dispenseQuantities.length);
+        hitCount.increment();
+
+        return true;
+    }
+
+    /**
+     * Cache the dispense quantities which make up the full cash amount.
+     *
+     * @param cashAmount         The required dispense cash amount.
+     * @param planEpoch          The inventory epoch read before the cash quantities.
+     * @param cashInventory      The inventory the plan is for.
+     * @param dispenseQuantities The dispense quantities worked out by the dispense strategy.
+     */
+    public void putPlan(int cashAmount, long planEpoch, CashInventory cashInventory, int[] dispenseQuantities) {
+        if (cashAmount > maxCashAmount || maxSize <= 0) {
+            return;
+        }
+
+        DispensePlan plan = new DispensePlan(cashInventory, dispenseQuantities.clone());
+        getMachinePlans(cashInventory).put(toKey(cashAmount, planEpoch), plan);
+    }
+
+    @Override
+    public void onCashQuantityChanged(CashInventory cashInventory, int index, int cashQuantity) {
+        if (cashQuantity < maxCashAmount / cashInventory.getCashValues()[index]) {
+            getMachinePlans(cashInventory).epoch.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onCashInventoryLoaded(CashInventory cashInventory) {
+        getMachinePlans(cashInventory).clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int getSize() {
+        return machinePlans.values().stream().mapToInt(MachinePlans::size).sum();
+    }
+
+    private MachinePlans getMachinePlans(CashInventory cashInventory) {
+        return machinePlans.computeIfAbsent(cashInventory.getMachineId(), machineId -> new MachinePlans(maxSize));
+    }
+
+    private static long toKey(int cashAmount, long planEpoch) {
+        return (planEpoch << 32) | cashAmount;
+    }
+
+    /**
+     * The epoch and the plans of one cash machine.
+     */
+    private final class MachinePlans {
+
+        private final AtomicLong epoch = new AtomicLong();
+
+        private final Map<Long, DispensePlan> plans;
+
+        private final int maxSize;
+
+        // The clock hand, only moved under the lock of this machine
+        private Iterator<Map.Entry<Long, DispensePlan>> clockHand;
+
+        private MachinePlans(int maxSize) {
+            this.plans = new ConcurrentHashMap<>(maxSize * 4 / 3 + 1);
+            this.maxSize = maxSize;
+        }
+
+        private DispensePlan get(long key) {
+            DispensePlan plan = plans.get(key);
+
+            // Only write when it changes, so the hits of a hot plan do not keep invalidating its cache line
+            if (plan != null && !plan.referenced) {
+                plan.referenced = true;
+            }
+
+            return plan;
+        }
+
+        private void put(long key, DispensePlan plan) {
+            plans.put(key, plan);
+
+            if (plans.size() > maxSize) {
+                evict(key);
+            }
+        }
+
+        private synchronized void evict(long putKey) {
+            while (plans.size() > maxSize) {
+                if (clockHand == null || !clockHand.hasNext()) {
+                    clockHand = plans.entrySet().iterator();
+                }
+
+                Map.Entry<Long, DispensePlan> entry = clockHand.next();
+
+                // A new plan is not evicted by its own put
+                if (entry.getKey() == putKey) {
+                    continue;
+                }
+
+                DispensePlan plan = entry.getValue();
+                if (plan.referenced) {
+                    plan.referenced = false;
+                } else if (plans.remove(entry.getKey(), plan)) {
+                    evictionCount.increment();
+                }
+            }
+        }
+
+        private int size() {
+            return plans.size();
+        }
+
+        private void clear() {
+            epoch.incrementAndGet();
+            plans.clear();
+        }
+    }
+
+    /**
+     * The dispense quantities for one cash amount, aligned with the cash values of the inventory.
+     */
+    private static final class DispensePlan {
+
+        private final CashInventory cashInventory;
+
+        private final int[] dispenseQuantities;
+
+        // Set by a hit and cleared by the eviction sweep
+        private volatile boolean referenced;
+
+        private DispensePlan(CashInventory cashInventory, int[] dispenseQuantities) {
+            this.cashInventory = cashInventory;
+            this.dispenseQuantities = dispenseQuantities;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.InventoryListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bitset of the cash amounts up to the max amount which the current stock of a cash machine can make up, so that an
+ * amount the stock cannot make up is rejected with one bit lookup before the dispense strategy is run.
+ *
+ * Like the dispense plans, the amounts up to the max amount only depend on min(cash quantity, max amount / cash value)
+ * of every cash type. So the bitset of a machine only has to be built again once a cash quantity drops below
+ * max amount / cash value or a new inventory is loaded, and it is only built when it is next looked up. A build is a
+ * bounded knapsack over the words of the bitset, where the quantity of every cash type is split into the powers of
+ * two, so it is about (max amount / 64) * log2(quantity) word operations per cash type.
+ *
+ * The stock only goes down between two loads, so an amount which could not be made up from an older stock can not be
+ * made up from the current stock either. This holds because the bitset is built from the cash quantities including
+ * the notes held by the withdraws in flight: a withdraw which fails puts its notes back without ever lowering them,
+ * so the listeners are not notified of it and do not have to be.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class DispenseReachability implements InventoryListener {
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    private final int maxCashAmount;
+
+    private final Map<String, MachineReachability> machineReachabilities = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder buildCount = new LongAdder();
+
+    @Autowired
+    public DispenseReachability(CashInventoryRegistry cashInventoryRegistry,
+                                @Value("${cashman.dispense.reachability.max-amount:1000}") int maxCashAmount) {
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.maxCashAmount = maxCashAmount;
+    }
+
+    @PostConstruct
+    public void start() {
+        cashInventoryRegistry.addListener(this);
+    }
+
+    /**
+     * Reject the cash amount if the current stock cannot make it up. The amounts over the max amount are never
+     * rejected here, they are left to the dispense strategy.
+     *
+     * @param cashAmount    The required dispense cash amount.
+     * @param cashInventory The inventory of the cash machine.
+     * @throws CashSupplyException with the closest amounts below and above which the stock can make up.
+     */
+    public void checkReachable(int cashAmount, CashInventory cashInventory) throws CashSupplyException {
+        if (cashAmount < 0 || cashAmount > maxCashAmount) {
+            return;
+        }
+
+        long[] words = getReachableAmounts(cashInventory);
+        if ((words[cashAmount >>> 6] & (1L << cashAmount)) != 0) {
+            return;
+        }
+
+        rejectedCount.increment();
+        throw new CashSupplyException(cashAmount, previousSetBit(words, cashAmount), nextSetBit(words, cashAmount));
+    }
+
+    @Override
+    public void onCashQuantityChanged(CashInventory cashInventory, int index, int cashQuantity) {
+        if (cashQuantity < maxCashAmount / cashInventory.getCashValues()[index]) {
+            getMachineReachability(cashInventory).version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onCashInventoryLoaded(CashInventory cashInventory) {
+        getMachineReachability(cashInventory).version.incrementAndGet();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getBuildCount() {
+        return buildCount.sum();
+    }
+
+    private long[] getReachableAmounts(CashInventory cashInventory) {
+        MachineReachability machineReachability = getMachineReachability(cashInventory);
+        ReachableAmounts reachableAmounts = machineReachability.reachableAmounts;
+
+        if (reachableAmounts == null || reachableAmounts.cashInventory != cashInventory
+                || reachableAmounts.version != machineReachability.version.get()) {
+            reachableAmounts = machineReachability.build(cashInventory);
+        }
+
+        return reachableAmounts.words;
+    }
+
+    private MachineReachability getMachineReachability(CashInventory cashInventory) {
+        return machineReachabilities.computeIfAbsent(cashInventory.getMachineId(), machineId -> new MachineReachability());
+    }
+
+    /**
+     * @return the highest set bit below the cash amount, the bit of 0 is always set.
+     */
+    private static int previousSetBit(long[] words, int cashAmount) {
+        int index = cashAmount >>> 6;
+        long word = words[index] & ((1L << cashAmount) - 1);
+
+        while (word == 0) {
+            word = words[--index];
+        }
+
+        return (index << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    /**
+     * @return the lowest set bit above the cash amount, 0 if there is none.
+     */
+    private static int nextSetBit(long[] words, int cashAmount) {
+        int index = cashAmount >>> 6;
+        long word = words[index] & (-2L << cashAmount);
+
+        while (word == 0) {
+            if (++index == words.length) {
+                return 0;
+            }
+            word = words[index];
+        }
+
+        return (index << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * The version and the latest bitset of one cash machine.
+     */
+    private final class MachineReachability {
+
+        private final AtomicLong version = new AtomicLong();
+
+        private volatile ReachableAmounts reachableAmounts;
+
+        private synchronized ReachableAmounts build(CashInventory cashInventory) {
+            // The version must be read before the cash quantities the bitset is built from.
+            // The cash quantities include the held notes, never the counts of a withdraw which is later rolled back.
+            long buildVersion = version.get();
+
+            ReachableAmounts current = reachableAmounts;
+            if (current != null && current.cashInventory == cashInventory && current.version == buildVersion) {
+                return current;
+            }
+
+            int[] cashValues = cashInventory.getCashValues();
+            int[] cashQuantities = new int[cashValues.length];
+            cashInventory.readCashQuantities(cashQuantities);
+
+            long[] words = new long[(maxCashAmount >>> 6) + 1];
+            words[0] = 1L;
+
+            for (int i = 0; i < cashValues.length; i++) {
+                int quantity = Math.min(cashQuantities[i], maxCashAmount / cashValues[i]);
+
+                for (int count = 1; quantity > 0; count <<= 1) {
+                    int take = Math.min(count, quantity);
+                    shiftOr(words, take * cashValues[i]);
+                    quantity -= take;
+                }
+            }
+
+            // Clear the bits over the max amount in the last word
+            words[words.length - 1] &= -1L >>> (63 - (maxCashAmount & 63));
+
+            reachableAmounts = new ReachableAmounts(cashInventory, buildVersion, words);
+            buildCount.increment();
+
+            return reachableAmounts;
+        }
+
+        /**
+         * words |= words << shift, from the highest word down so that every word is shifted before it is changed.
+         */
+        private void shiftOr(long[] words, int shift) {
+            int wordShift = shift >>> 6;
+            int bitShift = shift & 63;
+
+            for (int index = words.length - 1; index >= wordShift; index--) {
+                long word = words[index - wordShift] << bitShift;
+                if (bitShift != 0 && index - wordShift > 0) {
+                    word |= words[index - wordShift - 1] >>> (64 - bitShift);
+                }
+                words[index] |= word;
+            }
+        }
+    }
+
+    /**
+     * The amounts the stock of one inventory could make up at one version.
+     */
+    private static final class ReachableAmounts {
+
+        private final CashInventory cashInventory;
+
+        private final long version;
+
+        private final long[] words;
+
+        private ReachableAmounts(CashInventory cashInventory, long version, long[] words) {
+            this.cashInventory = cashInventory;
+            this.version = version;
+            this.words = words;
+        }
+    }
+}
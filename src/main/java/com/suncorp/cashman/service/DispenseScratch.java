@@ -0,0 +1,43 @@
+package com.suncorp.cashman.service;
+
+/**
+ * The per thread working arrays of the dispense path: the snapshot of the cash quantities, the dispense quantities
+ * and the quantities worked out for one withdraw of a batch. They are sized to the cash types of the machine and only
+ * allocated again when a machine with a different number of cash types is dispensed from, so a dispense does not
+ * allocate anything.
+ *
+ * A thread only works on one dispense at a time, and the arrays must not be kept after the dispense returns.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+final class DispenseScratch {
+
+    private static final ThreadLocal<DispenseScratch> SCRATCH_HOLDER = ThreadLocal.withInitial(DispenseScratch::new);
+
+    int[] cashQuantities = new int[0];
+
+    int[] dispenseQuantities = new int[0];
+
+    int[] withdrawQuantities = new int[0];
+
+    private DispenseScratch() {
+
+    }
+
+    /**
+     * @param size The number of cash types of the machine.
+     * @return the working arrays of the current thread, each exactly the size.
+     */
+    static DispenseScratch get(int size) {
+        DispenseScratch scratch = SCRATCH_HOLDER.get();
+
+        if (scratch.cashQuantities.length != size) {
+            scratch.cashQuantities = new int[size];
+            scratch.dispenseQuantities = new int[size];
+            scratch.withdrawQuantities = new int[size];
+        }
+
+        return scratch;
+    }
+}
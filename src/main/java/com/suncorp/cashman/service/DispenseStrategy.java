@@ -0,0 +1,36 @@
+package com.suncorp.cashman.service;
+
+/**
+ * Strategy used to work out which notes/coins make up a withdraw amount.
+ *
+ * Implementations work on primitive arrays only so that they can run on the dispense hot path without
+ * creating any objects. The arrays are aligned by index: cashValues[i] is the value of the cash type,
+ * cashQuantities[i] is its quantity in stock and dispenseQuantities[i] receives the quantity to dispense.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public interface DispenseStrategy {
+
+    /**
+     * Work out the cash quantities to dispense for the required cash amount. The stock quantities are never changed.
+     *
+     * @param cashAmount         The required dispense cash amount, must not be negative.
+     * @param cashValues         The cash values ordered by cash value desc.
+     * @param cashQuantities     The quantities in stock for each cash value.
+     * @param dispenseQuantities Used to store the quantity to dispense for each cash value. Only valid on success.
+     * @return the cash amount if it can be dispensed, otherwise the closest amount below it which the stock could supply.
+     */
+    int dispense(int cashAmount, int[] cashValues, int[] cashQuantities, int[] dispenseQuantities);
+
+    /**
+     * Whether the dispense quantities of an amount only depend on min(cash quantity, amount / cash value) of every
+     * cash type, which is what {@link DispensePlanCache} relies on to reuse a plan.
+     *
+     * @return true if the plans of this strategy can be cached.
+     */
+    default boolean isCacheable() {
+        return true;
+    }
+
+}
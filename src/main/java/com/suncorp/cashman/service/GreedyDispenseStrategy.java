@@ -0,0 +1,27 @@
+package com.suncorp.cashman.service;
+
+/**
+ * The original dispense algorithm: always take as many of the highest cash as possible, then move on to the next one.
+ *
+ * It is fast but it can miss combinations that exist, e.g. $60 with only $50 and $20 notes.
+ * Kept for comparison with {@link BoundedChangeDispenseStrategy}.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class GreedyDispenseStrategy implements DispenseStrategy {
+
+    @Override
+    public int dispense(int cashAmount, int[] cashValues, int[] cashQuantities, int[] dispenseQuantities) {
+        int amountLeft = cashAmount;
+
+        for (int i = 0; i < cashValues.length; i++) {
+            int quantity = Math.min(cashQuantities[i], amountLeft / cashValues[i]);
+
+            dispenseQuantities[i] = quantity;
+            amountLeft -= quantity * cashValues[i];
+        }
+
+        return cashAmount - amountLeft;
+    }
+}
@@ -1,9 +1,20 @@
 package com.suncorp.cashman.service;
 
+import com.suncorp.cashman.audit.ExportFormat;
+import com.suncorp.cashman.audit.TransactionLogCursor;
+import com.suncorp.cashman.audit.TransactionLogFilter;
+import com.suncorp.cashman.audit.TransactionLogPage;
 import com.suncorp.cashman.domain.CashSupply;
 import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.DispenseResult;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Created by ryan.zhu on 13/05/2018.
@@ -11,6 +22,22 @@ import java.util.Map;
 
 public interface TransactionLogService {
 
-    void saveTransactionLog(Map<CashType, CashSupply> dispensedCash, Integer cashAmount);
+    void saveTransactionLog(String machineId, DispenseResult dispenseResult);
+
+    CompletableFuture<Void> saveTransactionLogAsync(String machineId, DispenseResult dispenseResult, Executor writeExecutor);
+
+    void saveTransactionLogs(String machineId, List<DispenseResult> dispenseResults);
+
+    TransactionLogPage findTransactionLogs(TransactionLogFilter transactionLogFilter, TransactionLogCursor cursor, int pageSize);
+
+    long exportTransactionLogs(LocalDateTime fromTime, LocalDateTime toTime, ExportFormat exportFormat, OutputStream outputStream) throws IOException;
+
+    default void saveTransactionLog(Map<CashType, CashSupply> dispensedCash, Integer cashAmount) {
+        saveTransactionLog(CashSupply.DEFAULT_MACHINE_ID, new DispenseResult(cashAmount, dispensedCash));
+    }
+
+    default void saveTransactionLogs(List<DispenseResult> dispenseResults) {
+        saveTransactionLogs(CashSupply.DEFAULT_MACHINE_ID, dispenseResults);
+    }
 
 }
@@ -1,15 +1,30 @@
 package com.suncorp.cashman.service;
 
+import com.suncorp.cashman.audit.AsyncTransactionLogWriter;
+import com.suncorp.cashman.audit.ExportFormat;
+import com.suncorp.cashman.audit.TransactionLogCursor;
+import com.suncorp.cashman.audit.TransactionLogExporter;
+import com.suncorp.cashman.audit.TransactionLogFilter;
+import com.suncorp.cashman.audit.TransactionLogPage;
+import com.suncorp.cashman.audit.TransactionLogReader;
+import com.suncorp.cashman.audit.TransactionLogEntry;
 import com.suncorp.cashman.domain.*;
-import com.suncorp.cashman.repository.TransactionLogDetailRepository;
-import com.suncorp.cashman.repository.TransactionLogRepository;
+import com.suncorp.cashman.journal.DispenseJournal;
+import com.suncorp.cashman.metrics.MetricsRegistry;
+import com.suncorp.cashman.metrics.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Created by ryan.zhu on 13/05/2018.
@@ -19,27 +34,143 @@ import java.util.Map;
 public class TransactionLogServiceImpl implements TransactionLogService {
 
     @Autowired
-    TransactionLogRepository transactionLogRepository;
+    AsyncTransactionLogWriter asyncTransactionLogWriter;
 
     @Autowired
-    TransactionLogDetailRepository transactionLogDetailRepository;
+    DispenseJournal dispenseJournal;
+
+    @Autowired
+    BankAccountService bankAccountService;
+
+    @Autowired
+    TransactionLogReader transactionLogReader;
+
+    @Autowired
+    TransactionLogExporter transactionLogExporter;
+
+    private final Timer saveTimer;
+
+    private final Timer saveBatchTimer;
+
+    private final Timer saveAsyncTimer;
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    public TransactionLogServiceImpl(TransactionLogRepository transactionLogRepository, TransactionLogDetailRepository transactionLogDetailRepository) {
-        this.transactionLogDetailRepository = transactionLogDetailRepository;
-        this.transactionLogRepository = transactionLogRepository;
+    public TransactionLogServiceImpl(AsyncTransactionLogWriter asyncTransactionLogWriter, DispenseJournal dispenseJournal,
+                                     BankAccountService bankAccountService, TransactionLogReader transactionLogReader,
+                                     TransactionLogExporter transactionLogExporter, MetricsRegistry metricsRegistry) {
+        this.asyncTransactionLogWriter = asyncTransactionLogWriter;
+        this.dispenseJournal = dispenseJournal;
+        this.bankAccountService = bankAccountService;
+        this.transactionLogReader = transactionLogReader;
+        this.transactionLogExporter = transactionLogExporter;
+        this.saveTimer = metricsRegistry.timer("cashman_transaction_log_save_seconds", "Latency of saving the transaction logs.", "operation", "single");
+        this.saveBatchTimer = metricsRegistry.timer("cashman_transaction_log_save_seconds", "Latency of saving the transaction logs.", "operation", "batch");
+        this.saveAsyncTimer = metricsRegistry.timer("cashman_transaction_log_save_seconds", "Latency of saving the transaction logs.", "operation", "async");
     }
 
-    public void saveTransactionLog(Map<CashType, CashSupply> dispensedCash, Integer cashAmount) {
-        logger.info("Get the bank account info.");
-        BankAccountDetail bankAccountDetail = getDummyBankAccountDetail();
+    /**
+     * Create the transaction log and its details, and queue them to be written in the background.
+     * The dispense is journaled first, unless it has been journaled together with its withdraw already, and only
+     * returns once the journal is on disk, so the log survives a crash.
+     */
+    public void saveTransactionLog(String machineId, DispenseResult dispenseResult) {
+        long startNanos = System.nanoTime();
+        try {
+            logger.debug("Get the bank account info.");
+            BankAccountDetail bankAccountDetail = this.bankAccountService.getBankAccountDetail();
 
-        logger.info("Create the transaction log.");
-        TransactionLog transactionLog = new TransactionLog(bankAccountDetail, cashAmount, LocalDateTime.now());
-        this.transactionLogRepository.save(transactionLog);
+            TransactionLogEntry entry = createTransactionLogEntry(machineId, bankAccountDetail, dispenseResult);
+            this.dispenseJournal.awaitDurable(journal(entry));
 
-        logger.info("Create the transaction detail log.");
+            this.asyncTransactionLogWriter.write(entry);
+        } finally {
+            this.saveTimer.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Create the transaction log and journal it the same as {@link #saveTransactionLog}, without blocking the calling
+     * thread on the journal sync. Once the journal is on disk, the transaction log is queued on the write executor,
+     * because the queue writes on the calling thread when it is full. If the write executor is saturated, the
+     * transaction log stays in the journal and is replayed into the database on the next startup.
+     *
+     * @return the future completed once the dispense is journaled on disk.
+     */
+    public CompletableFuture<Void> saveTransactionLogAsync(String machineId, DispenseResult dispenseResult, Executor writeExecutor) {
+        long startNanos = System.nanoTime();
+
+        BankAccountDetail bankAccountDetail = this.bankAccountService.getBankAccountDetail();
+        TransactionLogEntry entry = createTransactionLogEntry(machineId, bankAccountDetail, dispenseResult);
+
+        CompletableFuture<Void> durable = this.dispenseJournal.whenDurable(journal(entry))
+                .whenComplete((result, e) -> this.saveAsyncTimer.record(System.nanoTime() - startNanos));
+
+        durable.thenRunAsync(() -> this.asyncTransactionLogWriter.write(entry), writeExecutor).exceptionally(e -> {
+            logger.error("Failed to queue the transaction log, it is kept in the dispense journal: " + e.getMessage());
+            return null;
+        });
+
+        return durable;
+    }
+
+    /**
+     * Create the transaction logs of the successful withdraws in a batch dispense. The whole batch waits for one
+     * journal sync, and the writer inserts the transaction logs in batches.
+     */
+    public void saveTransactionLogs(String machineId, List<DispenseResult> dispenseResults) {
+        long startNanos = System.nanoTime();
+        try {
+            logger.debug("Get the bank account info.");
+            BankAccountDetail bankAccountDetail = this.bankAccountService.getBankAccountDetail();
+
+            List<TransactionLogEntry> entries = new ArrayList<>(dispenseResults.size());
+            long journalSequence = 0;
+
+            for (DispenseResult dispenseResult : dispenseResults) {
+                if (dispenseResult.isSuccess()) {
+                    TransactionLogEntry entry = createTransactionLogEntry(machineId, bankAccountDetail, dispenseResult);
+                    journalSequence = Math.max(journalSequence, journal(entry));
+                    entries.add(entry);
+                }
+            }
+
+            this.dispenseJournal.awaitDurable(journalSequence);
+
+            entries.forEach(this.asyncTransactionLogWriter::write);
+        } finally {
+            this.saveBatchTimer.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Read one page of the transaction logs, newest first, see {@link TransactionLogReader}.
+     */
+    public TransactionLogPage findTransactionLogs(TransactionLogFilter transactionLogFilter, TransactionLogCursor cursor, int pageSize) {
+        return this.transactionLogReader.findPage(transactionLogFilter, cursor, pageSize);
+    }
+
+    /**
+     * Stream the transaction logs of the time window to the output stream, see {@link TransactionLogExporter}.
+     */
+    public long exportTransactionLogs(LocalDateTime fromTime, LocalDateTime toTime, ExportFormat exportFormat, OutputStream outputStream) throws IOException {
+        return this.transactionLogExporter.export(fromTime, toTime, exportFormat, outputStream);
+    }
+
+    private TransactionLogEntry createTransactionLogEntry(String machineId, BankAccountDetail bankAccountDetail, DispenseResult dispenseResult) {
+        logger.debug("Create the transaction log.");
+        // A journaled dispense keeps the time of its journal record, the same as when it is replayed
+        LocalDateTime createAt = dispenseResult.getDispensedAt() != null ? dispenseResult.getDispensedAt() : LocalDateTime.now();
+        TransactionLog transactionLog = new TransactionLog(bankAccountDetail, dispenseResult.getCashAmount(), createAt);
+        transactionLog.setMachineId(machineId);
+        if (dispenseResult.getJournalSequence() > 0) {
+            transactionLog.setJournalSequence(dispenseResult.getJournalSequence());
+        }
+
+        Map<CashType, CashSupply> dispensedCash = dispenseResult.getDispensedCash();
+
+        logger.debug("Create the transaction detail log.");
+        List<TransactionLogDetail> transactionLogDetails = new ArrayList<>(dispensedCash.size());
         dispensedCash.forEach((cashType, cashSupply) -> {
             TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
             transactionLogDetail.setCashDesc(cashType.getCashDesc());
@@ -47,11 +178,28 @@ public class TransactionLogServiceImpl implements TransactionLogService {
             transactionLogDetail.setQuantity(cashSupply.getCashQuantity());
             transactionLogDetail.setTransactionLog(transactionLog);
 
-            this.transactionLogDetailRepository.save(transactionLogDetail);
+            transactionLogDetails.add(transactionLogDetail);
         });
+
+        return new TransactionLogEntry(transactionLog, transactionLogDetails);
     }
 
-    private BankAccountDetail getDummyBankAccountDetail() {
-        return new BankAccountDetail("111111", "12345678", "James");
+    /**
+     * Append the transaction log to the dispense journal, unless it has been journaled together with its withdraw.
+     *
+     * @return the journal sequence, 0 if the journal is disabled.
+     */
+    private long journal(TransactionLogEntry entry) {
+        TransactionLog transactionLog = entry.getTransactionLog();
+        if (transactionLog.getJournalSequence() != null) {
+            return transactionLog.getJournalSequence();
+        }
+
+        long journalSequence = this.dispenseJournal.append(transactionLog, entry.getTransactionLogDetails());
+        if (journalSequence > 0) {
+            transactionLog.setJournalSequence(journalSequence);
+        }
+
+        return journalSequence;
     }
 }
@@ -0,0 +1,252 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispense the cash straight from the cash_supply table, for the deployments where several nodes share the table.
+ *
+ * Every dispense reads, works out and updates the cash supplies in a single transaction. With the optimistic locking
+ * the version of every updated cash supply is checked on commit; with the pessimistic locking the cash supplies are
+ * locked when they are read. A conflict rolls the transaction back and the dispense is retried with a random backoff.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class TransactionalCashDispenser {
+
+    private static final int NO_CASH_SUPPLY = -1;
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    @Autowired
+    private DispenseStrategy dispenseStrategy;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxAttempts;
+
+    private final long retryBackoffMillis;
+
+    private final LongAdder conflictCount = new LongAdder();
+
+    private final LongAdder retryCount = new LongAdder();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public TransactionalCashDispenser(CashSupplyRepository cashSupplyRepository,
+                                      DispenseStrategy dispenseStrategy,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${cashman.dispense.max-attempts:5}") int maxAttempts,
+                                      @Value("${cashman.dispense.retry-backoff-ms:5}") long retryBackoffMillis) {
+        this.cashSupplyRepository = cashSupplyRepository;
+        this.dispenseStrategy = dispenseStrategy;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    /**
+     * Dispense the cash in one transaction, retried when another node has changed the same cash supplies.
+     *
+     * @param machineId      The cash machine.
+     * @param cashAmount     Required dispense cash amount, must be positive.
+     * @param lockRows       Lock the cash supplies with SELECT ... FOR UPDATE instead of checking the version on commit.
+     * @param dispenseResult Used to store the dispense cash result.
+     * @return the left cash amount
+     * @throws CashSupplyException if there is no cash in the machine or the dispense still conflicts after the last attempt.
+     */
+    public int dispense(String machineId, int cashAmount, boolean lockRows, Map<CashType, CashSupply> dispenseResult) throws CashSupplyException {
+        Map<CashType, CashSupply> attemptResult = new HashMap<>();
+
+        int amountLeft = executeWithRetry(status -> {
+            attemptResult.clear();
+            return dispenseInTransaction(machineId, cashAmount, lockRows, attemptResult);
+        }, cashAmount);
+
+        if (amountLeft == NO_CASH_SUPPLY) {
+            throw new CashSupplyException(MessageConstants.NO_CASH_SUPPLY_ERROR_MESSAGE);
+        }
+
+        dispenseResult.putAll(attemptResult);
+        return amountLeft;
+    }
+
+    /**
+     * Dispense a batch of withdraws in one transaction, retried when another node has changed the same cash supplies.
+     * The withdraws are worked out in order against the cash supplies read at the start of the transaction, and
+     * the cash supplies are only updated once for the whole batch.
+     *
+     * @param machineId   The cash machine.
+     * @param cashAmounts The required dispense cash amounts, null for the withdraws to skip.
+     * @param lockRows    Lock the cash supplies with SELECT ... FOR UPDATE instead of checking the version on commit.
+     * @return the plan of the batch.
+     * @throws CashSupplyException if there is no cash in the machine or the batch still conflicts after the last attempt.
+     */
+    public BatchDispensePlan dispenseBatch(String machineId, List<Integer> cashAmounts, boolean lockRows) throws CashSupplyException {
+        int totalAmount = cashAmounts.stream().filter(cashAmount -> cashAmount != null).mapToInt(Integer::intValue).sum();
+
+        BatchDispensePlan batchDispensePlan = executeWithRetry(status -> dispenseBatchInTransaction(machineId, cashAmounts, lockRows), totalAmount);
+
+        if (batchDispensePlan == null) {
+            throw new CashSupplyException(MessageConstants.NO_CASH_SUPPLY_ERROR_MESSAGE);
+        }
+
+        return batchDispensePlan;
+    }
+
+    public long getConflictCount() {
+        return conflictCount.sum();
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    /**
+     * @return the cash supplies of the machine, the highest cash value first.
+     */
+    private List<CashSupply> findCashSupplies(String machineId, boolean lockRows) {
+        if (!lockRows) {
+            return cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc(machineId);
+        }
+
+        List<CashSupply> cashSupplyList = cashSupplyRepository.findAllForUpdateByMachineId(machineId);
+        cashSupplyList.sort(Comparator.comparing((CashSupply cashSupply) -> cashSupply.getCashType().getCashValue()).reversed());
+
+        return cashSupplyList;
+    }
+
+    private int dispenseInTransaction(String machineId, int cashAmount, boolean lockRows, Map<CashType, CashSupply> dispenseResult) {
+        List<CashSupply> cashSupplyList = findCashSupplies(machineId, lockRows);
+
+        if (cashSupplyList.isEmpty()) {
+            return NO_CASH_SUPPLY;
+        }
+
+        int size = cashSupplyList.size();
+        int[] cashValues = new int[size];
+        int[] cashQuantities = new int[size];
+        int[] dispenseQuantities = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            CashSupply cashSupply = cashSupplyList.get(i);
+            cashValues[i] = cashSupply.getCashType().getCashValue();
+            cashQuantities[i] = cashSupply.getCashQuantity();
+        }
+
+        int amountSupplied = dispenseStrategy.dispense(cashAmount, cashValues, cashQuantities, dispenseQuantities);
+        if (amountSupplied != cashAmount) {
+            return cashAmount - amountSupplied;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (dispenseQuantities[i] > 0) {
+                CashSupply cashSupply = cashSupplyList.get(i);
+                cashSupply.withdraw(dispenseQuantities[i]);
+                dispenseResult.put(cashSupply.getCashType(), new CashSupply(cashSupply.getCashType(), dispenseQuantities[i]));
+            }
+        }
+
+        // The version of every changed cash supply is checked when the transaction commits
+        cashSupplyRepository.save(cashSupplyList);
+
+        return 0;
+    }
+
+    private BatchDispensePlan dispenseBatchInTransaction(String machineId, List<Integer> cashAmounts, boolean lockRows) {
+        List<CashSupply> cashSupplyList = findCashSupplies(machineId, lockRows);
+
+        if (cashSupplyList.isEmpty()) {
+            return null;
+        }
+
+        int size = cashSupplyList.size();
+        CashType[] cashTypes = new CashType[size];
+        int[] cashValues = new int[size];
+        int[] cashQuantities = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            CashSupply cashSupply = cashSupplyList.get(i);
+            cashTypes[i] = cashSupply.getCashType();
+            cashValues[i] = cashSupply.getCashType().getCashValue();
+            cashQuantities[i] = cashSupply.getCashQuantity();
+        }
+
+        BatchDispensePlan batchDispensePlan = new BatchDispensePlan(cashTypes, cashValues, cashQuantities, cashAmounts.size());
+        for (int index = 0; index < cashAmounts.size(); index++) {
+            if (cashAmounts.get(index) != null) {
+                batchDispensePlan.dispense(index, cashAmounts.get(index), dispenseStrategy);
+            }
+        }
+
+        int[] totalQuantities = batchDispensePlan.getTotalQuantities();
+        for (int i = 0; i < size; i++) {
+            if (totalQuantities[i] > 0) {
+                cashSupplyList.get(i).withdraw(totalQuantities[i]);
+            }
+        }
+
+        cashSupplyRepository.save(cashSupplyList);
+
+        return batchDispensePlan;
+    }
+
+    /**
+     * Run the action in a transaction. A conflict rolls the transaction back and the action is run again.
+     */
+    private <T> T executeWithRetry(TransactionCallback<T> action, int cashAmount) throws CashSupplyException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+
+            } catch (ConcurrencyFailureException e) {
+                conflictCount.increment();
+
+                if (attempt >= maxAttempts) {
+                    logger.error("Gave up dispensing $" + cashAmount + " after " + attempt + " conflicts.");
+                    throw new CashSupplyException(e, cashAmount);
+                }
+
+                retryCount.increment();
+                backoff(attempt, cashAmount);
+            }
+        }
+    }
+
+    /**
+     * Wait a random time which doubles with every attempt, so that the conflicting nodes do not retry in lockstep.
+     */
+    private void backoff(int attempt, int cashAmount) throws CashSupplyException {
+        long maxBackoffMillis = retryBackoffMillis << Math.min(attempt - 1, 6);
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxBackoffMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CashSupplyException(e, cashAmount);
+        }
+    }
+}
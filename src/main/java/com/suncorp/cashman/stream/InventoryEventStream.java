@@ -0,0 +1,527 @@
+package com.suncorp.cashman.stream;
+
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.InventoryListener;
+import com.suncorp.cashman.representation.CashStockEventRep;
+import com.suncorp.cashman.representation.CashSupplyRep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Pushes the changes of the cash stock to the subscribers as server-sent events.
+ *
+ * The dispense path only sets a changed flag for the cash type in the inventory listener. A publisher thread collects
+ * the changed flags every interval, reads the current quantities and hands the events to the subscribers, so all the
+ * changes of an interval go out as one delta per machine whatever the number of dispenses.
+ *
+ * Every subscriber keeps the events it has not sent yet as the latest state per machine and cash value, and they are
+ * sent by a small pool of sender threads. A slow subscriber only gets further behind on the number of changes, never on
+ * memory: its pending updates are merged into the latest quantities, and a reset replaces all of them. A subscriber
+ * which fails to receive an event is dropped, and a heartbeat comment is sent when nothing else has been sent for the
+ * heartbeat interval, so that the proxies keep the connection open and dead connections are found.
+ *
+ * A send blocks while the connection does not take the bytes. A subscriber whose send has been blocked for longer
+ * than the send timeout is dropped by the publisher thread, and the sender pool gets one more thread for as long as
+ * the send stays blocked, so a few stalled connections can not hold up the events of everyone else. The blocked
+ * thread is given back when the write fails or the container times it out; the pool grows by at most as many threads
+ * again as it has.
+ *
+ * Events:
+ * - reset: all the cash supplies of a machine. Sent first when subscribing and after the machine is initialized.
+ * - delta: the cash supplies of a machine which have changed.
+ *
+ * The changes come from the in-memory inventories, so only the MEMORY mode is covered.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@Component
+public class InventoryEventStream implements InventoryListener {
+
+    public static final String RESET_EVENT = "reset";
+
+    public static final String DELTA_EVENT = "delta";
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    private final long intervalMillis;
+
+    private final long heartbeatNanos;
+
+    private final long timeoutMillis;
+
+    private final int maxSubscribers;
+
+    private final long sendTimeoutNanos;
+
+    private final int senderThreads;
+
+    private final Map<String, MachineChanges> machineChanges = new ConcurrentHashMap<>();
+
+    private final Queue<Subscriber> newSubscribers = new ConcurrentLinkedQueue<>();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor senderExecutor;
+
+    // The sender threads blocked in the send of a dropped subscriber, guarded by senderExecutor
+    private int blockedSenderThreads;
+
+    private volatile boolean running;
+
+    private Thread publisherThread;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    public InventoryEventStream(CashInventoryRegistry cashInventoryRegistry,
+                                @Value("${cashman.stock.events.interval-ms:100}") long intervalMillis,
+                                @Value("${cashman.stock.events.heartbeat-ms:15000}") long heartbeatMillis,
+                                @Value("${cashman.stock.events.timeout-ms:1800000}") long timeoutMillis,
+                                @Value("${cashman.stock.events.max-subscribers:10000}") int maxSubscribers,
+                                @Value("${cashman.stock.events.sender-threads:4}") int senderThreads,
+                                @Value("${cashman.stock.events.send-timeout-ms:5000}") long sendTimeoutMillis) {
+        this.cashInventoryRegistry = cashInventoryRegistry;
+        this.intervalMillis = intervalMillis;
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+        this.timeoutMillis = timeoutMillis;
+        this.maxSubscribers = maxSubscribers;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.senderThreads = senderThreads;
+
+        AtomicInteger threadNo = new AtomicInteger();
+        this.senderExecutor = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "inventory-event-sender-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        cashInventoryRegistry.addListener(this);
+        cashInventoryRegistry.getCashInventories().forEach(this::onCashInventoryLoaded);
+
+        running = true;
+
+        publisherThread = new Thread(this::run, "inventory-event-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publisherThread.join(TimeUnit.SECONDS.toMillis(5));
+        senderExecutor.shutdownNow();
+
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    @Override
+    public void onCashQuantityChanged(CashInventory cashInventory, int index, int cashQuantity) {
+        MachineChanges changes = machineChanges.get(cashInventory.getMachineId());
+
+        // Ignore the changes of an inventory which has been replaced
+        if (changes != null && changes.cashInventory == cashInventory) {
+            changes.changedFlags.lazySet(index, 1);
+        }
+    }
+
+    @Override
+    public void onCashInventoryLoaded(CashInventory cashInventory) {
+        machineChanges.put(cashInventory.getMachineId(), new MachineChanges(cashInventory));
+    }
+
+    /**
+     * Subscribe to the cash stock events. The subscriber gets a reset event of every machine first.
+     *
+     * @param machineId The cash machine, null for all the machines.
+     * @return the emitter of the events.
+     * @throws IllegalStateException if there are too many subscribers.
+     */
+    public SseEmitter subscribe(String machineId) {
+        return subscribe(machineId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(String machineId, SseEmitter emitter) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("Too many cash stock subscribers.");
+        }
+
+        Subscriber subscriber = new Subscriber(machineId, emitter);
+
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+
+        // The publisher thread sends the resets, so they are always read before the deltas which follow them
+        newSubscribers.add(subscriber);
+
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                publish();
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Failed to publish the cash stock events: " + e.getMessage());
+            }
+        }
+    }
+
+    private void publish() {
+        Subscriber newSubscriber;
+        while ((newSubscriber = newSubscribers.poll()) != null) {
+            if (!newSubscriber.closed.get()) {
+                subscribers.add(newSubscriber);
+
+                for (MachineChanges changes : machineChanges.values()) {
+                    if (newSubscriber.isSubscribed(changes.cashInventory.getMachineId())) {
+                        newSubscriber.offerReset(changes.cashInventory.getMachineId(), toCashSupplyReps(changes.cashInventory));
+                    }
+                }
+            }
+        }
+
+        for (MachineChanges changes : machineChanges.values()) {
+            publish(changes);
+        }
+
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.dropIfBlocked(now)) {
+                continue;
+            }
+
+            if (now - subscriber.lastSendNanos > heartbeatNanos) {
+                subscriber.offerHeartbeat();
+            }
+
+            subscriber.scheduleSend();
+        }
+    }
+
+    private void publish(MachineChanges changes) {
+        CashInventory cashInventory = changes.cashInventory;
+        String machineId = cashInventory.getMachineId();
+
+        if (changes.reset.getAndSet(false)) {
+            for (int i = 0; i < cashInventory.size(); i++) {
+                changes.changedFlags.set(i, 0);
+            }
+
+            List<CashSupplyRep> cashSupplyReps = toCashSupplyReps(cashInventory);
+            subscribers.stream().filter(subscriber -> subscriber.isSubscribed(machineId)).forEach(subscriber -> subscriber.offerReset(machineId, cashSupplyReps));
+            return;
+        }
+
+        List<CashSupplyRep> changedCashSupplyReps = null;
+        for (int i = 0; i < cashInventory.size(); i++) {
+            if (changes.changedFlags.get(i) == 1 && changes.changedFlags.getAndSet(i, 0) == 1) {
+                if (changedCashSupplyReps == null) {
+                    changedCashSupplyReps = new ArrayList<>();
+                }
+                changedCashSupplyReps.add(toCashSupplyRep(cashInventory, i));
+            }
+        }
+
+        if (changedCashSupplyReps != null) {
+            List<CashSupplyRep> cashSupplyReps = changedCashSupplyReps;
+            subscribers.stream().filter(subscriber -> subscriber.isSubscribed(machineId)).forEach(subscriber -> subscriber.offerDelta(machineId, cashSupplyReps));
+        }
+    }
+
+    /**
+     * Give the pool one more thread in place of a thread blocked in the send of a dropped subscriber.
+     *
+     * @return false if the pool has already grown by as many threads as it has.
+     */
+    private boolean addSenderThread() {
+        synchronized (senderExecutor) {
+            if (blockedSenderThreads == senderThreads) {
+                return false;
+            }
+
+            blockedSenderThreads++;
+            senderExecutor.setMaximumPoolSize(senderThreads + blockedSenderThreads);
+            senderExecutor.setCorePoolSize(senderThreads + blockedSenderThreads);
+            return true;
+        }
+    }
+
+    private void removeSenderThread() {
+        synchronized (senderExecutor) {
+            blockedSenderThreads--;
+            senderExecutor.setCorePoolSize(senderThreads + blockedSenderThreads);
+            senderExecutor.setMaximumPoolSize(senderThreads + blockedSenderThreads);
+        }
+    }
+
+    private static List<CashSupplyRep> toCashSupplyReps(CashInventory cashInventory) {
+        List<CashSupplyRep> cashSupplyReps = new ArrayList<>(cashInventory.size());
+
+        for (int i = 0; i < cashInventory.size(); i++) {
+            cashSupplyReps.add(toCashSupplyRep(cashInventory, i));
+        }
+
+        return cashSupplyReps;
+    }
+
+    private static CashSupplyRep toCashSupplyRep(CashInventory cashInventory, int index) {
+        return new CashSupplyRep(cashInventory.getCashType(index).getCashValue(), cashInventory.getCashType(index).getCashDesc(),
+                cashInventory.getCashQuantity(index));
+    }
+
+    /**
+     * The changed flags of the current inventory of a machine, aligned with its cash types.
+     */
+    private static final class MachineChanges {
+
+        private final CashInventory cashInventory;
+
+        private final AtomicIntegerArray changedFlags;
+
+        private final AtomicBoolean reset = new AtomicBoolean(true);
+
+        private MachineChanges(CashInventory cashInventory) {
+            this.cashInventory = cashInventory;
+            this.changedFlags = new AtomicIntegerArray(cashInventory.size());
+        }
+    }
+
+    /**
+     * The pending updates of a machine for one subscriber: a reset with all the cash supplies, or a delta.
+     */
+    private static final class PendingUpdate {
+
+        private final boolean reset;
+
+        private final Map<Integer, CashSupplyRep> cashSupplyReps = new LinkedHashMap<>();
+
+        private PendingUpdate(boolean reset, List<CashSupplyRep> cashSupplyReps) {
+            this.reset = reset;
+            merge(cashSupplyReps);
+        }
+
+        private void merge(List<CashSupplyRep> cashSupplyReps) {
+            cashSupplyReps.forEach(cashSupplyRep -> this.cashSupplyReps.put(cashSupplyRep.getCashValue(), cashSupplyRep));
+        }
+    }
+
+    private final class Subscriber {
+
+        private final String machineId;
+
+        private final SseEmitter emitter;
+
+        // Guarded by this
+        private Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+
+        // Guarded by this
+        private boolean heartbeatPending;
+
+        // When the send in progress started, 0 if none, guarded by this
+        private long sendStartNanos;
+
+        // Whether the send in progress has been given up, and whether a thread has been added in its place, guarded by this
+        private boolean blocked;
+
+        private boolean senderThreadAdded;
+
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private volatile long lastSendNanos = System.nanoTime();
+
+        private Subscriber(String machineId, SseEmitter emitter) {
+            this.machineId = machineId;
+            this.emitter = emitter;
+        }
+
+        private boolean isSubscribed(String machineId) {
+            return this.machineId == null || this.machineId.equals(machineId);
+        }
+
+        private synchronized void offerReset(String machineId, List<CashSupplyRep> cashSupplyReps) {
+            pendingUpdates.put(machineId, new PendingUpdate(true, cashSupplyReps));
+        }
+
+        private synchronized void offerDelta(String machineId, List<CashSupplyRep> cashSupplyReps) {
+            PendingUpdate pendingUpdate = pendingUpdates.get(machineId);
+
+            if (pendingUpdate == null) {
+                pendingUpdates.put(machineId, new PendingUpdate(false, cashSupplyReps));
+            } else {
+                // A slow subscriber gets the latest quantities only
+                pendingUpdate.merge(cashSupplyReps);
+            }
+        }
+
+        private synchronized void offerHeartbeat() {
+            heartbeatPending = true;
+        }
+
+        private synchronized boolean hasPending() {
+            return !pendingUpdates.isEmpty() || heartbeatPending;
+        }
+
+        private void scheduleSend() {
+            if (!closed.get() && hasPending() && sending.compareAndSet(false, true)) {
+                try {
+                    senderExecutor.execute(this::send);
+                } catch (RejectedExecutionException e) {
+                    sending.set(false);
+                }
+            }
+        }
+
+        private void send() {
+            try {
+                while (!closed.get()) {
+                    Map<String, PendingUpdate> updates;
+                    boolean heartbeat;
+
+                    synchronized (this) {
+                        if (pendingUpdates.isEmpty() && !heartbeatPending) {
+                            sending.set(false);
+                            return;
+                        }
+
+                        updates = pendingUpdates;
+                        heartbeat = heartbeatPending && updates.isEmpty();
+                        pendingUpdates = new LinkedHashMap<>();
+                        heartbeatPending = false;
+                    }
+
+                    for (Map.Entry<String, PendingUpdate> update : updates.entrySet()) {
+                        CashStockEventRep cashStockEventRep = new CashStockEventRep(update.getKey(), new ArrayList<>(update.getValue().cashSupplyReps.values()));
+                        send(SseEmitter.event()
+                                .name(update.getValue().reset ? RESET_EVENT : DELTA_EVENT)
+                                .data(cashStockEventRep, MediaType.APPLICATION_JSON));
+                    }
+
+                    if (heartbeat) {
+                        send(SseEmitter.event().comment("heartbeat"));
+                    }
+
+                    lastSendNanos = System.nanoTime();
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.info("Drop the cash stock subscriber: " + e.getMessage());
+                close();
+                emitter.completeWithError(e);
+            }
+
+            sending.set(false);
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (this) {
+                sendStartNanos = System.nanoTime();
+            }
+
+            boolean dropped;
+            try {
+                emitter.send(event);
+            } finally {
+                dropped = endSend();
+            }
+
+            // Completed with the error by the caller, now that the emitter is not locked any more
+            if (dropped) {
+                throw new IOException("The send has been blocked for longer than the send timeout.");
+            }
+        }
+
+        /**
+         * @return true if the subscriber has been dropped while the send was blocked.
+         */
+        private boolean endSend() {
+            boolean threadAdded;
+            synchronized (this) {
+                sendStartNanos = 0;
+                if (!blocked) {
+                    return false;
+                }
+                threadAdded = senderThreadAdded;
+            }
+
+            if (threadAdded) {
+                removeSenderThread();
+            }
+
+            return true;
+        }
+
+        /**
+         * Drop the subscriber if its send has been blocked for longer than the send timeout. The emitter is completed
+         * by the blocked sender thread once the send returns, since the emitter is locked while it sends.
+         *
+         * @param now The current nano time.
+         * @return true if the subscriber has been dropped.
+         */
+        private boolean dropIfBlocked(long now) {
+            long blockedNanos;
+            synchronized (this) {
+                blockedNanos = now - sendStartNanos;
+                if (blocked || sendStartNanos == 0 || blockedNanos <= sendTimeoutNanos) {
+                    return false;
+                }
+
+                blocked = true;
+                senderThreadAdded = addSenderThread();
+            }
+
+            logger.info("Drop the cash stock subscriber whose send has been blocked for " + TimeUnit.NANOSECONDS.toMillis(blockedNanos) + " ms.");
+            close();
+
+            return true;
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                subscriberCount.decrementAndGet();
+            }
+        }
+    }
+}
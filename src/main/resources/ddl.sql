@@ -21,9 +21,12 @@ CREATE TABLE `cash_type` (
 DROP TABLE IF EXISTS `cash_supply`;
 CREATE TABLE `cash_supply` (
   `cash_supply_id` int(11) NOT NULL AUTO_INCREMENT,
+  `machine_id` varchar(45) NOT NULL DEFAULT 'default',
   `cash_type_id` int(11) NOT NULL,
   `cash_quantity` int(11) DEFAULT NULL,
+  `version` bigint(20) NOT NULL DEFAULT 0,
   PRIMARY KEY (`cash_supply_id`),
+  UNIQUE KEY `machine_cash_type_UNIQUE` (`machine_id`, `cash_type_id`),
   KEY `cash_type_idx` (`cash_type_id`),
   CONSTRAINT `cash_type` FOREIGN KEY (`cash_type_id`) REFERENCES `cash_type` (`cash_type_id`) ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -35,12 +38,19 @@ CREATE TABLE `cash_supply` (
 DROP TABLE IF EXISTS `transaction_log`;
 CREATE TABLE `transaction_log` (
   `transaction_log_id` int(11) NOT NULL AUTO_INCREMENT,
+  `machine_id` varchar(45) NOT NULL DEFAULT 'default',
   `bsb` varchar(45) DEFAULT NULL,
   `account_no` varchar(45) DEFAULT NULL,
   `account_name` varchar(45) DEFAULT NULL,
   `total_amount` int(11) NOT NULL,
   `create_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
-  PRIMARY KEY (`transaction_log_id`)
+  `journal_sequence` bigint(20) DEFAULT NULL,
+  `cash_counts` varbinary(64) DEFAULT NULL,
+  PRIMARY KEY (`transaction_log_id`),
+  UNIQUE KEY `journal_sequence_UNIQUE` (`journal_sequence`),
+  KEY `machine_idx` (`machine_id`),
+  KEY `create_at_idx` (`create_at`, `transaction_log_id`),
+  KEY `account_create_at_idx` (`bsb`, `account_no`, `create_at`, `transaction_log_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 --
@@ -59,3 +69,25 @@ CREATE TABLE `transaction_log_detail` (
   CONSTRAINT `transaction_log` FOREIGN KEY (`transaction_log_id`) REFERENCES `transaction_log` (`transaction_log_id`) ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
+
+--
+-- Table structure for table `idempotency_key`
+--
+-- Range partitioned by the key day, the day since the epoch of the request. The partitions of the next days are
+-- split off p_future and the partitions past the retention are dropped by the application, see IdempotencyKeyTable.
+--
+
+DROP TABLE IF EXISTS `idempotency_key`;
+CREATE TABLE `idempotency_key` (
+  `idempotency_key` varchar(64) NOT NULL,
+  `key_day` int(11) NOT NULL,
+  `request` varchar(128) NOT NULL,
+  `status` int(11) NOT NULL,
+  `body` varchar(4000) DEFAULT NULL,
+  `create_at` datetime NOT NULL,
+  PRIMARY KEY (`idempotency_key`, `key_day`),
+  KEY `key_day_idx` (`key_day`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8
+PARTITION BY RANGE (`key_day`) (
+  PARTITION p_future VALUES LESS THAN MAXVALUE
+);
@@ -0,0 +1,9 @@
+--
+-- Add the compact transaction log format to an existing schema.
+--
+-- 1. Run this script, the existing transaction logs keep their detail rows.
+-- 2. Set cashman.transaction-log.format = COMPACT, the new transaction logs are written as one row.
+-- 3. Optionally set cashman.transaction-log.compact-on-startup = true once to pack the old detail rows as well.
+--
+
+ALTER TABLE `transaction_log` ADD COLUMN `cash_counts` varbinary(64) DEFAULT NULL AFTER `journal_sequence`;
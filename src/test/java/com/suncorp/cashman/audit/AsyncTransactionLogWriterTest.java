@@ -0,0 +1,95 @@
+package com.suncorp.cashman.audit;
+
+import com.suncorp.cashman.domain.TransactionLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class AsyncTransactionLogWriterTest {
+
+    private FailingBatchWriter transactionLogBatchWriter;
+
+    private AsyncTransactionLogWriter asyncTransactionLogWriter;
+
+    @Before
+    public void setup() {
+        transactionLogBatchWriter = new FailingBatchWriter();
+
+        // batches of 10, written after 1 ms
+        asyncTransactionLogWriter = new AsyncTransactionLogWriter(transactionLogBatchWriter, 100, 10, 1, 50);
+        asyncTransactionLogWriter.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        asyncTransactionLogWriter.stop();
+    }
+
+    @Test
+    public void failedEntryTest() throws Exception {
+        transactionLogBatchWriter.failingJournalSequence = 3;
+
+        for (long journalSequence = 1; journalSequence <= 5; journalSequence++) {
+            asyncTransactionLogWriter.write(createEntry(journalSequence));
+        }
+
+        // test the scenario - one bad row does not fail the rest of the batch, and is held instead of written
+        asyncTransactionLogWriter.flush();
+        assertThat(transactionLogBatchWriter.writtenJournalSequences, is(Arrays.asList(1L, 2L, 4L, 5L)));
+        assertThat(asyncTransactionLogWriter.getFailedCount(), is(1));
+
+        // test the scenario - the held entry is written once the database takes it
+        transactionLogBatchWriter.failingJournalSequence = 0;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (asyncTransactionLogWriter.getFailedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(asyncTransactionLogWriter.getFailedCount(), is(0));
+        assertThat(transactionLogBatchWriter.writtenJournalSequences, is(Arrays.asList(1L, 2L, 4L, 5L, 3L)));
+    }
+
+    private static TransactionLogEntry createEntry(long journalSequence) {
+        TransactionLog transactionLog = new TransactionLog();
+        transactionLog.setJournalSequence(journalSequence);
+
+        return new TransactionLogEntry(transactionLog, Collections.emptyList());
+    }
+
+    /**
+     * Fails every write which has the failing journal sequence in it.
+     */
+    private static class FailingBatchWriter extends TransactionLogBatchWriter {
+
+        private final List<Long> writtenJournalSequences = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile long failingJournalSequence;
+
+        private FailingBatchWriter() {
+            super(null, null, TransactionLogFormat.DETAIL);
+        }
+
+        @Override
+        public void write(List<TransactionLogEntry> entries) {
+            for (TransactionLogEntry entry : entries) {
+                if (entry.getTransactionLog().getJournalSequence() == failingJournalSequence) {
+                    throw new IllegalStateException("Duplicate journal sequence " + failingJournalSequence);
+                }
+            }
+
+            entries.forEach(entry -> writtenJournalSequences.add(entry.getTransactionLog().getJournalSequence()));
+        }
+    }
+}
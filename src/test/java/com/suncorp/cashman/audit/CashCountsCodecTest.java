@@ -0,0 +1,81 @@
+package com.suncorp.cashman.audit;
+
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class CashCountsCodecTest {
+
+    @Test
+    public void encodeAndDecodeTest() {
+        List<TransactionLogDetail> transactionLogDetails = new ArrayList<>();
+        transactionLogDetails.add(createTransactionLogDetail(100, 3));
+        transactionLogDetails.add(createTransactionLogDetail(50, 200));
+        transactionLogDetails.add(createTransactionLogDetail(1, 0));
+
+        byte[] cashCounts = CashCountsCodec.encode(transactionLogDetails);
+        // the version, 100 and 3 take one byte each, 200 takes two bytes
+        assertThat(cashCounts.length, is(8));
+
+        Map<Integer, String> cashDescs = new HashMap<>();
+        cashDescs.put(100, "One hundred dollars");
+        cashDescs.put(50, "Fifty dollars");
+
+        TransactionLog transactionLog = new TransactionLog();
+        List<TransactionLogDetail> decodedDetails = CashCountsCodec.decode(cashCounts, transactionLog, cashDescs);
+
+        assertThat(decodedDetails.size(), is(3));
+        assertThat(decodedDetails.get(0).getCashDesc(), is("One hundred dollars"));
+        assertThat(decodedDetails.get(0).getCashValue(), is(100));
+        assertThat(decodedDetails.get(0).getQuantity(), is(3));
+        assertThat(decodedDetails.get(1).getCashValue(), is(50));
+        assertThat(decodedDetails.get(1).getQuantity(), is(200));
+        // test the scenario - a cash value without a cash type
+        assertThat(decodedDetails.get(2).getCashDesc(), is(nullValue()));
+        assertThat(decodedDetails.get(2).getCashValue(), is(1));
+        assertThat(decodedDetails.get(2).getQuantity(), is(0));
+        assertThat(decodedDetails.get(2).getTransactionLog() == transactionLog, is(true));
+
+        // test the scenario - no details
+        assertThat(CashCountsCodec.decode(CashCountsCodec.encode(new ArrayList<>()), transactionLog, cashDescs).size(), is(0));
+
+        // test the scenario - the largest quantity
+        transactionLogDetails.add(createTransactionLogDetail(5, Integer.MAX_VALUE));
+        decodedDetails = CashCountsCodec.decode(CashCountsCodec.encode(transactionLogDetails), transactionLog, cashDescs);
+        assertThat(decodedDetails.get(3).getQuantity(), is(Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedCashCountsTest() {
+        List<TransactionLogDetail> transactionLogDetails = new ArrayList<>();
+        transactionLogDetails.add(createTransactionLogDetail(50, 200));
+
+        byte[] cashCounts = CashCountsCodec.encode(transactionLogDetails);
+        byte[] truncatedCashCounts = new byte[cashCounts.length - 1];
+        System.arraycopy(cashCounts, 0, truncatedCashCounts, 0, truncatedCashCounts.length);
+
+        CashCountsCodec.decode(truncatedCashCounts, null, new HashMap<>());
+    }
+
+    private TransactionLogDetail createTransactionLogDetail(int cashValue, int quantity) {
+        TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
+        transactionLogDetail.setCashDesc("$" + cashValue);
+        transactionLogDetail.setCashValue(cashValue);
+        transactionLogDetail.setQuantity(quantity);
+
+        return transactionLogDetail;
+    }
+}
@@ -0,0 +1,138 @@
+package com.suncorp.cashman.audit;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.repository.TransactionLogDetailRepository;
+import com.suncorp.cashman.repository.TransactionLogRepository;
+import com.suncorp.cashman.service.TransactionLogService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The transaction logs are written in the compact format. The readers give the same view of both formats.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {Application.class, H2JpaConfig.class}, properties = "cashman.transaction-log.format=COMPACT")
+public class TransactionLogCompactTest {
+
+    @Autowired
+    private TransactionLogService transactionLogService;
+
+    @Autowired
+    private AsyncTransactionLogWriter asyncTransactionLogWriter;
+
+    @Autowired
+    private TransactionLogCompactor transactionLogCompactor;
+
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+
+    @Autowired
+    private TransactionLogDetailRepository transactionLogDetailRepository;
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    @Autowired
+    private CashTypeRepository cashTypeRepository;
+
+    @Before
+    public void setup() throws Exception {
+        asyncTransactionLogWriter.flush();
+        transactionLogDetailRepository.deleteAllInBatch();
+        transactionLogRepository.deleteAllInBatch();
+        cashSupplyRepository.deleteAllInBatch();
+        cashTypeRepository.deleteAllInBatch();
+
+        // the compact format looks the descriptions up from the cash types
+        for (int cashValue : new int[]{100, 50, 20}) {
+            cashTypeRepository.save(new CashType("$" + cashValue + " note", cashValue));
+        }
+    }
+
+    @Test
+    public void compactTransactionLogTest() throws Exception {
+        Map<CashType, CashSupply> dispenseCashMap = new HashMap<>();
+        dispenseCashMap.put(new CashType("$50 note", 50), new CashSupply(new CashType("$50 note", 50), 1));
+        dispenseCashMap.put(new CashType("$20 note", 20), new CashSupply(new CashType("$20 note", 20), 2));
+
+        transactionLogService.saveTransactionLog(dispenseCashMap, 90);
+        asyncTransactionLogWriter.flush();
+
+        // test the scenario - one row per dispense
+        assertThat(transactionLogRepository.count(), is(1L));
+        assertThat(transactionLogDetailRepository.count(), is(0L));
+
+        // test the scenario - a transaction log written before the switch, in the detail format
+        saveDetailTransactionLog(100);
+
+        TransactionLogPage transactionLogPage = transactionLogService.findTransactionLogs(new TransactionLogFilter(), null, 10);
+        assertThat(transactionLogPage.getEntries().size(), is(2));
+        transactionLogPage.getEntries().forEach(this::assertDetails);
+
+        // test the scenario - migrate the old transaction log
+        assertThat(transactionLogCompactor.compact(), is(1L));
+        assertThat(transactionLogCompactor.compact(), is(0L));
+        assertThat(transactionLogDetailRepository.count(), is(0L));
+
+        transactionLogPage = transactionLogService.findTransactionLogs(new TransactionLogFilter(), null, 10);
+        assertThat(transactionLogPage.getEntries().size(), is(2));
+        transactionLogPage.getEntries().forEach(this::assertDetails);
+
+        // test the scenario - the export unpacks the details
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transactionLogService.exportTransactionLogs(LocalDateTime.now().minusMinutes(1), LocalDateTime.now().plusMinutes(1), ExportFormat.CSV, outputStream);
+
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        // the header, two details of the 90 withdraw and one of the 100 withdraw
+        assertThat(lines.length, is(4));
+    }
+
+    private void assertDetails(TransactionLogEntry entry) {
+        List<TransactionLogDetail> transactionLogDetails = entry.getTransactionLogDetails();
+        int totalAmount = 0;
+
+        for (TransactionLogDetail transactionLogDetail : transactionLogDetails) {
+            assertThat(transactionLogDetail.getCashDesc(), is("$" + transactionLogDetail.getCashValue() + " note"));
+            totalAmount += transactionLogDetail.getCashValue() * transactionLogDetail.getQuantity();
+        }
+
+        assertThat(totalAmount, is(entry.getTransactionLog().getTotalAmount()));
+    }
+
+    private void saveDetailTransactionLog(int totalAmount) {
+        TransactionLog transactionLog = new TransactionLog(new BankAccountDetail("111111", "12345678", "James"), totalAmount, LocalDateTime.now());
+        transactionLogRepository.save(transactionLog);
+
+        TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
+        transactionLogDetail.setTransactionLog(transactionLog);
+        transactionLogDetail.setCashDesc("$" + totalAmount + " note");
+        transactionLogDetail.setCashValue(totalAmount);
+        transactionLogDetail.setQuantity(1);
+        transactionLogDetailRepository.save(transactionLogDetail);
+    }
+}
@@ -0,0 +1,104 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.DispenseResult;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.service.CashService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory withdraw of CashServiceImpl: daily limitation, dispense plan and the inventory update,
+ * without the transaction log. Measured with one thread and with several threads taking from the same inventory.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CashServiceWithdrawBenchmark {
+
+    @Param({"100,50,20,10", "100,50,20,10,5,2,1", "50,20"})
+    private String cashValues;
+
+    @Param({"60", "280", "990"})
+    private int cashAmount;
+
+    private ConfigurableApplicationContext context;
+
+    private CashService cashService;
+
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .web(false)
+                // As arguments, since the default properties of the builder lose to application.properties
+                .run("--cashman.journal.dir=" + Files.createTempDirectory("journal"),
+                        "--cashman.account.daily-withdraw-limitation=" + Integer.MAX_VALUE);
+
+        CashTypeRepository cashTypeRepository = context.getBean(CashTypeRepository.class);
+        CashSupplyRepository cashSupplyRepository = context.getBean(CashSupplyRepository.class);
+
+        // Enough stock to never run out during the benchmark
+        for (String cashValue : cashValues.split(",")) {
+            CashType cashType = new CashType("$" + cashValue, Integer.valueOf(cashValue));
+            cashTypeRepository.save(cashType);
+            cashSupplyRepository.save(new CashSupply(cashType, 1000000000));
+        }
+
+        cashService = context.getBean(CashService.class);
+        cashService.loadCashSupplies();
+        dailyWithdrawLedger = context.getBean(DailyWithdrawLedger.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetDailyWithdrawLedger() {
+        dailyWithdrawLedger.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public DispenseResult withdraw() throws CashSupplyException {
+        return cashService.dispenseCash(cashAmount);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public DispenseResult withdrawContended() throws CashSupplyException {
+        return cashService.dispenseCash(cashAmount);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CashServiceWithdrawBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
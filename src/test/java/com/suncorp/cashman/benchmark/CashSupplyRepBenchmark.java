@@ -0,0 +1,69 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.representation.CashSupplyRep;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The mapping of the dispensed cash and the cash stock to the CashSupplyRep responses of the controller.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CashSupplyRepBenchmark {
+
+    private static final int[] CASH_VALUES = {100, 50, 20, 10, 5, 2, 1};
+
+    @Param({"1", "4", "7"})
+    private int cashTypeCount;
+
+    private final Map<CashType, CashSupply> dispensedCash = new HashMap<>();
+
+    private final List<CashSupply> cashSupplies = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < cashTypeCount; i++) {
+            CashType cashType = new CashType("$" + CASH_VALUES[i], CASH_VALUES[i]);
+            CashSupply cashSupply = new CashSupply(cashType, i + 1);
+
+            dispensedCash.put(cashType, cashSupply);
+            cashSupplies.add(cashSupply);
+        }
+    }
+
+    @Benchmark
+    public List<CashSupplyRep> fromDispensedCash() {
+        return CashSupplyRep.fromDispensedCash(dispensedCash);
+    }
+
+    @Benchmark
+    public List<CashSupplyRep> fromCashSupplies() {
+        return CashSupplyRep.fromCashSupplies(cashSupplies);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CashSupplyRepBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
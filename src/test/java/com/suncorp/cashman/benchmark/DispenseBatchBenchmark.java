@@ -0,0 +1,105 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.controller.CashMachineController;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.service.CashService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare dispensing a burst of withdraws one request at a time with dispensing them in one batch request.
+ * Both benchmarks dispense the same withdraws through the controller, so a score is the number of bursts per second.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class DispenseBatchBenchmark {
+
+    private static final int[] CASH_AMOUNTS = {20, 50, 100, 200, 60, 80, 150, 300};
+
+    @Param({"10", "100"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private CashMachineController cashMachineController;
+
+    private List<Integer> cashAmounts;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .web(false)
+                // As arguments, since the default properties of the builder lose to application.properties
+                .run("--cashman.journal.dir=" + Files.createTempDirectory("journal"),
+                        "--cashman.account.daily-withdraw-limitation=" + Integer.MAX_VALUE);
+
+        CashTypeRepository cashTypeRepository = context.getBean(CashTypeRepository.class);
+        CashSupplyRepository cashSupplyRepository = context.getBean(CashSupplyRepository.class);
+
+        // Enough stock to never run out during the benchmark
+        int[] cashValues = {100, 50, 20, 10};
+        for (int cashValue : cashValues) {
+            CashType cashType = new CashType("$" + cashValue, cashValue);
+            cashTypeRepository.save(cashType);
+            cashSupplyRepository.save(new CashSupply(cashType, 100000000));
+        }
+
+        context.getBean(CashService.class).loadCashSupplies();
+        cashMachineController = context.getBean(CashMachineController.class);
+
+        cashAmounts = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            cashAmounts.add(CASH_AMOUNTS[i % CASH_AMOUNTS.length]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void singleRequests(Blackhole blackhole) {
+        for (Integer cashAmount : cashAmounts) {
+            blackhole.consume(cashMachineController.dispenseCash(cashAmount, null));
+        }
+    }
+
+    @Benchmark
+    public Object batchRequest() {
+        return cashMachineController.dispenseCashBatch(cashAmounts);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DispenseBatchBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
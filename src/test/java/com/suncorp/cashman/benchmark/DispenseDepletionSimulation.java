@@ -0,0 +1,183 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.denomination.Denomination;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.denomination.DenominationSet;
+import com.suncorp.cashman.service.BoundedChangeDispenseStrategy;
+import com.suncorp.cashman.service.DepletionBalancingDispenseStrategy;
+import com.suncorp.cashman.service.DispenseStrategy;
+import com.suncorp.cashman.service.GreedyDispenseStrategy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a synthetic withdraw trace against one cash machine with every dispense strategy, and reports how many
+ * dispenses each strategy survives before the first cash type runs out and before the first dispense fails.
+ *
+ * The machine starts with the initial quantities of denominations.properties times the stock multiplier, and every
+ * strategy replays the same trace from the same stock. A dispense which cannot be supplied is skipped and the trace
+ * goes on. Run it with:
+ *
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=com.suncorp.cashman.benchmark.DispenseDepletionSimulation \
+ *         -Dexec.args="[dispenses] [stock multiplier] [seed]"
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DispenseDepletionSimulation {
+
+    // The common withdraw amounts and how often they are withdrawn
+    private static final int[] CASH_AMOUNTS = {20, 40, 50, 60, 80, 100, 120, 150, 200, 250, 300, 400, 500, 35, 75, 125};
+
+    private static final int[] CASH_AMOUNT_WEIGHTS = {10, 8, 12, 8, 6, 14, 5, 6, 10, 3, 5, 3, 4, 1, 1, 1};
+
+    public static void main(String[] args) throws IOException {
+        int dispenseCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int stockMultiplier = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        DenominationSet denominationSet;
+        try (InputStream inputStream = DispenseDepletionSimulation.class.getResourceAsStream("/denominations.properties")) {
+            denominationSet = DenominationSet.load(inputStream);
+        }
+
+        int[] cashAmounts = generateTrace(dispenseCount, seed);
+
+        System.out.println(String.format("%-22s %14s %12s %14s %10s %12s", "strategy", "first empty", "empty cash",
+                "first failure", "failures", "ns/dispense"));
+
+        for (Map.Entry<String, DispenseStrategy> entry : getStrategies(denominationSet).entrySet()) {
+            SimulationResult result = simulate(entry.getValue(), denominationSet, stockMultiplier, cashAmounts);
+
+            System.out.println(String.format("%-22s %14d %12s %14d %10d %12d", entry.getKey(), result.firstEmptyDispense,
+                    result.firstEmptyCashValue == 0 ? "-" : "$" + result.firstEmptyCashValue, result.firstFailedDispense,
+                    result.failureCount, result.elapsedNanos / cashAmounts.length));
+        }
+    }
+
+    public static Map<String, DispenseStrategy> getStrategies(DenominationSet denominationSet) {
+        Map<String, DispenseStrategy> strategies = new LinkedHashMap<>();
+        strategies.put("greedy", new GreedyDispenseStrategy());
+        strategies.put("bounded-change", new BoundedChangeDispenseStrategy());
+        strategies.put("depletion-balancing", new DepletionBalancingDispenseStrategy(new DenominationConfig(denominationSet)));
+
+        return strategies;
+    }
+
+    /**
+     * @param dispenseCount The number of withdraws.
+     * @param seed          The seed of the random amounts, the same seed always gives the same trace.
+     * @return the withdraw amounts in order.
+     */
+    public static int[] generateTrace(int dispenseCount, long seed) {
+        int totalWeight = 0;
+        for (int weight : CASH_AMOUNT_WEIGHTS) {
+            totalWeight += weight;
+        }
+
+        Random random = new Random(seed);
+        int[] cashAmounts = new int[dispenseCount];
+        for (int index = 0; index < dispenseCount; index++) {
+            int pick = random.nextInt(totalWeight);
+            int amountIndex = 0;
+            while (pick >= CASH_AMOUNT_WEIGHTS[amountIndex]) {
+                pick -= CASH_AMOUNT_WEIGHTS[amountIndex++];
+            }
+
+            cashAmounts[index] = CASH_AMOUNTS[amountIndex];
+        }
+
+        return cashAmounts;
+    }
+
+    /**
+     * Replay the trace with the strategy from the initial stock of the denominations.
+     *
+     * @param dispenseStrategy The dispense strategy.
+     * @param denominationSet  The denominations with their initial quantities.
+     * @param stockMultiplier  The initial quantities are multiplied by it.
+     * @param cashAmounts      The withdraw amounts in order.
+     * @return the result of the replay.
+     */
+    public static SimulationResult simulate(DispenseStrategy dispenseStrategy, DenominationSet denominationSet, int stockMultiplier,
+                                            int[] cashAmounts) {
+        List<Denomination> denominations = denominationSet.getDenominations();
+        int size = denominations.size();
+        int[] cashValues = new int[size];
+        int[] cashQuantities = new int[size];
+        int[] dispenseQuantities = new int[size];
+        for (int i = 0; i < size; i++) {
+            cashValues[i] = denominations.get(i).getCashValue();
+            cashQuantities[i] = denominations.get(i).getInitialQuantity() * stockMultiplier;
+        }
+
+        SimulationResult result = new SimulationResult(cashAmounts.length);
+        long startNanos = System.nanoTime();
+
+        for (int index = 0; index < cashAmounts.length; index++) {
+            int cashAmount = cashAmounts[index];
+
+            if (dispenseStrategy.dispense(cashAmount, cashValues, cashQuantities, dispenseQuantities) != cashAmount) {
+                result.failureCount++;
+                result.firstFailedDispense = Math.min(result.firstFailedDispense, index);
+                continue;
+            }
+
+            for (int i = 0; i < size; i++) {
+                cashQuantities[i] -= dispenseQuantities[i];
+
+                if (cashQuantities[i] == 0 && result.firstEmptyCashValue == 0) {
+                    result.firstEmptyDispense = index + 1;
+                    result.firstEmptyCashValue = cashValues[i];
+                }
+            }
+        }
+
+        result.elapsedNanos = System.nanoTime() - startNanos;
+
+        return result;
+    }
+
+    public static final class SimulationResult {
+
+        // The number of dispenses up to the one which took the last note of a cash type
+        private int firstEmptyDispense;
+
+        // The cash value which ran out first, 0 when none ran out
+        private int firstEmptyCashValue;
+
+        // The number of dispenses before the first one which could not be supplied
+        private int firstFailedDispense;
+
+        private int failureCount;
+
+        private long elapsedNanos;
+
+        private SimulationResult(int dispenseCount) {
+            this.firstEmptyDispense = dispenseCount;
+            this.firstFailedDispense = dispenseCount;
+        }
+
+        public int getFirstEmptyDispense() {
+            return firstEmptyDispense;
+        }
+
+        public int getFirstEmptyCashValue() {
+            return firstEmptyCashValue;
+        }
+
+        public int getFirstFailedDispense() {
+            return firstFailedDispense;
+        }
+
+        public int getFailureCount() {
+            return failureCount;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.controller.CashMachineController;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.service.CashService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A dispense request end to end against the embedded H2 database: the controller, the dispense, the journal,
+ * the transaction log and the mapping of the response. The idempotent dispense sends a new idempotency key every
+ * time, which is the cost of the claim and the stored response on top of the dispense.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispenseEndToEndBenchmark {
+
+    @Param({"MEMORY", "OPTIMISTIC"})
+    private InventoryMode inventoryMode;
+
+    @Param({"60", "280", "990"})
+    private int cashAmount;
+
+    private ConfigurableApplicationContext context;
+
+    private CashMachineController cashMachineController;
+
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
+    private final AtomicLong idempotencyKeyCount = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .web(false)
+                // As arguments, since the default properties of the builder lose to application.properties
+                .run("--cashman.inventory.mode=" + inventoryMode,
+                        "--cashman.dispense.max-attempts=100",
+                        "--cashman.journal.dir=" + Files.createTempDirectory("journal"),
+                        "--cashman.account.daily-withdraw-limitation=" + Integer.MAX_VALUE);
+
+        CashTypeRepository cashTypeRepository = context.getBean(CashTypeRepository.class);
+        CashSupplyRepository cashSupplyRepository = context.getBean(CashSupplyRepository.class);
+
+        // Enough stock to never run out during the benchmark
+        int[] cashValues = {100, 50, 20, 10};
+        for (int cashValue : cashValues) {
+            CashType cashType = new CashType("$" + cashValue, cashValue);
+            cashTypeRepository.save(cashType);
+            cashSupplyRepository.save(new CashSupply(cashType, 1000000000));
+        }
+
+        context.getBean(CashService.class).loadCashSupplies();
+        cashMachineController = context.getBean(CashMachineController.class);
+        dailyWithdrawLedger = context.getBean(DailyWithdrawLedger.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetDailyWithdrawLedger() {
+        dailyWithdrawLedger.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ResponseEntity dispenseCash() {
+        return cashMachineController.dispenseCash(cashAmount, null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ResponseEntity dispenseCashContended() {
+        return cashMachineController.dispenseCash(cashAmount, null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ResponseEntity dispenseCashIdempotent() {
+        return cashMachineController.dispenseCash(cashAmount, "benchmark-" + idempotencyKeyCount.incrementAndGet());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DispenseEndToEndBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
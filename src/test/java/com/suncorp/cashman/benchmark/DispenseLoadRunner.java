@@ -0,0 +1,346 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.service.CashService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the blocking and the async dispense endpoints over real HTTP connections to the embedded Tomcat.
+ *
+ * Every connection sends one dispense at a time on a keep-alive connection and sends the next one as soon as the
+ * response is read, so the number of connections is the number of concurrent requests. All the connections are
+ * driven by one selector thread. The requests of the warmup are not measured.
+ *
+ * It is not a JMH benchmark: JMH measures a method call, while this measures the sustained throughput and the tail
+ * latency of the whole server under many concurrent connections. Run it with:
+ *
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=com.suncorp.cashman.benchmark.DispenseLoadRunner \
+ *         -Dexec.args="[connections] [seconds] [MEMORY|OPTIMISTIC|PESSIMISTIC]"
+ *
+ * 10000 connections need a higher open files limit than the usual default, e.g. ulimit -n 65536.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DispenseLoadRunner {
+
+    private static final int CASH_AMOUNT = 60;
+
+    private static final int WARMUP_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        InventoryMode inventoryMode = args.length > 2 ? InventoryMode.valueOf(args[2]) : InventoryMode.MEMORY;
+
+        String[] paths = {"/cashMachine/dispenseCash/" + CASH_AMOUNT, "/cashMachine/dispenseCash/" + CASH_AMOUNT + "/async"};
+
+        System.out.println(String.format("%-40s %12s %10s %10s %10s %10s %10s %10s", "endpoint", "connections", "rps", "errors",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+        for (String path : paths) {
+            ConfigurableApplicationContext context = start(inventoryMode);
+            try {
+                int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+
+                LoadResult loadResult = new LoadClient(port, path, connections).run(WARMUP_SECONDS, seconds);
+                System.out.println(String.format("%-40s %12d %10.0f %10d %10.2f %10.2f %10.2f %10.2f", path, loadResult.connections,
+                        loadResult.getRequestsPerSecond(), loadResult.errorCount, loadResult.getPercentileMillis(0.5),
+                        loadResult.getPercentileMillis(0.99), loadResult.getPercentileMillis(0.999), loadResult.getPercentileMillis(1)));
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(InventoryMode inventoryMode) throws IOException {
+        // Tomcat stops accepting at 10000 connections by default
+        EmbeddedServletContainerCustomizer connectionsCustomizer = container -> {
+            if (container instanceof TomcatEmbeddedServletContainerFactory) {
+                ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+                    connector.setProperty("maxConnections", "50000");
+                    connector.setProperty("acceptCount", "10000");
+                });
+            }
+        };
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .initializers(applicationContext -> applicationContext.getBeanFactory().registerSingleton("connectionsCustomizer", connectionsCustomizer))
+                // As arguments, since the default properties of the builder lose to application.properties
+                .run("--server.port=0",
+                        "--logging.level.root=WARN",
+                        "--cashman.inventory.mode=" + inventoryMode,
+                        "--cashman.dispense.max-attempts=100",
+                        "--cashman.journal.dir=" + Files.createTempDirectory("journal"),
+                        "--cashman.account.daily-withdraw-limitation=" + Integer.MAX_VALUE);
+
+        CashTypeRepository cashTypeRepository = context.getBean(CashTypeRepository.class);
+        CashSupplyRepository cashSupplyRepository = context.getBean(CashSupplyRepository.class);
+
+        // Enough stock to never run out during the load test
+        int[] cashValues = {100, 50, 20, 10};
+        for (int cashValue : cashValues) {
+            CashType cashType = new CashType("$" + cashValue, cashValue);
+            cashTypeRepository.save(cashType);
+            cashSupplyRepository.save(new CashSupply(cashType, 1000000000));
+        }
+
+        context.getBean(CashService.class).loadCashSupplies();
+
+        return context;
+    }
+
+    private static final class LoadResult {
+
+        private final int connections;
+
+        private final long requestCount;
+
+        private final long errorCount;
+
+        private final long elapsedNanos;
+
+        private final long[] latencyNanos;
+
+        private LoadResult(int connections, long requestCount, long errorCount, long elapsedNanos, long[] latencyNanos) {
+            this.connections = connections;
+            this.requestCount = requestCount;
+            this.errorCount = errorCount;
+            this.elapsedNanos = elapsedNanos;
+            this.latencyNanos = latencyNanos;
+        }
+
+        private double getRequestsPerSecond() {
+            return requestCount * 1e9 / elapsedNanos;
+        }
+
+        private double getPercentileMillis(double percentile) {
+            if (latencyNanos.length == 0) {
+                return Double.NaN;
+            }
+
+            int index = (int) Math.min(latencyNanos.length - 1, Math.ceil(percentile * latencyNanos.length) - 1);
+            return latencyNanos[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    /**
+     * Drives all the connections from one selector thread.
+     */
+    private static final class LoadClient {
+
+        private final InetSocketAddress address;
+
+        private final byte[] request;
+
+        private final int connections;
+
+        private long[] latencyNanos = new long[1 << 20];
+
+        private int latencyCount;
+
+        private long requestCount;
+
+        private long errorCount;
+
+        private LoadClient(int port, String path, int connections) {
+            this.address = new InetSocketAddress("127.0.0.1", port);
+            this.request = ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            this.connections = connections;
+        }
+
+        private LoadResult run(int warmupSeconds, int seconds) throws IOException {
+            try (Selector selector = Selector.open()) {
+                int openedConnections = 0;
+                for (int i = 0; i < connections; i++) {
+                    try {
+                        SocketChannel channel = SocketChannel.open();
+                        channel.configureBlocking(false);
+                        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                        channel.connect(address);
+                        channel.register(selector, SelectionKey.OP_CONNECT, new Connection(channel));
+                        openedConnections++;
+                    } catch (IOException e) {
+                        System.err.println("Could only open " + openedConnections + " connections: " + e.getMessage());
+                        break;
+                    }
+                }
+
+                long startNanos = System.nanoTime();
+                long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+                long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(seconds);
+
+                long now;
+                while ((now = System.nanoTime()) < endNanos) {
+                    selector.select(100);
+
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isConnectable()) {
+                                connection.channel.finishConnect();
+                                send(key, connection);
+                            } else if (key.isWritable()) {
+                                write(key, connection);
+                            } else if (key.isReadable()) {
+                                read(key, connection, measureStartNanos);
+                            }
+                        } catch (IOException e) {
+                            errorCount++;
+                            key.cancel();
+                            connection.channel.close();
+                        }
+                    }
+                }
+
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+
+                long[] measuredLatencyNanos = Arrays.copyOf(latencyNanos, latencyCount);
+                Arrays.sort(measuredLatencyNanos);
+
+                return new LoadResult(openedConnections, requestCount, errorCount, now - measureStartNanos, measuredLatencyNanos);
+            }
+        }
+
+        private void send(SelectionKey key, Connection connection) throws IOException {
+            connection.requestBuffer = ByteBuffer.wrap(request);
+            connection.sendNanos = System.nanoTime();
+            write(key, connection);
+        }
+
+        private void write(SelectionKey key, Connection connection) throws IOException {
+            connection.channel.write(connection.requestBuffer);
+            key.interestOps(connection.requestBuffer.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        private void read(SelectionKey key, Connection connection, long measureStartNanos) throws IOException {
+            if (connection.channel.read(connection.responseBuffer) < 0) {
+                throw new IOException("The connection has been closed.");
+            }
+
+            int status = connection.getCompleteResponseStatus();
+            if (status < 0) {
+                return;
+            }
+
+            long receiveNanos = System.nanoTime();
+            if (connection.sendNanos >= measureStartNanos) {
+                if (status == 200) {
+                    requestCount++;
+                    recordLatency(receiveNanos - connection.sendNanos);
+                } else {
+                    errorCount++;
+                }
+            }
+
+            connection.responseBuffer.clear();
+            send(key, connection);
+        }
+
+        private void recordLatency(long nanos) {
+            if (latencyCount == latencyNanos.length) {
+                latencyNanos = Arrays.copyOf(latencyNanos, latencyNanos.length * 2);
+            }
+
+            latencyNanos[latencyCount++] = nanos;
+        }
+    }
+
+    private static final class Connection {
+
+        private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        private final SocketChannel channel;
+
+        private final ByteBuffer responseBuffer = ByteBuffer.allocate(64 * 1024);
+
+        private ByteBuffer requestBuffer;
+
+        private long sendNanos;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Only one request is outstanding on a connection, so the buffer holds at most one response.
+         *
+         * @return the status code once the whole response has been read, -1 before that.
+         */
+        private int getCompleteResponseStatus() {
+            byte[] bytes = responseBuffer.array();
+            int length = responseBuffer.position();
+
+            int headerEnd = indexOf(bytes, length, "\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            if (headerEnd < 0) {
+                return -1;
+            }
+
+            String headers = new String(bytes, 0, headerEnd, StandardCharsets.US_ASCII).toLowerCase();
+            int bodyStart = headerEnd + 4;
+
+            int contentLengthIndex = headers.indexOf("\r\ncontent-length:");
+            if (contentLengthIndex >= 0) {
+                int valueEnd = headers.indexOf("\r\n", contentLengthIndex + 2);
+                String contentLength = headers.substring(contentLengthIndex + 17, valueEnd < 0 ? headers.length() : valueEnd).trim();
+
+                if (length < bodyStart + Integer.parseInt(contentLength)) {
+                    return -1;
+                }
+            } else if (headers.contains("\r\ntransfer-encoding: chunked")) {
+                if (length - bodyStart < LAST_CHUNK.length
+                        || indexOf(Arrays.copyOfRange(bytes, length - LAST_CHUNK.length, length), LAST_CHUNK.length, LAST_CHUNK) != 0) {
+                    return -1;
+                }
+            }
+
+            // HTTP/1.1 200 ...
+            return Integer.parseInt(headers.substring(9, 12));
+        }
+
+        private static int indexOf(byte[] bytes, int length, byte[] pattern) {
+            for (int i = 0; i <= length - pattern.length; i++) {
+                int j = 0;
+                while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                    j++;
+                }
+
+                if (j == pattern.length) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.controller.CashMachineController;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.service.CashService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The dispense endpoint end to end with the logging of the dispense path written to a file:
+ * - every-sql-sync: every SQL statement and every step log, written on the request thread, as show-sql did
+ * - sampled-sync: one key=value event per dispense and a sample of the SQL statements, written on the request thread
+ * - sampled-async: the same on the async loggers of the disruptor, as log4j2.xml does
+ *
+ * The log4j2-benchmark-*.xml of the logging modes are in the test resources.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispenseLoggingBenchmark {
+
+    @Param({"every-sql-sync", "sampled-sync", "sampled-async"})
+    private String loggingMode;
+
+    @Param({"MEMORY", "OPTIMISTIC"})
+    private InventoryMode inventoryMode;
+
+    private ConfigurableApplicationContext context;
+
+    private CashMachineController cashMachineController;
+
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        double sqlSampleRate = "every-sql-sync".equals(loggingMode) ? 0 : 0.001;
+
+        context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .web(false)
+                // Passed as arguments, the default properties would lose to application.properties
+                .run("--logging.config=classpath:log4j2-benchmark-" + loggingMode + ".xml",
+                        "--logging.path=" + Files.createTempDirectory("logs"),
+                        "--cashman.logging.sql.sample-rate=" + sqlSampleRate,
+                        "--cashman.inventory.mode=" + inventoryMode,
+                        "--cashman.dispense.max-attempts=100",
+                        "--cashman.journal.dir=" + Files.createTempDirectory("journal"),
+                        "--cashman.account.daily-withdraw-limitation=" + Integer.MAX_VALUE);
+
+        CashTypeRepository cashTypeRepository = context.getBean(CashTypeRepository.class);
+        CashSupplyRepository cashSupplyRepository = context.getBean(CashSupplyRepository.class);
+
+        // Enough stock to never run out during the benchmark
+        int[] cashValues = {100, 50, 20, 10};
+        for (int cashValue : cashValues) {
+            CashType cashType = new CashType("$" + cashValue, cashValue);
+            cashTypeRepository.save(cashType);
+            cashSupplyRepository.save(new CashSupply(cashType, 1000000000));
+        }
+
+        context.getBean(CashService.class).loadCashSupplies();
+        cashMachineController = context.getBean(CashMachineController.class);
+        dailyWithdrawLedger = context.getBean(DailyWithdrawLedger.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetDailyWithdrawLedger() {
+        dailyWithdrawLedger.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ResponseEntity dispenseCash() {
+        return cashMachineController.dispenseCash(280, null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ResponseEntity dispenseCashContended() {
+        return cashMachineController.dispenseCash(280, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DispenseLoggingBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
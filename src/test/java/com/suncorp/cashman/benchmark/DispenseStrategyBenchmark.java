@@ -0,0 +1,90 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.denomination.Denomination;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.denomination.DenominationSet;
+import com.suncorp.cashman.service.BoundedChangeDispenseStrategy;
+import com.suncorp.cashman.service.DepletionBalancingDispenseStrategy;
+import com.suncorp.cashman.service.DispenseStrategy;
+import com.suncorp.cashman.service.GreedyDispenseStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the bounded coin change and the depletion balancing dispense strategies with the original greedy one.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispenseStrategyBenchmark {
+
+    private static final int MAX_CASH_AMOUNT = 10000;
+
+    @Param({"greedy", "boundedChange", "depletionBalancing"})
+    private String strategyName;
+
+    private DispenseStrategy dispenseStrategy;
+
+    // Enough stock to supply every amount up to MAX_CASH_AMOUNT
+    private final int[] cashValues = {100, 50, 20, 10, 5, 2, 1};
+
+    private final int[] cashQuantities = {60, 40, 60, 80, 100, 100, 100};
+
+    private final int[] dispenseQuantities = new int[cashValues.length];
+
+    @Setup
+    public void setup() {
+        if ("greedy".equals(strategyName)) {
+            dispenseStrategy = new GreedyDispenseStrategy();
+        } else if ("depletionBalancing".equals(strategyName)) {
+            DenominationSet denominationSet = new DenominationSet(Arrays.asList(
+                    new Denomination(100, "$100", 60, 2), new Denomination(50, "$50", 40, 3), new Denomination(20, "$20", 60, 4),
+                    new Denomination(10, "$10", 80, 5), new Denomination(5, "$5", 100, 6), new Denomination(2, "$2", 100, 7),
+                    new Denomination(1, "$1", 100, 8)));
+            dispenseStrategy = new DepletionBalancingDispenseStrategy(new DenominationConfig(denominationSet));
+        } else {
+            dispenseStrategy = new BoundedChangeDispenseStrategy();
+        }
+    }
+
+    @Benchmark
+    public int dispense(CashAmount cashAmount) {
+        return dispenseStrategy.dispense(cashAmount.cashAmount, cashValues, cashQuantities, dispenseQuantities);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAX_CASH_AMOUNT)
+    public void dispenseAllAmounts(Blackhole blackhole) {
+        for (int amount = 1; amount <= MAX_CASH_AMOUNT; amount++) {
+            blackhole.consume(dispenseStrategy.dispense(amount, cashValues, cashQuantities, dispenseQuantities));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CashAmount {
+
+        @Param({"1", "60", "385", "1000", "4875", "10000"})
+        private int cashAmount;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DispenseStrategyBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.service.TransactionLogService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving the transaction log of a dispense: the journal append and sync, and the hand over to the background
+ * writer which inserts into the embedded H2 database.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionLogBenchmark {
+
+    private static final int[] CASH_VALUES = {100, 50, 20, 10, 5, 2, 1};
+
+    @Param({"true", "false"})
+    private boolean journalEnabled;
+
+    @Param({"1", "4", "7"})
+    private int cashTypeCount;
+
+    private ConfigurableApplicationContext context;
+
+    private TransactionLogService transactionLogService;
+
+    private final Map<CashType, CashSupply> dispensedCash = new HashMap<>();
+
+    private int cashAmount;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .web(false)
+                // As arguments, since the default properties of the builder lose to application.properties
+                .run("--cashman.journal.enabled=" + journalEnabled,
+                        "--cashman.journal.dir=" + Files.createTempDirectory("journal"));
+
+        transactionLogService = context.getBean(TransactionLogService.class);
+
+        for (int i = 0; i < cashTypeCount; i++) {
+            CashType cashType = new CashType("$" + CASH_VALUES[i], CASH_VALUES[i]);
+            dispensedCash.put(cashType, new CashSupply(cashType, 2));
+            cashAmount += CASH_VALUES[i] * 2;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void saveTransactionLog() {
+        transactionLogService.saveTransactionLog(dispensedCash, cashAmount);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void saveTransactionLogContended() {
+        transactionLogService.saveTransactionLog(dispensedCash, cashAmount);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TransactionLogBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
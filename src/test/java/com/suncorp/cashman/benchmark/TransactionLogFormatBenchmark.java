@@ -0,0 +1,128 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.audit.TransactionLogBatchWriter;
+import com.suncorp.cashman.audit.TransactionLogEntry;
+import com.suncorp.cashman.audit.TransactionLogFormat;
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert rate of the transaction logs in the detail and the compact format, written in batches the way the background
+ * writer does against the embedded H2 database. The row counts and the table sizes are printed at the end of a trial.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionLogFormatBenchmark {
+
+    private static final int[] CASH_VALUES = {100, 50, 20, 10, 5, 2, 1};
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"DETAIL", "COMPACT"})
+    private TransactionLogFormat transactionLogFormat;
+
+    @Param({"1", "4", "7"})
+    private int cashTypeCount;
+
+    private ConfigurableApplicationContext context;
+
+    private TransactionLogBatchWriter transactionLogBatchWriter;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final BankAccountDetail bankAccountDetail = new BankAccountDetail("111111", "12345678", "James");
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .web(false)
+                // As arguments, since the default properties of the builder lose to application.properties
+                .run("--cashman.journal.enabled=false", "--cashman.transaction-log.format=" + transactionLogFormat);
+
+        transactionLogBatchWriter = context.getBean(TransactionLogBatchWriter.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println(transactionLogFormat + " with " + cashTypeCount + " cash values:"
+                + " transaction_log rows " + count("transaction_log") + ", " + tableSize("transaction_log") + " bytes;"
+                + " transaction_log_detail rows " + count("transaction_log_detail") + ", " + tableSize("transaction_log_detail") + " bytes");
+
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeBatch() {
+        List<TransactionLogEntry> entries = new ArrayList<>(BATCH_SIZE);
+        LocalDateTime createAt = LocalDateTime.now();
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            TransactionLog transactionLog = new TransactionLog(bankAccountDetail, 0, createAt);
+            List<TransactionLogDetail> transactionLogDetails = new ArrayList<>(cashTypeCount);
+
+            for (int j = 0; j < cashTypeCount; j++) {
+                TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
+                transactionLogDetail.setCashDesc("$" + CASH_VALUES[j]);
+                transactionLogDetail.setCashValue(CASH_VALUES[j]);
+                transactionLogDetail.setQuantity(2);
+                transactionLogDetail.setTransactionLog(transactionLog);
+
+                transactionLogDetails.add(transactionLogDetail);
+                transactionLog.setTotalAmount(transactionLog.getTotalAmount() + CASH_VALUES[j] * 2);
+            }
+
+            entries.add(new TransactionLogEntry(transactionLog, transactionLogDetails));
+        }
+
+        transactionLogBatchWriter.write(entries);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+
+    /**
+     * @return the approximate size of the table without its indexes, -1 if the database can not tell.
+     */
+    private long tableSize(String table) {
+        try {
+            return jdbcTemplate.queryForObject("select disk_space_used('" + table.toUpperCase() + "')", Long.class);
+        } catch (DataAccessException e) {
+            return -1;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TransactionLogFormatBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,90 @@
+package com.suncorp.cashman.benchmark;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.service.TransactionalCashDispenser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the throughput of the optimistic and the pessimistic locking dispense against the embedded H2 database
+ * with several threads dispensing at the same time.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class TransactionalDispenseBenchmark {
+
+    @Param({"OPTIMISTIC", "PESSIMISTIC"})
+    private InventoryMode inventoryMode;
+
+    @Param({"180"})
+    private int cashAmount;
+
+    private ConfigurableApplicationContext context;
+
+    private TransactionalCashDispenser transactionalCashDispenser;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(Application.class, H2JpaConfig.class)
+                .web(false)
+                // As arguments, since the default properties of the builder lose to application.properties
+                .run("--cashman.inventory.mode=" + inventoryMode, "--cashman.dispense.max-attempts=100");
+
+        CashTypeRepository cashTypeRepository = context.getBean(CashTypeRepository.class);
+        CashSupplyRepository cashSupplyRepository = context.getBean(CashSupplyRepository.class);
+
+        // Enough stock to never run out during the benchmark
+        int[] cashValues = {100, 50, 20, 10};
+        for (int cashValue : cashValues) {
+            CashType cashType = new CashType("$" + cashValue, cashValue);
+            cashTypeRepository.save(cashType);
+            cashSupplyRepository.save(new CashSupply(cashType, 100000000));
+        }
+
+        transactionalCashDispenser = context.getBean(TransactionalCashDispenser.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println(inventoryMode + " conflicts: " + transactionalCashDispenser.getConflictCount()
+                + ", retries: " + transactionalCashDispenser.getRetryCount());
+
+        context.close();
+    }
+
+    @Benchmark
+    public int dispense() throws CashSupplyException {
+        return transactionalCashDispenser.dispense(CashSupply.DEFAULT_MACHINE_ID, cashAmount, inventoryMode == InventoryMode.PESSIMISTIC, new HashMap<>());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TransactionalDispenseBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -4,14 +4,18 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.suncorp.cashman.Application;
 import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.MessageConstants;
+import com.suncorp.cashman.audit.AsyncTransactionLogWriter;
 import com.suncorp.cashman.domain.CashSupply;
 import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
 import com.suncorp.cashman.repository.CashSupplyRepository;
 import com.suncorp.cashman.repository.CashTypeRepository;
 import com.suncorp.cashman.repository.TransactionLogDetailRepository;
+import com.suncorp.cashman.repository.TransactionLogRepository;
 import com.suncorp.cashman.representation.CashSupplyRep;
+import com.suncorp.cashman.representation.DispenseResultRep;
 import com.suncorp.cashman.service.CashService;
-import com.suncorp.cashman.service.CashServiceImpl;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,18 +23,23 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -38,7 +47,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = {Application.class, H2JpaConfig.class})
+@SpringBootTest(classes = {Application.class, H2JpaConfig.class}, properties = "cashman.account.daily-ledger.enabled=true")
 @AutoConfigureMockMvc
 public class CashMachineControllerTest {
     @Autowired
@@ -53,18 +62,30 @@ public class CashMachineControllerTest {
     @Autowired
     private TransactionLogDetailRepository transactionLogDetailRepository;
 
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
     private CashService cashService;
 
-    @Before
-    public void setup() {
-        cashService = new CashServiceImpl(this.cashSupplyRepository, this.cashTypeRepository);
+    @Autowired
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
+    @Autowired
+    private AsyncTransactionLogWriter asyncTransactionLogWriter;
 
+    @Before
+    public void setup() throws Exception {
+        // the transaction logs of the last test may still be queued
+        asyncTransactionLogWriter.flush();
         transactionLogDetailRepository.deleteAllInBatch();
+        transactionLogRepository.deleteAllInBatch();
         cashSupplyRepository.deleteAllInBatch();
         cashTypeRepository.deleteAllInBatch();
+        dailyWithdrawLedger.clear();
 
         CashType cashType = new CashType("$100", 100);
         cashTypeRepository.save(cashType);
@@ -85,6 +106,8 @@ public class CashMachineControllerTest {
         cashTypeRepository.save(cashType);
         cashSupply = new CashSupply(cashType, 4);
         cashSupplyRepository.save(cashSupply);
+
+        cashService.loadCashSupplies();
     }
 
     @Test
@@ -137,7 +160,7 @@ public class CashMachineControllerTest {
 
         content = result.getResponse().getContentAsString();
         assertThat(content, is("Sorry, this ATM cannot supply the amount required $55 with current stock. " +
-                "The closest amount that can be supplied is $50. Please try again later."));
+                "The closest amounts that can be supplied are $50 and $60. Please try again later."));
 
         // test the scenario - cannot withdraw with existing cash supply
         result = this.mockMvc.perform(get("/cashMachine/dispenseCash/400"))
@@ -159,6 +182,125 @@ public class CashMachineControllerTest {
 
     }
 
+    @Test
+    public void dispenseCashIdempotencyKeyTest() throws Exception {
+        int withdrawLimitation = cashService.getAccountCashWithdrawLimitation();
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        MvcResult result = this.mockMvc.perform(get("/cashMachine/dispenseCash/150")
+                .header(CashMachineController.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+                .andExpect(status().isOk())
+                .andReturn();
+        String content = result.getResponse().getContentAsString();
+
+        // test the scenario - a retry with the same key gets the same response without dispensing the cash again
+        result = this.mockMvc.perform(get("/cashMachine/dispenseCash/150")
+                .header(CashMachineController.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsString(), is(content));
+        assertThat(result.getResponse().getHeader(CashMachineController.IDEMPOTENT_REPLAYED_HEADER), is("true"));
+        assertThat(cashService.getAccountCashWithdrawLimitation(), is(withdrawLimitation - 150));
+
+        Map<Integer, Integer> currentStock = new HashMap<>();
+        cashService.getCurrentCashSupplies().forEach(cashSupply -> {
+            currentStock.put(cashSupply.getCashType().getCashValue(), cashSupply.getCashQuantity());
+        });
+        assertThat(currentStock.get(100), is(1));
+        assertThat(currentStock.get(50), is(1));
+
+        // test the scenario - a failed dispense is replayed as well
+        String failedIdempotencyKey = UUID.randomUUID().toString();
+        result = this.mockMvc.perform(get("/cashMachine/dispenseCash/55")
+                .header(CashMachineController.IDEMPOTENCY_KEY_HEADER, failedIdempotencyKey))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+        content = result.getResponse().getContentAsString();
+
+        result = this.mockMvc.perform(get("/cashMachine/dispenseCash/55")
+                .header(CashMachineController.IDEMPOTENCY_KEY_HEADER, failedIdempotencyKey))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+        assertThat(result.getResponse().getContentAsString(), is(content));
+
+        // test the scenario - the key is reused for a different amount
+        result = this.mockMvc.perform(get("/cashMachine/dispenseCash/100")
+                .header(CashMachineController.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+                .andExpect(status().isUnprocessableEntity())
+                .andReturn();
+        assertThat(result.getResponse().getContentAsString(), is(MessageConstants.IDEMPOTENCY_KEY_REUSED_ERROR_MESSAGE));
+
+        // test the scenario - the async endpoint replays the response of the same key
+        result = this.mockMvc.perform(get("/cashMachine/dispenseCash/150/async")
+                .header(CashMachineController.IDEMPOTENCY_KEY_HEADER, idempotencyKey))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertThat(cashService.getAccountCashWithdrawLimitation(), is(withdrawLimitation - 150));
+
+        // test the scenario - the key is too long
+        this.mockMvc.perform(get("/cashMachine/dispenseCash/100")
+                .header(CashMachineController.IDEMPOTENCY_KEY_HEADER, idempotencyKey + idempotencyKey))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void dispenseCashBatchControllerTest() throws Exception {
+        int withdrawLimitation = cashService.getAccountCashWithdrawLimitation();
+
+        MvcResult result = this.mockMvc.perform(post("/cashMachine/dispenseCash/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[100, 90, 55, 400, " + (withdrawLimitation + 1) + ", 100]"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String content = result.getResponse().getContentAsString();
+        List<DispenseResultRep> dispenseResultRepList = objectMapper.readValue(content, new TypeReference<List<DispenseResultRep>>() {
+        });
+
+        assertThat(dispenseResultRepList.size(), is(6));
+
+        // test the scenario - the withdraws are dispensed in order from what is left
+        assertThat(dispenseResultRepList.get(0).isSuccess(), is(true));
+        assertThat(dispenseResultRepList.get(0).getCashSupplies().size(), is(1));
+        assertThat(dispenseResultRepList.get(0).getCashSupplies().get(0).getCashValue(), is(100));
+
+        assertThat(dispenseResultRepList.get(1).isSuccess(), is(true));
+        assertThat(dispenseResultRepList.get(1).getCashSupplies().size(), is(2));
+
+        // test the scenario - the failed withdraws are reported inline
+        assertThat(dispenseResultRepList.get(2).isSuccess(), is(false));
+        assertThat(dispenseResultRepList.get(2).getErrorMessage(), is("Sorry, this ATM cannot supply the amount required $55 with current stock. " +
+                "The closest amounts that can be supplied are $50 and $60. Please try again later."));
+
+        assertThat(dispenseResultRepList.get(3).isSuccess(), is(false));
+        assertThat(dispenseResultRepList.get(3).getErrorMessage(), is("Sorry, this ATM cannot supply the amount required $400 with current stock. " +
+                "The closest amount that can be supplied is $210. Please try again later."));
+
+        // test the scenario - the earlier withdraws of the batch are held against the daily limitation until the batch is dispensed
+        assertThat(dispenseResultRepList.get(4).isSuccess(), is(false));
+        assertThat(dispenseResultRepList.get(4).getErrorMessage(), is("Sorry, the amount $" + (withdrawLimitation + 1) + " is over your withdraw limitation. The amount you can withdraw is $" + (withdrawLimitation - 590) + " today."));
+
+        assertThat(dispenseResultRepList.get(5).isSuccess(), is(true));
+        assertThat(dispenseResultRepList.get(5).getCashSupplies().get(0).getCashQuantity(), is(1));
+
+        // the stock only changes by the successful withdraws
+        Map<Integer, Integer> currentStock = new HashMap<>();
+        cashService.getCurrentCashSupplies().forEach(cashSupply -> {
+            currentStock.put(cashSupply.getCashType().getCashValue(), cashSupply.getCashQuantity());
+        });
+
+        assertThat(currentStock.get(100), is(0));
+        assertThat(currentStock.get(50), is(1));
+        assertThat(currentStock.get(20), is(1));
+        assertThat(currentStock.get(10), is(4));
+
+        // only the successful withdraws are counted against the daily limitation
+        assertThat(cashService.getAccountCashWithdrawLimitation(), is(withdrawLimitation - 290));
+    }
+
     @Test
     public void getCashStockTest() throws Exception {
         // test the check cash stock endpoint
@@ -207,4 +349,163 @@ public class CashMachineControllerTest {
             }
         });
     }
+
+    @Test
+    public void getCashStockNotModifiedTest() throws Exception {
+        MvcResult result = this.mockMvc.perform(get("/cashMachine/getCashStock"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String eTag = result.getResponse().getHeader("ETag");
+        assertThat(eTag != null, is(true));
+
+        // test the scenario - the stock has not changed
+        result = this.mockMvc.perform(get("/cashMachine/getCashStock").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertThat(result.getResponse().getContentAsString(), is(""));
+
+        // test the scenario - the stock has changed after a dispense
+        this.mockMvc.perform(get("/cashMachine/dispenseCash/100")).andExpect(status().isOk());
+
+        result = this.mockMvc.perform(get("/cashMachine/getCashStock").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(result.getResponse().getHeader("ETag").equals(eTag), is(false));
+
+        List<CashSupplyRep> cashSupplyRepList = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<List<CashSupplyRep>>() {});
+        assertThat(cashSupplyRepList.get(0).getCashValue(), is(100));
+        assertThat(cashSupplyRepList.get(0).getCashQuantity(), is(1));
+    }
+
+    @Test
+    public void metricsControllerTest() throws Exception {
+        this.mockMvc.perform(get("/cashMachine/dispenseCash/100")).andExpect(status().isOk());
+        this.mockMvc.perform(get("/cashMachine/dispenseCash/55")).andExpect(status().isBadRequest());
+
+        MvcResult result = this.mockMvc.perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        MediaType contentType = MediaType.parseMediaType(result.getResponse().getContentType());
+        assertThat(contentType.isCompatibleWith(MediaType.TEXT_PLAIN), is(true));
+        assertThat(contentType.getParameter("version"), is("0.0.4"));
+
+        String content = result.getResponse().getContentAsString();
+        assertThat(content.contains("# TYPE cashman_dispense_seconds histogram\n"), is(true));
+        assertThat(content.contains("cashman_dispense_seconds_bucket{le=\"+Inf\"} "), is(true));
+        assertThat(content.contains("cashman_dispense_total{outcome=\"success\"} "), is(true));
+        assertThat(content.contains("cashman_dispense_total{outcome=\"insufficient_stock\"} "), is(true));
+        assertThat(content.contains("cashman_transaction_log_save_seconds_count{operation=\"single\"} "), is(true));
+        assertThat(content.contains("cashman_repository_seconds_count{repository=\"CashSupplyRepository\",method=\"findAllByMachineIdOrderByCashAmountDesc\"} "), is(true));
+
+        // the stock gauges are read when the metrics are scraped
+        assertThat(content.contains("cashman_cash_stock{machine=\"default\",cash_value=\"100\"} 1\n"), is(true));
+        assertThat(content.contains("cashman_cash_stock{machine=\"default\",cash_value=\"10\"} 4\n"), is(true));
+    }
+
+    @Test
+    public void dispenseCashAsyncControllerTest() throws Exception {
+        MvcResult result = this.mockMvc.perform(get("/cashMachine/dispenseCash/150/async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        result = this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<CashSupplyRep> cashSupplyRepList = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<List<CashSupplyRep>>() {});
+        assertThat(cashSupplyRepList.size(), is(2));
+        assertThat(cashSupplyRepList.stream().mapToInt(cashSupplyRep -> cashSupplyRep.getCashValue() * cashSupplyRep.getCashQuantity()).sum(), is(150));
+
+        // test the scenario - the transaction log is queued once the dispense is journaled, after the response
+        long deadline = System.currentTimeMillis() + 5000;
+        do {
+            asyncTransactionLogWriter.flush();
+        } while (transactionLogDetailRepository.count() < 2 && System.currentTimeMillis() < deadline);
+        assertThat(transactionLogDetailRepository.count(), is(2L));
+
+        // test the scenario - the cash could not be dispensed
+        result = this.mockMvc.perform(get("/cashMachine/dispenseCash/55/async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportTransactionLogsControllerTest() throws Exception {
+        LocalDateTime fromTime = LocalDateTime.now().minusSeconds(1);
+
+        this.mockMvc.perform(get("/cashMachine/dispenseCash/100")).andExpect(status().isOk());
+        this.mockMvc.perform(get("/cashMachine/dispenseCash/70")).andExpect(status().isOk());
+        asyncTransactionLogWriter.flush();
+
+        String toTime = LocalDateTime.now().plusSeconds(1).toString();
+
+        MvcResult result = this.mockMvc.perform(get("/transactions/export").param("from", fromTime.toString()).param("to", toTime))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentType().startsWith("application/x-ndjson"), is(true));
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines.length, is(2));
+
+        Map<String, Object> transactionLog = objectMapper.readValue(lines[1], new TypeReference<Map<String, Object>>() {});
+        assertThat(transactionLog.get("totalAmount"), is(70));
+        assertThat(transactionLog.get("accountNo"), is("12345678"));
+        assertThat(((List) transactionLog.get("details")).size(), is(2));
+
+        // test the scenario - export as CSV, one row per transaction log detail
+        result = this.mockMvc.perform(get("/transactions/export").param("from", fromTime.toString()).param("to", toTime).param("format", "CSV"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentType().startsWith("text/csv"), is(true));
+
+        lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines.length, is(4));
+        assertThat(lines[0].startsWith("transaction_log_id,machine_id,"), is(true));
+        assertThat(lines[1].endsWith(",$100,100,1"), is(true));
+
+        // test the scenario - an empty window
+        this.mockMvc.perform(get("/transactions/export").param("from", toTime).param("to", fromTime.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void stockEventsControllerTest() throws Exception {
+        MvcResult result = this.mockMvc.perform(get("/cashMachine/" + CashSupply.DEFAULT_MACHINE_ID + "/stockEvents"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // test the scenario - the current stock is sent first
+        // the event name and its data are written separately, so wait for the data
+        String content = waitForContent(result, "\"cashValue\":100,\"cashDesc\":\"$100\",\"cashQuantity\":2");
+        assertThat(content.contains("event:reset\n"), is(true));
+        assertThat(content.contains("\"cashValue\":100,\"cashDesc\":\"$100\",\"cashQuantity\":2"), is(true));
+        assertThat(content.contains("event:delta\n"), is(false));
+
+        // test the scenario - only the changed cash is sent after a dispense
+        this.mockMvc.perform(get("/cashMachine/dispenseCash/100")).andExpect(status().isOk());
+
+        content = waitForContent(result, "\"cashValue\":100,\"cashDesc\":\"$100\",\"cashQuantity\":1");
+        String delta = content.substring(content.indexOf("event:delta\n"));
+        assertThat(delta.contains("\"cashValue\":100,\"cashDesc\":\"$100\",\"cashQuantity\":1"), is(true));
+        assertThat(delta.contains("\"cashValue\":50"), is(false));
+    }
+
+    private String waitForContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = result.getResponse().getContentAsString();
+        }
+
+        return content;
+    }
 }
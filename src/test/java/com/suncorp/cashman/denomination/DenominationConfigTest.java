@@ -0,0 +1,126 @@
+package com.suncorp.cashman.denomination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DenominationConfigTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<DenominationSet> changedDenominationSets = new CopyOnWriteArrayList<>();
+
+    private File denominationFile;
+
+    private DenominationConfig denominationConfig;
+
+    @Before
+    public void setup() throws Exception {
+        denominationFile = temporaryFolder.newFile("denominations.properties");
+        write("100 = $100, 10, 2\n50 = $50, 20, 3\n20 = $20, 30\n");
+
+        denominationConfig = new DenominationConfig(denominationFile.getPath());
+        denominationConfig.addListener(changedDenominationSets::add);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        denominationConfig.stop();
+    }
+
+    @Test
+    public void loadTest() {
+        List<Denomination> denominations = denominationConfig.getDenominationSet().getDenominations();
+
+        // ordered by cash value desc
+        assertThat(denominations.size(), is(3));
+        assertThat(denominations.get(0).getCashValue(), is(100));
+        assertThat(denominations.get(0).getCashDesc(), is("$100"));
+        assertThat(denominations.get(0).getInitialQuantity(), is(10));
+        assertThat(denominations.get(0).getLowStockThreshold(), is(2));
+
+        // test the scenario - a denomination without a low stock threshold
+        assertThat(denominations.get(2).getLowStockThreshold(), is(nullValue()));
+        assertThat(denominationConfig.getDenominationSet().getLowStockThresholds().containsKey(20), is(false));
+    }
+
+    @Test
+    public void reloadTest() throws Exception {
+        // test the scenario - the file has not changed
+        assertThat(denominationConfig.reload(), is(false));
+
+        write("100 = $100, 10, 2\n50 = $50, 25, 4\n10 = $10, 40, 5\n");
+        assertThat(denominationConfig.reload(), is(true));
+
+        DenominationSet denominationSet = denominationConfig.getDenominationSet();
+        assertThat(denominationSet.getDenomination(50).getInitialQuantity(), is(25));
+        assertThat(denominationSet.getDenomination(20), is(nullValue()));
+        assertThat(denominationSet.getDenomination(10).getLowStockThreshold(), is(5));
+        assertThat(changedDenominationSets.get(changedDenominationSets.size() - 1), is(denominationSet));
+
+        // test the scenario - an invalid file keeps the current denominations
+        write("100 = $100, ten, 2\n");
+        assertThat(denominationConfig.reload(), is(false));
+        assertThat(denominationConfig.getDenominationSet(), is(denominationSet));
+
+        write("100 = $100, -1, 2\n");
+        assertThat(denominationConfig.reload(), is(false));
+        assertThat(denominationConfig.getDenominationSet(), is(denominationSet));
+    }
+
+    @Test
+    public void failedListenerTest() throws Exception {
+        List<DenominationSet> laterDenominationSets = new CopyOnWriteArrayList<>();
+        denominationConfig.addListener(denominationSet -> {
+            throw new IllegalStateException("Failed to apply the denominations");
+        });
+        denominationConfig.addListener(laterDenominationSets::add);
+
+        // test the scenario - a failing listener does not fail the reload, and the listeners after it still get the change
+        write("100 = $100, 15, 2\n50 = $50, 20, 3\n20 = $20, 30\n");
+        assertThat(denominationConfig.reload(), is(true));
+        assertThat(changedDenominationSets.size(), is(1));
+        assertThat(laterDenominationSets.size(), is(1));
+
+        write("100 = $100, 16, 2\n50 = $50, 20, 3\n20 = $20, 30\n");
+        assertThat(denominationConfig.reload(), is(true));
+        assertThat(laterDenominationSets.size(), is(2));
+    }
+
+    @Test
+    public void watchTest() throws Exception {
+        denominationConfig.start();
+
+        write("100 = $100, 15, 2\n50 = $50, 20, 3\n20 = $20, 30\n");
+
+        // the file system may only report the change after a while
+        long deadline = System.currentTimeMillis() + 15000;
+        while (changedDenominationSets.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertThat(changedDenominationSets.size(), is(1));
+        assertThat(denominationConfig.getDenominationSet().getDenomination(100).getInitialQuantity(), is(15));
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(denominationFile.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
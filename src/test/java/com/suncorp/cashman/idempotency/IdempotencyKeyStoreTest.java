@@ -0,0 +1,205 @@
+package com.suncorp.cashman.idempotency;
+
+import com.suncorp.cashman.domain.IdempotencyRecord;
+import com.suncorp.cashman.simulation.SimulatedClock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class IdempotencyKeyStoreTest {
+
+    private static final long MINUTE_MILLIS = 60000L;
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private SimulatedClock clock;
+
+    private InMemoryIdempotencyKeyTable idempotencyKeyTable;
+
+    private IdempotencyKeyStore idempotencyKeyStore;
+
+    @Before
+    public void setup() {
+        clock = new SimulatedClock(LocalDateTime.parse("2026-01-01T10:00").atZone(zoneId).toInstant().toEpochMilli(), zoneId);
+        idempotencyKeyTable = new InMemoryIdempotencyKeyTable();
+
+        // cache the keys for 10 minutes and at most 3 keys, keep the stored keys for 7 days
+        idempotencyKeyStore = new IdempotencyKeyStore(idempotencyKeyTable, 10 * MINUTE_MILLIS, 3, 100, 100, 3600000, 7, 1000, clock);
+    }
+
+    @Test
+    public void claimTest() {
+        IdempotencyKeyStore.Claim claim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/150");
+        assertThat(claim.isOwner(), is(true));
+
+        // test the scenario - a retry while the first request is still running waits for its response
+        IdempotencyKeyStore.Claim retryClaim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/150");
+        assertThat(retryClaim.isOwner(), is(false));
+        assertThat(retryClaim.getResponse().isDone(), is(false));
+
+        idempotencyKeyStore.complete(claim, 200, "[]");
+
+        IdempotencyRecord idempotencyRecord = idempotencyKeyStore.awaitResponse(retryClaim);
+        assertThat(idempotencyRecord.getStatus(), is(200));
+        assertThat(idempotencyRecord.getBody(), is("[]"));
+        assertThat(idempotencyRecord.getRequest(), is("dispenseCash/default/150"));
+
+        // test the scenario - the key is reused by a different request
+        retryClaim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/100");
+        assertThat(retryClaim.isOwner(), is(false));
+        assertThat(retryClaim.getRequest(), is("dispenseCash/default/150"));
+
+        assertThat(idempotencyKeyStore.getReplayCount(), is(2L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidKeyTest() {
+        idempotencyKeyStore.claim("", "dispenseCash/default/150");
+    }
+
+    @Test
+    public void releaseTest() {
+        IdempotencyKeyStore.Claim claim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/150");
+        IdempotencyKeyStore.Claim retryClaim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/150");
+
+        // test the scenario - the first request failed, the waiting retry gets no response and the next retry runs
+        idempotencyKeyStore.release(claim);
+        assertThat(idempotencyKeyStore.awaitResponse(retryClaim), is(nullValue()));
+        assertThat(idempotencyKeyStore.claim("key-1", "dispenseCash/default/150").isOwner(), is(true));
+
+        // test the scenario - a retry gives up waiting for a request which does not complete
+        retryClaim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/150");
+        assertThat(idempotencyKeyStore.awaitResponse(retryClaim), is(nullValue()));
+    }
+
+    @Test
+    public void sweepTest() {
+        for (int key = 0; key < 3; key++) {
+            IdempotencyKeyStore.Claim claim = idempotencyKeyStore.claim("key-" + key, "dispenseCash/default/150");
+            idempotencyKeyStore.complete(claim, 200, "[]");
+            clock.setMillis(clock.millis() + MINUTE_MILLIS);
+        }
+
+        // test the scenario - the oldest key is evicted once the cache is full
+        IdempotencyKeyStore.Claim claim = idempotencyKeyStore.claim("key-3", "dispenseCash/default/150");
+        assertThat(idempotencyKeyStore.getSize(), is(3));
+        assertThat(idempotencyKeyStore.getEvictionCount(), is(1L));
+
+        // test the scenario - the expired keys are swept, but not the key of the request still running
+        clock.setMillis(clock.millis() + 10 * MINUTE_MILLIS);
+        idempotencyKeyStore.sweep();
+        assertThat(idempotencyKeyStore.getSize(), is(1));
+
+        idempotencyKeyStore.complete(claim, 200, "[]");
+        idempotencyKeyStore.sweep();
+        assertThat(idempotencyKeyStore.getSize(), is(0));
+        assertThat(idempotencyKeyStore.getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void storedKeyTest() {
+        IdempotencyKeyStore.Claim claim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/150");
+        idempotencyKeyStore.complete(claim, 400, "Sorry");
+        idempotencyKeyStore.flush();
+
+        assertThat(idempotencyKeyTable.records.size(), is(1));
+        assertThat(idempotencyKeyTable.records.get("key-1").getKeyDay(), is(LocalDate.now(clock).toEpochDay()));
+
+        // test the scenario - the key has left the cache, so the retry gets the stored response
+        clock.setMillis(clock.millis() + 20 * MINUTE_MILLIS);
+        idempotencyKeyStore.sweep();
+        assertThat(idempotencyKeyStore.getSize(), is(0));
+
+        IdempotencyKeyStore.Claim retryClaim = idempotencyKeyStore.claim("key-1", "dispenseCash/default/150");
+        assertThat(retryClaim.isOwner(), is(false));
+        assertThat(idempotencyKeyStore.awaitResponse(retryClaim).getBody(), is("Sorry"));
+        assertThat(idempotencyKeyStore.getTableLookupCount(), is(2L));
+
+        // test the scenario - once the filters of the stored keys are loaded, a new key is not looked up
+        idempotencyKeyStore.loadKeyFilters();
+        assertThat(idempotencyKeyStore.claim("key-2", "dispenseCash/default/150").isOwner(), is(true));
+        assertThat(idempotencyKeyStore.getTableLookupCount(), is(2L));
+
+        clock.setMillis(clock.millis() + 20 * MINUTE_MILLIS);
+        idempotencyKeyStore.sweep();
+        assertThat(idempotencyKeyStore.claim("key-1", "dispenseCash/default/150").isOwner(), is(false));
+        assertThat(idempotencyKeyStore.getTableLookupCount(), is(3L));
+
+        // test the scenario - the stored keys past the retention are pruned
+        clock.setMillis(clock.millis() + 8 * 24 * 60 * MINUTE_MILLIS);
+        idempotencyKeyStore.prune();
+        assertThat(idempotencyKeyTable.records.size(), is(0));
+    }
+
+    @Test
+    public void keyFilterTest() {
+        IdempotencyKeyFilter keyFilter = new IdempotencyKeyFilter(10000, 0.01);
+        for (int key = 0; key < 10000; key++) {
+            keyFilter.add("key-" + key);
+        }
+
+        int falsePositiveCount = 0;
+        for (int key = 0; key < 10000; key++) {
+            assertThat(keyFilter.mightContain("key-" + key), is(true));
+
+            if (keyFilter.mightContain("other-key-" + key)) {
+                falsePositiveCount++;
+            }
+        }
+
+        // test the scenario - about 1% of the keys not added might be in the filter
+        assertThat(falsePositiveCount < 200, is(true));
+    }
+
+    /**
+     * The key table kept in a map instead of the database.
+     */
+    private static class InMemoryIdempotencyKeyTable extends IdempotencyKeyTable {
+
+        private final Map<String, IdempotencyRecord> records = new HashMap<>();
+
+        private InMemoryIdempotencyKeyTable() {
+            super(null);
+        }
+
+        @Override
+        public void insert(List<IdempotencyRecord> idempotencyRecords) {
+            idempotencyRecords.forEach(idempotencyRecord -> records.putIfAbsent(idempotencyRecord.getIdempotencyKey(), idempotencyRecord));
+        }
+
+        @Override
+        public IdempotencyRecord find(String idempotencyKey, long fromKeyDay) {
+            IdempotencyRecord idempotencyRecord = records.get(idempotencyKey);
+
+            return idempotencyRecord == null || idempotencyRecord.getKeyDay() < fromKeyDay ? null : idempotencyRecord;
+        }
+
+        @Override
+        public void forEachKey(long fromKeyDay, BiConsumer<String, Long> consumer) {
+            new ArrayList<>(records.values()).stream()
+                    .filter(idempotencyRecord -> idempotencyRecord.getKeyDay() >= fromKeyDay)
+                    .forEach(idempotencyRecord -> consumer.accept(idempotencyRecord.getIdempotencyKey(), idempotencyRecord.getKeyDay()));
+        }
+
+        @Override
+        public void prune(long oldestKeyDay, long lastKeyDay) {
+            records.values().removeIf(idempotencyRecord -> idempotencyRecord.getKeyDay() < oldestKeyDay);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.suncorp.cashman.journal;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.audit.AsyncTransactionLogWriter;
+import com.suncorp.cashman.audit.TransactionLogBatchWriter;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.domain.TransactionLog;
+import com.suncorp.cashman.domain.TransactionLogDetail;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.CashSupplyBatchWriter;
+import com.suncorp.cashman.inventory.CashSupplyWriteBehindFlusher;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
+import com.suncorp.cashman.logging.DispenseEventLog;
+import com.suncorp.cashman.metrics.MetricsRegistry;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.repository.TransactionLogDetailRepository;
+import com.suncorp.cashman.repository.TransactionLogRepository;
+import com.suncorp.cashman.service.BankAccountService;
+import com.suncorp.cashman.service.CashService;
+import com.suncorp.cashman.service.CashServiceImpl;
+import com.suncorp.cashman.service.DispensePlanCache;
+import com.suncorp.cashman.service.DispenseReachability;
+import com.suncorp.cashman.service.DispenseStrategy;
+import com.suncorp.cashman.service.TransactionalCashDispenser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {Application.class, H2JpaConfig.class})
+public class DispenseJournalTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    @Autowired
+    private CashTypeRepository cashTypeRepository;
+
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+
+    @Autowired
+    private TransactionLogDetailRepository transactionLogDetailRepository;
+
+    @Autowired
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    @Autowired
+    private CashSupplyWriteBehindFlusher cashSupplyWriteBehindFlusher;
+
+    @Autowired
+    private AsyncTransactionLogWriter asyncTransactionLogWriter;
+
+    @Autowired
+    private TransactionLogBatchWriter transactionLogBatchWriter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CashService cashService;
+
+    @Autowired
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
+    @Autowired
+    private CashSupplyBatchWriter cashSupplyBatchWriter;
+
+    @Autowired
+    private DenominationConfig denominationConfig;
+
+    @Autowired
+    private DispenseStrategy dispenseStrategy;
+
+    @Autowired
+    private TransactionalCashDispenser transactionalCashDispenser;
+
+    @Autowired
+    private DispensePlanCache dispensePlanCache;
+
+    @Autowired
+    private DispenseReachability dispenseReachability;
+
+    @Autowired
+    private BankAccountService bankAccountService;
+
+    @Before
+    public void setup() throws Exception {
+        asyncTransactionLogWriter.flush();
+        transactionLogDetailRepository.deleteAllInBatch();
+        transactionLogRepository.deleteAllInBatch();
+        cashSupplyRepository.deleteAllInBatch();
+        cashTypeRepository.deleteAllInBatch();
+        dailyWithdrawLedger.clear();
+
+        CashType cashType = new CashType("$50 note", 50);
+        cashTypeRepository.save(cashType);
+        cashSupplyRepository.save(new CashSupply(cashType, 3));
+
+        cashType = new CashType("$20 note", 20);
+        cashTypeRepository.save(cashType);
+        cashSupplyRepository.save(new CashSupply(cashType, 4));
+
+        cashService.loadCashSupplies();
+    }
+
+    @Test
+    public void recoverAfterCrashTest() throws Exception {
+        String journalDir = temporaryFolder.getRoot().getPath();
+
+        DispenseJournal crashedJournal = createJournal(journalDir);
+        crashedJournal.start();
+
+        // dispense $90 twice, the transaction logs never reach the database
+        long lastSequence = 0;
+        for (int i = 0; i < 2; i++) {
+            lastSequence = append(crashedJournal, cashService.dispenseCash(90).getDispensedCash(), 90);
+        }
+
+        assertThat(transactionLogRepository.count(), is(0L));
+
+        // the journal is replayed when the application starts again
+        DispenseJournal recoveredJournal = createJournal(journalDir);
+        recoveredJournal.start();
+
+        assertThat(transactionLogRepository.count(), is(2L));
+        assertThat(transactionLogDetailRepository.count(), is(4L));
+        assertThat(transactionLogRepository.findMaxJournalSequence(), is(lastSequence));
+
+        // test the scenario - the replayed details have the descriptions of the cash types
+        transactionLogDetailRepository.findAll().forEach(transactionLogDetail ->
+                assertThat(transactionLogDetail.getCashDesc(), is("$" + transactionLogDetail.getCashValue() + " note")));
+
+        List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+        assertThat(cashSupplyList.get(0).getCashQuantity(), is(1));
+        assertThat(cashSupplyList.get(1).getCashQuantity(), is(0));
+
+        // nothing left to replay after a clean shutdown, only the marker of the journal directory stays
+        recoveredJournal.stop();
+        assertThat(temporaryFolder.getRoot().list(), is(new String[]{"journal.marker"}));
+    }
+
+    @Test
+    public void recoverFlushedDispenseTest() throws Exception {
+        String journalDir = temporaryFolder.getRoot().getPath();
+
+        DispenseJournal crashedJournal = createJournal(journalDir);
+        crashedJournal.start();
+        CashService crashedCashService = createCashService(crashedJournal);
+
+        // test the scenario - the lower stock is written back, then the process crashes before the transaction log is saved
+        crashedCashService.dispenseCash(90);
+        cashSupplyWriteBehindFlusher.flush();
+
+        List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+        assertThat(cashSupplyList.get(0).getCashQuantity(), is(2));
+        assertThat(cashSupplyList.get(1).getCashQuantity(), is(2));
+        assertThat(transactionLogRepository.count(), is(0L));
+
+        // the dispense was journaled together with the withdraw, so the lower stock still has its transaction log
+        DispenseJournal recoveredJournal = createJournal(journalDir);
+        recoveredJournal.start();
+
+        assertThat(transactionLogRepository.count(), is(1L));
+        assertThat(transactionLogDetailRepository.count(), is(2L));
+
+        cashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+        assertThat(cashSupplyList.get(0).getCashQuantity(), is(2));
+        assertThat(cashSupplyList.get(1).getCashQuantity(), is(2));
+
+        recoveredJournal.stop();
+    }
+
+    @Test
+    public void recoverAfterInitializeTest() throws Exception {
+        String journalDir = temporaryFolder.getRoot().getPath();
+
+        DispenseJournal crashedJournal = createJournal(journalDir);
+        crashedJournal.start();
+        DispenseJournal recoveredJournal = createJournal(journalDir);
+
+        // the crashed process never writes the replaced inventory back, so no flush runs until the recovery reloads it
+        cashSupplyWriteBehindFlusher.runWithoutFlush(CashSupply.DEFAULT_MACHINE_ID, () -> {
+            try {
+                // the machine is initialized with $50 x 10 and $20 x 10, the new inventory is not loaded yet
+                crashedJournal.appendInitialize(CashSupply.DEFAULT_MACHINE_ID, cashInventoryRegistry.nextGeneration());
+                List<CashSupply> initializedCashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+                initializedCashSupplyList.forEach(cashSupply -> cashSupply.setCashQuantity(10));
+                cashSupplyRepository.save(initializedCashSupplyList);
+
+                // test the scenario - a dispense still runs on the replaced inventory, its stock is not replayed
+                append(crashedJournal, cashService.dispenseCash(90).getDispensedCash(), 90);
+
+                recoveredJournal.start();
+            } catch (CashSupplyException | IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(transactionLogRepository.count(), is(1L));
+
+        List<CashSupply> cashSupplyList = cashSupplyRepository.findAllByOrderByCashAmountDesc();
+        assertThat(cashSupplyList.get(0).getCashQuantity(), is(10));
+        assertThat(cashSupplyList.get(1).getCashQuantity(), is(10));
+
+        recoveredJournal.stop();
+    }
+
+    @Test
+    public void recoverStripesTest() throws Exception {
+        String journalDir = temporaryFolder.getRoot().getPath();
+
+        DispenseJournal crashedJournal = createJournal(journalDir);
+        crashedJournal.start();
+
+        CashType cashType = new CashType("$20 note", 20);
+        Map<CashType, CashSupply> dispensedCash = new HashMap<>();
+        dispensedCash.put(cashType, new CashSupply(cashType, 1));
+
+        // test the scenario - the dispenses of several machines go to different stripes, the sequences are still unique
+        Set<Long> sequences = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            sequences.add(append(crashedJournal, "machine-" + (i % 4), dispensedCash, 20));
+        }
+        assertThat(sequences.size(), is(8));
+
+        DispenseJournal recoveredJournal = createJournal(journalDir);
+        recoveredJournal.start();
+
+        assertThat(transactionLogRepository.count(), is(8L));
+        assertThat(new HashSet<>(transactionLogRepository.findJournalSequencesBetween(0L, Long.MAX_VALUE)), is(sequences));
+
+        recoveredJournal.stop();
+    }
+
+    @Test
+    public void journalDirTest() throws Exception {
+        // test the scenario - a relative journal directory is resolved against the base directory
+        String journalBaseDir = temporaryFolder.getRoot().getPath();
+        DispenseJournal journal = createJournal("journal", journalBaseDir);
+        journal.start();
+        journal.stop();
+
+        assertThat(Files.exists(Paths.get(journalBaseDir, "journal", "journal.marker")), is(true));
+
+        // test the scenario - a relative journal directory is never resolved against the working directory
+        try {
+            createJournal("journal", null).start();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("The journal directory journal must be absolute or resolved against an absolute cashman.journal.base-dir."));
+        }
+    }
+
+    private long append(DispenseJournal journal, Map<CashType, CashSupply> dispensedCash, int cashAmount) {
+        return append(journal, CashSupply.DEFAULT_MACHINE_ID, dispensedCash, cashAmount);
+    }
+
+    private long append(DispenseJournal journal, String machineId, Map<CashType, CashSupply> dispensedCash, int cashAmount) {
+        TransactionLog transactionLog = new TransactionLog(new BankAccountDetail("111111", "12345678", "James"), cashAmount, LocalDateTime.now());
+        transactionLog.setMachineId(machineId);
+        List<TransactionLogDetail> transactionLogDetails = new ArrayList<>();
+        dispensedCash.forEach((cashType, cashSupply) -> {
+            TransactionLogDetail transactionLogDetail = new TransactionLogDetail();
+            transactionLogDetail.setCashDesc(cashType.getCashDesc());
+            transactionLogDetail.setCashValue(cashType.getCashValue());
+            transactionLogDetail.setQuantity(cashSupply.getCashQuantity());
+            transactionLogDetail.setTransactionLog(transactionLog);
+            transactionLogDetails.add(transactionLogDetail);
+        });
+
+        long sequence = journal.append(transactionLog, transactionLogDetails);
+        journal.awaitDurable(sequence);
+
+        return sequence;
+    }
+
+    private CashService createCashService(DispenseJournal journal) {
+        return new CashServiceImpl(cashSupplyRepository, cashSupplyBatchWriter, cashSupplyWriteBehindFlusher, denominationConfig,
+                dispenseStrategy, cashInventoryRegistry, transactionalCashDispenser, journal, dispensePlanCache, dispenseReachability,
+                bankAccountService, dailyWithdrawLedger, new DispenseEventLog(), new MetricsRegistry());
+    }
+
+    private DispenseJournal createJournal(String journalDir) {
+        return createJournal(journalDir, null);
+    }
+
+    private DispenseJournal createJournal(String journalDir, String journalBaseDir) {
+        return new DispenseJournal(cashInventoryRegistry, cashSupplyWriteBehindFlusher, asyncTransactionLogWriter,
+                transactionLogBatchWriter, transactionLogRepository, cashSupplyRepository, cashTypeRepository, transactionManager,
+                true, journalDir, journalBaseDir, 1, 60000, 2, InventoryMode.MEMORY);
+    }
+}
@@ -0,0 +1,164 @@
+package com.suncorp.cashman.ledger;
+
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.exception.CashSupplyException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DailyWithdrawLedgerTest {
+
+    private static final int LIMITATION = 1000;
+
+    private final BankAccountDetail james = new BankAccountDetail("111111", "12345678", "James");
+
+    private final BankAccountDetail emma = new BankAccountDetail("111111", "87654321", "Emma");
+
+    private MutableClock clock;
+
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
+    @Before
+    public void setup() {
+        clock = new MutableClock(LocalDateTime.of(2026, 10, 17, 23, 0).atZone(ZoneId.systemDefault()).toInstant());
+        dailyWithdrawLedger = new DailyWithdrawLedger(null, clock, true);
+    }
+
+    @Test
+    public void reserveAndReleaseTest() throws Exception {
+        LocalDate reservedDay = dailyWithdrawLedger.reserve(james, 600, LIMITATION);
+        dailyWithdrawLedger.reserve(emma, 900, LIMITATION);
+
+        // test the scenario - over what is left of the daily limitation
+        try {
+            dailyWithdrawLedger.reserve(james, 500, LIMITATION);
+            fail();
+        } catch (CashSupplyException e) {
+            assertThat(e.getAmountRequired(), is(500));
+            assertThat(e.getAmountSupplied(), is(400));
+        }
+
+        // test the scenario - the released amount can be withdrawn again
+        dailyWithdrawLedger.release(james, 200, reservedDay);
+        dailyWithdrawLedger.reserve(james, 600, LIMITATION);
+
+        assertThat(dailyWithdrawLedger.getWithdrawnAmount(james), is(1000L));
+        assertThat(dailyWithdrawLedger.getWithdrawnAmount(emma), is(900L));
+    }
+
+    @Test
+    public void rollOverAtMidnightTest() throws Exception {
+        LocalDate reservedDay = dailyWithdrawLedger.reserve(james, 1000, LIMITATION);
+
+        clock.advance(Duration.ofHours(2));
+        assertThat(dailyWithdrawLedger.getWithdrawnAmount(james), is(0L));
+
+        // test the scenario - a withdraw of yesterday is not released from today
+        dailyWithdrawLedger.reserve(james, 300, LIMITATION);
+        dailyWithdrawLedger.release(james, 1000, reservedDay);
+
+        assertThat(dailyWithdrawLedger.getWithdrawnAmount(james), is(300L));
+    }
+
+    @Test
+    public void disabledLedgerTest() throws Exception {
+        DailyWithdrawLedger disabledLedger = new DailyWithdrawLedger(null, clock, false);
+
+        // test the scenario - the withdraws of the day are not added up
+        disabledLedger.reserve(james, 600, LIMITATION);
+        disabledLedger.reserve(james, 600, LIMITATION);
+        assertThat(disabledLedger.getWithdrawnAmount(james), is(0L));
+
+        // test the scenario - one withdraw is still over the limitation
+        try {
+            disabledLedger.reserve(james, LIMITATION + 1, LIMITATION);
+            fail();
+        } catch (CashSupplyException e) {
+            assertThat(e.getAmountRequired(), is(LIMITATION + 1));
+            assertThat(e.getAmountSupplied(), is(LIMITATION));
+        }
+    }
+
+    @Test
+    public void concurrentReserveNeverOverLimitationTest() throws Exception {
+        AtomicInteger reservedCount = new AtomicInteger();
+        CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                try {
+                    startSignal.await();
+
+                    for (int i = 0; i < 100; i++) {
+                        try {
+                            dailyWithdrawLedger.reserve(james, 10, LIMITATION);
+                            reservedCount.incrementAndGet();
+                        } catch (CashSupplyException e) {
+                            // the account is expected to reach the limitation
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        startSignal.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+
+        assertThat(reservedCount.get(), is(100));
+        assertThat(dailyWithdrawLedger.getWithdrawnAmount(james), is((long) LIMITATION));
+    }
+
+    /**
+     * A clock which only moves when it is told to.
+     */
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
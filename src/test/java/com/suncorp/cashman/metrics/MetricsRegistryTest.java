@@ -0,0 +1,66 @@
+package com.suncorp.cashman.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry metricsRegistry;
+
+    @Before
+    public void setup() {
+        metricsRegistry = new MetricsRegistry();
+    }
+
+    @Test
+    public void timerTest() {
+        Timer timer = metricsRegistry.timer("test_seconds", "Test timer.", "operation", "dispense");
+
+        timer.record(5_000L);
+        timer.record(20_000L);
+        timer.record(20_000_000_000L);
+
+        // the same name and labels give the same timer
+        assertThat(metricsRegistry.timer("test_seconds", "Test timer.", "operation", "dispense") == timer, is(true));
+
+        String content = metricsRegistry.scrape();
+        assertThat(content.contains("# TYPE test_seconds histogram\n"), is(true));
+        assertThat(content.contains("test_seconds_bucket{operation=\"dispense\",le=\"1.0E-5\"} 1\n"), is(true));
+        assertThat(content.contains("test_seconds_bucket{operation=\"dispense\",le=\"2.5E-5\"} 2\n"), is(true));
+        assertThat(content.contains("test_seconds_bucket{operation=\"dispense\",le=\"10.0\"} 2\n"), is(true));
+        assertThat(content.contains("test_seconds_bucket{operation=\"dispense\",le=\"+Inf\"} 3\n"), is(true));
+        assertThat(content.contains("test_seconds_count{operation=\"dispense\"} 3\n"), is(true));
+        assertThat(content.contains("test_seconds_sum{operation=\"dispense\"} 20.000025\n"), is(true));
+    }
+
+    @Test
+    public void counterAndGaugeTest() {
+        metricsRegistry.counter("test_total", "Test counter.", "outcome", "success").increment();
+        metricsRegistry.counter("test_total", "Test counter.", "outcome", "success").increment();
+        metricsRegistry.counter("test_total", "Test counter.", "outcome", "over_limit").increment();
+        metricsRegistry.gauge("test_stock", "Test gauge.",
+                () -> Collections.singletonMap(MetricsRegistry.toLabels("machine", "atm \"1\""), 7));
+
+        String content = metricsRegistry.scrape();
+        assertThat(content.contains("# TYPE test_total counter\n"), is(true));
+        assertThat(content.contains("test_total{outcome=\"success\"} 2\n"), is(true));
+        assertThat(content.contains("test_total{outcome=\"over_limit\"} 1\n"), is(true));
+        assertThat(content.contains("# TYPE test_stock gauge\n"), is(true));
+        assertThat(content.contains("test_stock{machine=\"atm \\\"1\\\"\"} 7\n"), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typeMismatchTest() {
+        metricsRegistry.counter("test_metric", "Test counter.");
+        metricsRegistry.timer("test_metric", "Test timer.");
+    }
+}
@@ -0,0 +1,240 @@
+package com.suncorp.cashman.notification;
+
+import com.suncorp.cashman.denomination.Denomination;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.denomination.DenominationSet;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class LowStockDetectorTest {
+
+    private final List<LowStockEvent> notifiedEvents = new CopyOnWriteArrayList<>();
+
+    private LowStockNotifier lowStockNotifier;
+
+    private LowStockDetector lowStockDetector;
+
+    @Before
+    public void setup() {
+        lowStockNotifier = new LowStockNotifier(Collections.singletonList(notifiedEvents::add), 100, 0);
+        lowStockNotifier.start();
+
+        DenominationSet denominationSet = new DenominationSet(Arrays.asList(new Denomination(50, "$50", 20, 3),
+                new Denomination(20, "$20", 30, 4), new Denomination(10, "$10", 40, null)));
+        lowStockDetector = new LowStockDetector(new CashInventoryRegistry(null), lowStockNotifier, new DenominationConfig(denominationSet));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        lowStockNotifier.stop();
+    }
+
+    @Test
+    public void notifyOncePerCrossingTest() throws Exception {
+        CashInventory cashInventory = createCashInventory("atm-1", 5, 6, 10);
+
+        // $50 from 5 to 3, crosses the threshold
+        assertThat(cashInventory.withdraw(new int[]{2, 0, 0}), is(true));
+        // $50 from 3 to 1, already low
+        assertThat(cashInventory.withdraw(new int[]{2, 0, 0}), is(true));
+        // $20 from 6 to 5, above the threshold
+        assertThat(cashInventory.withdraw(new int[]{0, 1, 0}), is(true));
+        // $10 has no threshold
+        assertThat(cashInventory.withdraw(new int[]{0, 0, 10}), is(true));
+
+        lowStockNotifier.flush();
+
+        assertThat(notifiedEvents.size(), is(1));
+        LowStockEvent lowStockEvent = notifiedEvents.get(0);
+        assertThat(lowStockEvent.getMachineId(), is("atm-1"));
+        assertThat(lowStockEvent.getCashValue(), is(50));
+        assertThat(lowStockEvent.getCashQuantity(), is(3));
+        assertThat(lowStockEvent.getThreshold(), is(3));
+    }
+
+    @Test
+    public void reloadInventoryTest() throws Exception {
+        CashInventory cashInventory = createCashInventory("atm-1", 5, 6, 10);
+        cashInventory.withdraw(new int[]{3, 0, 0});
+        lowStockNotifier.flush();
+
+        // test the scenario - a reloaded inventory which is still low is reported straight away
+        CashInventory reloadedCashInventory = createCashInventory("atm-1", 2, 10, 10);
+
+        // test the scenario - the changes of the replaced inventory are ignored
+        cashInventory.withdraw(new int[]{0, 6, 0});
+
+        lowStockNotifier.flush();
+
+        assertThat(notifiedEvents.size(), is(2));
+        assertThat(notifiedEvents.get(1).getCashValue(), is(50));
+        assertThat(notifiedEvents.get(1).getCashQuantity(), is(2));
+
+        reloadedCashInventory.withdraw(new int[]{0, 6, 0});
+        lowStockNotifier.flush();
+
+        assertThat(notifiedEvents.size(), is(3));
+        assertThat(notifiedEvents.get(2).getCashValue(), is(20));
+        assertThat(notifiedEvents.get(2).getCashQuantity(), is(4));
+    }
+
+    @Test
+    public void thresholdReloadTest() throws Exception {
+        CashInventory cashInventory = createCashInventory("atm-1", 5, 6, 10);
+        cashInventory.withdraw(new int[]{0, 1, 0});
+        lowStockNotifier.flush();
+        assertThat(notifiedEvents.size(), is(0));
+
+        // test the scenario - a raised threshold is checked against the current stock straight away
+        lowStockDetector.onDenominationsChanged(new DenominationSet(Arrays.asList(new Denomination(50, "$50", 20, null),
+                new Denomination(20, "$20", 30, 5), new Denomination(10, "$10", 40, null))));
+        lowStockNotifier.flush();
+
+        assertThat(notifiedEvents.size(), is(1));
+        assertThat(notifiedEvents.get(0).getCashValue(), is(20));
+        assertThat(notifiedEvents.get(0).getCashQuantity(), is(5));
+        assertThat(notifiedEvents.get(0).getThreshold(), is(5));
+
+        // test the scenario - the removed threshold is no longer reported
+        cashInventory.withdraw(new int[]{4, 0, 0});
+        lowStockNotifier.flush();
+
+        assertThat(notifiedEvents.size(), is(1));
+    }
+
+    @Test
+    public void rateLimitTest() throws Exception {
+        LowStockNotifier rateLimitedNotifier = new LowStockNotifier(Collections.singletonList(notifiedEvents::add), 100, 60000);
+        rateLimitedNotifier.start();
+
+        try {
+            rateLimitedNotifier.publish(createLowStockEvent("atm-1", 50));
+            rateLimitedNotifier.flush();
+
+            // test the scenario - the same cash of the same machine within the minimum interval
+            rateLimitedNotifier.publish(createLowStockEvent("atm-1", 50));
+            // test the scenario - the same cash of another machine
+            rateLimitedNotifier.publish(createLowStockEvent("atm-2", 50));
+            rateLimitedNotifier.flush();
+
+            assertThat(notifiedEvents.size(), is(2));
+            assertThat(notifiedEvents.get(1).getMachineId(), is("atm-2"));
+            assertThat(rateLimitedNotifier.getNotifiedCount(), is(2L));
+            assertThat(rateLimitedNotifier.getSuppressedCount(), is(1L));
+        } finally {
+            rateLimitedNotifier.stop();
+        }
+    }
+
+    @Test
+    public void delayedNotificationTest() throws Exception {
+        LowStockNotifier rateLimitedNotifier = new LowStockNotifier(Collections.singletonList(notifiedEvents::add), 100, 200);
+        rateLimitedNotifier.start();
+
+        try {
+            rateLimitedNotifier.publish(createLowStockEvent("atm-1", 50));
+            rateLimitedNotifier.flush();
+
+            // test the scenario - the event within the minimum interval is notified once the interval has passed
+            rateLimitedNotifier.publish(new LowStockEvent("atm-1", 50, "$50", 0, 3, LocalDateTime.now()));
+            rateLimitedNotifier.flush();
+            assertThat(notifiedEvents.size(), is(1));
+
+            Thread.sleep(500);
+            assertThat(notifiedEvents.size(), is(2));
+            assertThat(notifiedEvents.get(1).getCashQuantity(), is(0));
+        } finally {
+            rateLimitedNotifier.stop();
+        }
+    }
+
+    @Test
+    public void fullQueueTest() throws Exception {
+        CountDownLatch sinkLatch = new CountDownLatch(1);
+        LowStockNotifier blockedNotifier = new LowStockNotifier(Collections.singletonList(lowStockEvent -> {
+            try {
+                sinkLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            notifiedEvents.add(lowStockEvent);
+        }), 1, 0);
+        blockedNotifier.start();
+
+        try {
+            // the first event holds the notifier thread, the second one fills the queue
+            blockedNotifier.publish(createLowStockEvent("atm-1", 50));
+            Thread.sleep(200);
+            blockedNotifier.publish(createLowStockEvent("atm-2", 50));
+
+            // test the scenario - the event which does not fit on the queue is notified later instead of dropped
+            assertThat(blockedNotifier.publish(createLowStockEvent("atm-3", 50)), is(true));
+
+            sinkLatch.countDown();
+            blockedNotifier.flush();
+
+            assertThat(notifiedEvents.size(), is(3));
+            assertThat(notifiedEvents.get(2).getMachineId(), is("atm-3"));
+        } finally {
+            blockedNotifier.stop();
+        }
+    }
+
+    @Test
+    public void failedSinkTest() throws Exception {
+        List<LowStockSink> lowStockSinks = new ArrayList<>();
+        lowStockSinks.add(lowStockEvent -> {
+            throw new IllegalStateException("The webhook is down.");
+        });
+        lowStockSinks.add(notifiedEvents::add);
+
+        LowStockNotifier failingNotifier = new LowStockNotifier(lowStockSinks, 100, 0);
+        failingNotifier.start();
+
+        try {
+            failingNotifier.publish(createLowStockEvent("atm-1", 50));
+            failingNotifier.flush();
+
+            // test the scenario - a failed sink does not stop the other sinks
+            assertThat(notifiedEvents.size(), is(1));
+        } finally {
+            failingNotifier.stop();
+        }
+    }
+
+    private CashInventory createCashInventory(String machineId, int fiftyQuantity, int twentyQuantity, int tenQuantity) {
+        List<CashSupply> cashSupplyList = new ArrayList<>();
+        cashSupplyList.add(new CashSupply(machineId, new CashType("$50", 50), fiftyQuantity));
+        cashSupplyList.add(new CashSupply(machineId, new CashType("$20", 20), twentyQuantity));
+        cashSupplyList.add(new CashSupply(machineId, new CashType("$10", 10), tenQuantity));
+
+        CashInventory cashInventory = new CashInventory(machineId, cashSupplyList, Collections.singletonList(lowStockDetector));
+        lowStockDetector.onCashInventoryLoaded(cashInventory);
+
+        return cashInventory;
+    }
+
+    private LowStockEvent createLowStockEvent(String machineId, int cashValue) {
+        return new LowStockEvent(machineId, cashValue, "$" + cashValue, 1, 3, LocalDateTime.now());
+    }
+}
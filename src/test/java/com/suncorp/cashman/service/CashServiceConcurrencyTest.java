@@ -0,0 +1,206 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.Application;
+import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.repository.TransactionLogDetailRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The daily withdraw limitation is raised, so that the machine runs out of cash before the account reaches it.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {Application.class, H2JpaConfig.class}, properties = "cashman.account.daily-withdraw-limitation=100000000")
+public class CashServiceConcurrencyTest {
+    private static final int THREAD_COUNT = 300;
+
+    private static final int DISPENSE_PER_THREAD = 50;
+
+    private static final int[] CASH_AMOUNTS = {10, 20, 30, 50, 60, 80, 100, 150, 200, 280};
+
+    @Autowired
+    private CashSupplyRepository cashSupplyRepository;
+
+    @Autowired
+    private CashTypeRepository cashTypeRepository;
+
+    @Autowired
+    private TransactionLogDetailRepository transactionLogDetailRepository;
+
+    @Autowired
+    private CashService cashService;
+
+    private Map<Integer, Integer> initialStock = new HashMap<>();
+
+    @Before
+    public void setup() {
+        transactionLogDetailRepository.deleteAllInBatch();
+        cashSupplyRepository.deleteAllInBatch();
+        cashTypeRepository.deleteAllInBatch();
+
+        initialStock.put(100, 20);
+        initialStock.put(50, 30);
+        initialStock.put(20, 40);
+        initialStock.put(10, 50);
+
+        initialStock.forEach((cashValue, cashQuantity) -> {
+            CashType cashType = new CashType("$" + cashValue, cashValue);
+            cashTypeRepository.save(cashType);
+            cashSupplyRepository.save(new CashSupply(cashType, cashQuantity));
+        });
+
+        cashService.loadCashSupplies();
+    }
+
+    @Test
+    public void concurrentDispenseNeverOversellsTest() throws Exception {
+        Map<Integer, AtomicInteger> dispensedStock = new ConcurrentHashMap<>();
+        initialStock.keySet().forEach(cashValue -> dispensedStock.put(cashValue, new AtomicInteger()));
+
+        AtomicInteger wrongAmountCount = new AtomicInteger();
+        CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+
+        for (int thread = 0; thread < THREAD_COUNT; thread++) {
+            int threadNo = thread;
+
+            executor.execute(() -> {
+                try {
+                    startSignal.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                for (int i = 0; i < DISPENSE_PER_THREAD; i++) {
+                    int cashAmount = CASH_AMOUNTS[(threadNo + i) % CASH_AMOUNTS.length];
+
+                    try {
+                        Map<CashType, CashSupply> result = cashService.dispenseCash(cashAmount).getDispensedCash();
+
+                        int total = 0;
+                        for (Map.Entry<CashType, CashSupply> entry : result.entrySet()) {
+                            int cashValue = entry.getKey().getCashValue();
+                            int cashQuantity = entry.getValue().getCashQuantity();
+
+                            dispensedStock.get(cashValue).addAndGet(cashQuantity);
+                            total += cashValue * cashQuantity;
+                        }
+
+                        if (total != cashAmount) {
+                            wrongAmountCount.incrementAndGet();
+                        }
+                    } catch (CashSupplyException e) {
+                        // the machine is expected to run out of cash
+                    }
+                }
+            });
+        }
+
+        startSignal.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+
+        assertThat(wrongAmountCount.get(), is(0));
+
+        Map<Integer, Integer> currentStock = new HashMap<>();
+        cashService.getCurrentCashSupplies().forEach(cashSupply -> {
+            currentStock.put(cashSupply.getCashType().getCashValue(), cashSupply.getCashQuantity());
+        });
+
+        initialStock.forEach((cashValue, cashQuantity) -> {
+            int dispensedQuantity = dispensedStock.get(cashValue).get();
+
+            assertThat(dispensedQuantity <= cashQuantity, is(true));
+            assertThat(currentStock.get(cashValue) >= 0, is(true));
+            assertThat(dispensedQuantity + currentStock.get(cashValue), is(cashQuantity));
+        });
+    }
+
+    @Test
+    public void rolledBackWithdrawNeverShowsTest() throws Exception {
+        CashType fifty = new CashType("$50", 50);
+        CashType twenty = new CashType("$20", 20);
+        CashSupply fiftySupply = new CashSupply(fifty, 100000);
+        fiftySupply.setCashSupplyId(1L);
+        CashSupply twentySupply = new CashSupply(twenty, 2000);
+        twentySupply.setCashSupplyId(2L);
+        CashInventory cashInventory = new CashInventory("default", Arrays.asList(fiftySupply, twentySupply), Collections.emptyList());
+
+        AtomicInteger withdrawnFiftyCount = new AtomicInteger();
+        AtomicInteger raisedCount = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // test the scenario - the $20 run out, the $50 held by a withdraw which fails on the $20 are never seen by a reader
+        Thread reader = new Thread(() -> {
+            int lastCashQuantity = cashInventory.getCashQuantity(0);
+
+            while (running.get()) {
+                int cashQuantity = cashInventory.getCashQuantity(0);
+                if (cashQuantity > lastCashQuantity) {
+                    raisedCount.incrementAndGet();
+                }
+                lastCashQuantity = cashQuantity;
+            }
+        });
+        reader.start();
+
+        for (int thread = 0; thread < 8; thread++) {
+            int[] withdrawQuantities = thread % 2 == 0 ? new int[]{1, 1} : new int[]{0, 3};
+
+            executor.execute(() -> {
+                try {
+                    startSignal.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                for (int i = 0; i < 100000; i++) {
+                    if (cashInventory.withdraw(withdrawQuantities)) {
+                        withdrawnFiftyCount.addAndGet(withdrawQuantities[0]);
+                    }
+                }
+            });
+        }
+
+        startSignal.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+        running.set(false);
+        reader.join();
+
+        assertThat(raisedCount.get(), is(0));
+        assertThat(cashInventory.getCashQuantity(0), is(100000 - withdrawnFiftyCount.get()));
+    }
+}
@@ -2,9 +2,12 @@ package com.suncorp.cashman.service;
 
 import com.suncorp.cashman.Application;
 import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.domain.BankAccountDetail;
 import com.suncorp.cashman.domain.CashSupply;
 import com.suncorp.cashman.domain.CashType;
 import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.CashSupplyWriteBehindFlusher;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
 import com.suncorp.cashman.repository.CashSupplyRepository;
 import com.suncorp.cashman.repository.CashTypeRepository;
 import com.suncorp.cashman.repository.TransactionLogDetailRepository;
@@ -23,13 +26,14 @@ import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Created by ryan.zhu on 14/05/2018.
  */
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = {Application.class, H2JpaConfig.class})
+@SpringBootTest(classes = {Application.class, H2JpaConfig.class}, properties = "cashman.account.daily-ledger.enabled=true")
 public class CashServiceTest {
     @Autowired
     private CashSupplyRepository cashSupplyRepository;
@@ -40,15 +44,27 @@ public class CashServiceTest {
     @Autowired
     private TransactionLogDetailRepository transactionLogDetailRepository;
 
+    @Autowired
+    private CashSupplyWriteBehindFlusher cashSupplyWriteBehindFlusher;
+
+    @Autowired
+    private TransactionalCashDispenser transactionalCashDispenser;
+
+    @Autowired
     private CashService cashService;
 
+    @Autowired
+    private BankAccountService bankAccountService;
+
+    @Autowired
+    private DailyWithdrawLedger dailyWithdrawLedger;
+
     @Before
     public void setup() {
-        cashService = new CashServiceImpl(cashSupplyRepository, cashTypeRepository);
-
         transactionLogDetailRepository.deleteAllInBatch();
         cashSupplyRepository.deleteAllInBatch();
         cashTypeRepository.deleteAllInBatch();
+        dailyWithdrawLedger.clear();
 
         CashType cashType = new CashType("$100", 100);
         cashTypeRepository.save(cashType);
@@ -69,12 +85,14 @@ public class CashServiceTest {
         cashTypeRepository.save(cashType);
         cashSupply = new CashSupply(cashType, 5);
         cashSupplyRepository.save(cashSupply);
+
+        cashService.loadCashSupplies();
     }
 
     @Test
     public void dispenseCashTest() throws Exception {
         // test the scenario - can withdraw with one note/coin
-        Map<CashType, CashSupply> result = cashService.dispenseCash(200);
+        Map<CashType, CashSupply> result = cashService.dispenseCash(200).getDispensedCash();
 
         result.forEach((cashType, cashSupply) -> {
             assertThat(cashSupply.getCashType(), is(cashType));
@@ -88,7 +106,7 @@ public class CashServiceTest {
         });
 
         // test the scenario - need to withdraw with different note/coin
-        result = cashService.dispenseCash(90);
+        result = cashService.dispenseCash(90).getDispensedCash();
 
         result.forEach((cashType, cashSupply) -> {
             assertThat(cashSupply.getCashType(), is(cashType));
@@ -115,6 +133,7 @@ public class CashServiceTest {
 
             assertThat(amountRequired, is(200));
             assertThat(amountSupplied, is(190));
+            assertThat(e.getAmountSuppliedAbove(), is(0));
             assertThat(e.getMessage(), is("Sorry, this ATM cannot supply the amount required $" + amountRequired + " with current stock. " +
                     "The closest amount that can be supplied is $" + amountSupplied + ". Please try again later."));
         }
@@ -128,8 +147,9 @@ public class CashServiceTest {
 
             assertThat(amountRequired, is(25));
             assertThat(amountSupplied, is(20));
+            assertThat(e.getAmountSuppliedAbove(), is(30));
             assertThat(e.getMessage(), is("Sorry, this ATM cannot supply the amount required $" + amountRequired + " with current stock. " +
-                    "The closest amount that can be supplied is $" + amountSupplied + ". Please try again later."));
+                    "The closest amounts that can be supplied are $" + amountSupplied + " and $30. Please try again later."));
         }
 
         // test the scenario - over the withdraw daily limitation
@@ -146,6 +166,49 @@ public class CashServiceTest {
         }
     }
 
+    @Test
+    public void writeBehindFlushTest() throws Exception {
+        cashService.dispenseCash(150);
+
+        // the database is only updated by the flusher
+        cashSupplyWriteBehindFlusher.flush();
+
+        Map<Integer, Integer> cashSupplyMap = new HashMap<>();
+        cashSupplyRepository.findAll().forEach(cashSupply -> {
+            cashSupplyMap.put(cashSupply.getCashType().getCashValue(), cashSupply.getCashQuantity());
+        });
+
+        assertThat(cashSupplyMap.get(100), is(1));
+        assertThat(cashSupplyMap.get(50), is(2));
+        assertThat(cashSupplyMap.get(20), is(4));
+        assertThat(cashSupplyMap.get(10), is(5));
+    }
+
+    @Test
+    public void transactionalDispenseTest() throws Exception {
+        Map<CashType, CashSupply> result = new HashMap<>();
+
+        // test the scenario - optimistic locking dispense straight from the database
+        int amountLeft = transactionalCashDispenser.dispense(CashSupply.DEFAULT_MACHINE_ID, 150, false, result);
+        assertThat(amountLeft, is(0));
+        assertThat(result.size(), is(2));
+
+        // test the scenario - pessimistic locking dispense straight from the database
+        amountLeft = transactionalCashDispenser.dispense(CashSupply.DEFAULT_MACHINE_ID, 100, true, result);
+        assertThat(amountLeft, is(0));
+
+        Map<Integer, CashSupply> cashSupplyMap = new HashMap<>();
+        cashSupplyRepository.findAll().forEach(cashSupply -> {
+            cashSupplyMap.put(cashSupply.getCashType().getCashValue(), cashSupply);
+        });
+
+        assertThat(cashSupplyMap.get(100).getCashQuantity(), is(0));
+        assertThat(cashSupplyMap.get(100).getVersion(), is(2L));
+        assertThat(cashSupplyMap.get(50).getCashQuantity(), is(2));
+        assertThat(cashSupplyMap.get(50).getVersion(), is(1L));
+        assertThat(cashSupplyMap.get(20).getVersion(), is(0L));
+    }
+
     @Test
     public void getCurrentCashSuppliesTest() {
         List<CashSupply> currentCashSupplyList = cashService.getCurrentCashSupplies();
@@ -162,7 +225,7 @@ public class CashServiceTest {
     }
 
     @Test
-    public void initializationTest() {
+    public void initializationTest() throws Exception {
         cashService.initializeCashMachine();
 
         List<CashSupply> currentCashSupplyList = cashService.getCurrentCashSupplies();
@@ -183,5 +246,94 @@ public class CashServiceTest {
                 MatcherAssert.assertThat(cashSupply.getCashQuantity(), is(70));
             }
         });
+
+        // test the scenario - initializing the machine again updates its cash supplies in place
+        cashService.dispenseCash(100);
+        cashSupplyWriteBehindFlusher.flush();
+        List<CashSupply> cashSupplyListFromDb = cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc(CashSupply.DEFAULT_MACHINE_ID);
+
+        cashService.initializeCashMachine();
+
+        List<CashSupply> initializedCashSupplyList = cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc(CashSupply.DEFAULT_MACHINE_ID);
+        assertThat(initializedCashSupplyList.size(), is(7));
+        assertThat(initializedCashSupplyList.get(0).getCashSupplyId(), is(cashSupplyListFromDb.get(0).getCashSupplyId()));
+        assertThat(initializedCashSupplyList.get(0).getCashQuantity(), is(10));
+        assertThat(cashService.getCurrentCashSupplies().get(0).getCashQuantity(), is(10));
+    }
+
+    @Test
+    public void dailyWithdrawLimitationTest() throws Exception {
+        BankAccountDetail bankAccountDetail = bankAccountService.getBankAccountDetail();
+        int limitation = bankAccountService.getDailyWithdrawLimitation(bankAccountDetail);
+
+        // the account has already withdrawn today
+        dailyWithdrawLedger.reserve(bankAccountDetail, limitation - 100, limitation);
+        assertThat(cashService.getAccountCashWithdrawLimitation(), is(100));
+
+        // test the scenario - over what is left of the daily limitation
+        try {
+            cashService.dispenseCash(150);
+            fail();
+        } catch (CashSupplyException e) {
+            assertThat(e.getAmountSupplied(), is(100));
+        }
+
+        // test the scenario - a failed dispense is not counted
+        try {
+            cashService.dispenseCash(25);
+            fail();
+        } catch (CashSupplyException e) {
+            assertThat(e.getAmountSupplied(), is(20));
+        }
+        assertThat(cashService.getAccountCashWithdrawLimitation(), is(100));
+
+        cashService.dispenseCash(100);
+        assertThat(cashService.getAccountCashWithdrawLimitation(), is(0));
+        assertThat(dailyWithdrawLedger.getWithdrawnAmount(bankAccountDetail), is((long) limitation));
+    }
+
+    @Test
+    public void multipleCashMachinesTest() throws Exception {
+        CashType cashType = cashTypeRepository.findFirstByCashValue(100);
+        cashType.setCashDesc("One hundred dollars");
+        cashTypeRepository.save(cashType);
+
+        cashService.initializeCashMachine("atm-1");
+        cashService.initializeCashMachine("atm-2");
+
+        // test the scenario - the cash types are shared by the machines, initializing a machine does not rewrite them
+        assertThat(cashTypeRepository.findFirstByCashValue(100).getCashDesc(), is("One hundred dollars"));
+
+        // test the scenario - a dispense only changes the stock of its own cash machine
+        cashService.dispenseCash("atm-1", 150);
+
+        Map<Integer, Integer> atm1Stock = getCashStock("atm-1");
+        Map<Integer, Integer> atm2Stock = getCashStock("atm-2");
+        assertThat(atm1Stock.get(100), is(9));
+        assertThat(atm1Stock.get(50), is(19));
+        assertThat(atm2Stock.get(100), is(10));
+        assertThat(atm2Stock.get(50), is(20));
+
+        // test the scenario - initializing a cash machine does not touch the other machines
+        cashService.dispenseCash("atm-2", 100);
+        cashService.initializeCashMachine("atm-2");
+
+        assertThat(getCashStock("atm-1").get(100), is(9));
+        assertThat(getCashStock("atm-2").get(100), is(10));
+
+        cashSupplyWriteBehindFlusher.flush();
+
+        assertThat(cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc("atm-1").get(0).getCashQuantity(), is(9));
+        assertThat(cashSupplyRepository.findAllByMachineIdOrderByCashAmountDesc("atm-2").get(0).getCashQuantity(), is(10));
+        assertThat(getCashStock(CashSupply.DEFAULT_MACHINE_ID).get(100), is(2));
+    }
+
+    private Map<Integer, Integer> getCashStock(String machineId) {
+        Map<Integer, Integer> cashStock = new HashMap<>();
+        cashService.getCurrentCashSupplies(machineId).forEach(cashSupply -> {
+            cashStock.put(cashSupply.getCashType().getCashValue(), cashSupply.getCashQuantity());
+        });
+
+        return cashStock;
     }
 }
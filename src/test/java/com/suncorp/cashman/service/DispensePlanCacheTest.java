@@ -0,0 +1,150 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.InventoryListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DispensePlanCacheTest {
+
+    private DispensePlanCache dispensePlanCache;
+
+    private CashInventory cashInventory;
+
+    @Before
+    public void setup() {
+        // cache the amounts up to $200 and at most 2 plans
+        dispensePlanCache = new DispensePlanCache(null, 200, 2);
+        cashInventory = createCashInventory(10, 10);
+    }
+
+    @Test
+    public void cachedPlanTest() {
+        int[] dispenseQuantities = new int[2];
+
+        long epoch = dispensePlanCache.getEpoch(cashInventory);
+        assertThat(dispensePlanCache.getPlan(150, epoch, cashInventory, dispenseQuantities), is(false));
+
+        dispensePlanCache.putPlan(150, epoch, cashInventory, new int[]{1, 1});
+        assertThat(dispensePlanCache.getPlan(150, epoch, cashInventory, dispenseQuantities), is(true));
+        assertThat(dispenseQuantities, is(new int[]{1, 1}));
+
+        // the plan is only for the inventory it was worked out from
+        assertThat(dispensePlanCache.getPlan(150, epoch, createCashInventory(10, 10), dispenseQuantities), is(false));
+
+        // the amounts over the max amount are never cached
+        dispensePlanCache.putPlan(300, epoch, cashInventory, new int[]{3, 0});
+        assertThat(dispensePlanCache.getPlan(300, epoch, cashInventory, dispenseQuantities), is(false));
+
+        assertThat(dispensePlanCache.getHitCount(), is(1L));
+        assertThat(dispensePlanCache.getMissCount(), is(2L));
+    }
+
+    @Test
+    public void epochTest() {
+        long epoch = dispensePlanCache.getEpoch(cashInventory);
+
+        // $100 x 9 left is still enough for any amount up to $200
+        cashInventory.withdraw(new int[]{1, 0});
+        assertThat(dispensePlanCache.getEpoch(cashInventory), is(epoch));
+
+        // $50 x 3 left could change the plan of $200
+        cashInventory.withdraw(new int[]{0, 7});
+        assertThat(dispensePlanCache.getEpoch(cashInventory), is(epoch + 1));
+
+        // every change counts once the quantity is below the level
+        cashInventory.withdraw(new int[]{0, 1});
+        assertThat(dispensePlanCache.getEpoch(cashInventory), is(epoch + 2));
+
+        dispensePlanCache.putPlan(100, epoch + 2, cashInventory, new int[]{1, 0});
+        dispensePlanCache.onCashInventoryLoaded(cashInventory);
+        assertThat(dispensePlanCache.getEpoch(cashInventory), is(epoch + 3));
+        assertThat(dispensePlanCache.getSize(), is(0));
+    }
+
+    @Test
+    public void leastRecentlyUsedEvictionTest() {
+        int[] dispenseQuantities = new int[2];
+        long epoch = dispensePlanCache.getEpoch(cashInventory);
+
+        dispensePlanCache.putPlan(50, epoch, cashInventory, new int[]{0, 1});
+        dispensePlanCache.putPlan(100, epoch, cashInventory, new int[]{1, 0});
+        dispensePlanCache.getPlan(50, epoch, cashInventory, dispenseQuantities);
+        dispensePlanCache.putPlan(150, epoch, cashInventory, new int[]{1, 1});
+
+        assertThat(dispensePlanCache.getSize(), is(2));
+        assertThat(dispensePlanCache.getEvictionCount(), is(1L));
+        assertThat(dispensePlanCache.getPlan(50, epoch, cashInventory, dispenseQuantities), is(true));
+        assertThat(dispensePlanCache.getPlan(100, epoch, cashInventory, dispenseQuantities), is(false));
+        assertThat(dispensePlanCache.getPlan(150, epoch, cashInventory, dispenseQuantities), is(true));
+    }
+
+    @Test
+    public void concurrentGetAndPutTest() throws Exception {
+        AtomicInteger wrongPlanCount = new AtomicInteger();
+        CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        long epoch = dispensePlanCache.getEpoch(cashInventory);
+
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                int[] dispenseQuantities = new int[2];
+
+                try {
+                    startSignal.await();
+
+                    for (int i = 0; i < 10000; i++) {
+                        int cashAmount = ThreadLocalRandom.current().nextInt(5) * 50;
+
+                        if (!dispensePlanCache.getPlan(cashAmount, epoch, cashInventory, dispenseQuantities)) {
+                            dispensePlanCache.putPlan(cashAmount, epoch, cashInventory, new int[]{cashAmount / 100, cashAmount % 100 / 50});
+                        } else if (dispenseQuantities[0] * 100 + dispenseQuantities[1] * 50 != cashAmount) {
+                            wrongPlanCount.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        startSignal.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+
+        // test the scenario - a hit always gets the plan of its own amount, and the cache never keeps more plans
+        // than the max size
+        assertThat(wrongPlanCount.get(), is(0));
+        assertThat(dispensePlanCache.getSize(), is(2));
+        assertThat(dispensePlanCache.getHitCount() + dispensePlanCache.getMissCount(), is(80000L));
+    }
+
+    private CashInventory createCashInventory(int quantity100, int quantity50) {
+        List<CashSupply> cashSupplyList = new ArrayList<>();
+        cashSupplyList.add(new CashSupply(new CashType("$100", 100), quantity100));
+        cashSupplyList.add(new CashSupply(new CashType("$50", 50), quantity50));
+
+        List<InventoryListener> listeners = Collections.singletonList(dispensePlanCache);
+
+        return new CashInventory(CashSupply.DEFAULT_MACHINE_ID, cashSupplyList, listeners);
+    }
+}
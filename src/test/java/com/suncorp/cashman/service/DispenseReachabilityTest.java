@@ -0,0 +1,203 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.CashInventory;
+import com.suncorp.cashman.inventory.InventoryListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DispenseReachabilityTest {
+
+    private DispenseReachability dispenseReachability;
+
+    @Before
+    public void setup() {
+        // the amounts up to $200 are checked
+        dispenseReachability = new DispenseReachability(null, 200);
+    }
+
+    @Test
+    public void checkReachableTest() throws Exception {
+        CashInventory cashInventory = createCashInventory(new int[]{50, 20}, new int[]{1, 3});
+
+        dispenseReachability.checkReachable(0, cashInventory);
+        dispenseReachability.checkReachable(60, cashInventory);
+        dispenseReachability.checkReachable(110, cashInventory);
+
+        // test the scenario - the amount is between two amounts the stock can make up
+        CashSupplyException e = checkUnreachable(30, cashInventory);
+        assertThat(e.getReason(), is(CashSupplyException.Reason.INSUFFICIENT_STOCK));
+        assertThat(e.getAmountSupplied(), is(20));
+        assertThat(e.getAmountSuppliedAbove(), is(40));
+        assertThat(e.getMessage(), is("Sorry, this ATM cannot supply the amount required $30 with current stock. " +
+                "The closest amounts that can be supplied are $20 and $40. Please try again later."));
+
+        // test the scenario - the amount is over the whole stock
+        e = checkUnreachable(120, cashInventory);
+        assertThat(e.getAmountSupplied(), is(110));
+        assertThat(e.getAmountSuppliedAbove(), is(0));
+        assertThat(e.getMessage(), is("Sorry, this ATM cannot supply the amount required $120 with current stock. " +
+                "The closest amount that can be supplied is $110. Please try again later."));
+
+        // test the scenario - the amounts over the max amount are left to the dispense strategy
+        dispenseReachability.checkReachable(1000, cashInventory);
+
+        assertThat(dispenseReachability.getRejectedCount(), is(2L));
+        assertThat(dispenseReachability.getBuildCount(), is(1L));
+    }
+
+    @Test
+    public void stockChangeTest() throws Exception {
+        CashInventory cashInventory = createCashInventory(new int[]{100, 20}, new int[]{5, 20});
+        dispenseReachability.checkReachable(140, cashInventory);
+
+        // $100 x 4 left is still enough for any amount up to $200, the bitset is not built again
+        cashInventory.withdraw(new int[]{1, 0});
+        dispenseReachability.checkReachable(140, cashInventory);
+        assertThat(dispenseReachability.getBuildCount(), is(1L));
+
+        // $20 x 1 left cannot make up $140 any more
+        cashInventory.withdraw(new int[]{0, 19});
+        CashSupplyException e = checkUnreachable(140, cashInventory);
+        assertThat(e.getAmountSupplied(), is(120));
+        assertThat(e.getAmountSuppliedAbove(), is(200));
+        assertThat(dispenseReachability.getBuildCount(), is(2L));
+
+        // test the scenario - a new inventory of the machine is loaded
+        CashInventory loadedCashInventory = createCashInventory(new int[]{100, 20}, new int[]{5, 20});
+        dispenseReachability.onCashInventoryLoaded(loadedCashInventory);
+        dispenseReachability.checkReachable(140, loadedCashInventory);
+    }
+
+    @Test
+    public void failedWithdrawTest() throws Exception {
+        CashInventory cashInventory = createCashInventory(new int[]{50, 20}, new int[]{2, 0});
+        CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // test the scenario - the bitset is built again and again while the withdraws keep failing on the $20
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                try {
+                    startSignal.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                for (int i = 0; i < 100000; i++) {
+                    cashInventory.withdraw(new int[]{1, 1});
+                }
+            });
+        }
+
+        startSignal.countDown();
+        executor.shutdown();
+        boolean rejected = false;
+        while (!rejected && !executor.isTerminated()) {
+            dispenseReachability.onCashInventoryLoaded(cashInventory);
+            try {
+                dispenseReachability.checkReachable(100, cashInventory);
+            } catch (CashSupplyException e) {
+                rejected = true;
+            }
+        }
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+
+        // no withdraw went through, so the stock can still make up $100 without building the bitset again
+        assertThat(rejected, is(false));
+        dispenseReachability.checkReachable(100, cashInventory);
+    }
+
+    @Test
+    public void randomStockTest() throws Exception {
+        int[] cashValues = {100, 50, 20, 10, 5, 2, 1};
+        Random random = new Random(42);
+
+        for (int round = 0; round < 50; round++) {
+            int[] cashQuantities = new int[cashValues.length];
+            for (int i = 0; i < cashValues.length; i++) {
+                cashQuantities[i] = random.nextInt(3);
+            }
+            CashInventory cashInventory = createCashInventory(cashValues, cashQuantities);
+
+            // test the scenario - the bitset agrees with a plain bounded knapsack
+            boolean[] reachable = getReachableAmounts(cashValues, cashQuantities, 200);
+            for (int cashAmount = 0; cashAmount <= 200; cashAmount++) {
+                try {
+                    dispenseReachability.checkReachable(cashAmount, cashInventory);
+                    assertThat(reachable[cashAmount], is(true));
+                } catch (CashSupplyException e) {
+                    assertThat(reachable[cashAmount], is(false));
+                    assertThat(e.getAmountSupplied(), is(getClosestAmount(reachable, cashAmount, -1)));
+                    assertThat(e.getAmountSuppliedAbove(), is(getClosestAmount(reachable, cashAmount, 1)));
+                }
+            }
+        }
+    }
+
+    private CashSupplyException checkUnreachable(int cashAmount, CashInventory cashInventory) {
+        try {
+            dispenseReachability.checkReachable(cashAmount, cashInventory);
+            fail();
+            return null;
+        } catch (CashSupplyException e) {
+            return e;
+        }
+    }
+
+    private static boolean[] getReachableAmounts(int[] cashValues, int[] cashQuantities, int maxCashAmount) {
+        boolean[] reachable = new boolean[maxCashAmount + 1];
+        reachable[0] = true;
+
+        for (int i = 0; i < cashValues.length; i++) {
+            for (int count = 0; count < cashQuantities[i]; count++) {
+                for (int cashAmount = maxCashAmount; cashAmount >= cashValues[i]; cashAmount--) {
+                    reachable[cashAmount] |= reachable[cashAmount - cashValues[i]];
+                }
+            }
+        }
+
+        return reachable;
+    }
+
+    private static int getClosestAmount(boolean[] reachable, int cashAmount, int step) {
+        for (int amount = cashAmount + step; amount >= 0 && amount < reachable.length; amount += step) {
+            if (reachable[amount]) {
+                return amount;
+            }
+        }
+
+        return 0;
+    }
+
+    private CashInventory createCashInventory(int[] cashValues, int[] cashQuantities) {
+        List<CashSupply> cashSupplyList = new ArrayList<>();
+        for (int i = 0; i < cashValues.length; i++) {
+            cashSupplyList.add(new CashSupply(new CashType("$" + cashValues[i], cashValues[i]), cashQuantities[i]));
+        }
+
+        List<InventoryListener> listeners = Collections.singletonList(dispenseReachability);
+
+        return new CashInventory(CashSupply.DEFAULT_MACHINE_ID, cashSupplyList, listeners);
+    }
+}
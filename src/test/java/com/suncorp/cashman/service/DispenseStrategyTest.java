@@ -0,0 +1,234 @@
+package com.suncorp.cashman.service;
+
+import com.suncorp.cashman.benchmark.DispenseDepletionSimulation;
+import com.suncorp.cashman.denomination.Denomination;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.denomination.DenominationSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class DispenseStrategyTest {
+
+    private DispenseStrategy boundedChangeStrategy = new BoundedChangeDispenseStrategy();
+
+    private DispenseStrategy greedyStrategy = new GreedyDispenseStrategy();
+
+    private DenominationSet denominationSet = new DenominationSet(Arrays.asList(
+            new Denomination(100, "$100", 10, 2),
+            new Denomination(50, "$50", 20, 3),
+            new Denomination(20, "$20", 30, 4),
+            new Denomination(10, "$10", 40, 5),
+            new Denomination(5, "$5", 50, 6),
+            new Denomination(2, "$2", 60, 7),
+            new Denomination(1, "$1", 70, 8)));
+
+    private DispenseStrategy depletionBalancingStrategy = new DepletionBalancingDispenseStrategy(new DenominationConfig(denominationSet));
+
+    @Test
+    public void boundedChangeFindsCombinationMissedByGreedyTest() {
+        int[] cashValues = {50, 20};
+        int[] cashQuantities = {1, 3};
+        int[] dispenseQuantities = new int[2];
+
+        // test the scenario - greedy takes the $50 note and then cannot supply the $10 left
+        assertThat(greedyStrategy.dispense(60, cashValues, cashQuantities, dispenseQuantities), is(50));
+
+        assertThat(boundedChangeStrategy.dispense(60, cashValues, cashQuantities, dispenseQuantities), is(60));
+        assertThat(dispenseQuantities[0], is(0));
+        assertThat(dispenseQuantities[1], is(3));
+
+        // the stock must not be changed
+        assertThat(cashQuantities[0], is(1));
+        assertThat(cashQuantities[1], is(3));
+    }
+
+    @Test
+    public void boundedChangePrefersHigherCashTest() {
+        int[] cashValues = {100, 50, 20, 10};
+        int[] cashQuantities = {2, 2, 3, 4};
+        int[] dispenseQuantities = new int[4];
+
+        assertThat(boundedChangeStrategy.dispense(100, cashValues, cashQuantities, dispenseQuantities), is(100));
+        assertThat(dispenseQuantities, is(new int[]{1, 0, 0, 0}));
+
+        assertThat(boundedChangeStrategy.dispense(90, cashValues, cashQuantities, dispenseQuantities), is(90));
+        assertThat(dispenseQuantities, is(new int[]{0, 1, 2, 0}));
+
+        // test the scenario - the higher cash is taken as long as the rest can still be made up
+        assertThat(boundedChangeStrategy.dispense(60, cashValues, cashQuantities, dispenseQuantities), is(60));
+        assertThat(dispenseQuantities, is(new int[]{0, 1, 0, 1}));
+
+        assertThat(boundedChangeStrategy.dispense(160, cashValues, cashQuantities, dispenseQuantities), is(160));
+        assertThat(dispenseQuantities, is(new int[]{1, 1, 0, 1}));
+
+        // test the scenario - fall back to the lower cash when the higher one leaves a rest that cannot be made up
+        int[] noTenQuantities = {2, 2, 3, 0};
+        assertThat(boundedChangeStrategy.dispense(60, cashValues, noTenQuantities, dispenseQuantities), is(60));
+        assertThat(dispenseQuantities, is(new int[]{0, 0, 3, 0}));
+
+        assertThat(boundedChangeStrategy.dispense(160, cashValues, noTenQuantities, dispenseQuantities), is(160));
+        assertThat(dispenseQuantities, is(new int[]{1, 0, 3, 0}));
+    }
+
+    @Test
+    public void boundedChangeClosestAmountTest() {
+        int[] cashValues = {100, 50, 20, 10};
+        int[] cashQuantities = {1, 1, 1, 4};
+        int[] dispenseQuantities = new int[4];
+
+        // test the scenario - the cash stock cannot meet the required cash amount
+        assertThat(boundedChangeStrategy.dispense(55, cashValues, cashQuantities, dispenseQuantities), is(50));
+
+        // test the scenario - the required cash amount is over the total stock
+        assertThat(boundedChangeStrategy.dispense(400, cashValues, cashQuantities, dispenseQuantities), is(210));
+        assertThat(dispenseQuantities, is(new int[]{1, 1, 1, 4}));
+    }
+
+    @Test
+    public void boundedChangeAgreesWithExhaustiveSearchTest() {
+        int[] cashValues = {50, 20, 5, 2};
+        int[] dispenseQuantities = new int[4];
+        int[] cashQuantities = new int[4];
+
+        for (int q50 = 0; q50 <= 2; q50++) {
+            for (int q20 = 0; q20 <= 3; q20++) {
+                for (int q5 = 0; q5 <= 2; q5++) {
+                    for (int q2 = 0; q2 <= 3; q2++) {
+                        cashQuantities[0] = q50;
+                        cashQuantities[1] = q20;
+                        cashQuantities[2] = q5;
+                        cashQuantities[3] = q2;
+
+                        for (int cashAmount = 0; cashAmount <= 180; cashAmount++) {
+                            boolean reachable = isReachable(cashAmount, cashValues, cashQuantities, 0);
+                            int amountSupplied = boundedChangeStrategy.dispense(cashAmount, cashValues, cashQuantities, dispenseQuantities);
+
+                            assertThat(amountSupplied == cashAmount, is(reachable));
+
+                            int total = 0;
+                            for (int i = 0; i < cashValues.length; i++) {
+                                assertThat(dispenseQuantities[i] <= cashQuantities[i], is(true));
+                                total += dispenseQuantities[i] * cashValues[i];
+                            }
+                            assertThat(total, is(amountSupplied));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void depletionBalancingTakesFromFullestCashTest() {
+        int[] cashValues = {100, 50, 20};
+        int[] cashQuantities = {3, 20, 20};
+        int[] dispenseQuantities = new int[3];
+
+        // test the scenario - only one $100 note is left above its threshold, $50 notes have the most cash above theirs
+        assertThat(depletionBalancingStrategy.dispense(100, cashValues, cashQuantities, dispenseQuantities), is(100));
+        assertThat(dispenseQuantities, is(new int[]{0, 2, 0}));
+
+        assertThat(boundedChangeStrategy.dispense(100, cashValues, cashQuantities, dispenseQuantities), is(100));
+        assertThat(dispenseQuantities, is(new int[]{1, 0, 0}));
+
+        // test the scenario - the $100 notes are the fullest cash
+        cashQuantities[0] = 40;
+        assertThat(depletionBalancingStrategy.dispense(100, cashValues, cashQuantities, dispenseQuantities), is(100));
+        assertThat(dispenseQuantities, is(new int[]{1, 0, 0}));
+    }
+
+    @Test
+    public void depletionBalancingKeepsLowStockTest() {
+        int[] cashValues = {50, 20};
+        int[] cashQuantities = {3, 10};
+        int[] dispenseQuantities = new int[2];
+
+        // test the scenario - the $50 notes are at their threshold, so the $20 notes are used
+        assertThat(depletionBalancingStrategy.dispense(100, cashValues, cashQuantities, dispenseQuantities), is(100));
+        assertThat(dispenseQuantities, is(new int[]{0, 5}));
+
+        // test the scenario - the amount cannot be supplied without the notes below the threshold, use as few of them as possible
+        assertThat(depletionBalancingStrategy.dispense(250, cashValues, cashQuantities, dispenseQuantities), is(250));
+        assertThat(dispenseQuantities, is(new int[]{3, 5}));
+
+        // test the scenario - the required cash amount is over the total stock
+        assertThat(depletionBalancingStrategy.dispense(400, cashValues, cashQuantities, dispenseQuantities), is(350));
+        assertThat(dispenseQuantities, is(new int[]{3, 10}));
+    }
+
+    @Test
+    public void depletionBalancingAgreesWithExhaustiveSearchTest() {
+        int[] cashValues = {50, 20, 5, 2};
+        int[] dispenseQuantities = new int[4];
+        int[] cashQuantities = new int[4];
+
+        for (int q50 = 0; q50 <= 4; q50++) {
+            for (int q20 = 0; q20 <= 5; q20++) {
+                for (int q5 = 0; q5 <= 7; q5 += 3) {
+                    for (int q2 = 0; q2 <= 8; q2 += 4) {
+                        cashQuantities[0] = q50;
+                        cashQuantities[1] = q20;
+                        cashQuantities[2] = q5;
+                        cashQuantities[3] = q2;
+
+                        for (int cashAmount = 0; cashAmount <= 250; cashAmount++) {
+                            boolean reachable = isReachable(cashAmount, cashValues, cashQuantities, 0);
+                            int amountSupplied = depletionBalancingStrategy.dispense(cashAmount, cashValues, cashQuantities, dispenseQuantities);
+
+                            assertThat(amountSupplied == cashAmount, is(reachable));
+
+                            int total = 0;
+                            for (int i = 0; i < cashValues.length; i++) {
+                                assertThat(dispenseQuantities[i] <= cashQuantities[i], is(true));
+                                total += dispenseQuantities[i] * cashValues[i];
+                            }
+                            assertThat(total, is(amountSupplied));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void depletionBalancingSurvivesLongerTest() {
+        int[] cashAmounts = DispenseDepletionSimulation.generateTrace(20000, 42);
+
+        DispenseDepletionSimulation.SimulationResult boundedChangeResult = DispenseDepletionSimulation.simulate(boundedChangeStrategy,
+                denominationSet, 10, cashAmounts);
+        DispenseDepletionSimulation.SimulationResult depletionBalancingResult = DispenseDepletionSimulation.simulate(depletionBalancingStrategy,
+                denominationSet, 10, cashAmounts);
+
+        // test the scenario - the highest cash runs out first when it is always preferred
+        assertThat(boundedChangeResult.getFirstEmptyCashValue(), is(100));
+
+        assertThat(depletionBalancingResult.getFirstEmptyDispense() > boundedChangeResult.getFirstEmptyDispense(), is(true));
+        assertThat(depletionBalancingResult.getFirstFailedDispense() >= boundedChangeResult.getFirstFailedDispense(), is(true));
+    }
+
+    private boolean isReachable(int cashAmount, int[] cashValues, int[] cashQuantities, int index) {
+        if (cashAmount == 0) {
+            return true;
+        }
+
+        if (index == cashValues.length) {
+            return false;
+        }
+
+        for (int quantity = 0; quantity <= cashQuantities[index] && quantity * cashValues[index] <= cashAmount; quantity++) {
+            if (isReachable(cashAmount - quantity * cashValues[index], cashValues, cashQuantities, index + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -2,10 +2,19 @@ package com.suncorp.cashman.service;
 
 import com.suncorp.cashman.Application;
 import com.suncorp.cashman.H2JpaConfig;
+import com.suncorp.cashman.audit.AsyncTransactionLogWriter;
+import com.suncorp.cashman.audit.TransactionLogCursor;
+import com.suncorp.cashman.audit.TransactionLogEntry;
+import com.suncorp.cashman.audit.TransactionLogExporter;
+import com.suncorp.cashman.audit.TransactionLogFilter;
+import com.suncorp.cashman.audit.TransactionLogPage;
+import com.suncorp.cashman.audit.TransactionLogReader;
 import com.suncorp.cashman.domain.CashSupply;
 import com.suncorp.cashman.domain.CashType;
 import com.suncorp.cashman.domain.TransactionLog;
 import com.suncorp.cashman.domain.TransactionLogDetail;
+import com.suncorp.cashman.journal.DispenseJournal;
+import com.suncorp.cashman.metrics.MetricsRegistry;
 import com.suncorp.cashman.repository.CashTypeRepository;
 import com.suncorp.cashman.repository.TransactionLogDetailRepository;
 import com.suncorp.cashman.repository.TransactionLogRepository;
@@ -16,9 +25,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -39,17 +52,36 @@ public class TransactionLogServiceTest {
     @Autowired
     private CashTypeRepository cashTypeRepository;
 
+    @Autowired
+    private AsyncTransactionLogWriter asyncTransactionLogWriter;
+
+    @Autowired
+    private DispenseJournal dispenseJournal;
+
+    @Autowired
+    private BankAccountService bankAccountService;
+
+    @Autowired
+    private TransactionLogReader transactionLogReader;
+
+    @Autowired
+    private TransactionLogExporter transactionLogExporter;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
     private TransactionLogService transactionLogService;
 
     @Before
-    public void setup() {
-        transactionLogService = new TransactionLogServiceImpl(transactionLogRepository, transactionLogDetailRepository);
+    public void setup() throws Exception {
+        transactionLogService = new TransactionLogServiceImpl(asyncTransactionLogWriter, dispenseJournal, bankAccountService, transactionLogReader, transactionLogExporter, metricsRegistry);
+        this.asyncTransactionLogWriter.flush();
         this.transactionLogDetailRepository.deleteAllInBatch();
         this.transactionLogRepository.deleteAllInBatch();
     }
 
     @Test
-    public void saveTransactionTest() {
+    public void saveTransactionTest() throws Exception {
         // test save transaction log and log detail.
         Map<CashType, CashSupply> dispenseCashMap = new HashMap<>();
 
@@ -67,6 +99,9 @@ public class TransactionLogServiceTest {
 
         transactionLogService.saveTransactionLog(dispenseCashMap, 940);
 
+        // the transaction log is written in the background
+        asyncTransactionLogWriter.flush();
+
         List<TransactionLog> transactionLogList = transactionLogRepository.findAll();
         assertThat(transactionLogList.size(), is(1));
 
@@ -91,4 +126,88 @@ public class TransactionLogServiceTest {
             }
         });
     }
+
+    @Test
+    public void saveTransactionBatchTest() throws Exception {
+        // test many transaction logs written together
+        Map<CashType, CashSupply> dispenseCashMap = new HashMap<>();
+
+        CashType cashType = new CashType("$50", 50);
+        cashTypeRepository.save(cashType);
+        dispenseCashMap.put(cashType, new CashSupply(cashType, 2));
+
+        for (int i = 0; i < 250; i++) {
+            transactionLogService.saveTransactionLog(dispenseCashMap, 100);
+        }
+
+        asyncTransactionLogWriter.flush();
+
+        assertThat(transactionLogRepository.findAll().size(), is(250));
+
+        List<TransactionLogDetail> detailList = transactionLogDetailRepository.findAll();
+        assertThat(detailList.size(), is(250));
+        assertThat(detailList.stream().map(logDetail -> logDetail.getTransactionLog().getTransactionLogId()).distinct().count(), is(250L));
+    }
+
+    @Test
+    public void findTransactionLogsTest() throws Exception {
+        Map<CashType, CashSupply> dispenseCashMap = new HashMap<>();
+
+        CashType cashType = new CashType("$50", 50);
+        cashTypeRepository.save(cashType);
+        dispenseCashMap.put(cashType, new CashSupply(cashType, 1));
+
+        cashType = new CashType("$20", 20);
+        cashTypeRepository.save(cashType);
+        dispenseCashMap.put(cashType, new CashSupply(cashType, 1));
+
+        // many of them are created within the same millisecond, so the pages also seek on the id
+        for (int i = 0; i < 5; i++) {
+            transactionLogService.saveTransactionLog(dispenseCashMap, 70);
+        }
+        transactionLogService.saveTransactionLog(Collections.singletonMap(cashType, new CashSupply(cashType, 1)), 20);
+        asyncTransactionLogWriter.flush();
+
+        // test the scenario - go through all the pages
+        Set<Long> transactionLogIds = new HashSet<>();
+        TransactionLogCursor cursor = null;
+        int pageCount = 0;
+        LocalDateTime lastCreateAt = LocalDateTime.MAX;
+
+        do {
+            TransactionLogPage transactionLogPage = transactionLogService.findTransactionLogs(new TransactionLogFilter(), cursor, 4);
+            pageCount++;
+
+            for (TransactionLogEntry entry : transactionLogPage.getEntries()) {
+                assertThat(transactionLogIds.add(entry.getTransactionLog().getTransactionLogId()), is(true));
+                assertThat(entry.getTransactionLog().getCreateAt().isAfter(lastCreateAt), is(false));
+                assertThat(entry.getTransactionLogDetails().size(), is(entry.getTransactionLog().getTotalAmount() == 70 ? 2 : 1));
+
+                lastCreateAt = entry.getTransactionLog().getCreateAt();
+            }
+
+            cursor = transactionLogPage.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(pageCount, is(2));
+        assertThat(transactionLogIds.size(), is(6));
+
+        // test the scenario - the filters
+        TransactionLogFilter transactionLogFilter = new TransactionLogFilter();
+        transactionLogFilter.setBsb("111111");
+        transactionLogFilter.setAccountNo("12345678");
+        transactionLogFilter.setMinAmount(50);
+        transactionLogFilter.setFromTime(LocalDateTime.now().minusMinutes(1));
+
+        TransactionLogPage transactionLogPage = transactionLogService.findTransactionLogs(transactionLogFilter, null, 10);
+        assertThat(transactionLogPage.getEntries().size(), is(5));
+        assertThat(transactionLogPage.getNextCursor() == null, is(true));
+
+        transactionLogFilter.setAccountNo("87654321");
+        assertThat(transactionLogService.findTransactionLogs(transactionLogFilter, null, 10).getEntries().size(), is(0));
+
+        // test the scenario - the cursor token
+        TransactionLogCursor transactionLogCursor = new TransactionLogCursor(LocalDateTime.of(2026, 10, 17, 9, 30, 15, 123000000), 42);
+        assertThat(TransactionLogCursor.decode(transactionLogCursor.encode()), is(transactionLogCursor));
+    }
 }
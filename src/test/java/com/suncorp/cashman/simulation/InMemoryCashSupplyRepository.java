@@ -0,0 +1,124 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory {@link CashSupplyRepository} for the simulation, so that the real services run without a database.
+ *
+ * Only the queries used by the in-memory inventory, the write-behind flusher and the simulation are implemented;
+ * every other method of the repository throws an UnsupportedOperationException. It is a dynamic proxy rather than a
+ * class implementing the whole JpaRepository, which keeps it independent of the Spring Data version.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class InMemoryCashSupplyRepository implements InvocationHandler {
+
+    private static final Comparator<CashSupply> CASH_VALUE_DESC =
+            Comparator.comparing((CashSupply cashSupply) -> cashSupply.getCashType().getCashValue()).reversed();
+
+    private final Map<Long, CashSupply> cashSupplies = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextCashSupplyId = new AtomicLong(1);
+
+    private InMemoryCashSupplyRepository() {
+    }
+
+    public static CashSupplyRepository create() {
+        return (CashSupplyRepository) Proxy.newProxyInstance(CashSupplyRepository.class.getClassLoader(),
+                new Class<?>[]{CashSupplyRepository.class}, new InMemoryCashSupplyRepository());
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String methodName = method.getName();
+        int argCount = args == null ? 0 : args.length;
+
+        if (method.getDeclaringClass() == Object.class) {
+            switch (methodName) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "InMemoryCashSupplyRepository" + cashSupplies.values();
+            }
+        }
+
+        if (argCount == 0) {
+            switch (methodName) {
+                case "findAll":
+                case "findAllByOrderByCashAmountDesc":
+                case "findAllForUpdateOrderByCashAmountDesc":
+                    return find(cashSupply -> true);
+                case "count":
+                    return (long) cashSupplies.size();
+                case "flush":
+                    return null;
+            }
+        } else if (argCount == 1) {
+            Object arg = args[0];
+
+            switch (methodName) {
+                case "findAllByMachineIdOrderByCashAmountDesc":
+                case "findAllForUpdateByMachineId":
+                    return find(cashSupply -> cashSupply.getMachineId().equals(arg));
+                case "findByCashSupplyIdIn":
+                    return find(cashSupply -> ((Collection<?>) arg).contains(cashSupply.getCashSupplyId()));
+                case "deleteByMachineId":
+                    return deleteByMachineId((String) arg);
+                case "save":
+                    return arg instanceof CashSupply ? save((CashSupply) arg) : saveAll((Iterable<?>) arg);
+            }
+        }
+
+        throw new UnsupportedOperationException("The in-memory cash supply repository does not support " + method + ".");
+    }
+
+    private List<CashSupply> find(Predicate<CashSupply> filter) {
+        return cashSupplies.values().stream().filter(filter).sorted(CASH_VALUE_DESC).collect(Collectors.toList());
+    }
+
+    private CashSupply save(CashSupply cashSupply) {
+        if (cashSupply.getCashSupplyId() == 0) {
+            cashSupply.setCashSupplyId(nextCashSupplyId.getAndIncrement());
+        }
+
+        cashSupplies.put(cashSupply.getCashSupplyId(), cashSupply);
+
+        return cashSupply;
+    }
+
+    private List<CashSupply> saveAll(Iterable<?> cashSupplyList) {
+        List<CashSupply> savedCashSupplies = new ArrayList<>();
+        for (Object cashSupply : cashSupplyList) {
+            savedCashSupplies.add(save((CashSupply) cashSupply));
+        }
+
+        return savedCashSupplies;
+    }
+
+    private int deleteByMachineId(String machineId) {
+        int deletedCount = 0;
+        for (CashSupply cashSupply : find(cashSupply -> cashSupply.getMachineId().equals(machineId))) {
+            cashSupplies.remove(cashSupply.getCashSupplyId());
+            deletedCount++;
+        }
+
+        return deletedCount;
+    }
+}
@@ -0,0 +1,99 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.audit.AsyncTransactionLogWriter;
+import com.suncorp.cashman.audit.TransactionLogBatchWriter;
+import com.suncorp.cashman.denomination.DenominationConfig;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.inventory.CashSupplyBatchWriter;
+import com.suncorp.cashman.inventory.CashSupplyWriteBehindFlusher;
+import com.suncorp.cashman.inventory.InventoryMode;
+import com.suncorp.cashman.journal.DispenseJournal;
+import com.suncorp.cashman.ledger.DailyWithdrawLedger;
+import com.suncorp.cashman.logging.DispenseEventLog;
+import com.suncorp.cashman.metrics.MetricsRegistry;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.repository.CashTypeRepository;
+import com.suncorp.cashman.repository.TransactionLogRepository;
+import com.suncorp.cashman.service.BankAccountService;
+import com.suncorp.cashman.service.CashServiceImpl;
+import com.suncorp.cashman.service.DispensePlanCache;
+import com.suncorp.cashman.service.DispenseReachability;
+import com.suncorp.cashman.service.DispenseStrategy;
+import com.suncorp.cashman.service.TransactionalCashDispenser;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+
+/**
+ * Wires a {@link CashServiceImpl} by hand for the MEMORY inventory mode, outside of a Spring context.
+ *
+ * Only the collaborators of the MEMORY mode dispense are real. The journal is disabled, and the collaborators the
+ * dispense never reaches (the database writers, the write-behind flusher, the transactional dispenser and the
+ * denomination config) are left out; they are named here so a caller does not have to know their positions.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+final class MemoryCashServiceFactory {
+
+    private static final int PLAN_CACHE_REFRESH_MILLIS = 1000;
+
+    private static final int PLAN_CACHE_MAX_AMOUNTS = 256;
+
+    private static final int REACHABILITY_REFRESH_MILLIS = 1000;
+
+    private MemoryCashServiceFactory() {
+
+    }
+
+    /**
+     * @param cashSupplyRepository  The cash supplies of the machine.
+     * @param cashInventoryRegistry The in-memory inventory loaded from the cash supplies.
+     * @param dispenseStrategy      The dispense strategy.
+     * @param bankAccountService    Gives the account of each withdraw.
+     * @param clock                 The clock of the daily withdraw ledger.
+     * @return the cash service, with its plan cache and reachability started.
+     */
+    static CashServiceImpl create(CashSupplyRepository cashSupplyRepository, CashInventoryRegistry cashInventoryRegistry,
+                                  DispenseStrategy dispenseStrategy, BankAccountService bankAccountService, Clock clock) {
+        DispensePlanCache dispensePlanCache = new DispensePlanCache(cashInventoryRegistry, PLAN_CACHE_REFRESH_MILLIS, PLAN_CACHE_MAX_AMOUNTS);
+        dispensePlanCache.start();
+        DispenseReachability dispenseReachability = new DispenseReachability(cashInventoryRegistry, REACHABILITY_REFRESH_MILLIS);
+        dispenseReachability.start();
+
+        TransactionLogRepository noTransactionLogRepository = null;
+        DailyWithdrawLedger dailyWithdrawLedger = new DailyWithdrawLedger(noTransactionLogRepository, clock, true);
+
+        CashSupplyBatchWriter noCashSupplyBatchWriter = null;
+        CashSupplyWriteBehindFlusher noCashSupplyWriteBehindFlusher = null;
+        DenominationConfig noDenominationConfig = null;
+        TransactionalCashDispenser noTransactionalCashDispenser = null;
+
+        return new CashServiceImpl(cashSupplyRepository, noCashSupplyBatchWriter, noCashSupplyWriteBehindFlusher, noDenominationConfig,
+                dispenseStrategy, cashInventoryRegistry, noTransactionalCashDispenser,
+                createDisabledJournal(cashSupplyRepository, cashInventoryRegistry), dispensePlanCache, dispenseReachability,
+                bankAccountService, dailyWithdrawLedger, new DispenseEventLog(), new MetricsRegistry());
+    }
+
+    /**
+     * The journal is off, so a dispense is neither written ahead nor replayed, and no segment is ever created.
+     */
+    private static DispenseJournal createDisabledJournal(CashSupplyRepository cashSupplyRepository, CashInventoryRegistry cashInventoryRegistry) {
+        CashSupplyWriteBehindFlusher noCashSupplyWriteBehindFlusher = null;
+        AsyncTransactionLogWriter noAsyncTransactionLogWriter = null;
+        TransactionLogBatchWriter noTransactionLogBatchWriter = null;
+        TransactionLogRepository noTransactionLogRepository = null;
+        CashTypeRepository noCashTypeRepository = null;
+        PlatformTransactionManager noTransactionManager = null;
+        boolean enabled = false;
+        String noJournalDir = null;
+        String noJournalBaseDir = null;
+        int segmentSizeMb = 1;
+        long cleanupIntervalMillis = 0;
+        int stripeCount = 1;
+
+        return new DispenseJournal(cashInventoryRegistry, noCashSupplyWriteBehindFlusher, noAsyncTransactionLogWriter,
+                noTransactionLogBatchWriter, noTransactionLogRepository, cashSupplyRepository, noCashTypeRepository,
+                noTransactionManager, enabled, noJournalDir, noJournalBaseDir, segmentSizeMb, cleanupIntervalMillis, stripeCount, InventoryMode.MEMORY);
+    }
+}
@@ -0,0 +1,36 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.service.BankAccountService;
+
+/**
+ * Bank account service of a simulated cash machine: the account is the one of the withdraw being replayed, and every
+ * account has the same daily withdraw limitation.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class SimulatedBankAccountService implements BankAccountService {
+
+    private final int dailyWithdrawLimitation;
+
+    private BankAccountDetail bankAccountDetail;
+
+    public SimulatedBankAccountService(int dailyWithdrawLimitation) {
+        this.dailyWithdrawLimitation = dailyWithdrawLimitation;
+    }
+
+    public void setBankAccountDetail(BankAccountDetail bankAccountDetail) {
+        this.bankAccountDetail = bankAccountDetail;
+    }
+
+    @Override
+    public BankAccountDetail getBankAccountDetail() {
+        return bankAccountDetail;
+    }
+
+    @Override
+    public int getDailyWithdrawLimitation(BankAccountDetail bankAccountDetail) {
+        return dailyWithdrawLimitation;
+    }
+}
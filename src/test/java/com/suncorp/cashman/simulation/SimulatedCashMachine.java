@@ -0,0 +1,101 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.service.CashService;
+import com.suncorp.cashman.service.CashServiceImpl;
+import com.suncorp.cashman.service.DispenseStrategy;
+
+import java.time.ZoneId;
+
+/**
+ * One cash machine of the simulation, dispensing through its own {@link CashServiceImpl} in the MEMORY inventory mode.
+ *
+ * The service is wired by {@link MemoryCashServiceFactory} on top of the in-memory cash supply repository. Every
+ * machine has its own daily withdraw ledger on its own simulated clock, so the machines can be replayed in parallel
+ * on their own timelines.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class SimulatedCashMachine {
+
+    private final String machineId;
+
+    private final CashType[] cashTypes;
+
+    private final int[] initialQuantities;
+
+    private final CashSupplyRepository cashSupplyRepository = InMemoryCashSupplyRepository.create();
+
+    private final CashInventoryRegistry cashInventoryRegistry;
+
+    private final SimulatedClock clock;
+
+    private final SimulatedBankAccountService bankAccountService;
+
+    private final CashService cashService;
+
+    /**
+     * @param machineId               The cash machine.
+     * @param cashTypes               The cash types ordered by cash value desc.
+     * @param initialQuantities       The quantity of each cash type after a refill.
+     * @param dispenseStrategy        The dispense strategy.
+     * @param dailyWithdrawLimitation The daily withdraw limitation of every account.
+     * @param startMillis             The simulated time the machine starts at.
+     */
+    public SimulatedCashMachine(String machineId, CashType[] cashTypes, int[] initialQuantities, DispenseStrategy dispenseStrategy,
+                                int dailyWithdrawLimitation, long startMillis) {
+        this.machineId = machineId;
+        this.cashTypes = cashTypes;
+        this.initialQuantities = initialQuantities;
+        this.clock = new SimulatedClock(startMillis, ZoneId.systemDefault());
+        this.bankAccountService = new SimulatedBankAccountService(dailyWithdrawLimitation);
+
+        this.cashInventoryRegistry = new CashInventoryRegistry(cashSupplyRepository);
+        this.cashService = MemoryCashServiceFactory.create(cashSupplyRepository, cashInventoryRegistry, dispenseStrategy, bankAccountService, clock);
+    }
+
+    /**
+     * Put the initial quantities back into the machine and load them into its inventory.
+     */
+    public void refill() {
+        cashSupplyRepository.deleteByMachineId(machineId);
+        for (int i = 0; i < cashTypes.length; i++) {
+            cashSupplyRepository.save(new CashSupply(machineId, cashTypes[i], initialQuantities[i]));
+        }
+
+        cashService.loadCashSupplies(machineId);
+    }
+
+    /**
+     * Replay one withdraw.
+     *
+     * @param timeMillis        The simulated time of the withdraw.
+     * @param bankAccountDetail The account of the withdraw.
+     * @param cashAmount        The withdraw amount.
+     * @return null if the cash was dispensed, otherwise why it was not.
+     */
+    public CashSupplyException.Reason dispense(long timeMillis, BankAccountDetail bankAccountDetail, int cashAmount) {
+        clock.setMillis(timeMillis);
+        bankAccountService.setBankAccountDetail(bankAccountDetail);
+
+        try {
+            cashService.dispenseCash(machineId, cashAmount);
+            return null;
+        } catch (CashSupplyException e) {
+            return e.getReason();
+        }
+    }
+
+    /**
+     * @param cashQuantities Receives the current quantity of each cash type, in the order of the cash types.
+     */
+    public void readCashQuantities(int[] cashQuantities) {
+        cashInventoryRegistry.getCashInventory(machineId).readCashQuantities(cashQuantities);
+    }
+}
@@ -0,0 +1,48 @@
+package com.suncorp.cashman.simulation;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * A clock which only moves when the simulation sets the time of the next withdraw.
+ * A simulated cash machine is only driven by one thread at a time, so the time is a plain field.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class SimulatedClock extends Clock {
+
+    private final ZoneId zone;
+
+    private long millis;
+
+    public SimulatedClock(long millis, ZoneId zone) {
+        this.millis = millis;
+        this.zone = zone;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new SimulatedClock(millis, zone);
+    }
+}
@@ -0,0 +1,187 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.exception.CashSupplyException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * The outcome of a simulation: the withdraws by outcome, the refills, and the depletion curves, which are the total
+ * quantity of every cash type over all the machines at the start of every time bucket.
+ *
+ * Every machine fills its own report, and the reports are merged when the machines are done.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class SimulationReport {
+
+    private final int[] cashValues;
+
+    private final long startMillis;
+
+    private final long bucketMillis;
+
+    // quantityCurves[bucket][i] is the total quantity of the cash value i at the start of the bucket
+    private final long[][] quantityCurves;
+
+    private final long[] failureCounts = new long[CashSupplyException.Reason.values().length];
+
+    private long withdrawCount;
+
+    private long dispensedAmount;
+
+    private long refillCount;
+
+    private long elapsedNanos;
+
+    public SimulationReport(int[] cashValues, long startMillis, long bucketMillis, int bucketCount) {
+        this.cashValues = cashValues;
+        this.startMillis = startMillis;
+        this.bucketMillis = bucketMillis;
+        this.quantityCurves = new long[bucketCount][cashValues.length];
+    }
+
+    void addWithdraw(int cashAmount, CashSupplyException.Reason failureReason) {
+        withdrawCount++;
+
+        if (failureReason == null) {
+            dispensedAmount += cashAmount;
+        } else {
+            failureCounts[failureReason.ordinal()]++;
+        }
+    }
+
+    void addRefill() {
+        refillCount++;
+    }
+
+    void addCashQuantities(int bucket, int[] cashQuantities) {
+        for (int i = 0; i < cashQuantities.length; i++) {
+            quantityCurves[bucket][i] += cashQuantities[i];
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    int getBucketCount() {
+        return quantityCurves.length;
+    }
+
+    /**
+     * Add the results of another report of the same simulation.
+     *
+     * @param other The report of other machines.
+     * @return this report.
+     */
+    SimulationReport merge(SimulationReport other) {
+        withdrawCount += other.withdrawCount;
+        dispensedAmount += other.dispensedAmount;
+        refillCount += other.refillCount;
+
+        for (int reason = 0; reason < failureCounts.length; reason++) {
+            failureCounts[reason] += other.failureCounts[reason];
+        }
+
+        for (int bucket = 0; bucket < quantityCurves.length; bucket++) {
+            for (int i = 0; i < cashValues.length; i++) {
+                quantityCurves[bucket][i] += other.quantityCurves[bucket][i];
+            }
+        }
+
+        return this;
+    }
+
+    public long getWithdrawCount() {
+        return withdrawCount;
+    }
+
+    public long getFailureCount(CashSupplyException.Reason reason) {
+        return failureCounts[reason.ordinal()];
+    }
+
+    public long getDispensedAmount() {
+        return dispensedAmount;
+    }
+
+    public long getRefillCount() {
+        return refillCount;
+    }
+
+    /**
+     * @param bucket The time bucket.
+     * @param index  The index of the cash value, ordered by cash value desc.
+     * @return the total quantity of the cash value over all the machines at the start of the bucket.
+     */
+    public long getCashQuantity(int bucket, int index) {
+        return quantityCurves[bucket][index];
+    }
+
+    public double getWithdrawsPerSecond() {
+        return elapsedNanos == 0 ? 0 : withdrawCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Print the throughput and the outcomes of the withdraws.
+     *
+     * @param out The stream to print to.
+     */
+    public void print(PrintStream out) {
+        out.println(String.format("withdraws %d in %.1f s, %.0f withdraws/s, dispensed $%d, refills %d",
+                withdrawCount, elapsedNanos / 1e9, getWithdrawsPerSecond(), dispensedAmount, refillCount));
+
+        long failureCount = 0;
+        for (long count : failureCounts) {
+            failureCount += count;
+        }
+
+        out.println(String.format("%-20s %12s %10s", "outcome", "withdraws", "rate"));
+        out.println(String.format("%-20s %12d %9.3f%%", "SUCCESS", withdrawCount - failureCount, toPercentage(withdrawCount - failureCount)));
+        for (CashSupplyException.Reason reason : CashSupplyException.Reason.values()) {
+            long count = failureCounts[reason.ordinal()];
+            out.println(String.format("%-20s %12d %9.3f%%", reason, count, toPercentage(count)));
+        }
+    }
+
+    /**
+     * Write the depletion curves as CSV: the time of the bucket, then the total quantity of every cash value.
+     *
+     * @param csvFile The file to write.
+     * @param zoneId  The time zone of the time column.
+     * @throws IOException if the file could not be written.
+     */
+    public void writeDepletionCurves(Path csvFile, ZoneId zoneId) throws IOException {
+        if (csvFile.getParent() != null) {
+            Files.createDirectories(csvFile.getParent());
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+            writer.write("time");
+            for (int cashValue : cashValues) {
+                writer.write("," + cashValue);
+            }
+            writer.write('\n');
+
+            for (int bucket = 0; bucket < quantityCurves.length; bucket++) {
+                writer.write(LocalDateTime.ofInstant(Instant.ofEpochMilli(startMillis + bucket * bucketMillis), zoneId).toString());
+                for (long cashQuantity : quantityCurves[bucket]) {
+                    writer.write("," + cashQuantity);
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    private double toPercentage(long count) {
+        return withdrawCount == 0 ? 0 : count * 100.0 / withdrawCount;
+    }
+}
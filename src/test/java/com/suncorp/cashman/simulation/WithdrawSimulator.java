@@ -0,0 +1,311 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.benchmark.DispenseDepletionSimulation;
+import com.suncorp.cashman.denomination.Denomination;
+import com.suncorp.cashman.denomination.DenominationSet;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.service.DispenseStrategy;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Offline capacity planning: replays a withdraw trace against simulated cash machines, which dispense through the real
+ * {@link com.suncorp.cashman.service.CashServiceImpl} on an in-memory repository, and reports the throughput, the
+ * withdraws by outcome and the depletion curve of every cash value.
+ *
+ * Every machine replays its own withdraws in time order on one thread, and the machines are spread over a fork-join
+ * pool. The machines are refilled with the initial quantities on a fixed schedule, so refill schedules can be compared
+ * against a recorded trace. Run it with:
+ *
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=com.suncorp.cashman.simulation.WithdrawSimulator \
+ *         -Dexec.args="--machines=100 --withdraws=10000 --refill-interval-minutes=1440"
+ *
+ * The options are:
+ *
+ *     --trace=<file>                   replay the CSV export of the transaction logs instead of a generated trace
+ *     --machines=100                   generated trace: the number of machines
+ *     --withdraws=10000                generated trace: the withdraws of every machine
+ *     --interval-seconds=300           generated trace: the mean time between two withdraws of a machine
+ *     --accounts=100000                generated trace: the number of bank accounts
+ *     --start=2026-01-01T00:00         generated trace: the time of the start
+ *     --seed=42                        generated trace: the seed
+ *     --denominations=<file>           the denomination config, denominations.properties on the classpath by default
+ *     --stock-multiplier=1             the initial quantities of the config are multiplied by it
+ *     --strategy=bounded-change        bounded-change, depletion-balancing or greedy
+ *     --daily-limit=1000               the daily withdraw limitation of every account
+ *     --refill-interval-minutes=0      refill every machine on this interval, 0 to never refill
+ *     --bucket-minutes=60              the interval of the depletion curves
+ *     --curves=target/depletion-curves.csv
+ *     --parallelism=<cores>            the threads of the fork-join pool
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class WithdrawSimulator {
+
+    private final CashType[] cashTypes;
+
+    private final int[] initialQuantities;
+
+    private final DispenseStrategy dispenseStrategy;
+
+    private final int dailyWithdrawLimitation;
+
+    private final long refillIntervalMillis;
+
+    private final long bucketMillis;
+
+    /**
+     * @param denominationSet         The denominations the machines are refilled with.
+     * @param stockMultiplier         The initial quantities of the denominations are multiplied by it.
+     * @param dispenseStrategy        The dispense strategy of every machine.
+     * @param dailyWithdrawLimitation The daily withdraw limitation of every account.
+     * @param refillIntervalMillis    The interval the machines are refilled on, 0 to never refill them.
+     * @param bucketMillis            The interval of the depletion curves.
+     */
+    public WithdrawSimulator(DenominationSet denominationSet, int stockMultiplier, DispenseStrategy dispenseStrategy,
+                             int dailyWithdrawLimitation, long refillIntervalMillis, long bucketMillis) {
+        List<Denomination> denominations = denominationSet.getDenominations();
+        this.cashTypes = new CashType[denominations.size()];
+        this.initialQuantities = new int[denominations.size()];
+
+        for (int i = 0; i < denominations.size(); i++) {
+            Denomination denomination = denominations.get(i);
+            cashTypes[i] = new CashType(denomination.getCashDesc(), denomination.getCashValue());
+            cashTypes[i].setCashTypeId(i + 1);
+            initialQuantities[i] = denomination.getInitialQuantity() * stockMultiplier;
+        }
+
+        this.dispenseStrategy = dispenseStrategy;
+        this.dailyWithdrawLimitation = dailyWithdrawLimitation;
+        this.refillIntervalMillis = refillIntervalMillis;
+        this.bucketMillis = bucketMillis;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        ZoneId zoneId = ZoneId.systemDefault();
+
+        // The services log every dispense
+        Configurator.setRootLevel(Level.WARN);
+
+        DenominationSet denominationSet;
+        try (InputStream inputStream = options.containsKey("denominations") ? Files.newInputStream(Paths.get(options.get("denominations")))
+                : WithdrawSimulator.class.getResourceAsStream("/denominations.properties")) {
+            denominationSet = DenominationSet.load(inputStream);
+        }
+
+        String strategyName = options.getOrDefault("strategy", "bounded-change");
+        DispenseStrategy dispenseStrategy = DispenseDepletionSimulation.getStrategies(denominationSet).get(strategyName);
+        if (dispenseStrategy == null) {
+            throw new IllegalArgumentException("Unknown dispense strategy " + strategyName + ".");
+        }
+
+        long startNanos = System.nanoTime();
+        WithdrawTrace withdrawTrace;
+        if (options.containsKey("trace")) {
+            withdrawTrace = WithdrawTrace.readCsv(Paths.get(options.get("trace")), zoneId);
+        } else {
+            long startMillis = LocalDateTime.parse(options.getOrDefault("start", "2026-01-01T00:00")).atZone(zoneId).toInstant().toEpochMilli();
+            withdrawTrace = WithdrawTrace.generate(getInt(options, "machines", 100), getInt(options, "withdraws", 10000),
+                    getInt(options, "interval-seconds", 300) * 1000L, getInt(options, "accounts", 100000), startMillis,
+                    Long.parseLong(options.getOrDefault("seed", "42")));
+        }
+        System.out.println(String.format("trace of %d withdraws on %d machines loaded in %.1f s", withdrawTrace.getWithdrawCount(),
+                withdrawTrace.getMachineWithdraws().size(), (System.nanoTime() - startNanos) / 1e9));
+
+        WithdrawSimulator withdrawSimulator = new WithdrawSimulator(denominationSet, getInt(options, "stock-multiplier", 1), dispenseStrategy,
+                getInt(options, "daily-limit", 1000), getInt(options, "refill-interval-minutes", 0) * 60000L,
+                getInt(options, "bucket-minutes", 60) * 60000L);
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(getInt(options, "parallelism", Runtime.getRuntime().availableProcessors()));
+        SimulationReport simulationReport;
+        try {
+            simulationReport = withdrawSimulator.run(withdrawTrace, forkJoinPool);
+        } finally {
+            forkJoinPool.shutdown();
+        }
+
+        simulationReport.print(System.out);
+
+        Path curvesFile = Paths.get(options.getOrDefault("curves", "target/depletion-curves.csv"));
+        simulationReport.writeDepletionCurves(curvesFile, zoneId);
+        System.out.println("depletion curves written to " + curvesFile);
+    }
+
+    /**
+     * Replay the trace with a simulated machine for every machine of the trace.
+     *
+     * @param withdrawTrace The withdraws.
+     * @param forkJoinPool  The pool the machines are replayed on.
+     * @return the merged report of all the machines.
+     */
+    public SimulationReport run(WithdrawTrace withdrawTrace, ForkJoinPool forkJoinPool) {
+        List<Map.Entry<String, WithdrawTrace.MachineWithdraws>> machines = new ArrayList<>(withdrawTrace.getMachineWithdraws().entrySet());
+        long startMillis = withdrawTrace.getStartMillis();
+        // One more bucket than the trace covers, so that the last one is after the last withdraw
+        int bucketCount = machines.isEmpty() ? 0 : (int) ((withdrawTrace.getEndMillis() - startMillis) / bucketMillis) + 2;
+
+        long startNanos = System.nanoTime();
+        SimulationReport simulationReport = forkJoinPool.invoke(new MachinesTask(machines, 0, machines.size(), startMillis, bucketCount));
+        simulationReport.setElapsedNanos(System.nanoTime() - startNanos);
+
+        return simulationReport;
+    }
+
+    private SimulationReport simulateMachine(String machineId, WithdrawTrace.MachineWithdraws machineWithdraws, long startMillis, int bucketCount) {
+        SimulationReport simulationReport = new SimulationReport(getCashValues(), startMillis, bucketMillis, bucketCount);
+        MachineReplay machineReplay = new MachineReplay(new SimulatedCashMachine(machineId, cashTypes, initialQuantities, dispenseStrategy,
+                dailyWithdrawLimitation, startMillis), simulationReport, startMillis);
+
+        for (int index = 0; index < machineWithdraws.size(); index++) {
+            long timeMillis = machineWithdraws.getTimeMillis(index);
+            machineReplay.advanceTo(timeMillis);
+
+            int cashAmount = machineWithdraws.getCashAmount(index);
+            CashSupplyException.Reason failureReason = machineReplay.simulatedCashMachine.dispense(timeMillis,
+                    machineWithdraws.getBankAccountDetail(index), cashAmount);
+            simulationReport.addWithdraw(cashAmount, failureReason);
+        }
+
+        machineReplay.advanceTo(startMillis + (bucketCount - 1) * bucketMillis);
+
+        return simulationReport;
+    }
+
+    private int[] getCashValues() {
+        int[] cashValues = new int[cashTypes.length];
+        for (int i = 0; i < cashTypes.length; i++) {
+            cashValues[i] = cashTypes[i].getCashValue();
+        }
+
+        return cashValues;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Options are --name=value, not " + arg + ".");
+            }
+
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        return options;
+    }
+
+    private static int getInt(Map<String, String> options, String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    /**
+     * The refills and the depletion curve samples of one machine, in time order between its withdraws.
+     */
+    private final class MachineReplay {
+
+        private final SimulatedCashMachine simulatedCashMachine;
+
+        private final SimulationReport simulationReport;
+
+        private final long startMillis;
+
+        private final int[] cashQuantities = new int[cashTypes.length];
+
+        private long nextRefillMillis;
+
+        private int nextBucket;
+
+        private MachineReplay(SimulatedCashMachine simulatedCashMachine, SimulationReport simulationReport, long startMillis) {
+            this.simulatedCashMachine = simulatedCashMachine;
+            this.simulationReport = simulationReport;
+            this.startMillis = startMillis;
+            this.nextRefillMillis = refillIntervalMillis > 0 ? startMillis + refillIntervalMillis : Long.MAX_VALUE;
+
+            simulatedCashMachine.refill();
+        }
+
+        /**
+         * Run the refills and take the samples up to the time, a refill at the time of a sample goes first.
+         */
+        private void advanceTo(long timeMillis) {
+            while (true) {
+                long nextSampleMillis = nextBucket < simulationReport.getBucketCount() ? startMillis + nextBucket * bucketMillis : Long.MAX_VALUE;
+
+                if (nextRefillMillis <= timeMillis && nextRefillMillis <= nextSampleMillis) {
+                    simulatedCashMachine.refill();
+                    simulationReport.addRefill();
+                    nextRefillMillis += refillIntervalMillis;
+                } else if (nextSampleMillis <= timeMillis) {
+                    simulatedCashMachine.readCashQuantities(cashQuantities);
+                    simulationReport.addCashQuantities(nextBucket++, cashQuantities);
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays a range of the machines, split in halves until there is one machine per task.
+     */
+    private final class MachinesTask extends RecursiveTask<SimulationReport> {
+
+        private final List<Map.Entry<String, WithdrawTrace.MachineWithdraws>> machines;
+
+        private final int fromIndex;
+
+        private final int toIndex;
+
+        private final long startMillis;
+
+        private final int bucketCount;
+
+        private MachinesTask(List<Map.Entry<String, WithdrawTrace.MachineWithdraws>> machines, int fromIndex, int toIndex,
+                             long startMillis, int bucketCount) {
+            this.machines = machines;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.startMillis = startMillis;
+            this.bucketCount = bucketCount;
+        }
+
+        @Override
+        protected SimulationReport compute() {
+            if (toIndex - fromIndex == 0) {
+                return new SimulationReport(getCashValues(), startMillis, bucketMillis, bucketCount);
+            }
+
+            if (toIndex - fromIndex == 1) {
+                Map.Entry<String, WithdrawTrace.MachineWithdraws> machine = machines.get(fromIndex);
+                return simulateMachine(machine.getKey(), machine.getValue(), startMillis, bucketCount);
+            }
+
+            int middleIndex = (fromIndex + toIndex) >>> 1;
+            MachinesTask firstHalf = new MachinesTask(machines, fromIndex, middleIndex, startMillis, bucketCount);
+            MachinesTask secondHalf = new MachinesTask(machines, middleIndex, toIndex, startMillis, bucketCount);
+
+            firstHalf.fork();
+            SimulationReport simulationReport = secondHalf.compute();
+
+            return simulationReport.merge(firstHalf.join());
+        }
+    }
+}
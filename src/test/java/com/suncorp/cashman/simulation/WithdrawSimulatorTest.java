@@ -0,0 +1,127 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.denomination.Denomination;
+import com.suncorp.cashman.denomination.DenominationSet;
+import com.suncorp.cashman.exception.CashSupplyException;
+import com.suncorp.cashman.service.BoundedChangeDispenseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class WithdrawSimulatorTest {
+
+    private static final long HOUR_MILLIS = 3600000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private final long startMillis = LocalDateTime.parse("2026-01-01T00:00").atZone(zoneId).toInstant().toEpochMilli();
+
+    private final DenominationSet denominationSet = new DenominationSet(Arrays.asList(
+            new Denomination(100, "$100", 10, 2),
+            new Denomination(50, "$50", 20, 3),
+            new Denomination(20, "$20", 30, 4)));
+
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+    @Test
+    public void simulateTest() {
+        WithdrawTrace withdrawTrace = WithdrawTrace.generate(4, 200, 300000, 1000, startMillis, 42);
+        WithdrawSimulator withdrawSimulator = new WithdrawSimulator(denominationSet, 1, new BoundedChangeDispenseStrategy(),
+                Integer.MAX_VALUE, 0, HOUR_MILLIS);
+
+        SimulationReport simulationReport = withdrawSimulator.run(withdrawTrace, forkJoinPool);
+
+        assertThat(simulationReport.getWithdrawCount(), is(800L));
+        assertThat(simulationReport.getRefillCount(), is(0L));
+        assertThat(simulationReport.getFailureCount(CashSupplyException.Reason.OVER_LIMIT), is(0L));
+
+        // test the scenario - the machines run out of cash without refills
+        assertThat(simulationReport.getFailureCount(CashSupplyException.Reason.INSUFFICIENT_STOCK) > 0, is(true));
+
+        // the depletion curves start from the initial quantities of all the machines and end with what is left
+        assertThat(simulationReport.getCashQuantity(0, 0), is(40L));
+        assertThat(simulationReport.getCashQuantity(0, 1), is(80L));
+        assertThat(simulationReport.getCashQuantity(0, 2), is(120L));
+
+        int lastBucket = (int) ((withdrawTrace.getEndMillis() - withdrawTrace.getStartMillis()) / HOUR_MILLIS) + 1;
+        long amountLeft = simulationReport.getCashQuantity(lastBucket, 0) * 100 + simulationReport.getCashQuantity(lastBucket, 1) * 50
+                + simulationReport.getCashQuantity(lastBucket, 2) * 20;
+        assertThat(amountLeft, is(4 * 2600L - simulationReport.getDispensedAmount()));
+    }
+
+    @Test
+    public void refillTest() {
+        WithdrawTrace withdrawTrace = WithdrawTrace.generate(4, 200, 300000, 1000, startMillis, 42);
+
+        SimulationReport withoutRefillReport = new WithdrawSimulator(denominationSet, 1, new BoundedChangeDispenseStrategy(),
+                Integer.MAX_VALUE, 0, HOUR_MILLIS).run(withdrawTrace, forkJoinPool);
+        SimulationReport withRefillReport = new WithdrawSimulator(denominationSet, 1, new BoundedChangeDispenseStrategy(),
+                Integer.MAX_VALUE, 2 * HOUR_MILLIS, HOUR_MILLIS).run(withdrawTrace, forkJoinPool);
+
+        // test the scenario - every machine is refilled every two hours of its trace
+        assertThat(withRefillReport.getRefillCount() > 0, is(true));
+        assertThat(withRefillReport.getDispensedAmount() > withoutRefillReport.getDispensedAmount(), is(true));
+        assertThat(withRefillReport.getFailureCount(CashSupplyException.Reason.INSUFFICIENT_STOCK)
+                < withoutRefillReport.getFailureCount(CashSupplyException.Reason.INSUFFICIENT_STOCK), is(true));
+    }
+
+    @Test
+    public void dailyLimitTest() {
+        // test the scenario - all the withdraws are from one account with a daily limitation of $200
+        WithdrawTrace withdrawTrace = WithdrawTrace.generate(1, 50, 60000, 1, startMillis, 42);
+
+        SimulationReport simulationReport = new WithdrawSimulator(denominationSet, 100, new BoundedChangeDispenseStrategy(),
+                200, 0, HOUR_MILLIS).run(withdrawTrace, forkJoinPool);
+
+        assertThat(simulationReport.getFailureCount(CashSupplyException.Reason.OVER_LIMIT) > 0, is(true));
+        assertThat(simulationReport.getDispensedAmount() <= 200, is(true));
+    }
+
+    @Test
+    public void readCsvTest() throws Exception {
+        Path csvFile = temporaryFolder.getRoot().toPath().resolve("transaction-log.csv");
+        Files.write(csvFile, Arrays.asList(
+                "transaction_log_id,machine_id,bsb,account_no,account_name,total_amount,create_at,journal_sequence,cash_desc,cash_value,quantity",
+                "1,machine-1,111111,12345678,James,150,2026-01-01T10:00,1,$100,100,1",
+                "1,machine-1,111111,12345678,James,150,2026-01-01T10:00,1,$50,50,1",
+                "2,machine-2,111111,87654321,\"Smith, \"\"Jo\"\"\",20,2026-01-01T10:05,2,$20,20,1",
+                "3,,111111,12345678,James,0,2026-01-01T11:00,3,,,"), StandardCharsets.UTF_8);
+
+        WithdrawTrace withdrawTrace = WithdrawTrace.readCsv(csvFile, zoneId);
+
+        // test the scenario - the detail rows of a transaction log are one withdraw
+        assertThat(withdrawTrace.getWithdrawCount(), is(3L));
+        assertThat(withdrawTrace.getMachineWithdraws().size(), is(3));
+
+        WithdrawTrace.MachineWithdraws machineWithdraws = withdrawTrace.getMachineWithdraws().get("machine-1");
+        assertThat(machineWithdraws.size(), is(1));
+        assertThat(machineWithdraws.getCashAmount(0), is(150));
+        assertThat(machineWithdraws.getTimeMillis(0), is(startMillis + 10 * HOUR_MILLIS));
+
+        // test the scenario - a quoted account name with a comma and quotes
+        assertThat(withdrawTrace.getMachineWithdraws().get("machine-2").getBankAccountDetail(0).getAccountName(), is("Smith, \"Jo\""));
+
+        // test the scenario - a transaction log without machine id was dispensed by the default machine
+        assertThat(withdrawTrace.getMachineWithdraws().get("default").getCashAmount(0), is(0));
+        assertThat(withdrawTrace.getStartMillis(), is(startMillis + 10 * HOUR_MILLIS));
+        assertThat(withdrawTrace.getEndMillis(), is(startMillis + 11 * HOUR_MILLIS));
+    }
+}
@@ -0,0 +1,240 @@
+package com.suncorp.cashman.simulation;
+
+import com.suncorp.cashman.benchmark.DispenseDepletionSimulation;
+import com.suncorp.cashman.domain.BankAccountDetail;
+import com.suncorp.cashman.domain.CashSupply;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The withdraws of a simulation, kept per cash machine in time order in primitive arrays, so that millions of them fit
+ * in memory. The accounts are shared by all the withdraws of the same account.
+ *
+ * A trace is either generated, or read from the CSV export of the transaction logs. A transaction log is exported as
+ * one row per dispensed cash value with the transaction log columns repeated, so only the first row of every
+ * transaction log is used.
+ *
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public final class WithdrawTrace {
+
+    private static final String CSV_HEADER_PREFIX = "transaction_log_id,machine_id,bsb,account_no,account_name,total_amount,create_at";
+
+    private final Map<String, MachineWithdraws> machineWithdraws = new LinkedHashMap<>();
+
+    private long startMillis = Long.MAX_VALUE;
+
+    private long endMillis = Long.MIN_VALUE;
+
+    private long withdrawCount;
+
+    private WithdrawTrace() {
+    }
+
+    /**
+     * Generate the withdraws of every machine. The withdraws of a machine arrive with exponentially distributed
+     * intervals and common withdraw amounts, from random accounts.
+     *
+     * @param machineCount           The number of cash machines.
+     * @param withdrawsPerMachine    The number of withdraws of every machine.
+     * @param meanIntervalMillis     The mean time between two withdraws of a machine.
+     * @param accountCount           The number of bank accounts the withdraws are spread over.
+     * @param startMillis            The time of the start of the trace.
+     * @param seed                   The seed, the same seed always gives the same trace.
+     * @return the trace.
+     */
+    public static WithdrawTrace generate(int machineCount, int withdrawsPerMachine, long meanIntervalMillis, int accountCount,
+                                         long startMillis, long seed) {
+        BankAccountDetail[] bankAccountDetails = new BankAccountDetail[accountCount];
+        for (int account = 0; account < accountCount; account++) {
+            bankAccountDetails[account] = new BankAccountDetail("000000", String.format("%08d", account), "Account " + account);
+        }
+
+        WithdrawTrace withdrawTrace = new WithdrawTrace();
+        for (int machine = 0; machine < machineCount; machine++) {
+            Random random = new Random(seed + machine);
+            int[] cashAmounts = DispenseDepletionSimulation.generateTrace(withdrawsPerMachine, seed + machine);
+            long timeMillis = startMillis;
+
+            for (int index = 0; index < withdrawsPerMachine; index++) {
+                timeMillis += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalMillis);
+                withdrawTrace.add("machine-" + machine, timeMillis, bankAccountDetails[random.nextInt(accountCount)], cashAmounts[index]);
+            }
+        }
+
+        withdrawTrace.startMillis = Math.min(withdrawTrace.startMillis, startMillis);
+
+        return withdrawTrace;
+    }
+
+    /**
+     * Read the withdraws from the CSV export of the transaction logs, see TransactionLogExporter.
+     *
+     * @param csvFile The exported file.
+     * @param zoneId  The time zone of the create_at column.
+     * @return the trace.
+     * @throws IOException              if the file could not be read.
+     * @throws IllegalArgumentException if the file is not a transaction log export.
+     */
+    public static WithdrawTrace readCsv(Path csvFile, ZoneId zoneId) throws IOException {
+        WithdrawTrace withdrawTrace = new WithdrawTrace();
+        Map<String, BankAccountDetail> bankAccountDetails = new HashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            List<String> columns = readRecord(reader);
+            if (columns == null || !String.join(",", columns).startsWith(CSV_HEADER_PREFIX)) {
+                throw new IllegalArgumentException(csvFile + " is not a transaction log export.");
+            }
+
+            String lastTransactionLogId = null;
+            while ((columns = readRecord(reader)) != null) {
+                String transactionLogId = columns.get(0);
+                if (transactionLogId.equals(lastTransactionLogId)) {
+                    continue;
+                }
+                lastTransactionLogId = transactionLogId;
+
+                String machineId = columns.get(1).isEmpty() ? CashSupply.DEFAULT_MACHINE_ID : columns.get(1);
+                String bsb = columns.get(2);
+                String accountNo = columns.get(3);
+                String accountName = columns.get(4);
+                BankAccountDetail bankAccountDetail = bankAccountDetails.computeIfAbsent(bsb + "-" + accountNo,
+                        key -> new BankAccountDetail(bsb, accountNo, accountName));
+                long timeMillis = LocalDateTime.parse(columns.get(6)).atZone(zoneId).toInstant().toEpochMilli();
+
+                withdrawTrace.add(machineId, timeMillis, bankAccountDetail, Integer.parseInt(columns.get(5)));
+            }
+        }
+
+        return withdrawTrace;
+    }
+
+    /**
+     * Read one CSV record, which can go on over several lines inside a quoted value.
+     *
+     * @return the values of the record, null at the end of the file.
+     */
+    private static List<String> readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+
+                if (quoted) {
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+
+            if (!quoted || (line = reader.readLine()) == null) {
+                break;
+            }
+            value.append('\n');
+        }
+
+        values.add(value.toString());
+
+        return values;
+    }
+
+    private void add(String machineId, long timeMillis, BankAccountDetail bankAccountDetail, int cashAmount) {
+        machineWithdraws.computeIfAbsent(machineId, key -> new MachineWithdraws()).add(timeMillis, bankAccountDetail, cashAmount);
+        startMillis = Math.min(startMillis, timeMillis);
+        endMillis = Math.max(endMillis, timeMillis);
+        withdrawCount++;
+    }
+
+    public Map<String, MachineWithdraws> getMachineWithdraws() {
+        return machineWithdraws;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public long getWithdrawCount() {
+        return withdrawCount;
+    }
+
+    /**
+     * The withdraws of one cash machine in time order.
+     */
+    public static final class MachineWithdraws {
+
+        private long[] timeMillis = new long[16];
+
+        private BankAccountDetail[] bankAccountDetails = new BankAccountDetail[16];
+
+        private int[] cashAmounts = new int[16];
+
+        private int size;
+
+        private void add(long timeMillis, BankAccountDetail bankAccountDetail, int cashAmount) {
+            if (size == cashAmounts.length) {
+                this.timeMillis = Arrays.copyOf(this.timeMillis, size * 2);
+                this.bankAccountDetails = Arrays.copyOf(this.bankAccountDetails, size * 2);
+                this.cashAmounts = Arrays.copyOf(this.cashAmounts, size * 2);
+            }
+
+            this.timeMillis[size] = timeMillis;
+            this.bankAccountDetails[size] = bankAccountDetail;
+            this.cashAmounts[size] = cashAmount;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getTimeMillis(int index) {
+            return timeMillis[index];
+        }
+
+        public BankAccountDetail getBankAccountDetail(int index) {
+            return bankAccountDetails[index];
+        }
+
+        public int getCashAmount(int index) {
+            return cashAmounts[index];
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.suncorp.cashman.stream;
+
+import com.suncorp.cashman.domain.CashSupply;
+import com.suncorp.cashman.domain.CashType;
+import com.suncorp.cashman.inventory.CashInventoryRegistry;
+import com.suncorp.cashman.repository.CashSupplyRepository;
+import com.suncorp.cashman.simulation.InMemoryCashSupplyRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Created by ryan.zhu on 17/10/2026.
+ */
+
+public class InventoryEventStreamTest {
+
+    private CashInventoryRegistry cashInventoryRegistry;
+
+    private InventoryEventStream inventoryEventStream;
+
+    @Before
+    public void setup() {
+        CashSupplyRepository cashSupplyRepository = InMemoryCashSupplyRepository.create();
+        cashSupplyRepository.save(new CashSupply(CashSupply.DEFAULT_MACHINE_ID, new CashType("$50", 50), 100));
+
+        cashInventoryRegistry = new CashInventoryRegistry(cashSupplyRepository);
+        cashInventoryRegistry.load(CashSupply.DEFAULT_MACHINE_ID);
+
+        // published every 10 ms by one sender thread, a send blocked for 200 ms is given up
+        inventoryEventStream = new InventoryEventStream(cashInventoryRegistry, 10, 15000, 60000, 10, 1, 200);
+        inventoryEventStream.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        inventoryEventStream.stop();
+    }
+
+    @Test
+    public void slowSubscriberTest() throws Exception {
+        CountDownLatch slowEmitterLatch = new CountDownLatch(1);
+        RecordingEmitter slowEmitter = new RecordingEmitter(slowEmitterLatch);
+        RecordingEmitter emitter = new RecordingEmitter(null);
+
+        // the send to the slow subscriber blocks the only sender thread
+        inventoryEventStream.subscribe(null, slowEmitter);
+        await(() -> slowEmitter.blocked);
+        inventoryEventStream.subscribe(null, emitter);
+
+        // test the scenario - the slow subscriber is dropped, the other one still gets its events
+        await(() -> emitter.getEvents().contains("event:reset"));
+        assertThat(emitter.getEvents().contains("event:reset"), is(true));
+        assertThat(inventoryEventStream.getSubscriberCount(), is(1));
+
+        cashInventoryRegistry.getCashInventory(CashSupply.DEFAULT_MACHINE_ID).withdraw(new int[]{1});
+        await(() -> emitter.getEvents().contains("event:delta"));
+        assertThat(emitter.getEvents().contains("cashQuantity=99"), is(true));
+
+        // test the scenario - the slow subscriber is completed with an error once its send returns
+        slowEmitterLatch.countDown();
+        await(() -> slowEmitter.failure != null);
+        assertThat(slowEmitter.failure != null, is(true));
+        assertThat(emitter.failure == null, is(true));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Keeps the events sent to it, and blocks every send until the latch is opened if there is one.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final CountDownLatch latch;
+
+        private final StringBuffer events = new StringBuffer();
+
+        private volatile boolean blocked;
+
+        private volatile Throwable failure;
+
+        private RecordingEmitter(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            if (latch != null) {
+                blocked = true;
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            builder.build().forEach(dataWithMediaType -> events.append(dataWithMediaType.getData()));
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable failure) {
+            this.failure = failure;
+        }
+
+        private String getEvents() {
+            return events.toString();
+        }
+    }
+}